@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.auth;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import io.dropwizard.auth.basic.BasicCredentials;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.textsecuregcm.configuration.CredentialVerificationCacheConfiguration;
+import org.whispersystems.textsecuregcm.entities.SignedPreKey;
+import org.whispersystems.textsecuregcm.storage.Account;
+import org.whispersystems.textsecuregcm.storage.AccountsManager;
+import org.whispersystems.textsecuregcm.storage.Device;
+
+/**
+ * Measures repeated Basic authentication of the same device with and without a {@link CredentialVerificationCache}.
+ * Accounts are served from a stub, so the benchmark measures credential parsing and verification rather than account
+ * retrieval.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AccountAuthenticationBenchmark {
+
+  @Param({"false", "true"})
+  private boolean cacheEnabled;
+
+  private BaseAccountAuthenticator accountAuthenticator;
+  private BasicCredentials basicCredentials;
+
+  @Setup
+  public void setUp() {
+    final UUID accountIdentifier = UUID.randomUUID();
+    final String password = "benchmark-password-" + UUID.randomUUID();
+
+    final Device device = new Device();
+    device.setId(Device.MASTER_ID);
+    device.setAuthTokenHash(SaltedTokenHash.generateFor(password));
+    device.setSignedPreKey(new SignedPreKey(1, "publicKey", "signature"));
+    device.setGcmId("gcmId");
+    // Keep the authenticator from trying to update the device's last-seen time
+    device.setLastSeen(System.currentTimeMillis());
+
+    final Account account = new Account();
+    account.setUuid(accountIdentifier);
+    account.setNumber("+18005551234", UUID.randomUUID());
+    account.addDevice(device);
+
+    // Stubs don't record their invocations, which would otherwise accumulate without bound over a benchmark run
+    final AccountsManager accountsManager = mock(AccountsManager.class, withSettings().stubOnly());
+    when(accountsManager.getByAccountIdentifier(accountIdentifier)).thenReturn(Optional.of(account));
+
+    accountAuthenticator = new BaseAccountAuthenticator(accountsManager, new CredentialVerificationCache(
+        new CredentialVerificationCacheConfiguration(cacheEnabled, 10_000, Duration.ofMinutes(5))));
+
+    basicCredentials = new BasicCredentials(accountIdentifier + "." + Device.MASTER_ID, password);
+  }
+
+  @Benchmark
+  public Optional<AuthenticatedAccount> authenticate() {
+    return accountAuthenticator.authenticate(basicCredentials, true);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.textsecuregcm.auth.SaltedTokenHash;
+import org.whispersystems.textsecuregcm.entities.SignedPreKey;
+
+/**
+ * Compares the time to encode and decode cached accounts in each {@link AccountCacheCodec.Format}. The encoded size of
+ * the benchmark account in each format is printed when each trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AccountCacheCodecBenchmark {
+
+  @Param({"JSON", "COMPACT_V1"})
+  private AccountCacheCodec.Format format;
+
+  @Param({"1", "5"})
+  private int deviceCount;
+
+  private Account account;
+  private byte[] encodedAccount;
+
+  @Setup
+  public void setUp() throws IOException {
+    account = new Account();
+    account.setUuid(UUID.randomUUID());
+    account.setNumber("+18005551234", UUID.randomUUID());
+    account.setIdentityKey(randomString());
+    account.setPhoneNumberIdentityKey(randomString());
+    account.setCurrentProfileVersion(randomString());
+    account.setUnidentifiedAccessKey(randomBytes(16));
+    account.setUsernameHash(randomBytes(32));
+    account.setBadges(Clock.systemUTC(), List.of(
+        new AccountBadge("TEST", Instant.now().plus(Duration.ofDays(30)), true)));
+
+    for (int deviceId = 1; deviceId <= deviceCount; deviceId++) {
+      final Device device = new Device();
+      device.setId(deviceId);
+      device.setName(randomString());
+      device.setAuthTokenHash(SaltedTokenHash.generateFor(randomString()));
+      device.setRegistrationId(ThreadLocalRandom.current().nextInt(16384));
+      device.setPhoneNumberIdentityRegistrationId(ThreadLocalRandom.current().nextInt(16384));
+      device.setSignedPreKey(new SignedPreKey(deviceId, randomString(), randomString()));
+      device.setPhoneNumberIdentitySignedPreKey(new SignedPreKey(deviceId, randomString(), randomString()));
+      device.setGcmId(randomString());
+      device.setUserAgent("OWA");
+      device.setCreated(System.currentTimeMillis());
+      device.setLastSeen(System.currentTimeMillis());
+      device.setCapabilities(new Device.DeviceCapabilities(true, true, true, true, true, true, true, true, true));
+
+      account.addDevice(device);
+    }
+
+    encodedAccount = AccountCacheCodec.encode(account, format);
+
+    System.out.println(format + " encoding with " + deviceCount + " device(s): " + encodedAccount.length + " bytes");
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return AccountCacheCodec.encode(account, format);
+  }
+
+  @Benchmark
+  public Account decode() throws IOException {
+    return AccountCacheCodec.decode(encodedAccount);
+  }
+
+  private static byte[] randomBytes(final int length) {
+    final byte[] bytes = new byte[length];
+    ThreadLocalRandom.current().nextBytes(bytes);
+
+    return bytes;
+  }
+
+  private static String randomString() {
+    return Base64.getEncoder().encodeToString(randomBytes(33));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicPushLatencyConfiguration;
+import org.whispersystems.textsecuregcm.util.Util;
+
+/**
+ * Measures contended reads of the current dynamic configuration and of a view derived from it, compared to the
+ * previous read path, which entered the manager's monitor on every read to check whether the initial configuration had
+ * arrived.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class DynamicConfigurationManagerBenchmark {
+
+  private DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+  private Supplier<DynamicPushLatencyConfiguration> pushLatencyConfigurationView;
+
+  private MonitorGuardedConfiguration<DynamicConfiguration> monitorGuardedConfiguration;
+
+  @Setup
+  public void setUp() throws JsonProcessingException {
+    final DynamicConfiguration configuration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.5
+        """, DynamicConfiguration.class).orElseThrow();
+
+    // The benchmark never starts the manager, so it never talks to AppConfig
+    dynamicConfigurationManager =
+        new DynamicConfigurationManager<>(null, "benchmark", "benchmark", "benchmark", DynamicConfiguration.class);
+
+    pushLatencyConfigurationView =
+        dynamicConfigurationManager.createView(DynamicConfiguration::getPushLatencyConfiguration);
+
+    dynamicConfigurationManager.setConfiguration(configuration);
+
+    monitorGuardedConfiguration = new MonitorGuardedConfiguration<>();
+    monitorGuardedConfiguration.setConfiguration(configuration);
+  }
+
+  @Benchmark
+  public DynamicPushLatencyConfiguration getConfiguration() {
+    return dynamicConfigurationManager.getConfiguration().getPushLatencyConfiguration();
+  }
+
+  @Benchmark
+  public DynamicPushLatencyConfiguration getView() {
+    return pushLatencyConfigurationView.get();
+  }
+
+  @Benchmark
+  public DynamicPushLatencyConfiguration getMonitorGuardedConfiguration() {
+    return monitorGuardedConfiguration.getConfiguration().getPushLatencyConfiguration();
+  }
+
+  /**
+   * Reproduces the read path {@link DynamicConfigurationManager} used before reads became lock-free.
+   */
+  private static class MonitorGuardedConfiguration<T> {
+
+    private final AtomicReference<T> configuration = new AtomicReference<>();
+    private boolean initialized = false;
+
+    T getConfiguration() {
+      synchronized (this) {
+        while (!initialized) {
+          Util.wait(this);
+        }
+      }
+
+      return configuration.get();
+    }
+
+    void setConfiguration(final T configuration) {
+      this.configuration.set(configuration);
+
+      synchronized (this) {
+        initialized = true;
+        notifyAll();
+      }
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubConnection;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Measures {@link MessagesCache}'s message availability listener registry with many registered listeners, both when
+ * dispatching keyspace notifications and when registering and removing listeners concurrently with one another.
+ * Redis is replaced with stubs, and notifications are handled on the calling thread, so only in-process bookkeeping is
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MessageAvailabilityListenerBenchmark {
+
+  @Param({"500000"})
+  private int listenerCount;
+
+  private MessagesCache messagesCache;
+
+  private UUID[] accountIdentifiers;
+  private String[] keyspaceChannels;
+
+  private static final long DEVICE_ID = 1;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setUp() throws IOException {
+    // Stubs don't record their invocations, which would otherwise accumulate without bound over a benchmark run
+    final FaultTolerantRedisCluster redisCluster = mock(FaultTolerantRedisCluster.class, withSettings().stubOnly());
+    when(redisCluster.createPubSubConnection())
+        .thenReturn(mock(FaultTolerantPubSubConnection.class, withSettings().stubOnly()));
+
+    messagesCache = new MessagesCache(redisCluster, redisCluster, MoreExecutors.newDirectExecutorService(),
+        Schedulers.immediate(), MoreExecutors.newDirectExecutorService(), Clock.systemUTC());
+
+    accountIdentifiers = new UUID[listenerCount];
+    keyspaceChannels = new String[listenerCount];
+
+    for (int i = 0; i < listenerCount; i++) {
+      accountIdentifiers[i] = UUID.randomUUID();
+      keyspaceChannels[i] = "__keyspace@0__:user_queue::{" +
+          MessagesCache.getQueueName(accountIdentifiers[i], DEVICE_ID) + "}";
+
+      messagesCache.addMessageAvailabilityListener(accountIdentifiers[i], DEVICE_ID, new NoOpListener());
+    }
+  }
+
+  @Benchmark
+  public void dispatchKeyspaceNotification() {
+    messagesCache.message(null, keyspaceChannels[ThreadLocalRandom.current().nextInt(listenerCount)], "zadd");
+  }
+
+  @Benchmark
+  public void replaceListener() {
+    final UUID accountIdentifier = accountIdentifiers[ThreadLocalRandom.current().nextInt(listenerCount)];
+    final MessageAvailabilityListener listener = new NoOpListener();
+
+    messagesCache.addMessageAvailabilityListener(accountIdentifier, DEVICE_ID, listener);
+    messagesCache.removeMessageAvailabilityListener(listener);
+
+    // Restore a listener for the queue so the number of registered listeners stays constant
+    messagesCache.addMessageAvailabilityListener(accountIdentifier, DEVICE_ID, new NoOpListener());
+  }
+
+  private static class NoOpListener implements MessageAvailabilityListener {
+
+    @Override
+    public boolean handleNewMessagesAvailable() {
+      return true;
+    }
+
+    @Override
+    public boolean handleMessagesPersisted() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.google.protobuf.ByteString;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
+import org.whispersystems.textsecuregcm.providers.MultiRecipientMessageProvider;
+
+/**
+ * Measures the cost of building and serializing one recipient's copy of a multi-recipient message, comparing a full
+ * copy of the common payload and a rebuild of the envelope to set its server GUID (the old fan-out path) to a shared
+ * common envelope and payload with the server GUID appended to the serialized bytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MultiRecipientFanOutBenchmark {
+
+  @Param({"1024", "65536", "1048576"})
+  private int commonPayloadSize;
+
+  private byte[] commonPayloadBytes;
+  private ByteString commonPayload;
+  private Envelope commonEnvelope;
+  private byte[] recipientKeyMaterial;
+  private String destinationUuid;
+
+  // Key material is a 32-byte key and a 16-byte MAC for sealed sender v2 messages
+  private static final int RECIPIENT_KEY_MATERIAL_LENGTH = 48;
+
+  @Setup
+  public void setUp() {
+    commonPayloadBytes = new byte[commonPayloadSize];
+    ThreadLocalRandom.current().nextBytes(commonPayloadBytes);
+
+    commonPayload = ByteString.copyFrom(commonPayloadBytes);
+
+    recipientKeyMaterial = new byte[RECIPIENT_KEY_MATERIAL_LENGTH];
+    ThreadLocalRandom.current().nextBytes(recipientKeyMaterial);
+
+    destinationUuid = UUID.randomUUID().toString();
+
+    commonEnvelope = Envelope.newBuilder()
+        .setType(Envelope.Type.UNIDENTIFIED_SENDER)
+        .setTimestamp(System.currentTimeMillis())
+        .setServerTimestamp(System.currentTimeMillis())
+        .setUrgent(true)
+        .build();
+  }
+
+  @Benchmark
+  public byte[] copyPayloadAndRebuildEnvelope() {
+    final byte[] payload = new byte[1 + recipientKeyMaterial.length + commonPayloadBytes.length];
+    payload[0] = MultiRecipientMessageProvider.VERSION;
+    System.arraycopy(recipientKeyMaterial, 0, payload, 1, recipientKeyMaterial.length);
+    System.arraycopy(commonPayloadBytes, 0, payload, 1 + recipientKeyMaterial.length, commonPayloadBytes.length);
+
+    final Envelope envelope = Envelope.newBuilder()
+        .setType(Envelope.Type.UNIDENTIFIED_SENDER)
+        .setTimestamp(commonEnvelope.getTimestamp())
+        .setServerTimestamp(commonEnvelope.getServerTimestamp())
+        .setContent(ByteString.copyFrom(payload))
+        .setUrgent(true)
+        .setDestinationUuid(destinationUuid)
+        .build();
+
+    return envelope.toBuilder().setServerGuid(UUID.randomUUID().toString()).build().toByteArray();
+  }
+
+  @Benchmark
+  public byte[] shareCommonPayloadAndAppendGuid() {
+    final byte[] recipientHeader = new byte[1 + recipientKeyMaterial.length];
+    recipientHeader[0] = MultiRecipientMessageProvider.VERSION;
+    System.arraycopy(recipientKeyMaterial, 0, recipientHeader, 1, recipientKeyMaterial.length);
+
+    final Envelope envelope = commonEnvelope.toBuilder()
+        .setContent(ByteString.copyFrom(recipientHeader).concat(commonPayload))
+        .setDestinationUuid(destinationUuid)
+        .build();
+
+    return MessagesCache.serializeWithServerGuid(envelope, UUID.randomUUID());
+  }
+}
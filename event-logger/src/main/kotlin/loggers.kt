@@ -10,13 +10,40 @@ import com.google.cloud.logging.Logging
 import com.google.cloud.logging.MonitoredResourceUtil
 import com.google.cloud.logging.Payload.JsonPayload
 import com.google.cloud.logging.Severity
+import com.google.protobuf.ListValue
+import com.google.protobuf.NullValue
 import com.google.protobuf.Struct
-import com.google.protobuf.util.JsonFormat
-import kotlinx.serialization.encodeToString
+import com.google.protobuf.Value
+import io.micrometer.core.instrument.Counter
+import io.micrometer.core.instrument.MeterRegistry
+import io.micrometer.core.instrument.Metrics
+import io.micrometer.core.instrument.Timer
+import java.time.Duration
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.logging.Level
+import java.util.logging.Logger
+import kotlinx.serialization.json.JsonArray
+import kotlinx.serialization.json.JsonElement
+import kotlinx.serialization.json.JsonNull
+import kotlinx.serialization.json.JsonObject
+import kotlinx.serialization.json.JsonPrimitive
+import kotlinx.serialization.json.booleanOrNull
+import kotlinx.serialization.json.double
+import kotlinx.serialization.json.encodeToJsonElement
+import kotlinx.serialization.json.jsonObject
+
+data class LabeledEvent(val event: Event, val labels: Map<String, String>?)
 
 interface AdminEventLogger {
     fun logEvent(event: Event, labels: Map<String, String>?)
     fun logEvent(event: Event) = logEvent(event, null)
+
+    /**
+     * Logs a batch of events. Implementations that write to a remote service should override this to write the whole
+     * batch at once.
+     */
+    fun logEvents(events: List<LabeledEvent>) = events.forEach { logEvent(it.event, it.labels) }
 }
 
 class NoOpAdminEventLogger : AdminEventLogger {
@@ -24,18 +51,178 @@ class NoOpAdminEventLogger : AdminEventLogger {
 }
 
 class GoogleCloudAdminEventLogger(private val logging: Logging, private val projectId: String, private val logName: String) : AdminEventLogger {
-    override fun logEvent(event: Event, labels: Map<String, String>?) {
-        val structBuilder = Struct.newBuilder()
-        JsonFormat.parser().merge(jsonFormat.encodeToString(event), structBuilder)
-        val struct = structBuilder.build()
+    override fun logEvent(event: Event, labels: Map<String, String>?) = logEvents(listOf(LabeledEvent(event, labels)))
 
-        val logEntryBuilder = LogEntry.newBuilder(JsonPayload.of(struct))
+    override fun logEvents(events: List<LabeledEvent>) {
+        if (events.isNotEmpty()) {
+            logging.write(events.map { toLogEntry(it.event, it.labels) })
+        }
+    }
+
+    private fun toLogEntry(event: Event, labels: Map<String, String>?): LogEntry {
+        val logEntryBuilder = LogEntry.newBuilder(JsonPayload.of(toStruct(event)))
                 .setLogName(logName)
                 .setSeverity(Severity.NOTICE)
-                .setResource(MonitoredResourceUtil.getResource(projectId, "project"));
+                .setResource(MonitoredResourceUtil.getResource(projectId, "project"))
         if (labels != null) {
-            logEntryBuilder.setLabels(labels);
+            logEntryBuilder.setLabels(labels)
+        }
+        return logEntryBuilder.build()
+    }
+}
+
+/**
+ * Builds a protobuf struct from an event's JSON tree directly, rather than printing the event as a JSON string and
+ * parsing it back with `JsonFormat`. As with `JsonFormat`, all numbers become doubles.
+ */
+internal fun toStruct(event: Event): Struct = jsonFormat.encodeToJsonElement(event).jsonObject.toStruct()
+
+private fun JsonObject.toStruct(): Struct {
+    val structBuilder = Struct.newBuilder()
+    forEach { (key, value) -> structBuilder.putFields(key, value.toValue()) }
+    return structBuilder.build()
+}
+
+private fun JsonElement.toValue(): Value = when (this) {
+    is JsonNull -> Value.newBuilder().setNullValue(NullValue.NULL_VALUE).build()
+    is JsonPrimitive -> if (isString) {
+        Value.newBuilder().setStringValue(content).build()
+    } else {
+        booleanOrNull?.let { Value.newBuilder().setBoolValue(it).build() }
+                ?: Value.newBuilder().setNumberValue(double).build()
+    }
+    is JsonObject -> Value.newBuilder().setStructValue(toStruct()).build()
+    is JsonArray -> Value.newBuilder().setListValue(ListValue.newBuilder().addAllValues(map { it.toValue() })).build()
+}
+
+/**
+ * An admin event logger that queues events and passes them to another logger in batches from a background thread, so
+ * callers never wait on the delegate's (usually remote) writes. A batch is written when it reaches `maxBatchSize`
+ * events or when `flushInterval` has passed since its first event arrived, whichever comes first.
+ *
+ * Events are dropped, rather than blocking the caller, if the queue is full or the logger isn't running. Events are
+ * also dropped if the delegate fails to write them; admin events are informational and are not retried.
+ */
+class BatchingAdminEventLogger @JvmOverloads constructor(
+        private val delegate: AdminEventLogger,
+        maxQueueSize: Int = 1_000,
+        private val maxBatchSize: Int = 100,
+        private val flushInterval: Duration = Duration.ofSeconds(1),
+        meterRegistry: MeterRegistry = Metrics.globalRegistry,
+) : AdminEventLogger {
+
+    private class QueuedEvent(val labeledEvent: LabeledEvent?, val enqueuedNanos: Long)
+
+    private val queue = LinkedBlockingQueue<QueuedEvent>(maxQueueSize)
+
+    @Volatile
+    private var running = false
+    private var workerThread: Thread? = null
+
+    private val queueFullCounter: Counter = droppedCounter(meterRegistry, "queueFull")
+    private val notRunningCounter: Counter = droppedCounter(meterRegistry, "notRunning")
+    private val writeFailedCounter: Counter = droppedCounter(meterRegistry, "writeFailed")
+    private val writeTimer: Timer = meterRegistry.timer(WRITE_TIMER_NAME)
+    private val queueLatencyTimer: Timer = meterRegistry.timer(QUEUE_LATENCY_TIMER_NAME)
+
+    init {
+        require(maxBatchSize > 0) { "Max batch size must be positive" }
+        meterRegistry.gauge(QUEUE_SIZE_GAUGE_NAME, queue) { it.size.toDouble() }
+    }
+
+    @Synchronized
+    fun start() {
+        if (running) {
+            return
         }
-        logging.write(listOf(logEntryBuilder.build()))
+
+        running = true
+        workerThread = Thread(::processQueue, "adminEventLogger").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    /**
+     * Stops accepting new events and waits for already-queued events to be written.
+     */
+    @Synchronized
+    fun stop() {
+        if (!running) {
+            return
+        }
+
+        running = false
+        queue.put(SHUTDOWN)
+        workerThread?.join()
+        workerThread = null
+    }
+
+    override fun logEvent(event: Event, labels: Map<String, String>?) {
+        if (!running) {
+            notRunningCounter.increment()
+        } else if (!queue.offer(QueuedEvent(LabeledEvent(event, labels), System.nanoTime()))) {
+            queueFullCounter.increment()
+        }
+    }
+
+    private fun processQueue() {
+        val batch = ArrayList<QueuedEvent>(maxBatchSize)
+        var shutdown = false
+
+        while (!shutdown) {
+            batch.add(queue.take())
+            val deadline = System.nanoTime() + flushInterval.toNanos()
+
+            while (batch.size < maxBatchSize && batch.last() !== SHUTDOWN) {
+                queue.drainTo(batch, maxBatchSize - batch.size)
+
+                if (batch.size >= maxBatchSize || batch.last() === SHUTDOWN) {
+                    break
+                }
+
+                val remaining = deadline - System.nanoTime()
+                batch.add(queue.poll(remaining, TimeUnit.NANOSECONDS) ?: break)
+            }
+
+            shutdown = batch.remove(SHUTDOWN)
+            write(batch)
+            batch.clear()
+        }
+
+        // A caller may have passed the running check just before shutdown and queued an event behind the marker
+        queue.drainTo(batch)
+        batch.chunked(maxBatchSize).forEach(::write)
+    }
+
+    private fun write(batch: List<QueuedEvent>) {
+        if (batch.isEmpty()) {
+            return
+        }
+
+        try {
+            writeTimer.record(Runnable { delegate.logEvents(batch.map { it.labeledEvent!! }) })
+        } catch (e: Exception) {
+            logger.log(Level.WARNING, "Failed to write ${batch.size} admin events", e)
+            writeFailedCounter.increment(batch.size.toDouble())
+            return
+        }
+
+        val now = System.nanoTime()
+        batch.forEach { queueLatencyTimer.record(now - it.enqueuedNanos, TimeUnit.NANOSECONDS) }
+    }
+
+    companion object {
+        private val logger: Logger = Logger.getLogger(BatchingAdminEventLogger::class.java.name)
+
+        private val SHUTDOWN = QueuedEvent(null, 0)
+
+        private val DROPPED_COUNTER_NAME = "${BatchingAdminEventLogger::class.java.name}.dropped"
+        private val WRITE_TIMER_NAME = "${BatchingAdminEventLogger::class.java.name}.write"
+        private val QUEUE_LATENCY_TIMER_NAME = "${BatchingAdminEventLogger::class.java.name}.queueLatency"
+        private val QUEUE_SIZE_GAUGE_NAME = "${BatchingAdminEventLogger::class.java.name}.queueSize"
+
+        private fun droppedCounter(meterRegistry: MeterRegistry, reason: String): Counter =
+                meterRegistry.counter(DROPPED_COUNTER_NAME, "reason", reason)
     }
 }
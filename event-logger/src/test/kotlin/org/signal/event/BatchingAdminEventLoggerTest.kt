@@ -0,0 +1,170 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.signal.event
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
+import java.time.Duration
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+
+class BatchingAdminEventLoggerTest {
+
+    /**
+     * A stand-in for a remote logger that records each batch it receives and can be made to block or fail.
+     */
+    private class RecordingAdminEventLogger : AdminEventLogger {
+        val batches = CopyOnWriteArrayList<List<LabeledEvent>>()
+
+        @Volatile
+        var writeLatch: CountDownLatch? = null
+
+        @Volatile
+        var fail = false
+
+        override fun logEvent(event: Event, labels: Map<String, String>?) = logEvents(listOf(LabeledEvent(event, labels)))
+
+        override fun logEvents(events: List<LabeledEvent>) {
+            writeLatch?.await()
+
+            if (fail) {
+                throw RuntimeException("OH NO")
+            }
+
+            batches.add(events)
+        }
+    }
+
+    private lateinit var delegate: RecordingAdminEventLogger
+    private lateinit var meterRegistry: SimpleMeterRegistry
+
+    @BeforeEach
+    fun setUp() {
+        delegate = RecordingAdminEventLogger()
+        meterRegistry = SimpleMeterRegistry()
+    }
+
+    @AfterEach
+    fun tearDown() {
+        delegate.writeLatch?.countDown()
+    }
+
+    @Test
+    fun flushOnBatchSize() {
+        // A long flush interval means that only a full batch will be written before stopping
+        val logger = BatchingAdminEventLogger(delegate, 100, 2, Duration.ofMinutes(1), meterRegistry)
+        logger.start()
+
+        logger.logEvent(RemoteConfigDeleteEvent("token", "first"))
+        logger.logEvent(RemoteConfigDeleteEvent("token", "second"))
+
+        waitFor { delegate.batches.size == 1 }
+        assertEquals(listOf("first", "second"), delegate.batches[0].map { (it.event as RemoteConfigDeleteEvent).name })
+
+        logger.stop()
+    }
+
+    @Test
+    fun flushOnInterval() {
+        val logger = BatchingAdminEventLogger(delegate, 100, 100, Duration.ofMillis(10), meterRegistry)
+        logger.start()
+
+        logger.logEvent(RemoteConfigDeleteEvent("token", "test"), mapOf("label" to "value"))
+
+        waitFor { delegate.batches.size == 1 }
+        assertEquals(listOf(LabeledEvent(RemoteConfigDeleteEvent("token", "test"), mapOf("label" to "value"))),
+                delegate.batches[0])
+
+        logger.stop()
+    }
+
+    @Test
+    fun flushOnStop() {
+        val logger = BatchingAdminEventLogger(delegate, 100, 100, Duration.ofMinutes(1), meterRegistry)
+        logger.start()
+
+        repeat(3) { logger.logEvent(RemoteConfigDeleteEvent("token", "test-$it")) }
+        logger.stop()
+
+        assertEquals(3, delegate.batches.sumOf { it.size })
+        assertEquals(3, meterRegistry.find(QUEUE_LATENCY_TIMER_NAME).timer()!!.count())
+    }
+
+    @Test
+    fun dropWhenQueueFull() {
+        val writeLatch = CountDownLatch(1)
+        delegate.writeLatch = writeLatch
+
+        val logger = BatchingAdminEventLogger(delegate, 1, 1, Duration.ofMinutes(1), meterRegistry)
+        logger.start()
+
+        // The first event is taken by the worker, which then blocks on the delegate; the second fills the queue
+        logger.logEvent(RemoteConfigDeleteEvent("token", "first"))
+        waitFor { meterRegistry.find(QUEUE_SIZE_GAUGE_NAME).gauge()!!.value() == 0.0 }
+        logger.logEvent(RemoteConfigDeleteEvent("token", "second"))
+        logger.logEvent(RemoteConfigDeleteEvent("token", "third"))
+
+        assertEquals(1.0, droppedCount("queueFull"))
+
+        writeLatch.countDown()
+        logger.stop()
+
+        assertEquals(listOf("first", "second"),
+                delegate.batches.flatten().map { (it.event as RemoteConfigDeleteEvent).name })
+    }
+
+    @Test
+    fun dropWhenNotRunning() {
+        val logger = BatchingAdminEventLogger(delegate, 100, 100, Duration.ofMinutes(1), meterRegistry)
+
+        logger.logEvent(RemoteConfigDeleteEvent("token", "test"))
+
+        logger.start()
+        logger.stop()
+
+        logger.logEvent(RemoteConfigDeleteEvent("token", "test"))
+
+        assertTrue(delegate.batches.isEmpty())
+        assertEquals(2.0, droppedCount("notRunning"))
+    }
+
+    @Test
+    fun dropWhenWriteFails() {
+        delegate.fail = true
+
+        val logger = BatchingAdminEventLogger(delegate, 100, 100, Duration.ofMinutes(1), meterRegistry)
+        logger.start()
+
+        repeat(3) { logger.logEvent(RemoteConfigDeleteEvent("token", "test-$it")) }
+        logger.stop()
+
+        assertTrue(delegate.batches.isEmpty())
+        assertEquals(3.0, droppedCount("writeFailed"))
+    }
+
+    private fun droppedCount(reason: String): Double =
+            meterRegistry.find(DROPPED_COUNTER_NAME).tag("reason", reason).counter()?.count() ?: 0.0
+
+    private fun waitFor(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+
+        while (!condition()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for condition")
+            Thread.sleep(1)
+        }
+    }
+
+    companion object {
+        private val DROPPED_COUNTER_NAME = "${BatchingAdminEventLogger::class.java.name}.dropped"
+        private val QUEUE_LATENCY_TIMER_NAME = "${BatchingAdminEventLogger::class.java.name}.queueLatency"
+        private val QUEUE_SIZE_GAUGE_NAME = "${BatchingAdminEventLogger::class.java.name}.queueSize"
+    }
+}
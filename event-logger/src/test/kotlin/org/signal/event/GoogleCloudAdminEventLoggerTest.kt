@@ -5,9 +5,16 @@
 
 package org.signal.event
 
+import com.google.cloud.logging.LogEntry
 import com.google.cloud.logging.Logging
+import com.google.protobuf.Struct
+import com.google.protobuf.util.JsonFormat
+import kotlinx.serialization.encodeToString
+import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.Test
+import org.mockito.ArgumentCaptor
 import org.mockito.Mockito.mock
+import org.mockito.Mockito.verify
 
 class GoogleCloudAdminEventLoggerTest {
 
@@ -19,4 +26,39 @@ class GoogleCloudAdminEventLoggerTest {
         val event = RemoteConfigDeleteEvent("token", "test")
         logger.logEvent(event)
     }
+
+    @Test
+    fun logEvents() {
+        val logging = mock(Logging::class.java)
+        val logger = GoogleCloudAdminEventLogger(logging, "my-project", "test")
+
+        logger.logEvents(listOf(
+                LabeledEvent(RemoteConfigDeleteEvent("token", "first"), null),
+                LabeledEvent(RemoteConfigDeleteEvent("token", "second"), mapOf("label" to "value"))))
+
+        @Suppress("UNCHECKED_CAST")
+        val captor = ArgumentCaptor.forClass(Iterable::class.java) as ArgumentCaptor<Iterable<LogEntry>>
+        verify(logging).write(captor.capture())
+
+        val entries = captor.value.toList()
+        assertEquals(2, entries.size)
+        assertEquals(mapOf("label" to "value"), entries[1].labels)
+    }
+
+    @Test
+    fun toStructMatchesJsonRoundTrip() {
+        val events = listOf(
+                RemoteConfigDeleteEvent("token", "test"),
+                RemoteConfigSetEvent("token", "test", 50),
+                RemoteConfigSetEvent("token", "test", 100, "default", "value", "hashKey", listOf("a", "b")),
+        )
+
+        events.forEach { event ->
+            // Building the struct directly should match the result of the JSON round trip it replaces
+            val expected = Struct.newBuilder()
+            JsonFormat.parser().merge(jsonFormat.encodeToString<Event>(event), expected)
+
+            assertEquals(expected.build(), toStruct(event))
+        }
+    }
 }
@@ -13,6 +13,7 @@ import java.util.Map;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import org.whispersystems.textsecuregcm.configuration.AccountDatabaseCrawlerConfiguration;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.AdminEventLoggingConfiguration;
 import org.whispersystems.textsecuregcm.configuration.ApnConfiguration;
 import org.whispersystems.textsecuregcm.configuration.AppConfigConfiguration;
@@ -22,6 +23,7 @@ import org.whispersystems.textsecuregcm.configuration.BadgesConfiguration;
 import org.whispersystems.textsecuregcm.configuration.BraintreeConfiguration;
 import org.whispersystems.textsecuregcm.configuration.CallLinkConfiguration;
 import org.whispersystems.textsecuregcm.configuration.CdnConfiguration;
+import org.whispersystems.textsecuregcm.configuration.CredentialVerificationCacheConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DatadogConfiguration;
 import org.whispersystems.textsecuregcm.configuration.DirectoryV2Configuration;
 import org.whispersystems.textsecuregcm.configuration.DynamoDbClientConfiguration;
@@ -140,6 +142,17 @@ public class WhisperServerConfiguration extends Configuration {
   @JsonProperty
   private RedisClusterConfiguration rateLimitersCluster;
 
+  @NotNull
+  @Valid
+  @JsonProperty
+  private AccountNearCacheConfiguration accountNearCache = new AccountNearCacheConfiguration();
+
+  @NotNull
+  @Valid
+  @JsonProperty
+  private CredentialVerificationCacheConfiguration credentialVerificationCache =
+      new CredentialVerificationCacheConfiguration();
+
   @NotNull
   @Valid
   @JsonProperty
@@ -313,6 +326,14 @@ public class WhisperServerConfiguration extends Configuration {
     return cacheCluster;
   }
 
+  public AccountNearCacheConfiguration getAccountNearCacheConfiguration() {
+    return accountNearCache;
+  }
+
+  public CredentialVerificationCacheConfiguration getCredentialVerificationCacheConfiguration() {
+    return credentialVerificationCache;
+  }
+
   public RedisConfiguration getPubsubCacheConfiguration() {
     return pubsub;
   }
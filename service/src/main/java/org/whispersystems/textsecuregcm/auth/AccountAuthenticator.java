@@ -17,6 +17,12 @@ public class AccountAuthenticator extends BaseAccountAuthenticator implements
     super(accountsManager);
   }
 
+  public AccountAuthenticator(AccountsManager accountsManager,
+      CredentialVerificationCache credentialVerificationCache) {
+
+    super(accountsManager, credentialVerificationCache);
+  }
+
   @Override
   public Optional<AuthenticatedAccount> authenticate(BasicCredentials basicCredentials) {
     return super.authenticate(basicCredentials, true);
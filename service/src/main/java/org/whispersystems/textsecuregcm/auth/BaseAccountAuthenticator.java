@@ -42,17 +42,33 @@ public class BaseAccountAuthenticator {
   @VisibleForTesting
   static final char DEVICE_ID_SEPARATOR = '.';
 
-  private final AccountsManager accountsManager;
-  private final Clock           clock;
+  private final AccountsManager             accountsManager;
+  private final CredentialVerificationCache credentialVerificationCache;
+  private final Clock                       clock;
 
   public BaseAccountAuthenticator(AccountsManager accountsManager) {
-    this(accountsManager, Clock.systemUTC());
+    this(accountsManager, new CredentialVerificationCache());
+  }
+
+  public BaseAccountAuthenticator(AccountsManager accountsManager,
+      CredentialVerificationCache credentialVerificationCache) {
+
+    this(accountsManager, credentialVerificationCache, Clock.systemUTC());
   }
 
   @VisibleForTesting
   public BaseAccountAuthenticator(AccountsManager accountsManager, Clock clock) {
-    this.accountsManager   = accountsManager;
-    this.clock             = clock;
+    this(accountsManager, new CredentialVerificationCache(), clock);
+  }
+
+  @VisibleForTesting
+  BaseAccountAuthenticator(AccountsManager accountsManager,
+      CredentialVerificationCache credentialVerificationCache,
+      Clock clock) {
+
+    this.accountsManager             = accountsManager;
+    this.credentialVerificationCache = credentialVerificationCache;
+    this.clock                       = clock;
   }
 
   static Pair<String, Long> getIdentifierAndDeviceId(final String basicUsername) {
@@ -124,7 +140,8 @@ public class BaseAccountAuthenticator {
       }
 
       SaltedTokenHash deviceSaltedTokenHash = device.get().getAuthTokenHash();
-      if (deviceSaltedTokenHash.verify(basicCredentials.getPassword())) {
+      if (credentialVerificationCache.verify(accountUuid, deviceId, deviceSaltedTokenHash,
+          basicCredentials.getPassword())) {
         succeeded = true;
         Account authenticatedAccount = updateLastSeen(account.get(), device.get());
         if (deviceSaltedTokenHash.getVersion() != SaltedTokenHash.CURRENT_VERSION) {
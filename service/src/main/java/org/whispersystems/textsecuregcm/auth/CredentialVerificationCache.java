@@ -0,0 +1,129 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.auth;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import org.whispersystems.textsecuregcm.configuration.CredentialVerificationCacheConfiguration;
+
+/**
+ * A credential verification cache remembers recent successful verifications of devices' credentials so that clients
+ * that authenticate many times in quick succession (i.e. on every HTTP request and every websocket upgrade) don't pay
+ * for a full verification of the same credentials every time.
+ * <p>
+ * Entries are keyed by account and device, and hold the device's salted token hash at the time of verification along
+ * with a keyed digest of the presented token; the presented token itself is never stored, and the digest key never
+ * leaves the process. A cached verification only applies if the device's current salted token hash matches the cached
+ * one, and so changing a device's credentials immediately invalidates any cached verification of its old credentials.
+ */
+public class CredentialVerificationCache {
+
+  @Nullable
+  private final Cache<DeviceKey, VerifiedCredentials> verifiedCredentials;
+
+  @Nullable
+  private final ThreadLocal<Mac> tokenDigest;
+
+  private static final String DIGEST_ALGORITHM = "HmacSHA256";
+
+  private record DeviceKey(UUID accountIdentifier, long deviceId) {
+  }
+
+  private record VerifiedCredentials(String saltedTokenHash, byte[] tokenDigest) {
+  }
+
+  /**
+   * Constructs a credential verification cache that never caches verifications.
+   */
+  public CredentialVerificationCache() {
+    this(new CredentialVerificationCacheConfiguration());
+  }
+
+  public CredentialVerificationCache(final CredentialVerificationCacheConfiguration configuration) {
+    if (configuration.isEnabled()) {
+      this.verifiedCredentials = Caffeine.newBuilder()
+          .maximumSize(configuration.getMaximumSize())
+          .expireAfterWrite(configuration.getExpireAfterWrite())
+          .recordStats()
+          .build();
+
+      CaffeineCacheMetrics.monitor(Metrics.globalRegistry, verifiedCredentials, name(getClass(), "cache"));
+
+      final byte[] digestKey = new byte[32];
+      new SecureRandom().nextBytes(digestKey);
+
+      final SecretKeySpec digestKeySpec = new SecretKeySpec(digestKey, DIGEST_ALGORITHM);
+
+      this.tokenDigest = ThreadLocal.withInitial(() -> {
+        try {
+          final Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+          mac.init(digestKeySpec);
+
+          return mac;
+        } catch (final NoSuchAlgorithmException | InvalidKeyException e) {
+          throw new AssertionError(e);
+        }
+      });
+    } else {
+      this.verifiedCredentials = null;
+      this.tokenDigest = null;
+    }
+  }
+
+  /**
+   * Checks whether the given token matches a device's salted token hash, using a cached verification if one is
+   * available.
+   *
+   * @param accountIdentifier the identifier of the account to which the device belongs
+   * @param deviceId the ID of the device
+   * @param saltedTokenHash the device's current salted token hash
+   * @param token the token presented by the client
+   *
+   * @return {@code true} if the token matches the device's salted token hash or {@code false} otherwise
+   */
+  public boolean verify(final UUID accountIdentifier,
+      final long deviceId,
+      final SaltedTokenHash saltedTokenHash,
+      final String token) {
+
+    if (verifiedCredentials == null || tokenDigest == null) {
+      return saltedTokenHash.verify(token);
+    }
+
+    final DeviceKey deviceKey = new DeviceKey(accountIdentifier, deviceId);
+    final byte[] presentedTokenDigest = tokenDigest.get().doFinal(token.getBytes(StandardCharsets.UTF_8));
+
+    final VerifiedCredentials cachedCredentials = verifiedCredentials.getIfPresent(deviceKey);
+
+    if (cachedCredentials != null
+        && cachedCredentials.saltedTokenHash().equals(saltedTokenHash.hash())
+        && MessageDigest.isEqual(cachedCredentials.tokenDigest(), presentedTokenDigest)) {
+
+      return true;
+    }
+
+    final boolean verified = saltedTokenHash.verify(token);
+
+    if (verified) {
+      verifiedCredentials.put(deviceKey, new VerifiedCredentials(saltedTokenHash.hash(), presentedTokenDigest));
+    }
+
+    return verified;
+  }
+}
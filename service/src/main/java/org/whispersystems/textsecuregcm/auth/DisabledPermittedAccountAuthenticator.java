@@ -18,6 +18,12 @@ public class DisabledPermittedAccountAuthenticator extends BaseAccountAuthentica
     super(accountsManager);
   }
 
+  public DisabledPermittedAccountAuthenticator(AccountsManager accountsManager,
+      CredentialVerificationCache credentialVerificationCache) {
+
+    super(accountsManager, credentialVerificationCache);
+  }
+
   @Override
   public Optional<DisabledPermittedAuthenticatedAccount> authenticate(BasicCredentials credentials) {
     Optional<AuthenticatedAccount> account = super.authenticate(credentials, false);
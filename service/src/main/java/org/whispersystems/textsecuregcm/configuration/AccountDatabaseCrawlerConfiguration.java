@@ -5,14 +5,49 @@
 package org.whispersystems.textsecuregcm.configuration;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
 
 public class AccountDatabaseCrawlerConfiguration {
 
   @JsonProperty
   private int chunkSize = 1000;
 
+  /**
+   * If positive, the general-purpose crawler divides the accounts table into this many segments and crawls them in
+   * parallel across all instances; if zero, the crawler reads the whole table with a single sequential scan.
+   */
+  @JsonProperty
+  @Min(0)
+  private int segments = 0;
+
+  /**
+   * The number of segments each instance may crawl at the same time.
+   */
+  @JsonProperty
+  @Min(1)
+  private int segmentWorkers = 4;
+
+  /**
+   * The number of chunks a worker reads from a segment before releasing its claim on that segment. Workers must be able
+   * to read and process this many chunks before their claims expire.
+   */
+  @JsonProperty
+  @Min(1)
+  private int chunksPerSegmentClaim = 10;
+
   public int getChunkSize() {
     return chunkSize;
   }
 
+  public int getSegments() {
+    return segments;
+  }
+
+  public int getSegmentWorkers() {
+    return segmentWorkers;
+  }
+
+  public int getChunksPerSegmentClaim() {
+    return chunksPerSegmentClaim;
+  }
 }
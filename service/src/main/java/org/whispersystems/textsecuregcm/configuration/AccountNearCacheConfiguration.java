@@ -0,0 +1,56 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class AccountNearCacheConfiguration {
+
+  /**
+   * If true, accounts fetched by identifier are held in a bounded, in-process cache in front of the shared Redis account
+   * cache. Account changes are always announced to other instances regardless of this setting.
+   */
+  @JsonProperty
+  private boolean enabled = false;
+
+  @JsonProperty
+  @Min(1)
+  private long maximumSize = 100_000;
+
+  /**
+   * The maximum time an account may be held in the in-process cache. Invalidation messages are best-effort, and so this
+   * should be short enough to bound staleness if one is missed.
+   */
+  @JsonProperty
+  @NotNull
+  private Duration expireAfterWrite = Duration.ofSeconds(30);
+
+  public AccountNearCacheConfiguration() {
+  }
+
+  @VisibleForTesting
+  public AccountNearCacheConfiguration(final boolean enabled, final long maximumSize, final Duration expireAfterWrite) {
+    this.enabled = enabled;
+    this.maximumSize = maximumSize;
+    this.expireAfterWrite = expireAfterWrite;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
+  public Duration getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+}
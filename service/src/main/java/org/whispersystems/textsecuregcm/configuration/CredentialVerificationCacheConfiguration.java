@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class CredentialVerificationCacheConfiguration {
+
+  /**
+   * If true, successful verifications of devices' credentials are held in a bounded, in-process cache so that repeated
+   * authentication with the same credentials doesn't repeat the full verification.
+   */
+  @JsonProperty
+  private boolean enabled = false;
+
+  @JsonProperty
+  @Min(1)
+  private long maximumSize = 100_000;
+
+  /**
+   * The maximum time a successful verification may be reused.
+   */
+  @JsonProperty
+  @NotNull
+  private Duration expireAfterWrite = Duration.ofMinutes(5);
+
+  public CredentialVerificationCacheConfiguration() {
+  }
+
+  @VisibleForTesting
+  public CredentialVerificationCacheConfiguration(final boolean enabled, final long maximumSize,
+      final Duration expireAfterWrite) {
+
+    this.enabled = enabled;
+    this.maximumSize = maximumSize;
+    this.expireAfterWrite = expireAfterWrite;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public long getMaximumSize() {
+    return maximumSize;
+  }
+
+  public Duration getExpireAfterWrite() {
+    return expireAfterWrite;
+  }
+}
@@ -20,6 +20,11 @@ public class MessageCacheConfiguration {
   @JsonProperty
   private int persistDelayMinutes = 10;
 
+  // Plain PUBLISH is broadcast to every node in the cluster, so this should stay off until notifications can use
+  // sharded pub/sub; see MessagesCache
+  @JsonProperty
+  private boolean publishToInstanceChannels = false;
+
   public RedisClusterConfiguration getRedisClusterConfiguration() {
     return cluster;
   }
@@ -28,4 +33,8 @@ public class MessageCacheConfiguration {
     return persistDelayMinutes;
   }
 
+  public boolean isPublishToInstanceChannels() {
+    return publishToInstanceChannels;
+  }
+
 }
@@ -51,10 +51,14 @@ public class DynamicConfiguration {
   @Valid
   DynamicMessagePersisterConfiguration messagePersister = new DynamicMessagePersisterConfiguration();
 
+  @JsonProperty
+  @Valid
+  DynamicMessageDeliveryConfiguration messageDelivery = new DynamicMessageDeliveryConfiguration();
+
 
   @JsonProperty
   @Valid
-  DynamicRateLimitPolicy rateLimitPolicy = new DynamicRateLimitPolicy(false);
+  DynamicRateLimitPolicy rateLimitPolicy = new DynamicRateLimitPolicy(false, false);
 
   public Optional<DynamicExperimentEnrollmentConfiguration> getExperimentEnrollmentConfiguration(
       final String experimentName) {
@@ -94,6 +98,10 @@ public class DynamicConfiguration {
     return messagePersister;
   }
 
+  public DynamicMessageDeliveryConfiguration getMessageDeliveryConfiguration() {
+    return messageDelivery;
+  }
+
   public DynamicRateLimitPolicy getRateLimitPolicy() {
     return rateLimitPolicy;
   }
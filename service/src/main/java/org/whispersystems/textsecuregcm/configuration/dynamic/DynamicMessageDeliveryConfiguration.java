@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.configuration.dynamic;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+public class DynamicMessageDeliveryConfiguration {
+
+  /**
+   * If true, each websocket connection adjusts the number of stored messages it has in flight to the client based on
+   * how quickly (and whether) the client acknowledges them, rather than using a fixed window. Changes apply to new
+   * connections.
+   */
+  @JsonProperty
+  private boolean adaptiveSendWindowEnabled = false;
+
+  @JsonProperty
+  @Min(1)
+  private int initialSendWindow = 16;
+
+  @JsonProperty
+  @Min(1)
+  private int minSendWindow = 4;
+
+  @JsonProperty
+  @Min(1)
+  private int maxSendWindow = 256;
+
+  /**
+   * Acknowledgements that take longer than this are treated as a sign of congestion, and shrink the send window.
+   */
+  @JsonProperty
+  @NotNull
+  private Duration sendWindowLatencyThreshold = Duration.ofSeconds(2);
+
+  public DynamicMessageDeliveryConfiguration() {
+  }
+
+  @VisibleForTesting
+  public DynamicMessageDeliveryConfiguration(final boolean adaptiveSendWindowEnabled,
+      final int initialSendWindow,
+      final int minSendWindow,
+      final int maxSendWindow,
+      final Duration sendWindowLatencyThreshold) {
+
+    this.adaptiveSendWindowEnabled = adaptiveSendWindowEnabled;
+    this.initialSendWindow = initialSendWindow;
+    this.minSendWindow = minSendWindow;
+    this.maxSendWindow = maxSendWindow;
+    this.sendWindowLatencyThreshold = sendWindowLatencyThreshold;
+  }
+
+  public boolean isAdaptiveSendWindowEnabled() {
+    return adaptiveSendWindowEnabled;
+  }
+
+  public int getInitialSendWindow() {
+    return initialSendWindow;
+  }
+
+  public int getMinSendWindow() {
+    return minSendWindow;
+  }
+
+  public int getMaxSendWindow() {
+    return maxSendWindow;
+  }
+
+  public Duration getSendWindowLatencyThreshold() {
+    return sendWindowLatencyThreshold;
+  }
+}
@@ -6,13 +6,36 @@
 package org.whispersystems.textsecuregcm.configuration.dynamic;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import javax.validation.constraints.Min;
 
 public class DynamicMessagePersisterConfiguration {
 
   @JsonProperty
   private boolean persistenceEnabled = true;
 
+  /**
+   * If true, each persister worker persists several queues from the same slot concurrently using the asynchronous
+   * Redis and DynamoDB clients instead of persisting one queue at a time.
+   */
+  @JsonProperty
+  private boolean pipelinedPersistenceEnabled = false;
+
+  /**
+   * The maximum number of queues each persister worker may have in flight when pipelined persistence is enabled.
+   */
+  @JsonProperty
+  @Min(1)
+  private int pipelinedQueueConcurrency = 8;
+
   public boolean isPersistenceEnabled() {
     return persistenceEnabled;
   }
+
+  public boolean isPipelinedPersistenceEnabled() {
+    return pipelinedPersistenceEnabled;
+  }
+
+  public int getPipelinedQueueConcurrency() {
+    return pipelinedQueueConcurrency;
+  }
 }
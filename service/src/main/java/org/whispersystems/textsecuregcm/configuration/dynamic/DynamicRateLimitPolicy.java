@@ -5,4 +5,9 @@
 
 package org.whispersystems.textsecuregcm.configuration.dynamic;
 
-public record DynamicRateLimitPolicy(boolean failOpen) {}
+/**
+ * @param failOpen if true, rate limiters allow requests when the shared rate limit store is unavailable
+ * @param localPermitLeasesEnabled if true, rate limiters that support local permit leases decide most checks
+ *                                 in-process; see {@code RateLimiterDescriptor#localPermitLeaseSize()}
+ */
+public record DynamicRateLimitPolicy(boolean failOpen, boolean localPermitLeasesEnabled) {}
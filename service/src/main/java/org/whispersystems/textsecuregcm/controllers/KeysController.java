@@ -13,7 +13,6 @@ import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -251,11 +250,7 @@ public class KeysController {
         destination.getUuid();
 
     if (deviceIdSelector.equals("*")) {
-      preKeys = new HashMap<>();
-
-      for (final Device device : destination.getDevices()) {
-        keys.take(identifier, device.getId()).ifPresent(preKey -> preKeys.put(device.getId(), preKey));
-      }
+      preKeys = keys.takeForDevices(identifier, destination.getDevices().stream().map(Device::getId).toList());
     } else {
       try {
         long deviceId = Long.parseLong(deviceIdSelector);
@@ -27,15 +27,12 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
@@ -98,6 +95,7 @@ import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
 import org.whispersystems.textsecuregcm.storage.ReportMessageManager;
 import org.whispersystems.textsecuregcm.util.DestinationDeviceValidator;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.Util;
 import org.whispersystems.textsecuregcm.util.ua.UnrecognizedUserAgentException;
@@ -121,7 +119,6 @@ public class MessageController {
   private final MessagesManager messagesManager;
   private final PushNotificationManager pushNotificationManager;
   private final ReportMessageManager reportMessageManager;
-  private final ExecutorService multiRecipientMessageExecutor;
   private final Scheduler messageDeliveryScheduler;
   private final ReportSpamTokenProvider reportSpamTokenProvider;
 
@@ -154,7 +151,6 @@ public class MessageController {
       MessagesManager messagesManager,
       PushNotificationManager pushNotificationManager,
       ReportMessageManager reportMessageManager,
-      @Nonnull ExecutorService multiRecipientMessageExecutor,
       Scheduler messageDeliveryScheduler,
       @Nonnull ReportSpamTokenProvider reportSpamTokenProvider) {
     this.rateLimiters = rateLimiters;
@@ -165,7 +161,6 @@ public class MessageController {
     this.messagesManager = messagesManager;
     this.pushNotificationManager = pushNotificationManager;
     this.reportMessageManager = reportMessageManager;
-    this.multiRecipientMessageExecutor = Objects.requireNonNull(multiRecipientMessageExecutor);
     this.messageDeliveryScheduler = messageDeliveryScheduler;
     this.reportSpamTokenProvider = reportSpamTokenProvider;
   }
@@ -176,7 +171,7 @@ public class MessageController {
   @Consumes(MediaType.APPLICATION_JSON)
   @Produces(MediaType.APPLICATION_JSON)
   @FilterSpam
-  public Response sendMessage(@Auth Optional<AuthenticatedAccount> source,
+  public CompletableFuture<Response> sendMessage(@Auth Optional<AuthenticatedAccount> source,
       @HeaderParam(OptionalAccess.UNIDENTIFIED) Optional<Anonymous> accessKey,
       @HeaderParam(HttpHeaders.USER_AGENT) String userAgent,
       @HeaderParam(HttpHeaders.X_FORWARDED_FOR) String forwardedFor,
@@ -184,8 +179,7 @@ public class MessageController {
       @QueryParam("story") boolean isStory,
       @NotNull @Valid IncomingMessageList messages,
       @Context ContainerRequestContext context
-  )
-      throws RateLimitExceededException {
+  ) {
 
     if (source.isEmpty() && accessKey.isEmpty() && !isStory) {
       throw new WebApplicationException(Response.Status.UNAUTHORIZED);
@@ -222,18 +216,20 @@ public class MessageController {
       validateEnvelopeType(message.type(), userAgent);
     }
 
-    try {
-      boolean isSyncMessage = source.isPresent() && source.get().getAccount().isIdentifiedBy(destinationUuid);
+    final boolean isSyncMessage = source.isPresent() && source.get().getAccount().isIdentifiedBy(destinationUuid);
 
-      Optional<Account> destination;
+    final CompletableFuture<Optional<Account>> destinationFuture;
 
-      if (!isSyncMessage) {
-        destination = accountsManager.getByAccountIdentifier(destinationUuid)
-            .or(() -> accountsManager.getByPhoneNumberIdentifier(destinationUuid));
-      } else {
-        destination = source.map(AuthenticatedAccount::getAccount);
-      }
+    if (!isSyncMessage) {
+      destinationFuture = accountsManager.getByAccountIdentifierAsync(destinationUuid)
+          .thenCompose(maybeAccount -> maybeAccount.isPresent()
+              ? CompletableFuture.completedFuture(maybeAccount)
+              : accountsManager.getByPhoneNumberIdentifierAsync(destinationUuid));
+    } else {
+      destinationFuture = CompletableFuture.completedFuture(source.map(AuthenticatedAccount::getAccount));
+    }
 
+    return destinationFuture.thenCompose(destination -> {
       // Stories will be checked by the client; we bypass access checks here for stories.
       if (!isStory) {
         OptionalAccess.verify(source.map(AuthenticatedAccount::getAccount), accessKey, destination);
@@ -245,21 +241,40 @@ public class MessageController {
       // we leak information about whether a destination UUID exists if we return any other code (e.g. 404) from
       // these requests.
       if (isStory && destination.isEmpty()) {
-        return Response.ok(new SendMessageResponse(needsSync)).build();
+        return CompletableFuture.completedFuture(Response.ok(new SendMessageResponse(needsSync)).build());
       }
 
       // if destination is empty we would either throw an exception in OptionalAccess.verify when isStory is false
       // or else return a 200 response when isStory is true.
       assert destination.isPresent();
 
+      CompletableFuture<Void> rateLimitFuture = CompletableFuture.completedFuture(null);
+
       if (source.isPresent() && !isSyncMessage) {
-        checkMessageRateLimit(source.get(), destination.get(), userAgent);
+        rateLimitFuture = checkMessageRateLimitAsync(source.get(), destination.get(), userAgent);
       }
 
       if (isStory) {
-        checkStoryRateLimit(destination.get());
+        rateLimitFuture = rateLimitFuture.thenCompose(ignored -> checkStoryRateLimitsAsync(List.of(destination.get())));
       }
 
+      return rateLimitFuture.thenCompose(ignored -> sendMessages(source, destination.get(), destinationUuid,
+          isSyncMessage, needsSync, isStory, messages, senderType, spamReportToken, userAgent));
+    });
+  }
+
+  private CompletableFuture<Response> sendMessages(final Optional<AuthenticatedAccount> source,
+      final Account destination,
+      final UUID destinationUuid,
+      final boolean isSyncMessage,
+      final boolean needsSync,
+      final boolean isStory,
+      final IncomingMessageList messages,
+      final String senderType,
+      final Optional<byte[]> spamReportToken,
+      final String userAgent) {
+
+    try {
       final Set<Long> excludedDeviceIds;
 
       if (isSyncMessage) {
@@ -268,43 +283,15 @@ public class MessageController {
         excludedDeviceIds = Collections.emptySet();
       }
 
-      DestinationDeviceValidator.validateCompleteDeviceList(destination.get(),
+      DestinationDeviceValidator.validateCompleteDeviceList(destination,
           messages.messages().stream().map(IncomingMessage::destinationDeviceId).collect(Collectors.toSet()),
           excludedDeviceIds);
 
-      DestinationDeviceValidator.validateRegistrationIds(destination.get(),
+      DestinationDeviceValidator.validateRegistrationIds(destination,
           messages.messages(),
           IncomingMessage::destinationDeviceId,
           IncomingMessage::destinationRegistrationId,
-          destination.get().getPhoneNumberIdentifier().equals(destinationUuid));
-
-      final List<Tag> tags = List.of(UserAgentTagUtil.getPlatformTag(userAgent),
-          Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(messages.online())),
-          Tag.of(SENDER_TYPE_TAG_NAME, senderType));
-
-      for (IncomingMessage incomingMessage : messages.messages()) {
-        Optional<Device> destinationDevice = destination.get().getDevice(incomingMessage.destinationDeviceId());
-
-        if (destinationDevice.isPresent()) {
-          Metrics.counter(SENT_MESSAGE_COUNTER_NAME, tags).increment();
-          sendIndividualMessage(
-              source,
-              destination.get(),
-              destinationDevice.get(),
-              destinationUuid,
-              messages.timestamp(),
-              messages.online(),
-              isStory,
-              messages.urgent(),
-              incomingMessage,
-              userAgent,
-              spamReportToken);
-        }
-      }
-
-      return Response.ok(new SendMessageResponse(needsSync)).build();
-    } catch (NoSuchUserException e) {
-      throw new WebApplicationException(Response.status(404).build());
+          destination.getPhoneNumberIdentifier().equals(destinationUuid));
     } catch (MismatchedDevicesException e) {
       throw new WebApplicationException(Response.status(409)
               .type(MediaType.APPLICATION_JSON_TYPE)
@@ -317,6 +304,42 @@ public class MessageController {
               .entity(new StaleDevices(e.getStaleDevices()))
               .build());
     }
+
+    final List<Tag> tags = List.of(UserAgentTagUtil.getPlatformTag(userAgent),
+        Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(messages.online())),
+        Tag.of(SENDER_TYPE_TAG_NAME, senderType));
+
+    final List<CompletableFuture<Void>> sendFutures = new ArrayList<>(messages.messages().size());
+
+    for (IncomingMessage incomingMessage : messages.messages()) {
+      Optional<Device> destinationDevice = destination.getDevice(incomingMessage.destinationDeviceId());
+
+      if (destinationDevice.isPresent()) {
+        Metrics.counter(SENT_MESSAGE_COUNTER_NAME, tags).increment();
+        sendFutures.add(sendIndividualMessage(
+            source,
+            destination,
+            destinationDevice.get(),
+            destinationUuid,
+            messages.timestamp(),
+            messages.online(),
+            isStory,
+            messages.urgent(),
+            incomingMessage,
+            userAgent,
+            spamReportToken));
+      }
+    }
+
+    return CompletableFuture.allOf(sendFutures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> Response.ok(new SendMessageResponse(needsSync)).build())
+        .exceptionally(throwable -> {
+          if (ExceptionUtils.unwrap(throwable) instanceof NoSuchUserException) {
+            throw new WebApplicationException(Response.status(404).build());
+          }
+
+          throw ExceptionUtils.wrap(throwable);
+        });
   }
 
 
@@ -354,7 +377,7 @@ public class MessageController {
   @Consumes(MultiRecipientMessageProvider.MEDIA_TYPE)
   @Produces(MediaType.APPLICATION_JSON)
   @FilterSpam
-  public Response sendMultiRecipientMessage(
+  public CompletableFuture<Response> sendMultiRecipientMessage(
       @HeaderParam(OptionalAccess.UNIDENTIFIED) @Nullable CombinedUnidentifiedSenderAccessKeys accessKeys,
       @HeaderParam(HttpHeaders.USER_AGENT) String userAgent,
       @HeaderParam(HttpHeaders.X_FORWARDED_FOR) String forwardedFor,
@@ -364,25 +387,34 @@ public class MessageController {
       @QueryParam("story") boolean isStory,
       @NotNull @Valid MultiRecipientMessage multiRecipientMessage) {
 
-    // we skip "missing" accounts when story=true.
-    // otherwise, we return a 404 status code.
-    final Function<UUID, Stream<Account>> accountFinder = uuid -> {
-      Optional<Account> res = accountsManager.getByAccountIdentifier(uuid);
-      if (!isStory && res.isEmpty()) {
-        throw new WebApplicationException(Status.NOT_FOUND);
-      }
-      return res.stream();
-    };
-
-    // build a map from UUID to accounts
-    Map<UUID, Account> uuidToAccountMap =
-        Arrays.stream(multiRecipientMessage.getRecipients())
-            .map(Recipient::getUuid)
-            .distinct()
-            .flatMap(accountFinder)
-            .collect(Collectors.toUnmodifiableMap(
-                Account::getUuid,
-                Function.identity()));
+    final List<UUID> recipientUuids = Arrays.stream(multiRecipientMessage.getRecipients())
+        .map(Recipient::getUuid)
+        .distinct()
+        .toList();
+
+    return accountsManager.getByAccountIdentifiersAsync(recipientUuids)
+        .thenCompose(accountsByUuid -> {
+          // we skip "missing" accounts when story=true, but otherwise return a 404 status code
+          if (!isStory && accountsByUuid.size() < recipientUuids.size()) {
+            throw new WebApplicationException(Status.NOT_FOUND);
+          }
+
+          final Map<UUID, Account> uuidToAccountMap = Collections.unmodifiableMap(accountsByUuid);
+
+          return sendMultiRecipientMessage(accessKeys, userAgent, online, timestamp, isUrgent, isStory,
+              multiRecipientMessage, uuidToAccountMap);
+        });
+  }
+
+  private CompletableFuture<Response> sendMultiRecipientMessage(
+      @Nullable final CombinedUnidentifiedSenderAccessKeys accessKeys,
+      final String userAgent,
+      final boolean online,
+      final long timestamp,
+      final boolean isUrgent,
+      final boolean isStory,
+      final MultiRecipientMessage multiRecipientMessage,
+      final Map<UUID, Account> uuidToAccountMap) {
 
     // Stories will be checked by the client; we bypass access checks here for stories.
     if (!isStory) {
@@ -395,83 +427,92 @@ public class MessageController {
     // We might filter out all the recipients of a story (if none have enabled stories).
     // In this case there is no error so we should just return 200 now.
     if (isStory && accountToDeviceIdAndRegistrationIdMap.isEmpty()) {
-      return Response.ok(new SendMultiRecipientMessageResponse(new LinkedList<>())).build();
+      return CompletableFuture.completedFuture(
+          Response.ok(new SendMultiRecipientMessageResponse(new LinkedList<>())).build());
     }
 
-    Collection<AccountMismatchedDevices> accountMismatchedDevices = new ArrayList<>();
-    Collection<AccountStaleDevices> accountStaleDevices = new ArrayList<>();
-    uuidToAccountMap.values().forEach(account -> {
-
-      if (isStory) {
-        checkStoryRateLimit(account);
+    final CompletableFuture<Void> storyRateLimitFuture = isStory
+        ? checkStoryRateLimitsAsync(uuidToAccountMap.values())
+        : CompletableFuture.completedFuture(null);
+
+    return storyRateLimitFuture.thenCompose(ignored -> {
+      Collection<AccountMismatchedDevices> accountMismatchedDevices = new ArrayList<>();
+      Collection<AccountStaleDevices> accountStaleDevices = new ArrayList<>();
+      uuidToAccountMap.values().forEach(account -> {
+        Set<Long> deviceIds = accountToDeviceIdAndRegistrationIdMap
+            .getOrDefault(account, Collections.emptySet())
+            .stream()
+            .map(Pair::first)
+            .collect(Collectors.toSet());
+
+        try {
+          DestinationDeviceValidator.validateCompleteDeviceList(account, deviceIds, Collections.emptySet());
+
+          // Multi-recipient messages are always sealed-sender messages, and so can never be sent to a phone number
+          // identity
+          DestinationDeviceValidator.validateRegistrationIds(
+              account,
+              accountToDeviceIdAndRegistrationIdMap.get(account).stream(),
+              false);
+        } catch (MismatchedDevicesException e) {
+          accountMismatchedDevices.add(new AccountMismatchedDevices(account.getUuid(),
+              new MismatchedDevices(e.getMissingDevices(), e.getExtraDevices())));
+        } catch (StaleDevicesException e) {
+          accountStaleDevices.add(new AccountStaleDevices(account.getUuid(), new StaleDevices(e.getStaleDevices())));
+        }
+      });
+      if (!accountMismatchedDevices.isEmpty()) {
+        return CompletableFuture.completedFuture(Response
+            .status(409)
+            .type(MediaType.APPLICATION_JSON_TYPE)
+            .entity(accountMismatchedDevices)
+            .build());
       }
-
-      Set<Long> deviceIds = accountToDeviceIdAndRegistrationIdMap
-        .getOrDefault(account, Collections.emptySet())
-        .stream()
-        .map(Pair::first)
-        .collect(Collectors.toSet());
-
-      try {
-        DestinationDeviceValidator.validateCompleteDeviceList(account, deviceIds, Collections.emptySet());
-
-        // Multi-recipient messages are always sealed-sender messages, and so can never be sent to a phone number
-        // identity
-        DestinationDeviceValidator.validateRegistrationIds(
-            account,
-            accountToDeviceIdAndRegistrationIdMap.get(account).stream(),
-            false);
-      } catch (MismatchedDevicesException e) {
-        accountMismatchedDevices.add(new AccountMismatchedDevices(account.getUuid(),
-            new MismatchedDevices(e.getMissingDevices(), e.getExtraDevices())));
-      } catch (StaleDevicesException e) {
-        accountStaleDevices.add(new AccountStaleDevices(account.getUuid(), new StaleDevices(e.getStaleDevices())));
+      if (!accountStaleDevices.isEmpty()) {
+        return CompletableFuture.completedFuture(Response
+            .status(410)
+            .type(MediaType.APPLICATION_JSON)
+            .entity(accountStaleDevices)
+            .build());
       }
-    });
-    if (!accountMismatchedDevices.isEmpty()) {
-      return Response
-          .status(409)
-          .type(MediaType.APPLICATION_JSON_TYPE)
-          .entity(accountMismatchedDevices)
-          .build();
-    }
-    if (!accountStaleDevices.isEmpty()) {
-      return Response
-          .status(410)
-          .type(MediaType.APPLICATION_JSON)
-          .entity(accountStaleDevices)
-          .build();
-    }
-
-    List<UUID> uuids404 = Collections.synchronizedList(new ArrayList<>());
 
-    try {
       final Counter sentMessageCounter = Metrics.counter(SENT_MESSAGE_COUNTER_NAME, Tags.of(
           UserAgentTagUtil.getPlatformTag(userAgent),
           Tag.of(EPHEMERAL_TAG_NAME, String.valueOf(online)),
           Tag.of(SENDER_TYPE_TAG_NAME, SENDER_TYPE_UNIDENTIFIED)));
 
-      multiRecipientMessageExecutor.invokeAll(Arrays.stream(multiRecipientMessage.getRecipients())
-          .map(recipient -> (Callable<Void>) () -> {
-            Account destinationAccount = uuidToAccountMap.get(recipient.getUuid());
+      // Every recipient gets the same envelope apart from its content (which differs only by the recipient's key
+      // material) and destination, so build the common parts once and share them among all the outgoing messages
+      final Envelope commonEnvelope = buildCommonEnvelope(timestamp, isStory, isUrgent);
+      final ByteString commonPayload = ByteString.copyFrom(multiRecipientMessage.getCommonPayload());
+
+      final List<MessageSender.OutgoingMessage> outgoingMessages = Arrays.stream(multiRecipientMessage.getRecipients())
+          // story messages might specify inactive UUIDs, which we have previously filtered
+          .filter(recipient -> uuidToAccountMap.containsKey(recipient.getUuid()))
+          .map(recipient -> {
+            final Account destinationAccount = uuidToAccountMap.get(recipient.getUuid());
 
             // we asserted this must exist in validateCompleteDeviceList
-            Device destinationDevice = destinationAccount.getDevice(recipient.getDeviceId()).orElseThrow();
-            sentMessageCounter.increment();
-            try {
-              sendCommonPayloadMessage(destinationAccount, destinationDevice, timestamp, online, isStory, isUrgent,
-                  recipient, multiRecipientMessage.getCommonPayload());
-            } catch (NoSuchUserException e) {
-              uuids404.add(destinationAccount.getUuid());
-            }
-            return null;
+            final Device destinationDevice = destinationAccount.getDevice(recipient.getDeviceId()).orElseThrow();
+
+            return new MessageSender.OutgoingMessage(destinationAccount, destinationDevice,
+                buildRecipientEnvelope(commonEnvelope, commonPayload, destinationAccount, recipient));
           })
-          .collect(Collectors.toList()));
-    } catch (InterruptedException e) {
-      logger.error("interrupted while delivering multi-recipient messages", e);
-      return Response.serverError().entity("interrupted during delivery").build();
-    }
-    return Response.ok(new SendMultiRecipientMessageResponse(uuids404)).build();
+          .toList();
+
+      sentMessageCounter.increment(outgoingMessages.size());
+
+      return messageSender.sendMessagesAsync(outgoingMessages, online)
+          .thenApply(notPushRegisteredMessages -> {
+            final List<UUID> uuids404 = notPushRegisteredMessages.stream()
+                .filter(notPushRegistered -> notPushRegistered.device().isMaster())
+                .map(notPushRegistered -> notPushRegistered.account().getUuid())
+                .distinct()
+                .collect(Collectors.toList());
+
+            return Response.ok(new SendMultiRecipientMessageResponse(uuids404)).build();
+          });
+    });
   }
 
   private void checkAccessKeys(CombinedUnidentifiedSenderAccessKeys accessKeys, Map<UUID, Account> uuidToAccountMap) {
@@ -653,7 +694,7 @@ public class MessageController {
         .build();
   }
 
-  private void sendIndividualMessage(
+  private CompletableFuture<Void> sendIndividualMessage(
       Optional<AuthenticatedAccount> source,
       Account destinationAccount,
       Device destinationDevice,
@@ -664,93 +705,96 @@ public class MessageController {
       boolean urgent,
       IncomingMessage incomingMessage,
       String userAgentString,
-      Optional<byte[]> spamReportToken)
-      throws NoSuchUserException {
+      Optional<byte[]> spamReportToken) {
+    final Envelope envelope;
+
     try {
-      final Envelope envelope;
+      Account sourceAccount = source.map(AuthenticatedAccount::getAccount).orElse(null);
+      Long sourceDeviceId = source.map(account -> account.getAuthenticatedDevice().getId()).orElse(null);
+      envelope = incomingMessage.toEnvelope(
+          destinationUuid,
+          sourceAccount,
+          sourceDeviceId,
+          timestamp == 0 ? System.currentTimeMillis() : timestamp,
+          story,
+          urgent,
+          spamReportToken.orElse(null));
+    } catch (final IllegalArgumentException e) {
+      logger.warn("Received bad envelope type {} from {}", incomingMessage.type(), userAgentString);
+      throw new BadRequestException(e);
+    }
 
-      try {
-        Account sourceAccount = source.map(AuthenticatedAccount::getAccount).orElse(null);
-        Long sourceDeviceId = source.map(account -> account.getAuthenticatedDevice().getId()).orElse(null);
-        envelope = incomingMessage.toEnvelope(
-            destinationUuid,
-            sourceAccount,
-            sourceDeviceId,
-            timestamp == 0 ? System.currentTimeMillis() : timestamp,
-            story,
-            urgent,
-            spamReportToken.orElse(null));
-      } catch (final IllegalArgumentException e) {
-        logger.warn("Received bad envelope type {} from {}", incomingMessage.type(), userAgentString);
-        throw new BadRequestException(e);
-      }
+    return messageSender.sendMessageAsync(destinationAccount, destinationDevice, envelope, online)
+        .exceptionally(throwable -> {
+          if (ExceptionUtils.unwrap(throwable) instanceof NotPushRegisteredException e) {
+            if (destinationDevice.isMaster()) {
+              throw new CompletionException(new NoSuchUserException(e));
+            }
 
-      messageSender.sendMessage(destinationAccount, destinationDevice, envelope, online);
-    } catch (NotPushRegisteredException e) {
-      if (destinationDevice.isMaster()) throw new NoSuchUserException(e);
-      else                              logger.debug("Not registered", e);
-    }
+            logger.debug("Not registered", e);
+            return null;
+          }
+
+          throw ExceptionUtils.wrap(throwable);
+        });
   }
 
-  private void sendCommonPayloadMessage(Account destinationAccount,
-      Device destinationDevice,
-      long timestamp,
-      boolean online,
-      boolean story,
-      boolean urgent,
-      Recipient recipient,
-      byte[] commonPayload) throws NoSuchUserException {
-    try {
-      Envelope.Builder messageBuilder = Envelope.newBuilder();
-      long serverTimestamp = System.currentTimeMillis();
-      byte[] recipientKeyMaterial = recipient.getPerRecipientKeyMaterial();
-
-      byte[] payload = new byte[1 + recipientKeyMaterial.length + commonPayload.length];
-      payload[0] = MultiRecipientMessageProvider.VERSION;
-      System.arraycopy(recipientKeyMaterial, 0, payload, 1, recipientKeyMaterial.length);
-      System.arraycopy(commonPayload, 0, payload, 1 + recipientKeyMaterial.length, commonPayload.length);
-
-      messageBuilder
-          .setType(Type.UNIDENTIFIED_SENDER)
-          .setTimestamp(timestamp == 0 ? serverTimestamp : timestamp)
-          .setServerTimestamp(serverTimestamp)
-          .setContent(ByteString.copyFrom(payload))
-          .setStory(story)
-          .setUrgent(urgent)
-          .setDestinationUuid(destinationAccount.getUuid().toString());
-
-      messageSender.sendMessage(destinationAccount, destinationDevice, messageBuilder.build(), online);
-    } catch (NotPushRegisteredException e) {
-      if (destinationDevice.isMaster()) {
-        throw new NoSuchUserException(e);
-      } else {
-        logger.debug("Not registered", e);
-      }
-    }
+  private static Envelope buildCommonEnvelope(final long timestamp, final boolean story, final boolean urgent) {
+    final long serverTimestamp = System.currentTimeMillis();
+
+    return Envelope.newBuilder()
+        .setType(Type.UNIDENTIFIED_SENDER)
+        .setTimestamp(timestamp == 0 ? serverTimestamp : timestamp)
+        .setServerTimestamp(serverTimestamp)
+        .setStory(story)
+        .setUrgent(urgent)
+        .build();
   }
 
-  private void checkStoryRateLimit(Account destination) {
-    try {
-      rateLimiters.getMessagesLimiter().validate(destination.getUuid());
-    } catch (final RateLimitExceededException e) {
-    }
+  @VisibleForTesting
+  static Envelope buildRecipientEnvelope(final Envelope commonEnvelope,
+      final ByteString commonPayload,
+      final Account destinationAccount,
+      final Recipient recipient) {
+
+    final byte[] recipientKeyMaterial = recipient.getPerRecipientKeyMaterial();
+
+    final byte[] recipientHeader = new byte[1 + recipientKeyMaterial.length];
+    recipientHeader[0] = MultiRecipientMessageProvider.VERSION;
+    System.arraycopy(recipientKeyMaterial, 0, recipientHeader, 1, recipientKeyMaterial.length);
+
+    // Concatenating a large payload produces a rope that refers to (rather than copies) the shared payload; it's only
+    // copied once per recipient, directly into the serialized envelope, when the message is inserted
+    return commonEnvelope.toBuilder()
+        .setContent(ByteString.copyFrom(recipientHeader).concat(commonPayload))
+        .setDestinationUuid(destinationAccount.getUuid().toString())
+        .build();
   }
 
-  private void checkMessageRateLimit(AuthenticatedAccount source, Account destination, String userAgent)
-      throws RateLimitExceededException {
-    final String senderCountryCode = Util.getCountryCode(source.getAccount().getNumber());
+  private CompletableFuture<Void> checkStoryRateLimitsAsync(final Collection<Account> destinations) {
+    // As with single story messages, rate limits are checked (and permits consumed), but not enforced
+    return CompletableFuture.allOf(destinations.stream()
+        .map(destination -> rateLimiters.getMessagesLimiter().validateAsync(destination.getUuid())
+            .toCompletableFuture()
+            .exceptionally(ignored -> null))
+        .toArray(CompletableFuture[]::new));
+  }
 
-    try {
-      rateLimiters.getMessagesLimiter().validate(source.getAccount().getUuid(), destination.getUuid());
-    } catch (final RateLimitExceededException e) {
-      Metrics.counter(RATE_LIMITED_MESSAGE_COUNTER_NAME,
-          Tags.of(
-              UserAgentTagUtil.getPlatformTag(userAgent),
-              Tag.of(SENDER_COUNTRY_TAG_NAME, senderCountryCode),
-              Tag.of(RATE_LIMIT_REASON_TAG_NAME, "singleDestinationRate"))).increment();
-
-      throw e;
-    }
+  private CompletableFuture<Void> checkMessageRateLimitAsync(final AuthenticatedAccount source,
+      final Account destination,
+      final String userAgent) {
+
+    return rateLimiters.getMessagesLimiter().validateAsync(source.getAccount().getUuid(), destination.getUuid())
+        .toCompletableFuture()
+        .whenComplete((ignored, throwable) -> {
+          if (ExceptionUtils.unwrap(throwable) instanceof RateLimitExceededException) {
+            Metrics.counter(RATE_LIMITED_MESSAGE_COUNTER_NAME,
+                Tags.of(
+                    UserAgentTagUtil.getPlatformTag(userAgent),
+                    Tag.of(SENDER_COUNTRY_TAG_NAME, Util.getCountryCode(source.getAccount().getNumber())),
+                    Tag.of(RATE_LIMIT_REASON_TAG_NAME, "singleDestinationRate"))).increment();
+          }
+        });
   }
 
   private void validateContentLength(final int contentLength, final String userAgent) {
@@ -92,9 +92,11 @@ public abstract class BaseRateLimiters<T extends RateLimiterDescriptor> {
             ? config
             : configs.getOrDefault(descriptor.id(), descriptor.defaultConfig());
       };
-      return new DynamicRateLimiter(descriptor.id(), dynamicConfigurationManager, configResolver, validateScript, cacheCluster, clock);
+      return new DynamicRateLimiter(descriptor.id(), dynamicConfigurationManager, configResolver,
+          descriptor.localPermitLeaseSize(), validateScript, cacheCluster, clock);
     }
     final RateLimiterConfig cfg = configs.getOrDefault(descriptor.id(), descriptor.defaultConfig());
-    return new StaticRateLimiter(descriptor.id(), cfg, validateScript, cacheCluster, clock, dynamicConfigurationManager);
+    return new StaticRateLimiter(descriptor.id(), cfg, descriptor.localPermitLeaseSize(), validateScript, cacheCluster,
+        clock, dynamicConfigurationManager);
   }
 }
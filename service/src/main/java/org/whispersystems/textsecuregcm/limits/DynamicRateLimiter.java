@@ -23,6 +23,7 @@ public class DynamicRateLimiter implements RateLimiter {
   private final String name;
   private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
   private final Supplier<RateLimiterConfig> configResolver;
+  private final int localPermitLeaseSize;
 
   private final ClusterLuaScript validateScript;
 
@@ -37,12 +38,14 @@ public class DynamicRateLimiter implements RateLimiter {
       final String name,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager,
       final Supplier<RateLimiterConfig> configResolver,
+      final int localPermitLeaseSize,
       final ClusterLuaScript validateScript,
       final FaultTolerantRedisCluster cluster,
       final Clock clock) {
     this.name = requireNonNull(name);
     this.dynamicConfigurationManager = dynamicConfigurationManager;
     this.configResolver = requireNonNull(configResolver);
+    this.localPermitLeaseSize = localPermitLeaseSize;
     this.validateScript = requireNonNull(validateScript);
     this.cluster = requireNonNull(cluster);
     this.clock = requireNonNull(clock);
@@ -87,7 +90,8 @@ public class DynamicRateLimiter implements RateLimiter {
     final RateLimiterConfig cfg = configResolver.get();
     return currentHolder.updateAndGet(p -> p != null && p.getLeft().equals(cfg)
         ? p
-        : Pair.of(cfg, new StaticRateLimiter(name, cfg, validateScript, cluster, clock, dynamicConfigurationManager))
+        : Pair.of(cfg, new StaticRateLimiter(name, cfg, localPermitLeaseSize, validateScript, cluster, clock,
+            dynamicConfigurationManager))
     );
   }
 }
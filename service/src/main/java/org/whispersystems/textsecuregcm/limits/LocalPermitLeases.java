@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.limits;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.google.common.annotations.VisibleForTesting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
+
+/**
+ * Local permit leases allow most rate limiter checks to be decided in-process. Rather than taking one permit at a time
+ * from a shared bucket, a rate limiter may take a "lease" of several permits at once and hand them out locally until
+ * they run out.
+ * <p>
+ * Leased permits are removed from the shared bucket when the lease is taken, so leases never allow more permits to be
+ * used than the shared bucket would have allowed. To keep leased-but-unused permits from limiting clients earlier than
+ * exact checks would have:
+ * <ul>
+ *   <li>leases are sized to observed demand: the first lease for a key covers only the permits requested, and each
+ *   following lease is twice the size of the one it replaces (up to a maximum), so a key that's only seen a handful of
+ *   times on this instance (for example, because its client's requests are spread across many instances) never takes
+ *   more permits than it uses</li>
+ *   <li>when a lease expires or is replaced, its unused permits are returned to the shared bucket</li>
+ * </ul>
+ * Leases expire after a short reconciliation interval, and never outlive the time it would take the shared bucket to
+ * refill the leased permits.
+ */
+class LocalPermitLeases {
+
+  private final int maxLeaseSize;
+  private final Cache<String, Lease> leasesByKey;
+
+  private final Counter localPermitsCounter;
+  private final Counter leasesCounter;
+  private final Counter returnedPermitsCounter;
+  private final Counter exactChecksCounter;
+
+  private static final long MAX_LEASES = 100_000;
+
+  private static final Duration RECONCILIATION_INTERVAL = Duration.ofSeconds(5);
+
+  private static final String LOCAL_PERMITS_COUNTER_NAME = MetricsUtil.name(LocalPermitLeases.class, "localPermits");
+  private static final String LEASES_COUNTER_NAME = MetricsUtil.name(LocalPermitLeases.class, "leases");
+  private static final String RETURNED_PERMITS_COUNTER_NAME =
+      MetricsUtil.name(LocalPermitLeases.class, "returnedPermits");
+  private static final String EXACT_CHECKS_COUNTER_NAME = MetricsUtil.name(LocalPermitLeases.class, "exactChecks");
+
+  private record Lease(int size, AtomicInteger remainingPermits) {
+  }
+
+  /**
+   * Constructs a new set of local permit leases.
+   *
+   * @param name the name of the rate limiter for which permits are leased
+   * @param maxLeaseSize the maximum number of permits to take in a single lease
+   * @param config the configuration of the shared bucket from which permits are leased
+   * @param unusedPermitReturner a function to call with a key and a number of leased-but-unused permits to return to
+   * the shared bucket for that key; must not block
+   */
+  LocalPermitLeases(final String name,
+      final int maxLeaseSize,
+      final RateLimiterConfig config,
+      final ObjIntConsumer<String> unusedPermitReturner) {
+
+    if (maxLeaseSize <= 0) {
+      throw new IllegalArgumentException("Lease size must be positive");
+    }
+
+    this.maxLeaseSize = maxLeaseSize;
+
+    this.localPermitsCounter = Metrics.counter(LOCAL_PERMITS_COUNTER_NAME, "name", name);
+    this.leasesCounter = Metrics.counter(LEASES_COUNTER_NAME, "name", name);
+    this.returnedPermitsCounter = Metrics.counter(RETURNED_PERMITS_COUNTER_NAME, "name", name);
+    this.exactChecksCounter = Metrics.counter(EXACT_CHECKS_COUNTER_NAME, "name", name);
+
+    final Duration refillDuration = Duration.ofMillis((long) Math.ceil(maxLeaseSize / config.leakRatePerMillis()));
+    final Duration leaseDuration =
+        RECONCILIATION_INTERVAL.compareTo(refillDuration) < 0 ? RECONCILIATION_INTERVAL : refillDuration;
+
+    this.leasesByKey = Caffeine.newBuilder()
+        .maximumSize(MAX_LEASES)
+        .expireAfterWrite(leaseDuration)
+        // Expire leases promptly so their unused permits go back to the shared bucket
+        .scheduler(Scheduler.systemScheduler())
+        .executor(Runnable::run)
+        .<String, Lease>removalListener((key, lease, cause) -> {
+          if (key != null && lease != null) {
+            // Claim whatever's left so a concurrent local acquisition can't also use the permits we're returning
+            final int unusedPermits = lease.remainingPermits().getAndSet(0);
+
+            if (unusedPermits > 0) {
+              returnedPermitsCounter.increment(unusedPermits);
+              unusedPermitReturner.accept(key, unusedPermits);
+            }
+          }
+        })
+        .build();
+  }
+
+  int getMaxLeaseSize() {
+    return maxLeaseSize;
+  }
+
+  /**
+   * Attempts to take the given number of permits from a lease held by this instance.
+   *
+   * @return {@code true} if the permits were taken from a local lease or {@code false} if this instance does not hold a
+   * lease with enough permits for the given key
+   */
+  boolean tryAcquire(final String key, final int amount) {
+    final Lease lease = leasesByKey.getIfPresent(key);
+
+    if (lease == null) {
+      return false;
+    }
+
+    int remaining;
+
+    do {
+      remaining = lease.remainingPermits().get();
+
+      if (remaining < amount) {
+        return false;
+      }
+    } while (!lease.remainingPermits().compareAndSet(remaining, remaining - amount));
+
+    localPermitsCounter.increment(amount);
+    return true;
+  }
+
+  boolean hasAvailablePermits(final String key, final int amount) {
+    final Lease lease = leasesByKey.getIfPresent(key);
+    return lease != null && lease.remainingPermits().get() >= amount;
+  }
+
+  /**
+   * Returns the number of permits to take from the shared bucket for the next lease for the given key.
+   *
+   * @param key the key for which to take a lease
+   * @param amount the number of permits the caller needs right away
+   *
+   * @return the size of the next lease for the given key; if equal to {@code amount}, the lease is equivalent to an
+   * exact check
+   */
+  int getNextLeaseSize(final String key, final int amount) {
+    final Lease lease = leasesByKey.getIfPresent(key);
+
+    return lease == null
+        ? amount
+        : Math.max(amount, (int) Math.min(maxLeaseSize, 2L * lease.size()));
+  }
+
+  /**
+   * Records a newly-taken lease from which the given number of permits have already been used. Any permits remaining
+   * in a previous lease for the same key are returned to the shared bucket.
+   */
+  void addLease(final String key, final int leaseSize, final int usedPermits) {
+    leasesCounter.increment();
+    leasesByKey.put(key, new Lease(leaseSize, new AtomicInteger(leaseSize - usedPermits)));
+  }
+
+  /**
+   * Records that the caller took exactly the given number of permits from the shared bucket for the given key, either
+   * because this instance hasn't seen the key recently or because the shared bucket didn't have enough permits for a
+   * bigger lease. The next lease for the key will be bigger than this one.
+   */
+  void recordExactCheck(final String key, final int amount) {
+    exactChecksCounter.increment();
+    leasesByKey.put(key, new Lease(amount, new AtomicInteger(0)));
+  }
+
+  /**
+   * Discards this instance's lease for the given key, if any, without returning its unused permits to the shared
+   * bucket. Note that other instances may still hold leases for the same key.
+   */
+  void clear(final String key) {
+    final Lease lease = leasesByKey.getIfPresent(key);
+
+    if (lease != null) {
+      lease.remainingPermits().set(0);
+    }
+
+    leasesByKey.invalidate(key);
+  }
+
+  /**
+   * Ends all of this instance's leases immediately, returning their unused permits to the shared bucket.
+   */
+  @VisibleForTesting
+  void returnUnusedPermits() {
+    leasesByKey.invalidateAll();
+  }
+}
@@ -25,4 +25,14 @@ public interface RateLimiterDescriptor {
    *         i.e. if there is no overrides in the application configuration files (static or dynamic).
    */
   RateLimiterConfig defaultConfig();
+
+  /**
+   * @return the number of permits this rate limiter may lease at once from the shared bucket to hand out locally, or
+   *         zero if every check should go to the shared bucket.
+   *
+   * @see LocalPermitLeases
+   */
+  default int localPermitLeaseSize() {
+    return 0;
+  }
 }
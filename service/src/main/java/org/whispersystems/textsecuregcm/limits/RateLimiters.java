@@ -44,7 +44,7 @@ public class RateLimiters extends BaseRateLimiters<RateLimiters.For> {
 
     TURN("turnAllocate", false, new RateLimiterConfig(60, 60)),
 
-    PROFILE("profile", false, new RateLimiterConfig(4320, 3)),
+    PROFILE("profile", false, new RateLimiterConfig(4320, 3), 20),
 
     STICKER_PACK("stickerPack", false, new RateLimiterConfig(50, 20 / (24.0 * 60.0))),
 
@@ -56,7 +56,7 @@ public class RateLimiters extends BaseRateLimiters<RateLimiters.For> {
 
     USERNAME_RESERVE("usernameReserve", false, new RateLimiterConfig(100, 100 / (24.0 * 60.0))),
 
-    CHECK_ACCOUNT_EXISTENCE("checkAccountExistence", false, new RateLimiterConfig(1_000, 1_000 / 60.0)),
+    CHECK_ACCOUNT_EXISTENCE("checkAccountExistence", false, new RateLimiterConfig(1_000, 1_000 / 60.0), 10),
 
     REGISTRATION("registration", false, new RateLimiterConfig(6, 2)),
 
@@ -83,10 +83,17 @@ public class RateLimiters extends BaseRateLimiters<RateLimiters.For> {
 
     private final RateLimiterConfig defaultConfig;
 
+    private final int localPermitLeaseSize;
+
     For(final String id, final boolean dynamic, final RateLimiterConfig defaultConfig) {
+      this(id, dynamic, defaultConfig, 0);
+    }
+
+    For(final String id, final boolean dynamic, final RateLimiterConfig defaultConfig, final int localPermitLeaseSize) {
       this.id = id;
       this.dynamic = dynamic;
       this.defaultConfig = defaultConfig;
+      this.localPermitLeaseSize = localPermitLeaseSize;
     }
 
     public String id() {
@@ -101,6 +108,11 @@ public class RateLimiters extends BaseRateLimiters<RateLimiters.For> {
     public RateLimiterConfig defaultConfig() {
       return defaultConfig;
     }
+
+    @Override
+    public int localPermitLeaseSize() {
+      return localPermitLeaseSize;
+    }
   }
 
   public static RateLimiters createAndValidate(
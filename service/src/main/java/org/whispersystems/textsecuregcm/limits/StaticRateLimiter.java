@@ -16,6 +16,9 @@ import java.time.Clock;
 import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletionStage;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.RateLimitExceededException;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
@@ -40,6 +43,10 @@ public class StaticRateLimiter implements RateLimiter {
 
   private final Clock clock;
 
+  @Nullable
+  private final LocalPermitLeases localPermitLeases;
+
+  private static final Logger logger = LoggerFactory.getLogger(StaticRateLimiter.class);
 
   public StaticRateLimiter(
       final String name,
@@ -48,6 +55,17 @@ public class StaticRateLimiter implements RateLimiter {
       final FaultTolerantRedisCluster cacheCluster,
       final Clock clock,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
+    this(name, config, 0, validateScript, cacheCluster, clock, dynamicConfigurationManager);
+  }
+
+  public StaticRateLimiter(
+      final String name,
+      final RateLimiterConfig config,
+      final int localPermitLeaseSize,
+      final ClusterLuaScript validateScript,
+      final FaultTolerantRedisCluster cacheCluster,
+      final Clock clock,
+      final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
     this.name = requireNonNull(name);
     this.config = requireNonNull(config);
     this.validateScript = requireNonNull(validateScript);
@@ -55,10 +73,43 @@ public class StaticRateLimiter implements RateLimiter {
     this.clock = requireNonNull(clock);
     this.counter = Metrics.counter(MetricsUtil.name(getClass(), "exceeded"), "name", name);
     this.dynamicConfigurationManager = dynamicConfigurationManager;
+
+    // A lease as large as the whole bucket would leave nothing for exact checks (or other instances)
+    this.localPermitLeases = localPermitLeaseSize > 0 && localPermitLeaseSize < config.bucketSize()
+        ? new LocalPermitLeases(name, localPermitLeaseSize, config, this::returnUnusedPermits)
+        : null;
   }
 
   @Override
   public void validate(final String key, final int amount) throws RateLimitExceededException {
+    final boolean useLocalPermitLeases = shouldUseLocalPermitLeases(amount);
+
+    if (useLocalPermitLeases) {
+      if (localPermitLeases.tryAcquire(key, amount)) {
+        return;
+      }
+
+      final int leaseSize = localPermitLeases.getNextLeaseSize(key, amount);
+
+      if (leaseSize > amount) {
+        try {
+          if (executeValidateScript(key, leaseSize, true) == 0) {
+            localPermitLeases.addLease(key, leaseSize, amount);
+            return;
+          }
+        } catch (RedisException e) {
+          if (!failOpen()) {
+            throw e;
+          }
+
+          return;
+        }
+      }
+
+      // Either we haven't seen this key recently or the shared bucket doesn't have enough permits for a bigger lease
+      // (and so we're close to the limit); either way, fall back to an exact check
+    }
+
     try {
       final long deficitPermitsAmount = executeValidateScript(key, amount, true);
       if (deficitPermitsAmount > 0) {
@@ -67,6 +118,10 @@ public class StaticRateLimiter implements RateLimiter {
             (long) Math.ceil((double) deficitPermitsAmount / config.leakRatePerMillis()));
         throw new RateLimitExceededException(retryAfter, true);
       }
+
+      if (useLocalPermitLeases) {
+        localPermitLeases.recordExactCheck(key, amount);
+      }
     } catch (RedisException e) {
       if (!failOpen()) {
         throw e;
@@ -76,9 +131,45 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public CompletionStage<Void> validateAsync(final String key, final int amount) {
+    if (shouldUseLocalPermitLeases(amount)) {
+      if (localPermitLeases.tryAcquire(key, amount)) {
+        return completedFuture(null);
+      }
+
+      final int leaseSize = localPermitLeases.getNextLeaseSize(key, amount);
+
+      if (leaseSize > amount) {
+        return executeValidateScriptAsync(key, leaseSize, true)
+            .thenCompose(deficitPermitsAmount -> {
+              if (deficitPermitsAmount == 0) {
+                localPermitLeases.addLease(key, leaseSize, amount);
+                return completedFuture((Void) null);
+              }
+
+              return validateExactAsync(key, amount, true);
+            })
+            .exceptionally(throwable -> {
+              if (ExceptionUtils.unwrap(throwable) instanceof RedisException && failOpen()) {
+                return null;
+              }
+              throw ExceptionUtils.wrap(throwable);
+            });
+      }
+
+      return validateExactAsync(key, amount, true);
+    }
+
+    return validateExactAsync(key, amount, false);
+  }
+
+  private CompletionStage<Void> validateExactAsync(final String key, final int amount, final boolean recordExactCheck) {
     return executeValidateScriptAsync(key, amount, true)
         .thenCompose(deficitPermitsAmount -> {
           if (deficitPermitsAmount == 0) {
+            if (recordExactCheck) {
+              localPermitLeases.recordExactCheck(key, amount);
+            }
+
             return completedFuture((Void) null);
           }
           counter.increment();
@@ -96,6 +187,10 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public boolean hasAvailablePermits(final String key, final int amount) {
+    if (shouldUseLocalPermitLeases(amount) && localPermitLeases.hasAvailablePermits(key, amount)) {
+      return true;
+    }
+
     try {
       final long deficitPermitsAmount = executeValidateScript(key, amount, false);
       return deficitPermitsAmount == 0;
@@ -110,6 +205,10 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public CompletionStage<Boolean> hasAvailablePermitsAsync(final String key, final int amount) {
+    if (shouldUseLocalPermitLeases(amount) && localPermitLeases.hasAvailablePermits(key, amount)) {
+      return completedFuture(true);
+    }
+
     return executeValidateScriptAsync(key, amount, false)
         .thenApply(deficitPermitsAmount -> deficitPermitsAmount == 0)
         .exceptionally(throwable -> {
@@ -122,11 +221,19 @@ public class StaticRateLimiter implements RateLimiter {
 
   @Override
   public void clear(final String key) {
+    if (localPermitLeases != null) {
+      localPermitLeases.clear(key);
+    }
+
     cacheCluster.useCluster(connection -> connection.sync().del(bucketName(name, key)));
   }
 
   @Override
   public CompletionStage<Void> clearAsync(final String key) {
+    if (localPermitLeases != null) {
+      localPermitLeases.clear(key);
+    }
+
     return cacheCluster.withCluster(connection -> connection.async().del(bucketName(name, key)))
         .thenRun(Util.NOOP);
   }
@@ -140,6 +247,12 @@ public class StaticRateLimiter implements RateLimiter {
     return this.dynamicConfigurationManager.getConfiguration().getRateLimitPolicy().failOpen();
   }
 
+  private boolean shouldUseLocalPermitLeases(final int amount) {
+    return localPermitLeases != null
+        && amount <= localPermitLeases.getMaxLeaseSize()
+        && dynamicConfigurationManager.getConfiguration().getRateLimitPolicy().localPermitLeasesEnabled();
+  }
+
   private long executeValidateScript(final String key, final int amount, final boolean applyChanges) {
     final List<String> keys = List.of(bucketName(name, key));
     final List<String> arguments = List.of(
@@ -164,6 +277,22 @@ public class StaticRateLimiter implements RateLimiter {
     return validateScript.executeAsync(keys, arguments).thenApply(o -> (Long) o);
   }
 
+  private void returnUnusedPermits(final String key, final int permits) {
+    // If we can't return the permits, they'll simply come back when the shared bucket refills
+    executeValidateScriptAsync(key, -permits, true).whenComplete((ignored, throwable) -> {
+      if (throwable != null) {
+        logger.debug("Failed to return unused permits for {}", name, throwable);
+      }
+    });
+  }
+
+  @VisibleForTesting
+  void returnUnusedLeasedPermits() {
+    if (localPermitLeases != null) {
+      localPermitLeases.returnUnusedPermits();
+    }
+  }
+
   @VisibleForTesting
   protected static String bucketName(final String name, final String key) {
     return "leaky_bucket::" + name + "::" + key;
@@ -11,7 +11,6 @@ import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.Limit;
 import io.lettuce.core.Range;
-import io.lettuce.core.RedisException;
 import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.SetArgs;
 import io.lettuce.core.cluster.SlotHash;
@@ -21,12 +20,13 @@ import java.io.IOException;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
@@ -42,6 +42,8 @@ import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.textsecuregcm.util.RedisClusterUtil;
 import org.whispersystems.textsecuregcm.util.Util;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public class ApnPushNotificationScheduler implements Managed {
 
@@ -58,9 +60,11 @@ public class ApnPushNotificationScheduler implements Managed {
   private static final Counter sent = Metrics.counter(name(ApnPushNotificationScheduler.class, "voip_sent"));
   private static final Counter retry = Metrics.counter(name(ApnPushNotificationScheduler.class, "voip_retry"));
   private static final Counter evicted = Metrics.counter(name(ApnPushNotificationScheduler.class, "voip_evicted"));
+  private static final Counter failed = Metrics.counter(name(ApnPushNotificationScheduler.class, "voip_failed"));
 
   private static final Counter backgroundNotificationScheduledCounter = Metrics.counter(name(ApnPushNotificationScheduler.class, "backgroundNotification", "scheduled"));
   private static final Counter backgroundNotificationSentCounter = Metrics.counter(name(ApnPushNotificationScheduler.class, "backgroundNotification", "sent"));
+  private static final Counter backgroundNotificationFailedCounter = Metrics.counter(name(ApnPushNotificationScheduler.class, "backgroundNotification", "failed"));
 
   private final APNSender apnSender;
   private final AccountsManager accountsManager;
@@ -76,6 +80,8 @@ public class ApnPushNotificationScheduler implements Managed {
   private final Thread[] workerThreads = new Thread[WORKER_THREAD_COUNT];
 
   private static final int WORKER_THREAD_COUNT = 4;
+  private static final int SLOTS_PER_PASS = 16;
+  private static final int MAX_CONCURRENT_NOTIFICATIONS = 32;
 
   @VisibleForTesting
   static final Duration BACKGROUND_NOTIFICATION_PERIOD = Duration.ofMinutes(20);
@@ -90,7 +96,7 @@ public class ApnPushNotificationScheduler implements Managed {
     public void run() {
       while (running.get()) {
         try {
-          final long entriesProcessed = processNextSlot();
+          final long entriesProcessed = processNextSlots();
 
           if (entriesProcessed == 0) {
             Util.sleep(1000);
@@ -101,70 +107,108 @@ public class ApnPushNotificationScheduler implements Managed {
       }
     }
 
-    private long processNextSlot() {
-      final int slot = (int) (pushSchedulingCluster.withCluster(connection ->
-          connection.sync().incr(NEXT_SLOT_TO_PROCESS_KEY)) % SlotHash.SLOT_COUNT);
-
-      return processRecurringVoipNotifications(slot) + processScheduledBackgroundNotifications(slot);
+    /**
+     * Claims the next {@link #SLOTS_PER_PASS} slots and processes them all concurrently. Most slots are empty at any
+     * given moment, so checking many slots at once (rather than waiting for a round trip for each empty slot in turn)
+     * lets each worker cover the keyspace much more quickly.
+     */
+    private long processNextSlots() {
+      final long lastSlot = pushSchedulingCluster.withCluster(connection ->
+          connection.sync().incrby(NEXT_SLOT_TO_PROCESS_KEY, SLOTS_PER_PASS));
+
+      return Flux.range(0, SLOTS_PER_PASS)
+          .map(i -> (int) ((lastSlot - i) % SlotHash.SLOT_COUNT))
+          .flatMap(slot -> Mono.fromFuture(() -> processRecurringVoipNotifications(slot))
+              .zipWith(Mono.fromFuture(() -> processScheduledBackgroundNotifications(slot)), Long::sum)
+              // A failure to read one slot's queues shouldn't keep the other slots claimed in this pass from being
+              // processed; the failed slot will come around again on a later pass
+              .onErrorResume(throwable -> {
+                logger.warn("Failed to process slot {}", slot, throwable);
+                return Mono.just(0L);
+              }))
+          .reduce(0L, Long::sum)
+          .blockOptional()
+          .orElse(0L);
     }
 
     @VisibleForTesting
-    long processRecurringVoipNotifications(final int slot) {
-      List<String> pendingDestinations;
-      long entriesProcessed = 0;
-
-      do {
-        pendingDestinations = getPendingDestinationsForRecurringVoipNotifications(slot, PAGE_SIZE);
-        entriesProcessed += pendingDestinations.size();
-
-        for (final String destination : pendingDestinations) {
-          try {
-            getAccountAndDeviceFromPairString(destination).ifPresentOrElse(
-                accountAndDevice -> sendRecurringVoipNotification(accountAndDevice.first(), accountAndDevice.second()),
-                () -> removeRecurringVoipNotificationEntrySync(destination));
-          } catch (final IllegalArgumentException e) {
-            logger.warn("Failed to parse account/device pair: {}", destination, e);
-          }
-        }
-      } while (!pendingDestinations.isEmpty());
-
-      return entriesProcessed;
+    CompletableFuture<Long> processRecurringVoipNotifications(final int slot) {
+      return Mono.fromFuture(() -> getPendingDestinationsForRecurringVoipNotificationsAsync(slot, PAGE_SIZE))
+          // Fetching a page of destinations also reschedules them, so we can keep fetching until we get an empty page
+          .repeat()
+          .takeWhile(pendingDestinations -> !pendingDestinations.isEmpty())
+          .concatMap(pendingDestinations -> Mono.fromFuture(() -> getAccountsAndDevices(pendingDestinations))
+              .flatMapMany(Flux::fromIterable)
+              .flatMap(destination -> Mono.fromFuture(() -> destination.accountAndDevice()
+                          .map(accountAndDevice -> sendRecurringVoipNotification(accountAndDevice.first(),
+                              accountAndDevice.second()))
+                          .orElseGet(() -> removeRecurringVoipNotificationEntry(destination.endpoint())
+                              .toCompletableFuture()
+                              .thenAccept(dropValue())))
+                      .onErrorResume(throwable -> {
+                        logger.warn("Failed to send recurring VOIP notification to {}", destination.endpoint(),
+                            throwable);
+                        failed.increment();
+
+                        return Mono.empty();
+                      }),
+                  MAX_CONCURRENT_NOTIFICATIONS)
+              .then(Mono.just((long) pendingDestinations.size())))
+          .reduce(0L, Long::sum)
+          .toFuture();
     }
 
     @VisibleForTesting
-    long processScheduledBackgroundNotifications(final int slot) {
+    CompletableFuture<Long> processScheduledBackgroundNotifications(final int slot) {
       final long currentTimeMillis = clock.millis();
       final String queueKey = getPendingBackgroundNotificationQueueKey(slot);
 
-      final long processedBackgroundNotifications = pushSchedulingCluster.withCluster(connection -> {
-        List<String> destinations;
-        long offset = 0;
-
-        do {
-          destinations = connection.sync().zrangebyscore(queueKey, Range.create(0, currentTimeMillis), Limit.create(offset, PAGE_SIZE));
-
-          for (final String destination : destinations) {
-            try {
-              getAccountAndDeviceFromPairString(destination).ifPresent(accountAndDevice ->
-                  sendBackgroundNotification(accountAndDevice.first(), accountAndDevice.second()));
-            } catch (final IllegalArgumentException e) {
-              logger.warn("Failed to parse account/device pair: {}", destination, e);
-            }
-          }
-
-          offset += destinations.size();
-        } while (destinations.size() == PAGE_SIZE);
-
-        return offset;
-      });
+      return getPendingBackgroundNotificationDestinations(queueKey, currentTimeMillis, 0)
+          .expand(offsetAndDestinations -> offsetAndDestinations.second().size() == PAGE_SIZE
+              ? getPendingBackgroundNotificationDestinations(queueKey, currentTimeMillis,
+                  offsetAndDestinations.first() + PAGE_SIZE)
+              : Mono.empty())
+          .map(Pair::second)
+          .concatMap(destinations -> Mono.fromFuture(() -> getAccountsAndDevices(destinations))
+              .flatMapMany(Flux::fromIterable)
+              .flatMap(destination -> Mono.justOrEmpty(destination.accountAndDevice())
+                      .flatMap(accountAndDevice -> Mono.fromFuture(() ->
+                          sendBackgroundNotification(accountAndDevice.first(), accountAndDevice.second())))
+                      // Background notifications are best-effort and aren't retried; a failed send must not keep the
+                      // rest of the queue from being notified and cleared
+                      .onErrorResume(throwable -> {
+                        logger.warn("Failed to send background notification to {}", destination.endpoint(), throwable);
+                        backgroundNotificationFailedCounter.increment();
+
+                        return Mono.empty();
+                      }),
+                  MAX_CONCURRENT_NOTIFICATIONS)
+              .then(Mono.just((long) destinations.size())))
+          .reduce(0L, Long::sum)
+          .flatMap(processedBackgroundNotifications -> Mono.fromCompletionStage(pushSchedulingCluster.withCluster(
+                  connection -> connection.async().zremrangebyscore(queueKey, Range.create(0, currentTimeMillis))))
+              .thenReturn(processedBackgroundNotifications))
+          .toFuture();
+    }
 
-      pushSchedulingCluster.useCluster(connection ->
-          connection.sync().zremrangebyscore(queueKey, Range.create(0, currentTimeMillis)));
+    private Mono<Pair<Long, List<String>>> getPendingBackgroundNotificationDestinations(final String queueKey,
+        final long maxTimestamp, final long offset) {
 
-      return processedBackgroundNotifications;
+      return Mono.fromCompletionStage(pushSchedulingCluster.withCluster(connection -> connection.async()
+              .zrangebyscore(queueKey, Range.create(0, maxTimestamp), Limit.create(offset, PAGE_SIZE))))
+          .map(destinations -> new Pair<>(offset, destinations));
     }
   }
 
+  /**
+   * A destination for a scheduled notification.
+   *
+   * @param endpoint the key for the destination's recurring VOIP notification state
+   * @param accountAndDevice the destination account and device, or empty if either no longer exists
+   */
+  private record ResolvedDestination(String endpoint, Optional<Pair<Account, Device>> accountAndDevice) {
+  }
+
   public ApnPushNotificationScheduler(FaultTolerantRedisCluster pushSchedulingCluster,
       APNSender apnSender,
       AccountsManager accountsManager) throws IOException {
@@ -261,38 +305,46 @@ public class ApnPushNotificationScheduler implements Managed {
     }
   }
 
-  private void sendRecurringVoipNotification(final Account account, final Device device) {
+  private CompletableFuture<Void> sendRecurringVoipNotification(final Account account, final Device device) {
     String apnId = device.getVoipApnId();
 
     if (apnId == null) {
-      removeRecurringVoipNotificationEntrySync(getEndpointKey(account, device));
-      return;
+      return removeRecurringVoipNotificationEntry(getEndpointKey(account, device))
+          .toCompletableFuture()
+          .thenAccept(dropValue());
     }
 
     long deviceLastSeen = device.getLastSeen();
     if (deviceLastSeen < clock.millis() - TimeUnit.DAYS.toMillis(7)) {
       evicted.increment();
-      removeRecurringVoipNotificationEntrySync(getEndpointKey(account, device));
-      return;
+      return removeRecurringVoipNotificationEntry(getEndpointKey(account, device))
+          .toCompletableFuture()
+          .thenAccept(dropValue());
     }
 
-    apnSender.sendNotification(new PushNotification(apnId, PushNotification.TokenType.APN_VOIP, PushNotification.NotificationType.NOTIFICATION, null, account, device, true));
     retry.increment();
+
+    return apnSender.sendNotification(new PushNotification(apnId, PushNotification.TokenType.APN_VOIP,
+            PushNotification.NotificationType.NOTIFICATION, null, account, device, true))
+        .thenAccept(dropValue());
   }
 
   @VisibleForTesting
-  void sendBackgroundNotification(final Account account, final Device device) {
-    if (StringUtils.isNotBlank(device.getApnId())) {
-      // It's okay for the "last notification" timestamp to expire after the "cooldown" period has elapsed; a missing
-      // timestamp and a timestamp older than the period are functionally equivalent.
-      pushSchedulingCluster.useCluster(connection -> connection.sync().set(
-          getLastBackgroundNotificationTimestampKey(account, device),
-          String.valueOf(clock.millis()), new SetArgs().ex(BACKGROUND_NOTIFICATION_PERIOD)));
-
-      apnSender.sendNotification(new PushNotification(device.getApnId(), PushNotification.TokenType.APN, PushNotification.NotificationType.NOTIFICATION, null, account, device, false));
-
-      backgroundNotificationSentCounter.increment();
+  CompletableFuture<Void> sendBackgroundNotification(final Account account, final Device device) {
+    if (StringUtils.isBlank(device.getApnId())) {
+      return CompletableFuture.completedFuture(null);
     }
+
+    // It's okay for the "last notification" timestamp to expire after the "cooldown" period has elapsed; a missing
+    // timestamp and a timestamp older than the period are functionally equivalent.
+    return pushSchedulingCluster.withCluster(connection -> connection.async().set(
+            getLastBackgroundNotificationTimestampKey(account, device),
+            String.valueOf(clock.millis()), new SetArgs().ex(BACKGROUND_NOTIFICATION_PERIOD)))
+        .toCompletableFuture()
+        .thenCompose(ignored -> apnSender.sendNotification(new PushNotification(device.getApnId(),
+            PushNotification.TokenType.APN, PushNotification.NotificationType.NOTIFICATION, null, account, device,
+            false)))
+        .thenAccept(ignored -> backgroundNotificationSentCounter.increment());
   }
 
   @VisibleForTesting
@@ -319,42 +371,55 @@ public class ApnPushNotificationScheduler implements Managed {
     return account.getUuid() + ":" + device.getId();
   }
 
+  /**
+   * Resolves a page of {@code account:device} destination strings to accounts and devices with a single batched account
+   * lookup. Destinations that can't be parsed are logged and dropped.
+   */
+  private CompletableFuture<List<ResolvedDestination>> getAccountsAndDevices(final List<String> destinations) {
+    final List<Pair<UUID, Long>> accountIdentifiersAndDeviceIds = new ArrayList<>(destinations.size());
+
+    for (final String destination : destinations) {
+      try {
+        accountIdentifiersAndDeviceIds.add(parseDestination(destination));
+      } catch (final IllegalArgumentException e) {
+        logger.warn("Failed to parse account/device pair: {}", destination, e);
+      }
+    }
+
+    return accountsManager.getByAccountIdentifiersAsync(
+            accountIdentifiersAndDeviceIds.stream().map(Pair::first).toList())
+        .thenApply(accountsByUuid -> accountIdentifiersAndDeviceIds.stream()
+            .map(accountIdentifierAndDeviceId -> {
+              final Optional<Account> maybeAccount =
+                  Optional.ofNullable(accountsByUuid.get(accountIdentifierAndDeviceId.first()));
+
+              return new ResolvedDestination(
+                  getEndpointKey(accountIdentifierAndDeviceId.first(), accountIdentifierAndDeviceId.second()),
+                  maybeAccount.flatMap(account -> account.getDevice(accountIdentifierAndDeviceId.second()))
+                      .map(device -> new Pair<>(maybeAccount.get(), device)));
+            })
+            .toList());
+  }
+
   @VisibleForTesting
-  Optional<Pair<Account, Device>> getAccountAndDeviceFromPairString(final String endpoint) {
+  static Pair<UUID, Long> parseDestination(final String destination) {
     try {
-      if (StringUtils.isBlank(endpoint)) {
+      if (StringUtils.isBlank(destination)) {
         throw new IllegalArgumentException("Endpoint must not be blank");
       }
 
-      final String[] parts = endpoint.split(":");
+      final String[] parts = destination.split(":");
 
       if (parts.length != 2) {
-        throw new IllegalArgumentException("Could not parse endpoint string: " + endpoint);
+        throw new IllegalArgumentException("Could not parse endpoint string: " + destination);
       }
 
-      final Optional<Account> maybeAccount = accountsManager.getByAccountIdentifier(UUID.fromString(parts[0]));
-
-      return maybeAccount.flatMap(account -> account.getDevice(Long.parseLong(parts[1])))
-          .map(device -> new Pair<>(maybeAccount.get(), device));
-
+      return new Pair<>(UUID.fromString(parts[0]), Long.parseLong(parts[1]));
     } catch (final NumberFormatException e) {
       throw new IllegalArgumentException(e);
     }
   }
 
-  private boolean removeRecurringVoipNotificationEntrySync(final String endpoint) {
-    try {
-      return removeRecurringVoipNotificationEntry(endpoint).toCompletableFuture().get();
-    } catch (ExecutionException e) {
-      if (e.getCause() instanceof RedisException re) {
-        throw re;
-      }
-      throw new RuntimeException(e);
-    } catch (InterruptedException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
   private CompletionStage<Boolean> removeRecurringVoipNotificationEntry(Account account, Device device) {
     return removeRecurringVoipNotificationEntry(getEndpointKey(account, device));
   }
@@ -366,12 +431,19 @@ public class ApnPushNotificationScheduler implements Managed {
         .thenApply(result -> ((long) result) > 0);
   }
 
-  @SuppressWarnings("unchecked")
   @VisibleForTesting
   List<String> getPendingDestinationsForRecurringVoipNotifications(final int slot, final int limit) {
-    return (List<String>) getPendingVoipDestinationsScript.execute(
-        List.of(getPendingRecurringVoipNotificationQueueKey(slot)),
-        List.of(String.valueOf(clock.millis()), String.valueOf(limit)));
+    return getPendingDestinationsForRecurringVoipNotificationsAsync(slot, limit).join();
+  }
+
+  @SuppressWarnings("unchecked")
+  private CompletableFuture<List<String>> getPendingDestinationsForRecurringVoipNotificationsAsync(final int slot,
+      final int limit) {
+
+    return getPendingVoipDestinationsScript.executeAsync(
+            List.of(getPendingRecurringVoipNotificationQueueKey(slot)),
+            List.of(String.valueOf(clock.millis()), String.valueOf(limit)))
+        .thenApply(result -> (List<String>) result);
   }
 
   private CompletionStage<Void> insertRecurringVoipNotificationEntry(final Account account, final Device device, final long timestamp, final long interval) {
@@ -388,7 +460,11 @@ public class ApnPushNotificationScheduler implements Managed {
 
   @VisibleForTesting
   static String getEndpointKey(final Account account, final Device device) {
-    return "apn_device::{" + account.getUuid() + "::" + device.getId() + "}";
+    return getEndpointKey(account.getUuid(), device.getId());
+  }
+
+  private static String getEndpointKey(final UUID accountIdentifier, final long deviceId) {
+    return "apn_device::{" + accountIdentifier + "::" + deviceId + "}";
   }
 
   private static String getPendingRecurringVoipNotificationQueueKey(final String endpoint) {
@@ -7,27 +7,32 @@ package org.whispersystems.textsecuregcm.push;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.LettuceFutures;
 import io.lettuce.core.RedisFuture;
 import io.lettuce.core.ScriptOutputType;
 import io.lettuce.core.cluster.SlotHash;
-import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -42,6 +47,7 @@ import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubConnection;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.util.Constants;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 /**
  * The client presence manager keeps track of which clients are actively connected and "present" to receive messages.
@@ -72,12 +78,16 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
   private final Timer setPresenceTimer;
   private final Timer clearPresenceTimer;
   private final Timer prunePeersTimer;
+  private final Timer prunePeerTimer;
+  private final Histogram prunedPresenceAgeHistogram;
   private final Meter pruneClientMeter;
   private final Meter remoteDisplacementMeter;
   private final Meter pubSubMessageMeter;
 
   private static final int PRUNE_PEERS_INTERVAL_SECONDS = (int) Duration.ofSeconds(30).toSeconds();
   private static final int PRESENCE_EXPIRATION_SECONDS = (int) Duration.ofMinutes(11).toSeconds();
+  private static final int RESUBSCRIBE_BATCH_SIZE = 1_000;
+  private static final int PRUNE_PEER_BATCH_SIZE = 1_000;
 
   static final String MANAGER_SET_KEY = "presence::managers";
 
@@ -102,6 +112,8 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     this.setPresenceTimer = metricRegistry.timer(name(getClass(), "setPresence"));
     this.clearPresenceTimer = metricRegistry.timer(name(getClass(), "clearPresence"));
     this.prunePeersTimer = metricRegistry.timer(name(getClass(), "prunePeers"));
+    this.prunePeerTimer = metricRegistry.timer(name(getClass(), "prunePeer"));
+    this.prunedPresenceAgeHistogram = metricRegistry.histogram(name(getClass(), "prunedPresenceAgeSeconds"));
     this.pruneClientMeter = metricRegistry.meter(name(getClass(), "pruneClient"));
     this.remoteDisplacementMeter = metricRegistry.meter(name(getClass(), "remoteDisplacement"));
     this.pubSubMessageMeter = metricRegistry.meter(name(getClass(), "pubSubMessage"));
@@ -164,17 +176,26 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     try (final Timer.Context ignored = setPresenceTimer.time()) {
       final String presenceKey = getPresenceKey(accountUuid, deviceId);
 
-      displacePresence(presenceKey, true);
+      // If the client is connected to another host, overwriting the presence key below will displace it. We only need
+      // to clean up explicitly if it's connected to this host, and can skip several round trips in the (much more
+      // common) case where it isn't.
+      if (displacementListenersByPresenceKey.containsKey(presenceKey)) {
+        displacePresence(presenceKey, true);
+      }
 
       displacementListenersByPresenceKey.put(presenceKey, displacementListener);
 
       presenceCluster.useCluster(connection -> {
-        final RedisAdvancedClusterCommands<String, String> commands = connection.sync();
+        final RedisAdvancedClusterAsyncCommands<String, String> commands = connection.async();
 
-        commands.sadd(connectedClientSetKey, presenceKey);
-        commands.setex(presenceKey, PRESENCE_EXPIRATION_SECONDS, managerId);
+        // These keys live in different slots, but there's no need to wait for one write before sending the other
+        LettuceFutures.awaitAll(connection.getTimeout(),
+            commands.sadd(connectedClientSetKey, presenceKey),
+            commands.setex(presenceKey, PRESENCE_EXPIRATION_SECONDS, managerId));
       });
 
+      // We must not subscribe until we've written the presence key, or we'd be notified of (and displaced by) our own
+      // write. We also must not return until we've subscribed, or we could miss a displacement that happens right away.
       subscribeForRemotePresenceChanges(presenceKey);
     }
   }
@@ -226,6 +247,60 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
     }
   }
 
+  /**
+   * Asynchronously checks whether the given device is present.
+   *
+   * @return a future that yields {@code true} if the device is present or {@code false} otherwise
+   */
+  public CompletableFuture<Boolean> isPresentAsync(final UUID accountUuid, final long deviceId) {
+    final Timer.Context timerContext = checkPresenceTimer.time();
+
+    return presenceCluster.withCluster(connection ->
+            connection.async().exists(getPresenceKey(accountUuid, deviceId)).toCompletableFuture())
+        .thenApply(exists -> exists == 1)
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
+  /**
+   * Checks whether each of the given devices is present, issuing all of the checks before waiting for any of them to
+   * complete.
+   *
+   * @param accountAndDeviceIds a list of pairs of account and device identifiers
+   *
+   * @return a list of presence flags in the same order as {@code accountAndDeviceIds}
+   */
+  public List<Boolean> isPresent(final List<Pair<UUID, Long>> accountAndDeviceIds) {
+    return isPresentAsync(accountAndDeviceIds).join();
+  }
+
+  /**
+   * Asynchronously checks whether each of the given devices is present.
+   *
+   * @param accountAndDeviceIds a list of pairs of account and device identifiers
+   *
+   * @return a future that yields a list of presence flags in the same order as {@code accountAndDeviceIds}
+   */
+  public CompletableFuture<List<Boolean>> isPresentAsync(final List<Pair<UUID, Long>> accountAndDeviceIds) {
+    if (accountAndDeviceIds.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    final Timer.Context timerContext = checkPresenceTimer.time();
+
+    final List<CompletableFuture<Long>> futures = presenceCluster.withCluster(connection ->
+        accountAndDeviceIds.stream()
+            .map(accountAndDeviceId -> connection.async()
+                .exists(getPresenceKey(accountAndDeviceId.first(), accountAndDeviceId.second()))
+                .toCompletableFuture())
+            .toList());
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> futures.stream()
+            .map(future -> future.join() == 1)
+            .toList())
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
   public boolean isLocallyPresent(final UUID accountUuid, final long deviceId) {
     return displacementListenersByPresenceKey.containsKey(getPresenceKey(accountUuid, deviceId));
   }
@@ -239,10 +314,12 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
       displacementListenersByPresenceKey.remove(presenceKey);
       unsubscribeFromRemotePresenceChanges(presenceKey);
 
-      final boolean removed = clearPresenceScript.execute(List.of(presenceKey), List.of(managerId)) != null;
-      presenceCluster.useCluster(connection -> connection.sync().srem(connectedClientSetKey, presenceKey));
+      final CompletableFuture<Object> clearPresenceFuture =
+          clearPresenceScript.executeAsync(List.of(presenceKey), List.of(managerId));
+
+      presenceCluster.useCluster(connection -> connection.async().srem(connectedClientSetKey, presenceKey));
 
-      return removed;
+      return clearPresenceFuture.join() != null;
     }
   }
 
@@ -255,13 +332,39 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
             .subscribe(getKeyspaceNotificationChannel(presenceKey)));
   }
 
+  /**
+   * Re-subscribes to keyspace notifications for all locally-present clients after a cluster topology change. Because
+   * this may cover a very large number of clients, channels are grouped by the node that owns them and subscribed in
+   * batches rather than one at a time. Clients that connect individually still subscribe one at a time in
+   * {@link #setPresent(UUID, long, DisplacedPresenceListener)}.
+   */
   private void resubscribeAll() {
-    for (final String presenceKey : displacementListenersByPresenceKey.keySet()) {
-      subscribeForRemotePresenceChanges(presenceKey);
-    }
+    pubSubConnection.usePubSubConnection(connection -> {
+      final Map<String, List<String>> channelsByNodeId = new HashMap<>();
+
+      for (final String presenceKey : displacementListenersByPresenceKey.keySet()) {
+        final RedisClusterNode node = connection.getPartitions().getPartitionBySlot(SlotHash.getSlot(presenceKey));
+
+        if (node != null) {
+          channelsByNodeId.computeIfAbsent(node.getNodeId(), ignored -> new ArrayList<>())
+              .add(getKeyspaceNotificationChannel(presenceKey));
+        }
+      }
+
+      channelsByNodeId.forEach((nodeId, channels) -> {
+        for (final List<String> batch : Lists.partition(channels, RESUBSCRIBE_BATCH_SIZE)) {
+          connection.sync()
+              .nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && nodeId.equals(node.getNodeId()))
+              .commands()
+              .subscribe(batch.toArray(new String[0]));
+        }
+      });
+    });
   }
 
   private void unsubscribeFromRemotePresenceChanges(final String presenceKey) {
+    // The key's slot may have moved since we subscribed, in which case the subscription lives on the slot's previous
+    // owner; unsubscribe from every node so it can't leak
     pubSubConnection.usePubSubConnection(
         connection -> connection.sync().upstream().commands().unsubscribe(getKeyspaceNotificationChannel(presenceKey)));
   }
@@ -272,29 +375,64 @@ public class ClientPresenceManager extends RedisClusterPubSubAdapter<String, Str
           connection -> connection.sync().smembers(MANAGER_SET_KEY));
       peerIds.remove(managerId);
 
-      for (final String peerId : peerIds) {
-        final boolean peerMissing = presenceCluster.withCluster(
-            connection -> connection.sync().publish(getManagerPresenceChannel(peerId), "ping") == 0);
+      // Ping all peers at once instead of waiting for each to respond in turn
+      final Map<String, CompletableFuture<Long>> subscriberCountFuturesByPeerId = presenceCluster.withCluster(
+          connection -> peerIds.stream().collect(Collectors.toMap(peerId -> peerId,
+              peerId -> connection.async().publish(getManagerPresenceChannel(peerId), "ping").toCompletableFuture())));
 
-        if (peerMissing) {
+      subscriberCountFuturesByPeerId.forEach((peerId, subscriberCountFuture) -> {
+        if (subscriberCountFuture.join() == 0) {
           log.debug("Presence manager {} did not respond to ping", peerId);
+          prunePeer(peerId);
+        }
+      });
+    }
+  }
 
-          final String connectedClientsKey = getConnectedClientSetKey(peerId);
+  /**
+   * Clears all presences held by a peer that is no longer running. Presences are removed from the peer's set of
+   * connected clients in batches, and the presences in each batch are cleared in parallel (and so, potentially, across
+   * many nodes at once).
+   */
+  private void prunePeer(final String peerId) {
+    try (final Timer.Context ignored = prunePeerTimer.time()) {
+      final String connectedClientsKey = getConnectedClientSetKey(peerId);
 
-          String presenceKey;
+      Set<String> presenceKeys;
 
-          while ((presenceKey = presenceCluster.withCluster(connection -> connection.sync().spop(connectedClientsKey)))
-              != null) {
-            clearPresenceScript.execute(List.of(presenceKey), List.of(peerId));
-            pruneClientMeter.mark();
-          }
+      while (!(presenceKeys = presenceCluster.withCluster(
+          connection -> connection.sync().spop(connectedClientsKey, PRUNE_PEER_BATCH_SIZE))).isEmpty()) {
+
+        final List<String> batch = List.copyOf(presenceKeys);
 
-          presenceCluster.useCluster(connection -> {
-            connection.sync().del(connectedClientsKey);
-            connection.sync().srem(MANAGER_SET_KEY, peerId);
-          });
+        final List<CompletableFuture<Long>> ttlFutures = presenceCluster.withCluster(connection -> batch.stream()
+            .map(presenceKey -> connection.async().ttl(presenceKey).toCompletableFuture())
+            .toList());
+
+        final List<CompletableFuture<Object>> clearFutures = batch.stream()
+            .map(presenceKey -> clearPresenceScript.executeAsync(List.of(presenceKey), List.of(peerId)))
+            .toList();
+
+        CompletableFuture.allOf(clearFutures.toArray(new CompletableFuture[0])).join();
+
+        for (int i = 0; i < batch.size(); i++) {
+          final boolean cleared = clearFutures.get(i).join() != null;
+          final long ttl = ttlFutures.get(i).join();
+
+          // A presence we cleared was last renewed (PRESENCE_EXPIRATION_SECONDS - ttl) seconds ago, which is roughly
+          // how long the client has been wrongly marked as present
+          if (cleared && ttl > 0) {
+            prunedPresenceAgeHistogram.update(PRESENCE_EXPIRATION_SECONDS - ttl);
+          }
         }
+
+        pruneClientMeter.mark(batch.size());
       }
+
+      presenceCluster.useCluster(connection -> {
+        connection.sync().del(connectedClientsKey);
+        connection.sync().srem(MANAGER_SET_KEY, peerId);
+      });
     }
   }
 
@@ -8,11 +8,19 @@ import static com.codahale.metrics.MetricRegistry.name;
 import static org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
 
 import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.commons.lang3.StringUtils;
 import org.whispersystems.textsecuregcm.redis.RedisOperation;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.Device;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
+import org.whispersystems.textsecuregcm.util.Pair;
 
 /**
  * A MessageSender sends Signal messages to destination devices. Messages may be "normal" user-to-user messages,
@@ -43,6 +51,9 @@ public class MessageSender {
   private static final String SEALED_SENDER_TAG_NAME = "sealedSender";
   private static final String HAS_SPAM_REPORTING_TOKEN_TAG_NAME = "hasSpamReportingToken";
 
+  private static final String SEND_STAGE_TIMER_NAME = name(MessageSender.class, "sendMessageStage");
+  private static final String STAGE_TAG_NAME = "stage";
+
   public MessageSender(ClientPresenceManager clientPresenceManager,
       MessagesManager messagesManager,
       PushNotificationManager pushNotificationManager,
@@ -53,20 +64,20 @@ public class MessageSender {
     this.pushLatencyManager = pushLatencyManager;
   }
 
+  /**
+   * A message bound for a specific destination device.
+   *
+   * @param account the destination account
+   * @param device the destination device
+   * @param message the message to send
+   */
+  public record OutgoingMessage(Account account, Device device, Envelope message) {
+  }
+
   public void sendMessage(final Account account, final Device device, final Envelope message, final boolean online)
       throws NotPushRegisteredException {
 
-    final String channel;
-
-    if (device.getGcmId() != null) {
-      channel = "gcm";
-    } else if (device.getApnId() != null) {
-      channel = "apn";
-    } else if (device.getFetchesMessages()) {
-      channel = "websocket";
-    } else {
-      throw new AssertionError();
-    }
+    final String channel = getChannel(device);
 
     final boolean clientPresent;
 
@@ -85,18 +96,204 @@ public class MessageSender {
       clientPresent = clientPresenceManager.isPresent(account.getUuid(), device.getId());
 
       if (!clientPresent) {
-        try {
-          pushNotificationManager.sendNewMessageNotification(account, device.getId(), message.getUrgent());
-
-          final boolean useVoip = StringUtils.isNotBlank(device.getVoipApnId());
-          RedisOperation.unchecked(() -> pushLatencyManager.recordPushSent(account.getUuid(), device.getId(), useVoip));
-        } catch (final NotPushRegisteredException e) {
-          if (!device.getFetchesMessages()) {
-            throw e;
+        sendNewMessageNotification(account, device, message);
+      }
+    }
+
+    incrementSendCounter(channel, online, clientPresent, message);
+  }
+
+  /**
+   * Asynchronously sends a single message; see {@link #sendMessage(Account, Device, Envelope, boolean)}.
+   * <p>
+   * For non-ephemeral messages, the message is inserted and the destination device's presence is checked concurrently,
+   * and no notification is sent until the insertion has finished, so a notified device always finds the message in its
+   * queue. A device that was absent when checked is then notified without another presence check; at worst, a device
+   * that connected in the meantime receives a redundant notification. A device that was present is checked again after
+   * the insertion, preserving the conservative view of notifications: a device that disconnected before the message
+   * landed in its queue is still notified.
+   *
+   * @return a future that completes when the message has been sent, or fails with a {@link NotPushRegisteredException}
+   * if the destination device is neither registered for push notifications nor fetches messages
+   */
+  public CompletableFuture<Void> sendMessageAsync(final Account account, final Device device, final Envelope message,
+      final boolean online) {
+
+    final String channel = getChannel(device);
+
+    final CompletableFuture<Boolean> clientPresentFuture;
+
+    if (online) {
+      clientPresentFuture =
+          timeStage("checkPresence", clientPresenceManager.isPresentAsync(account.getUuid(), device.getId()))
+              .thenCompose(clientPresent -> clientPresent
+                  ? timeStage("insert", messagesManager.insertAsync(account.getUuid(), device.getId(),
+                      message.toBuilder().setEphemeral(true).build())).thenApply(ignored -> true)
+                  : CompletableFuture.completedFuture(false));
+    } else {
+      final CompletableFuture<Void> insertFuture =
+          timeStage("insert", messagesManager.insertAsync(account.getUuid(), device.getId(), message));
+
+      final CompletableFuture<Boolean> concurrentClientPresentFuture =
+          timeStage("checkPresence", clientPresenceManager.isPresentAsync(account.getUuid(), device.getId()));
+
+      clientPresentFuture = insertFuture.thenCombine(concurrentClientPresentFuture,
+              (ignored, presentDuringInsert) -> presentDuringInsert)
+          .thenCompose(presentDuringInsert -> presentDuringInsert
+              ? timeStage("confirmPresence", clientPresenceManager.isPresentAsync(account.getUuid(), device.getId()))
+              : CompletableFuture.completedFuture(false))
+          .thenApply(clientPresent -> {
+            if (!clientPresent) {
+              final Timer.Sample sample = Timer.start();
+
+              try {
+                sendNewMessageNotification(account, device, message);
+              } catch (final NotPushRegisteredException e) {
+                throw new CompletionException(e);
+              } finally {
+                sample.stop(Metrics.timer(SEND_STAGE_TIMER_NAME, STAGE_TAG_NAME, "notify"));
+              }
+            }
+
+            return clientPresent;
+          });
+    }
+
+    return clientPresentFuture.thenAccept(clientPresent ->
+        incrementSendCounter(channel, online, clientPresent, message));
+  }
+
+  private static <T> CompletableFuture<T> timeStage(final String stage, final CompletableFuture<T> future) {
+    final Timer.Sample sample = Timer.start();
+
+    return future.whenComplete((ignored, throwable) ->
+        sample.stop(Metrics.timer(SEND_STAGE_TIMER_NAME, STAGE_TAG_NAME, stage)));
+  }
+
+  /**
+   * Sends a batch of messages, which may be bound for many different destinations. Messages are inserted and presence
+   * is checked with pipelined batches of Redis operations rather than one blocking round trip per message, but
+   * otherwise follow the same rules as {@link #sendMessage(Account, Device, Envelope, boolean)}.
+   *
+   * @param messages the messages to send
+   * @param online whether the messages should only be delivered to destination devices that are currently present
+   *
+   * @return the messages that could not be delivered because their destination device is neither registered for push
+   * notifications nor fetches messages
+   */
+  public List<OutgoingMessage> sendMessages(final List<OutgoingMessage> messages, final boolean online) {
+    return sendMessagesAsync(messages, online).join();
+  }
+
+  /**
+   * Asynchronously sends a batch of messages; see {@link #sendMessages(List, boolean)}.
+   *
+   * @param messages the messages to send
+   * @param online whether the messages should only be delivered to destination devices that are currently present
+   *
+   * @return a future that yields the messages that could not be delivered because their destination device is neither
+   * registered for push notifications nor fetches messages
+   */
+  public CompletableFuture<List<OutgoingMessage>> sendMessagesAsync(final List<OutgoingMessage> messages,
+      final boolean online) {
+
+    final List<String> channels = messages.stream()
+        .map(outgoingMessage -> getChannel(outgoingMessage.device()))
+        .toList();
+
+    final CompletableFuture<List<Boolean>> clientsPresentFuture;
+    final CompletableFuture<List<OutgoingMessage>> notPushRegisteredFuture;
+
+    if (online) {
+      clientsPresentFuture = clientPresenceManager.isPresentAsync(getAccountAndDeviceIds(messages));
+
+      notPushRegisteredFuture = clientsPresentFuture.thenCompose(clientsPresent -> {
+        final List<MessagesManager.BatchInsertEntry> entries = new ArrayList<>();
+
+        for (int i = 0; i < messages.size(); i++) {
+          if (clientsPresent.get(i)) {
+            final OutgoingMessage outgoingMessage = messages.get(i);
+
+            entries.add(new MessagesManager.BatchInsertEntry(outgoingMessage.account().getUuid(),
+                outgoingMessage.device().getId(), outgoingMessage.message().toBuilder().setEphemeral(true).build()));
           }
         }
+
+        return messagesManager.insertBatch(entries);
+      }).thenApply(ignored -> Collections.emptyList());
+    } else {
+      // As with single messages, we check for client presence after inserting messages to take a conservative view of
+      // notifications.
+      clientsPresentFuture = messagesManager.insertBatch(messages.stream()
+              .map(outgoingMessage -> new MessagesManager.BatchInsertEntry(outgoingMessage.account().getUuid(),
+                  outgoingMessage.device().getId(), outgoingMessage.message()))
+              .toList())
+          .thenCompose(ignored -> clientPresenceManager.isPresentAsync(getAccountAndDeviceIds(messages)));
+
+      notPushRegisteredFuture = clientsPresentFuture.thenApply(clientsPresent -> {
+        final List<OutgoingMessage> notPushRegistered = new ArrayList<>();
+
+        for (int i = 0; i < messages.size(); i++) {
+          if (!clientsPresent.get(i)) {
+            final OutgoingMessage outgoingMessage = messages.get(i);
+
+            try {
+              sendNewMessageNotification(outgoingMessage.account(), outgoingMessage.device(),
+                  outgoingMessage.message());
+            } catch (final NotPushRegisteredException e) {
+              notPushRegistered.add(outgoingMessage);
+            }
+          }
+        }
+
+        return notPushRegistered;
+      });
+    }
+
+    return notPushRegisteredFuture.thenCombine(clientsPresentFuture, (notPushRegistered, clientsPresent) -> {
+      for (int i = 0; i < messages.size(); i++) {
+        incrementSendCounter(channels.get(i), online, clientsPresent.get(i), messages.get(i).message());
+      }
+
+      return notPushRegistered;
+    });
+  }
+
+  private static List<Pair<UUID, Long>> getAccountAndDeviceIds(final List<OutgoingMessage> messages) {
+    return messages.stream()
+        .map(outgoingMessage -> new Pair<>(outgoingMessage.account().getUuid(), outgoingMessage.device().getId()))
+        .toList();
+  }
+
+  private static String getChannel(final Device device) {
+    if (device.getGcmId() != null) {
+      return "gcm";
+    } else if (device.getApnId() != null) {
+      return "apn";
+    } else if (device.getFetchesMessages()) {
+      return "websocket";
+    } else {
+      throw new AssertionError();
+    }
+  }
+
+  private void sendNewMessageNotification(final Account account, final Device device, final Envelope message)
+      throws NotPushRegisteredException {
+
+    try {
+      pushNotificationManager.sendNewMessageNotification(account, device.getId(), message.getUrgent());
+
+      final boolean useVoip = StringUtils.isNotBlank(device.getVoipApnId());
+      RedisOperation.unchecked(() -> pushLatencyManager.recordPushSent(account.getUuid(), device.getId(), useVoip));
+    } catch (final NotPushRegisteredException e) {
+      if (!device.getFetchesMessages()) {
+        throw e;
       }
     }
+  }
+
+  private static void incrementSendCounter(final String channel, final boolean online, final boolean clientPresent,
+      final Envelope message) {
 
     Metrics.counter(SEND_COUNTER_NAME,
             CHANNEL_TAG_NAME, channel,
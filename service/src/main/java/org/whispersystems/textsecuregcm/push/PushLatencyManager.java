@@ -6,32 +6,32 @@
 package org.whispersystems.textsecuregcm.push;
 
 import com.codahale.metrics.MetricRegistry;
-import com.fasterxml.jackson.annotation.JsonCreator;
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.annotations.VisibleForTesting;
 import com.vdurmont.semver4j.Semver;
 import io.lettuce.core.SetArgs;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import javax.annotation.Nullable;
-import org.apache.commons.lang3.StringUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.metrics.UserAgentTagUtil;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
-import org.whispersystems.textsecuregcm.util.SystemMapper;
+import org.whispersystems.textsecuregcm.util.ua.ClientPlatform;
 import org.whispersystems.textsecuregcm.util.ua.UnrecognizedUserAgentException;
 import org.whispersystems.textsecuregcm.util.ua.UserAgent;
 import org.whispersystems.textsecuregcm.util.ua.UserAgentUtil;
@@ -42,52 +42,65 @@ import org.whispersystems.textsecuregcm.util.ua.UserAgentUtil;
  * <p/>
  * When the server sends a push notification to a device, the push latency manager creates a Redis key/value pair
  * mapping the current timestamp to the given device if such a mapping doesn't already exist. When a client connects and
- * clears its message queue, the push latency manager gets and clears the time of the initial push notification to that
- * device and records the time elapsed since the push notification timestamp as a latency observation.
+ * clears its message queue, the push latency manager atomically gets and clears the time of the initial push
+ * notification to that device and records the time elapsed since the push notification timestamp as a latency
+ * observation.
+ * <p/>
+ * Push records are stored in a compact, fixed-width binary form: an eight-byte timestamp (in milliseconds since the
+ * epoch) followed by a single byte identifying the type of push notification.
  */
 public class PushLatencyManager {
 
   private final FaultTolerantRedisCluster redisCluster;
-  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
+  private final Supplier<Map<ClientPlatform, Set<Semver>>> instrumentedVersions;
 
   private final Clock clock;
 
+  // Building a timer from a name and a list of tags means looking it up in the meter registry every time; there are
+  // only a handful of distinct tag combinations, so we keep our own map of timers instead
+  private final Map<LatencyTimerKey, Timer> latencyTimers = new ConcurrentHashMap<>();
+
   private static final String TIMER_NAME = MetricRegistry.name(PushLatencyManager.class, "latency");
   private static final int TTL = (int) Duration.ofDays(1).toSeconds();
 
-  private static final Logger log = LoggerFactory.getLogger(PushLatencyManager.class);
-
   @VisibleForTesting
-  enum PushType {
-    STANDARD,
-    VOIP
-  }
+  static final int PUSH_RECORD_LENGTH = Long.BYTES + 1;
 
   @VisibleForTesting
-  static class PushRecord {
-    private final Instant timestamp;
-
-    @Nullable
-    private final PushType pushType;
+  enum PushType {
+    // Codes are stored in Redis, and so must not change or be reused
+    STANDARD((byte) 0),
+    VOIP((byte) 1);
 
-    @JsonCreator
-    PushRecord(@JsonProperty("timestamp") final Instant timestamp,
-        @JsonProperty("pushType") @Nullable final PushType pushType) {
+    private final byte code;
 
-      this.timestamp = timestamp;
-      this.pushType = pushType;
+    PushType(final byte code) {
+      this.code = code;
     }
 
-    public Instant getTimestamp() {
-      return timestamp;
+    byte getCode() {
+      return code;
     }
 
     @Nullable
-    public PushType getPushType() {
-      return pushType;
+    static PushType fromCode(final byte code) {
+      for (final PushType pushType : values()) {
+        if (pushType.code == code) {
+          return pushType;
+        }
+      }
+
+      return null;
     }
   }
 
+  @VisibleForTesting
+  record PushRecord(Instant timestamp, PushType pushType) {
+  }
+
+  private record LatencyTimerKey(Tag platformTag, PushType pushType, @Nullable String clientVersion) {
+  }
+
   public PushLatencyManager(final FaultTolerantRedisCluster redisCluster,
       final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
 
@@ -100,85 +113,96 @@ public class PushLatencyManager {
       final Clock clock) {
 
     this.redisCluster = redisCluster;
-    this.dynamicConfigurationManager = dynamicConfigurationManager;
+    this.instrumentedVersions = dynamicConfigurationManager.createView(configuration ->
+        configuration.getPushLatencyConfiguration().getInstrumentedVersions());
     this.clock = clock;
   }
 
   void recordPushSent(final UUID accountUuid, final long deviceId, final boolean isVoip) {
-    try {
-      final String recordJson = SystemMapper.jsonMapper().writeValueAsString(
-          new PushRecord(Instant.now(clock), isVoip ? PushType.VOIP : PushType.STANDARD));
-
-      redisCluster.useCluster(connection ->
-          connection.async().set(getFirstUnacknowledgedPushKey(accountUuid, deviceId),
-              recordJson,
-              SetArgs.Builder.nx().ex(TTL)));
-    } catch (final JsonProcessingException e) {
-      // This should never happen
-      log.error("Failed to write push latency record JSON", e);
-    }
+    final byte[] pushRecord =
+        serializePushRecord(new PushRecord(Instant.now(clock), isVoip ? PushType.VOIP : PushType.STANDARD));
+
+    redisCluster.useBinaryCluster(connection ->
+        connection.async().set(getFirstUnacknowledgedPushKey(accountUuid, deviceId),
+            pushRecord,
+            SetArgs.Builder.nx().ex(TTL)));
   }
 
   void recordQueueRead(final UUID accountUuid, final long deviceId, final String userAgentString) {
     takePushRecord(accountUuid, deviceId).thenAccept(pushRecord -> {
       if (pushRecord != null) {
-        final Duration latency = Duration.between(pushRecord.getTimestamp(), Instant.now());
-
-        final List<Tag> tags = new ArrayList<>(2);
+        final Duration latency = Duration.between(pushRecord.timestamp(), Instant.now());
 
-        tags.add(UserAgentTagUtil.getPlatformTag(userAgentString));
-
-        if (pushRecord.getPushType() != null) {
-          tags.add(Tag.of("pushType", pushRecord.getPushType().name().toLowerCase()));
-        }
+        @Nullable String clientVersion = null;
 
         try {
           final UserAgent userAgent = UserAgentUtil.parseUserAgentString(userAgentString);
 
-          final Set<Semver> instrumentedVersions =
-              dynamicConfigurationManager.getConfiguration().getPushLatencyConfiguration().getInstrumentedVersions()
-                  .getOrDefault(userAgent.getPlatform(), Collections.emptySet());
+          final Set<Semver> instrumentedVersionsForPlatform =
+              instrumentedVersions.get().getOrDefault(userAgent.getPlatform(), Collections.emptySet());
 
-          if (instrumentedVersions.contains(userAgent.getVersion())) {
-            tags.add(Tag.of("clientVersion", userAgent.getVersion().toString()));
+          if (instrumentedVersionsForPlatform.contains(userAgent.getVersion())) {
+            clientVersion = userAgent.getVersion().toString();
           }
         } catch (UnrecognizedUserAgentException ignored) {
         }
 
-        Metrics.timer(TIMER_NAME, tags).record(latency);
+        final LatencyTimerKey timerKey =
+            new LatencyTimerKey(UserAgentTagUtil.getPlatformTag(userAgentString), pushRecord.pushType(), clientVersion);
+
+        latencyTimers.computeIfAbsent(timerKey, PushLatencyManager::buildLatencyTimer).record(latency);
       }
     });
   }
 
+  private static Timer buildLatencyTimer(final LatencyTimerKey key) {
+    final List<Tag> tags = new ArrayList<>(3);
+
+    tags.add(key.platformTag());
+    tags.add(Tag.of("pushType", key.pushType().name().toLowerCase()));
+
+    if (key.clientVersion() != null) {
+      tags.add(Tag.of("clientVersion", key.clientVersion()));
+    }
+
+    return Timer.builder(TIMER_NAME)
+        .tags(tags)
+        .publishPercentiles(0.5, 0.75, 0.95, 0.99, 0.999)
+        .distributionStatisticExpiry(Duration.ofHours(2))
+        .register(Metrics.globalRegistry);
+  }
+
   @VisibleForTesting
   CompletableFuture<PushRecord> takePushRecord(final UUID accountUuid, final long deviceId) {
-    final String key = getFirstUnacknowledgedPushKey(accountUuid, deviceId);
-
-    return redisCluster.withCluster(connection -> {
-      final CompletableFuture<PushRecord> getFuture = connection.async().get(key).toCompletableFuture()
-          .thenApply(recordJson -> {
-            if (StringUtils.isNotEmpty(recordJson)) {
-              try {
-                return SystemMapper.jsonMapper().readValue(recordJson, PushRecord.class);
-              } catch (JsonProcessingException e) {
-                return null;
-              }
-            } else {
-              return null;
-            }
-          });
-
-      getFuture.whenComplete((record, cause) -> {
-        if (cause == null) {
-          connection.async().del(key);
-        }
-      });
+    return redisCluster.withBinaryCluster(connection ->
+            connection.async().getdel(getFirstUnacknowledgedPushKey(accountUuid, deviceId)))
+        .thenApply(PushLatencyManager::parsePushRecord)
+        .toCompletableFuture();
+  }
 
-      return getFuture;
-    });
+  @VisibleForTesting
+  static byte[] serializePushRecord(final PushRecord pushRecord) {
+    return ByteBuffer.allocate(PUSH_RECORD_LENGTH)
+        .putLong(pushRecord.timestamp().toEpochMilli())
+        .put(pushRecord.pushType().getCode())
+        .array();
+  }
+
+  @Nullable
+  @VisibleForTesting
+  static PushRecord parsePushRecord(@Nullable final byte[] serializedPushRecord) {
+    if (serializedPushRecord == null || serializedPushRecord.length != PUSH_RECORD_LENGTH) {
+      return null;
+    }
+
+    final ByteBuffer buffer = ByteBuffer.wrap(serializedPushRecord);
+    final Instant timestamp = Instant.ofEpochMilli(buffer.getLong());
+    @Nullable final PushType pushType = PushType.fromCode(buffer.get());
+
+    return pushType != null ? new PushRecord(timestamp, pushType) : null;
   }
 
-  private static String getFirstUnacknowledgedPushKey(final UUID accountUuid, final long deviceId) {
-    return "push_latency::v2::" + accountUuid.toString() + "::" + deviceId;
+  private static byte[] getFirstUnacknowledgedPushKey(final UUID accountUuid, final long deviceId) {
+    return ("push_latency::v3::" + accountUuid.toString() + "::" + deviceId).getBytes(StandardCharsets.UTF_8);
   }
 }
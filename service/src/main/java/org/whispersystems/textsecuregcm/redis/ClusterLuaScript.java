@@ -20,6 +20,7 @@ import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.util.Pair;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -97,6 +98,24 @@ public class ClusterLuaScript {
         executeAsync(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
   }
 
+  /**
+   * Executes this script once for each of the given lists of keys and arguments. All invocations are issued before
+   * waiting for any of them to complete; because the cluster client routes each invocation to the node that owns its
+   * keys over that node's shared connection, invocations bound for the same node are pipelined rather than paying a
+   * round trip apiece.
+   *
+   * @param keysAndArgs a list of pairs of keys and arguments, one per invocation
+   *
+   * @return a list of futures that yield the result of each invocation, in the same order as {@code keysAndArgs}
+   */
+  public List<CompletableFuture<Object>> executeBinaryBatchAsync(final List<Pair<List<byte[]>, List<byte[]>>> keysAndArgs) {
+    return redisCluster.withBinaryCluster(connection -> keysAndArgs.stream()
+        .map(keysAndArg -> executeAsync(connection,
+            keysAndArg.first().toArray(BYTE_ARRAY_ARRAY),
+            keysAndArg.second().toArray(BYTE_ARRAY_ARRAY)))
+        .toList());
+  }
+
   public Flux<Object> executeBinaryReactive(final List<byte[]> keys, final List<byte[]> args) {
     return redisCluster.withBinaryCluster(connection ->
         executeReactive(connection, keys.toArray(BYTE_ARRAY_ARRAY), args.toArray(BYTE_ARRAY_ARRAY)));
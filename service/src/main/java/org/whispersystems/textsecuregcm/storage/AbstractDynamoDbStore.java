@@ -12,16 +12,21 @@ import static io.micrometer.core.instrument.Metrics.timer;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Timer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
 import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
 import javax.annotation.Nonnull;
@@ -34,6 +39,8 @@ public abstract class AbstractDynamoDbStore {
 
   public static final int RESULT_SET_CHUNK_SIZE = 100;
 
+  public static final int DYNAMO_DB_MAX_BATCH_GET_SIZE = 100;  // This limit comes from Amazon Dynamo DB itself. It will reject batch gets larger than this.
+
   private final Logger logger = LoggerFactory.getLogger(getClass());
 
   private final Timer batchWriteItemsFirstPass = timer(name(getClass(), "batchWriteItems"), "firstAttempt", "true");
@@ -42,6 +49,10 @@ public abstract class AbstractDynamoDbStore {
 
   private final Counter batchWriteItemsUnprocessed = counter(name(getClass(), "batchWriteItemsUnprocessed"));
 
+  private final Timer batchGetItemsFirstPass = timer(name(getClass(), "batchGetItems"), "firstAttempt", "true");
+
+  private final Timer batchGetItemsRetryPass = timer(name(getClass(), "batchGetItems"), "firstAttempt", "false");
+
   private final DynamoDbClient dynamoDbClient;
 
 
@@ -70,6 +81,91 @@ public abstract class AbstractDynamoDbStore {
     }
   }
 
+  /**
+   * Asynchronously applies the given batch writes, retrying unprocessed items. Unlike
+   * {@link #executeTableWriteItemsUntilComplete(Map)}, the returned future completes exceptionally if unprocessed items
+   * remain after the maximum number of attempts so that callers can decide whether to retry.
+   */
+  protected CompletableFuture<Void> executeTableWriteItemsUntilCompleteAsync(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final Map<String, List<WriteRequest>> items) {
+
+    return executeTableWriteItemsUntilCompleteAsync(dynamoDbAsyncClient, items, 0);
+  }
+
+  private CompletableFuture<Void> executeTableWriteItemsUntilCompleteAsync(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final Map<String, List<WriteRequest>> items, final int attemptCount) {
+
+    final Timer timer = attemptCount == 0 ? batchWriteItemsFirstPass : batchWriteItemsRetryPass;
+    final Timer.Sample sample = Timer.start();
+
+    return dynamoDbAsyncClient.batchWriteItem(BatchWriteItemRequest.builder().requestItems(items).build())
+        .whenComplete((ignored, throwable) -> sample.stop(timer))
+        .thenCompose(response -> {
+          if (response.unprocessedItems().isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          if (attemptCount >= MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE) {
+            final int totalItems = response.unprocessedItems().values().stream().mapToInt(List::size).sum();
+            batchWriteItemsUnprocessed.increment(totalItems);
+
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                "Attempt count reached max (" + MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE + ") before applying all batch writes; "
+                    + totalItems + " unprocessed items remain"));
+          }
+
+          return executeTableWriteItemsUntilCompleteAsync(dynamoDbAsyncClient, response.unprocessedItems(),
+              attemptCount + 1);
+        });
+  }
+
+  /**
+   * Asynchronously fetches all of the given keys from a single table, retrying unprocessed keys. Callers are responsible
+   * for keeping the number of keys within {@link #DYNAMO_DB_MAX_BATCH_GET_SIZE}. The returned future completes
+   * exceptionally if unprocessed keys remain after the maximum number of attempts.
+   *
+   * @return a future that yields the items that were found, in no particular order
+   */
+  protected CompletableFuture<List<Map<String, AttributeValue>>> executeTableGetItemsUntilCompleteAsync(
+      final DynamoDbAsyncClient dynamoDbAsyncClient, final String tableName, final KeysAndAttributes keysAndAttributes) {
+
+    final List<Map<String, AttributeValue>> items = new ArrayList<>(keysAndAttributes.keys().size());
+
+    return executeTableGetItemsUntilCompleteAsync(dynamoDbAsyncClient, tableName, keysAndAttributes, items, 0)
+        .thenApply(ignored -> items);
+  }
+
+  private CompletableFuture<Void> executeTableGetItemsUntilCompleteAsync(final DynamoDbAsyncClient dynamoDbAsyncClient,
+      final String tableName, final KeysAndAttributes keysAndAttributes,
+      final List<Map<String, AttributeValue>> items, final int attemptCount) {
+
+    final Timer timer = attemptCount == 0 ? batchGetItemsFirstPass : batchGetItemsRetryPass;
+    final Timer.Sample sample = Timer.start();
+
+    return dynamoDbAsyncClient.batchGetItem(BatchGetItemRequest.builder()
+            .requestItems(Map.of(tableName, keysAndAttributes))
+            .build())
+        .whenComplete((ignored, throwable) -> sample.stop(timer))
+        .thenCompose(response -> {
+          items.addAll(response.responses().getOrDefault(tableName, Collections.emptyList()));
+
+          final KeysAndAttributes unprocessedKeys = response.unprocessedKeys().get(tableName);
+
+          if (unprocessedKeys == null || unprocessedKeys.keys().isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+          }
+
+          if (attemptCount >= MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE) {
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                "Attempt count reached max (" + MAX_ATTEMPTS_TO_SAVE_BATCH_WRITE + ") before completing batch get; "
+                    + unprocessedKeys.keys().size() + " unprocessed keys remain"));
+          }
+
+          return executeTableGetItemsUntilCompleteAsync(dynamoDbAsyncClient, tableName, unprocessedKeys, items,
+              attemptCount + 1);
+        });
+  }
+
   @Nonnull
   protected List<Map<String, AttributeValue>> scan(final ScanRequest scanRequest, final int max) {
     return db().scanPaginator(scanRequest)
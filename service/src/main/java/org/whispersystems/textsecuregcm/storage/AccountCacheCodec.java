@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import org.whispersystems.textsecuregcm.util.SystemMapper;
+
+/**
+ * Encodes and decodes accounts stored in the account cache. Accounts may be encoded either as JSON (the legacy format)
+ * or in a compact, versioned binary format. Decoding accepts either format so the cache can move from one encoding to
+ * the other without a flush; entries written in the legacy format are replaced as they expire or are updated.
+ * <p>
+ * A compact entry is a single format version byte followed by the account encoded as Smile, which is a binary form of
+ * the JSON data model. It uses the same Jackson mappings as the JSON format, so it stays in sync with changes to
+ * {@link Account} and {@link Device}. A legacy JSON entry always starts with {@code '{'}, so no compact format version
+ * may have that value.
+ * <p>
+ * Accounts may also be inlined into secondary-key entries (i.e. entries keyed by phone number, phone number identifier,
+ * or username hash) so that lookups by secondary key need only a single read. An inline entry is a marker byte, followed
+ * by the account identifier as 16 big-endian bytes, followed by the account encoded in any of the formats above. Legacy
+ * secondary-key entries contain only the account identifier as a string, which never starts with the marker byte.
+ */
+final class AccountCacheCodec {
+
+  enum Format {
+    JSON,
+    COMPACT_V1
+  }
+
+  private static final byte COMPACT_V1_VERSION = 0x01;
+
+  private static final byte JSON_OBJECT_START = '{';
+
+  private static final byte INLINE_ENTRY_MARKER = 0x02;
+  private static final int INLINE_ENTRY_HEADER_LENGTH = 1 + 16;
+
+  private static final ObjectMapper JSON_MAPPER = SystemMapper.jsonMapper();
+  private static final ObjectMapper SMILE_MAPPER = SystemMapper.smileMapper();
+
+  private AccountCacheCodec() {
+  }
+
+  static byte[] encode(final Account account, final Format format) throws JsonProcessingException {
+    return switch (format) {
+      case JSON -> JSON_MAPPER.writeValueAsBytes(account);
+      case COMPACT_V1 -> {
+        final byte[] smile = SMILE_MAPPER.writeValueAsBytes(account);
+        final byte[] encoded = new byte[smile.length + 1];
+
+        encoded[0] = COMPACT_V1_VERSION;
+        System.arraycopy(smile, 0, encoded, 1, smile.length);
+
+        yield encoded;
+      }
+    };
+  }
+
+  static Format getFormat(final byte[] encoded) throws IOException {
+    return getFormat(encoded, 0);
+  }
+
+  private static Format getFormat(final byte[] encoded, final int offset) throws IOException {
+    if (encoded.length <= offset) {
+      throw new IOException("Empty cached account");
+    }
+
+    return switch (encoded[offset]) {
+      case JSON_OBJECT_START -> Format.JSON;
+      case COMPACT_V1_VERSION -> Format.COMPACT_V1;
+      default -> throw new IOException("Unrecognized cached account format: " + encoded[offset]);
+    };
+  }
+
+  /**
+   * Decodes an account in any supported format. Note that the account identifier is not part of the encoded form and
+   * must be set by the caller.
+   */
+  static Account decode(final byte[] encoded) throws IOException {
+    return decode(encoded, 0);
+  }
+
+  private static Account decode(final byte[] encoded, final int offset) throws IOException {
+    return switch (getFormat(encoded, offset)) {
+      case JSON -> JSON_MAPPER.readValue(encoded, offset, encoded.length - offset, Account.class);
+      case COMPACT_V1 -> SMILE_MAPPER.readValue(encoded, offset + 1, encoded.length - offset - 1, Account.class);
+    };
+  }
+
+  static byte[] encodeInline(final Account account, final Format format) throws JsonProcessingException {
+    final byte[] encodedAccount = encode(account, format);
+
+    return ByteBuffer.allocate(INLINE_ENTRY_HEADER_LENGTH + encodedAccount.length)
+        .put(INLINE_ENTRY_MARKER)
+        .putLong(account.getUuid().getMostSignificantBits())
+        .putLong(account.getUuid().getLeastSignificantBits())
+        .put(encodedAccount)
+        .array();
+  }
+
+  static boolean isInline(final byte[] encoded) {
+    return encoded.length > 0 && encoded[0] == INLINE_ENTRY_MARKER;
+  }
+
+  static Format getInlineFormat(final byte[] encoded) throws IOException {
+    return getFormat(encoded, INLINE_ENTRY_HEADER_LENGTH);
+  }
+
+  /**
+   * Decodes an account from an inline secondary-key entry. Unlike {@link #decode(byte[])}, the returned account's
+   * identifier is set from the entry.
+   */
+  static Account decodeInline(final byte[] encoded) throws IOException {
+    if (!isInline(encoded) || encoded.length <= INLINE_ENTRY_HEADER_LENGTH) {
+      throw new IOException("Not an inline account entry");
+    }
+
+    final ByteBuffer buffer = ByteBuffer.wrap(encoded, 1, 16);
+    final Account account = decode(encoded, INLINE_ENTRY_HEADER_LENGTH);
+    account.setUuid(new UUID(buffer.getLong(), buffer.getLong()));
+
+    return account;
+  }
+}
@@ -9,7 +9,9 @@ import io.lettuce.core.SetArgs;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import org.whispersystems.textsecuregcm.redis.ClusterLuaScript;
 import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
 
@@ -22,10 +24,20 @@ public class AccountDatabaseCrawlerCache {
   private static final String ACTIVE_WORKER_KEY = "account_database_crawler_cache_active_worker";
   private static final String LAST_UUID_DYNAMO_KEY = "account_database_crawler_cache_last_uuid_dynamo";
 
+  private static final String SEGMENT_WORKER_KEY = "account_database_crawler_cache_segment_worker";
+  private static final String SEGMENT_LAST_UUID_KEY = "account_database_crawler_cache_segment_last_uuid";
+  private static final String SEGMENTED_CRAWL_KEY = "account_database_crawler_cache_segmented_crawl";
+
   private static final long LAST_NUMBER_TTL_MS = 86400_000L;
 
+  private static final String CRAWL_STARTING_PREFIX = "starting::";
+  private static final String CRAWL_STARTED = "started";
+
   private final FaultTolerantRedisCluster cacheCluster;
   private final ClusterLuaScript unlockClusterScript;
+  private final ClusterLuaScript finishSegmentScript;
+  private final ClusterLuaScript renewLockScript;
+  private final ClusterLuaScript finishCrawlStartScript;
 
   private final String prefix;
 
@@ -33,6 +45,12 @@ public class AccountDatabaseCrawlerCache {
     this.cacheCluster = cacheCluster;
     this.unlockClusterScript = ClusterLuaScript.fromResource(cacheCluster, "lua/account_database_crawler/unlock.lua",
         ScriptOutputType.INTEGER);
+    this.finishSegmentScript = ClusterLuaScript.fromResource(cacheCluster,
+        "lua/account_database_crawler/finish_segment.lua", ScriptOutputType.INTEGER);
+    this.renewLockScript = ClusterLuaScript.fromResource(cacheCluster, "lua/account_database_crawler/renew_lock.lua",
+        ScriptOutputType.INTEGER);
+    this.finishCrawlStartScript = ClusterLuaScript.fromResource(cacheCluster,
+        "lua/account_database_crawler/finish_crawl_start.lua", ScriptOutputType.INTEGER);
 
     this.prefix = prefix + "::";
   }
@@ -67,6 +85,107 @@ public class AccountDatabaseCrawlerCache {
     }
   }
 
+  public boolean claimSegment(final int segment, final int totalSegments, final String workerId, final long ttlMs) {
+    return "OK".equals(cacheCluster.withCluster(connection -> connection.sync()
+        .set(getSegmentKey(SEGMENT_WORKER_KEY, segment, totalSegments), workerId, SetArgs.Builder.nx().px(ttlMs))));
+  }
+
+  /**
+   * Extends a worker's claim on a segment.
+   *
+   * @return {@code true} if the worker still held its claim and the claim was extended or {@code false} if the claim
+   * had expired or passed to another worker
+   */
+  public boolean renewSegmentClaim(final int segment, final int totalSegments, final String workerId,
+      final long ttlMs) {
+
+    return (long) renewLockScript.execute(List.of(getSegmentKey(SEGMENT_WORKER_KEY, segment, totalSegments)),
+        List.of(workerId, String.valueOf(ttlMs))) == 1;
+  }
+
+  public void releaseSegment(final int segment, final int totalSegments, final String workerId) {
+    unlockClusterScript.execute(List.of(getSegmentKey(SEGMENT_WORKER_KEY, segment, totalSegments)), List.of(workerId));
+  }
+
+  public Optional<UUID> getLastUuid(final int segment, final int totalSegments) {
+    final String lastUuidString = cacheCluster.withCluster(
+        connection -> connection.sync().get(getSegmentKey(SEGMENT_LAST_UUID_KEY, segment, totalSegments)));
+
+    return Optional.ofNullable(lastUuidString).map(UUID::fromString);
+  }
+
+  public void setLastUuid(final int segment, final int totalSegments, final Optional<UUID> lastUuid) {
+    final String key = getSegmentKey(SEGMENT_LAST_UUID_KEY, segment, totalSegments);
+
+    if (lastUuid.isPresent()) {
+      cacheCluster.useCluster(
+          connection -> connection.sync().psetex(key, LAST_NUMBER_TTL_MS, lastUuid.get().toString()));
+    } else {
+      cacheCluster.useCluster(connection -> connection.sync().del(key));
+    }
+  }
+
+  /**
+   * Tries to begin starting a new segmented crawl. A crawl starts in two steps: a single worker wins the right to start
+   * the crawl, notifies listeners, and then calls {@link #finishSegmentedCrawlStart(int, String)}. Until then, other
+   * workers should not crawl any segments. If the starting worker doesn't finish within the given TTL, another worker
+   * may begin starting the crawl.
+   *
+   * @return {@code true} if the given worker should start a new crawl or {@code false} if a crawl is already starting
+   * or in progress
+   */
+  public boolean beginSegmentedCrawlStart(final int totalSegments, final String workerId, final long ttlMs) {
+    return "OK".equals(cacheCluster.withCluster(connection -> connection.sync()
+        .set(getSegmentedCrawlKey(totalSegments, "started"), CRAWL_STARTING_PREFIX + workerId,
+            SetArgs.Builder.nx().px(ttlMs))));
+  }
+
+  /**
+   * Marks a segmented crawl as started, allowing all workers to crawl segments.
+   *
+   * @return {@code true} if the crawl was marked as started or {@code false} if the given worker's right to start the
+   * crawl had already expired
+   */
+  public boolean finishSegmentedCrawlStart(final int totalSegments, final String workerId) {
+    return (long) finishCrawlStartScript.execute(List.of(getSegmentedCrawlKey(totalSegments, "started")),
+        List.of(CRAWL_STARTING_PREFIX + workerId, CRAWL_STARTED)) == 1;
+  }
+
+  public boolean isSegmentedCrawlStarted(final int totalSegments) {
+    return CRAWL_STARTED.equals(cacheCluster.withCluster(connection -> connection.sync()
+        .get(getSegmentedCrawlKey(totalSegments, "started"))));
+  }
+
+  public Set<Integer> getFinishedSegments(final int totalSegments) {
+    return cacheCluster.withCluster(connection -> connection.sync()
+            .smembers(getSegmentedCrawlKey(totalSegments, "finished_segments")))
+        .stream()
+        .map(Integer::parseInt)
+        .collect(Collectors.toSet());
+  }
+
+  /**
+   * Marks a segment as finished for the current crawl. When the last segment finishes, the crawl as a whole finishes
+   * and the next claimed segment will start a new crawl.
+   *
+   * @return {@code true} if all segments have now finished or {@code false} otherwise
+   */
+  public boolean finishSegment(final int segment, final int totalSegments) {
+    return (long) finishSegmentScript.execute(
+        List.of(getSegmentedCrawlKey(totalSegments, "finished_segments"),
+            getSegmentedCrawlKey(totalSegments, "started")),
+        List.of(String.valueOf(segment), String.valueOf(totalSegments))) == 1;
+  }
+
+  private String getSegmentKey(final String key, final int segment, final int totalSegments) {
+    return getPrefixedKey(key + "::" + totalSegments + "::" + segment);
+  }
+
+  // The finished-segment set and crawl-started flag are updated together by a script, and so must share a hash slot
+  private String getSegmentedCrawlKey(final int totalSegments, final String suffix) {
+    return "{" + getPrefixedKey(SEGMENTED_CRAWL_KEY + "::" + totalSegments) + "}::" + suffix;
+  }
+
   private String getPrefixedKey(final String key) {
     return prefix + key;
   }
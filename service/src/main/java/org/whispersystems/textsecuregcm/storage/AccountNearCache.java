@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.annotations.VisibleForTesting;
+import io.dropwizard.lifecycle.Managed;
+import io.lettuce.core.cluster.SlotHash;
+import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
+import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantPubSubConnection;
+import org.whispersystems.textsecuregcm.redis.FaultTolerantRedisCluster;
+
+/**
+ * An account near cache is a small, short-lived, in-process cache of accounts that sits in front of the shared Redis
+ * account cache. Changes to an account are announced to every instance via a pub/sub channel on the account cache
+ * cluster, and each instance discards its local copy of the changed account when it receives an announcement.
+ * <p>
+ * Accounts are mutable and are marked stale when updated, so the near cache holds accounts in their encoded form and
+ * returns a freshly-decoded copy for every hit; callers never share an {@code Account} instance.
+ * <p>
+ * Changes are announced only after they've been persisted, and each announcement carries the account's new version.
+ * Receiving an announcement leaves behind a marker that rejects older versions of the account until the marker
+ * expires, so a stale copy read by some other request while the change was in flight can't be cached afterward.
+ * <p>
+ * Invalidation is best-effort. A missed announcement (for example, because of a pub/sub disconnection) leaves a stale
+ * account in the near cache until it expires, and so entries are only held for a short, configurable time.
+ */
+public class AccountNearCache extends RedisClusterPubSubAdapter<String, String> implements Managed {
+
+  private final FaultTolerantRedisCluster cacheCluster;
+  private final FaultTolerantPubSubConnection<String, String> pubSubConnection;
+  private final boolean enabled;
+
+  private final Cache<UUID, CacheEntry> entriesByUuid;
+
+  @VisibleForTesting
+  static final String INVALIDATION_CHANNEL = "account_near_cache::invalidate";
+
+  private static final char INVALIDATION_VERSION_SEPARATOR = ':';
+
+  private static final Counter INVALIDATION_RECEIVED_COUNTER =
+      Metrics.counter(name(AccountNearCache.class, "invalidationReceived"));
+
+  private static final Counter INVALIDATION_PUBLISH_FAILED_COUNTER =
+      Metrics.counter(name(AccountNearCache.class, "invalidationPublishFailed"));
+
+  private static final Logger logger = LoggerFactory.getLogger(AccountNearCache.class);
+
+  /**
+   * A near cache entry is either an encoded account or, if {@code encodedAccount} is {@code null}, a marker left by an
+   * invalidation; in either case, accounts with versions older than {@code version} are not cached.
+   */
+  private record CacheEntry(@Nullable byte[] encodedAccount, int version) {
+  }
+
+  public AccountNearCache(final FaultTolerantRedisCluster cacheCluster,
+      final AccountNearCacheConfiguration configuration) {
+
+    this.cacheCluster = cacheCluster;
+    this.pubSubConnection = cacheCluster.createPubSubConnection();
+    this.enabled = configuration.isEnabled();
+
+    this.entriesByUuid = Caffeine.newBuilder()
+        .maximumSize(configuration.getMaximumSize())
+        .expireAfterWrite(configuration.getExpireAfterWrite())
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(Metrics.globalRegistry, entriesByUuid, name(getClass(), "cache"));
+  }
+
+  @Override
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+
+    pubSubConnection.usePubSubConnection(connection -> connection.addListener(this));
+    subscribeToInvalidationChannel();
+
+    pubSubConnection.subscribeToClusterTopologyChangedEvents(this::subscribeToInvalidationChannel);
+  }
+
+  @Override
+  public void stop() {
+    if (!enabled) {
+      return;
+    }
+
+    pubSubConnection.usePubSubConnection(connection -> {
+      connection.removeListener(this);
+      connection.sync().upstream().commands().unsubscribe(INVALIDATION_CHANNEL);
+    });
+
+    entriesByUuid.invalidateAll();
+  }
+
+  private void subscribeToInvalidationChannel() {
+    final int slot = SlotHash.getSlot(INVALIDATION_CHANNEL);
+
+    // Published messages are propagated to every node in the cluster, so we only need to listen to one of them
+    pubSubConnection.usePubSubConnection(connection ->
+        connection.sync().nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.hasSlot(slot))
+            .commands()
+            .subscribe(INVALIDATION_CHANNEL));
+  }
+
+  /**
+   * Returns a copy of the account with the given identifier if it is present in this instance's near cache.
+   */
+  public Optional<Account> get(final UUID uuid) {
+    if (!enabled) {
+      return Optional.empty();
+    }
+
+    final CacheEntry entry = entriesByUuid.getIfPresent(uuid);
+
+    if (entry == null || entry.encodedAccount() == null) {
+      return Optional.empty();
+    }
+
+    try {
+      final Account account = AccountCacheCodec.decode(entry.encodedAccount());
+      account.setUuid(uuid);
+
+      return Optional.of(account);
+    } catch (final IOException e) {
+      logger.warn("Failed to decode account from near cache", e);
+      entriesByUuid.invalidate(uuid);
+
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Caches a copy of the given account unless a newer version of the account has been cached or announced.
+   */
+  public void put(final Account account) {
+    if (!enabled) {
+      return;
+    }
+
+    final byte[] encodedAccount;
+
+    try {
+      encodedAccount = AccountCacheCodec.encode(account, AccountCacheCodec.Format.COMPACT_V1);
+    } catch (final JsonProcessingException e) {
+      logger.warn("Failed to encode account for near cache", e);
+      return;
+    }
+
+    entriesByUuid.asMap().compute(account.getUuid(), (ignored, existingEntry) ->
+        existingEntry == null || account.getVersion() >= existingEntry.version()
+            ? new CacheEntry(encodedAccount, account.getVersion())
+            : existingEntry);
+  }
+
+  /**
+   * Discards the account with the given identifier from this instance's near cache and announces the change to all
+   * other instances. Must be called only after the change has been persisted. Announcements are sent even if the near
+   * cache is disabled on this instance so that instances that do not serve traffic (e.g. command-line tools) still
+   * invalidate the near caches of instances that do.
+   *
+   * @param uuid the identifier of the changed account
+   * @param version the version of the account as persisted; older versions of the account will not be cached until
+   * the announcement expires
+   */
+  public void invalidate(final UUID uuid, final int version) {
+    if (enabled) {
+      invalidateLocally(uuid, version);
+    }
+
+    cacheCluster.withCluster(connection ->
+            connection.async().publish(INVALIDATION_CHANNEL, uuid + INVALIDATION_VERSION_SEPARATOR + version))
+        .whenComplete((ignored, throwable) -> {
+          if (throwable != null) {
+            INVALIDATION_PUBLISH_FAILED_COUNTER.increment();
+            logger.warn("Failed to publish near cache invalidation for {}", uuid, throwable);
+          }
+        });
+  }
+
+  @Override
+  public void message(final RedisClusterNode node, final String channel, final String message) {
+    if (!INVALIDATION_CHANNEL.equals(channel)) {
+      return;
+    }
+
+    INVALIDATION_RECEIVED_COUNTER.increment();
+
+    final int separatorIndex = message.indexOf(INVALIDATION_VERSION_SEPARATOR);
+
+    try {
+      invalidateLocally(UUID.fromString(message.substring(0, separatorIndex)),
+          Integer.parseInt(message.substring(separatorIndex + 1)));
+    } catch (final IllegalArgumentException | IndexOutOfBoundsException e) {
+      logger.warn("Received invalid near cache invalidation: {}", message);
+    }
+  }
+
+  private void invalidateLocally(final UUID uuid, final int version) {
+    entriesByUuid.asMap().compute(uuid, (ignored, existingEntry) ->
+        new CacheEntry(null, existingEntry == null ? version : Math.max(version, existingEntry.version())));
+  }
+}
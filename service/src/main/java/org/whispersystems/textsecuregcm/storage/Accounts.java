@@ -10,6 +10,7 @@ import static java.util.Objects.requireNonNull;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
@@ -17,12 +18,15 @@ import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
@@ -30,6 +34,7 @@ import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
@@ -44,6 +49,7 @@ import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedExce
 import software.amazon.awssdk.services.dynamodb.model.Delete;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.Put;
 import software.amazon.awssdk.services.dynamodb.model.ReturnValuesOnConditionCheckFailure;
 import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
@@ -70,8 +76,10 @@ public class Accounts extends AbstractDynamoDbStore {
   private static final Timer GET_BY_USERNAME_HASH_TIMER = Metrics.timer(name(Accounts.class, "getByUsernameHash"));
   private static final Timer GET_BY_PNI_TIMER = Metrics.timer(name(Accounts.class, "getByPni"));
   private static final Timer GET_BY_UUID_TIMER = Metrics.timer(name(Accounts.class, "getByUuid"));
+  private static final Timer GET_BY_UUIDS_TIMER = Metrics.timer(name(Accounts.class, "getByUuids"));
   private static final Timer GET_ALL_FROM_START_TIMER = Metrics.timer(name(Accounts.class, "getAllFrom"));
   private static final Timer GET_ALL_FROM_OFFSET_TIMER = Metrics.timer(name(Accounts.class, "getAllFromOffset"));
+  private static final Timer GET_ALL_FROM_SEGMENT_TIMER = Metrics.timer(name(Accounts.class, "getAllFromSegment"));
   private static final Timer DELETE_TIMER = Metrics.timer(name(Accounts.class, "delete"));
 
   private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
@@ -619,6 +627,14 @@ public class Accounts extends AbstractDynamoDbStore {
         GET_BY_PNI_TIMER, phoneNumberIdentifierConstraintTableName, ATTR_PNI_UUID, AttributeValues.fromUUID(phoneNumberIdentifier));
   }
 
+  @Nonnull
+  public CompletionStage<Optional<Account>> getByPhoneNumberIdentifierAsync(final UUID phoneNumberIdentifier) {
+    return getByIndirectLookupAsync(GET_BY_PNI_TIMER,
+        phoneNumberIdentifierConstraintTableName,
+        ATTR_PNI_UUID,
+        AttributeValues.fromUUID(phoneNumberIdentifier));
+  }
+
   @Nonnull
   public Optional<Account> getByUsernameHash(final byte[] usernameHash) {
     return getByIndirectLookup(
@@ -637,6 +653,50 @@ public class Accounts extends AbstractDynamoDbStore {
                 .map(Accounts::fromItem)));
   }
 
+  @Nonnull
+  public CompletionStage<Optional<Account>> getByAccountIdentifierAsync(final UUID uuid) {
+    return record(GET_BY_UUID_TIMER, () -> asyncClient.getItem(GetItemRequest.builder()
+            .tableName(accountsTableName)
+            .key(Map.of(KEY_ACCOUNT_UUID, AttributeValues.fromUUID(uuid)))
+            .consistentRead(true)
+            .build())
+        .thenApply(response -> Optional.ofNullable(response.item())
+            .filter(item -> !item.isEmpty())
+            .map(Accounts::fromItem)));
+  }
+
+  /**
+   * Fetches all of the accounts with the given identifiers, using as few batch requests as possible.
+   *
+   * @param uuids the account identifiers to fetch
+   *
+   * @return a future that yields the accounts that were found, in no particular order
+   */
+  @Nonnull
+  public CompletableFuture<List<Account>> getByAccountIdentifiersAsync(final Collection<UUID> uuids) {
+    // DynamoDB rejects batch requests with duplicate keys
+    final List<UUID> distinctUuids = List.copyOf(new LinkedHashSet<>(uuids));
+
+    return record(GET_BY_UUIDS_TIMER, () -> {
+      final List<CompletableFuture<List<Map<String, AttributeValue>>>> futures =
+          Lists.partition(distinctUuids, DYNAMO_DB_MAX_BATCH_GET_SIZE).stream()
+              .map(chunk -> executeTableGetItemsUntilCompleteAsync(asyncClient, accountsTableName,
+                  KeysAndAttributes.builder()
+                      .keys(chunk.stream()
+                          .map(uuid -> Map.of(KEY_ACCOUNT_UUID, AttributeValues.fromUUID(uuid)))
+                          .toList())
+                      .consistentRead(true)
+                      .build()))
+              .toList();
+
+      return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+          .thenApply(ignored -> futures.stream()
+              .flatMap(future -> future.join().stream())
+              .map(Accounts::fromItem)
+              .toList());
+    }).toCompletableFuture();
+  }
+
   public void delete(final UUID uuid) {
     DELETE_TIMER.record(() -> getByAccountIdentifier(uuid).ifPresent(account -> {
 
@@ -672,6 +732,33 @@ public class Accounts extends AbstractDynamoDbStore {
     return scanForChunk(scanRequestBuilder, maxCount, GET_ALL_FROM_START_TIMER);
   }
 
+  /**
+   * Reads a chunk of accounts from one segment of a parallel scan of the accounts table.
+   *
+   * @param segment the segment to read, from zero (inclusive) to {@code totalSegments} (exclusive)
+   * @param totalSegments the total number of segments into which the table is divided
+   * @param from the identifier of the last account read from this segment, or {@code null} to start at the beginning
+   *             of the segment
+   * @param maxCount the maximum number of accounts to read
+   *
+   * @return a chunk of accounts from the given segment; the chunk is empty if the segment has been exhausted
+   */
+  @Nonnull
+  public AccountCrawlChunk getAllFromSegment(final int segment, final int totalSegments, @Nullable final UUID from,
+      final int maxCount) {
+
+    final ScanRequest.Builder scanRequestBuilder = ScanRequest.builder()
+        .limit(scanPageSize)
+        .segment(segment)
+        .totalSegments(totalSegments);
+
+    if (from != null) {
+      scanRequestBuilder.exclusiveStartKey(Map.of(KEY_ACCOUNT_UUID, AttributeValues.fromUUID(from)));
+    }
+
+    return scanForChunk(scanRequestBuilder, maxCount, GET_ALL_FROM_SEGMENT_TIMER);
+  }
+
   @Nonnull
   private Optional<Account> getByIndirectLookup(
       final Timer timer,
@@ -696,6 +783,34 @@ public class Accounts extends AbstractDynamoDbStore {
         .map(Accounts::fromItem)));
   }
 
+  @Nonnull
+  private CompletionStage<Optional<Account>> getByIndirectLookupAsync(
+      final Timer timer,
+      final String tableName,
+      final String keyName,
+      final AttributeValue keyValue) {
+
+    return record(timer, () -> itemByKeyAsync(tableName, keyName, keyValue)
+        .thenCompose(maybeItem -> maybeItem
+            .map(item -> item.get(KEY_ACCOUNT_UUID))
+            .map(uuid -> itemByKeyAsync(accountsTableName, KEY_ACCOUNT_UUID, uuid))
+            .orElseGet(() -> CompletableFuture.completedFuture(Optional.empty())))
+        .thenApply(maybeItem -> maybeItem.map(Accounts::fromItem)));
+  }
+
+  @Nonnull
+  private CompletableFuture<Optional<Map<String, AttributeValue>>> itemByKeyAsync(final String table,
+      final String keyName,
+      final AttributeValue keyValue) {
+
+    return asyncClient.getItem(GetItemRequest.builder()
+            .tableName(table)
+            .key(Map.of(keyName, keyValue))
+            .consistentRead(true)
+            .build())
+        .thenApply(response -> Optional.ofNullable(response.item()).filter(item -> !item.isEmpty()));
+  }
+
   @Nonnull
   private Optional<Map<String, AttributeValue>> itemByKey(final String table, final String keyName, final AttributeValue keyValue) {
     final GetItemResponse response = db().getItem(GetItemRequest.builder()
@@ -15,16 +15,23 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisException;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -54,6 +61,7 @@ import org.whispersystems.textsecuregcm.securestorage.SecureStorageClient;
 import org.whispersystems.textsecuregcm.securevaluerecovery.SecureValueRecovery2Client;
 import org.whispersystems.textsecuregcm.util.Constants;
 import org.whispersystems.textsecuregcm.util.DestinationDeviceValidator;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import org.whispersystems.textsecuregcm.util.SystemMapper;
 import org.whispersystems.textsecuregcm.util.Util;
 
@@ -65,6 +73,7 @@ public class AccountsManager {
   private static final Timer getByNumberTimer = metricRegistry.timer(name(AccountsManager.class, "getByNumber"));
   private static final Timer getByUsernameHashTimer = metricRegistry.timer(name(AccountsManager.class, "getByUsernameHash"));
   private static final Timer getByUuidTimer = metricRegistry.timer(name(AccountsManager.class, "getByUuid"));
+  private static final Timer getByUuidBatchTimer = metricRegistry.timer(name(AccountsManager.class, "getByUuidBatch"));
   private static final Timer deleteTimer = metricRegistry.timer(name(AccountsManager.class, "delete"));
 
   private static final Timer redisSetTimer = metricRegistry.timer(name(AccountsManager.class, "redisSet"));
@@ -72,21 +81,37 @@ public class AccountsManager {
   private static final Timer redisUsernameHashGetTimer = metricRegistry.timer(name(AccountsManager.class, "redisUsernameHashGet"));
   private static final Timer redisPniGetTimer = metricRegistry.timer(name(AccountsManager.class, "redisPniGet"));
   private static final Timer redisUuidGetTimer = metricRegistry.timer(name(AccountsManager.class, "redisUuidGet"));
+  private static final Timer redisUuidBatchGetTimer = metricRegistry.timer(name(AccountsManager.class, "redisUuidBatchGet"));
   private static final Timer redisDeleteTimer = metricRegistry.timer(name(AccountsManager.class, "redisDelete"));
 
+  private static final DistributionSummary getByUuidBatchSizeDistribution =
+      Metrics.summary(name(AccountsManager.class, "getByUuidBatchSize"));
+  private static final DistributionSummary getByUuidBatchCacheHitRatioDistribution =
+      Metrics.summary(name(AccountsManager.class, "getByUuidBatchCacheHitRatio"));
+
   private static final String CREATE_COUNTER_NAME       = name(AccountsManager.class, "createCounter");
   private static final String DELETE_COUNTER_NAME       = name(AccountsManager.class, "deleteCounter");
+  private static final String CACHED_ACCOUNT_FORMAT_COUNTER_NAME = name(AccountsManager.class, "cachedAccountFormat");
   private static final String COUNTRY_CODE_TAG_NAME     = "country";
   private static final String DELETION_REASON_TAG_NAME  = "reason";
 
   @VisibleForTesting
   public static final String USERNAME_EXPERIMENT_NAME  = "usernames";
 
+  // Accounts enrolled in this experiment are written to the cache in the compact binary format rather than as JSON;
+  // cached accounts in either format can always be read
+  public static final String COMPACT_ACCOUNT_CACHE_EXPERIMENT_NAME = "compactAccountCache";
+
+  // Accounts enrolled in this experiment are written to the cache in full under each of their secondary keys so that
+  // lookups by phone number, PNI, or username hash need only a single read
+  public static final String INLINE_ACCOUNT_CACHE_SECONDARY_KEYS_EXPERIMENT_NAME = "inlineAccountCacheSecondaryKeys";
+
   private final Logger logger = LoggerFactory.getLogger(AccountsManager.class);
 
   private final Accounts accounts;
   private final PhoneNumberIdentifiers phoneNumberIdentifiers;
   private final FaultTolerantRedisCluster cacheCluster;
+  private final AccountNearCache accountNearCache;
   private final DeletedAccountsManager deletedAccountsManager;
   private final Keys keys;
   private final MessagesManager messagesManager;
@@ -108,6 +133,8 @@ public class AccountsManager {
   // the owner.
   private static final long CACHE_TTL_SECONDS = Duration.ofDays(2).toSeconds();
 
+  private static final int MAX_UPDATE_TRIES = 10;
+
   private static final Duration USERNAME_HASH_RESERVATION_TTL_MINUTES = Duration.ofMinutes(5);
 
   @FunctionalInterface
@@ -130,6 +157,7 @@ public class AccountsManager {
   public AccountsManager(final Accounts accounts,
       final PhoneNumberIdentifiers phoneNumberIdentifiers,
       final FaultTolerantRedisCluster cacheCluster,
+      final AccountNearCache accountNearCache,
       final DeletedAccountsManager deletedAccountsManager,
       final Keys keys,
       final MessagesManager messagesManager,
@@ -145,6 +173,7 @@ public class AccountsManager {
     this.accounts = accounts;
     this.phoneNumberIdentifiers = phoneNumberIdentifiers;
     this.cacheCluster = cacheCluster;
+    this.accountNearCache = accountNearCache;
     this.deletedAccountsManager = deletedAccountsManager;
     this.keys = keys;
     this.messagesManager = messagesManager;
@@ -199,6 +228,7 @@ public class AccountsManager {
         final UUID actualUuid = account.getUuid();
 
         redisSet(account);
+        invalidateNearCache(account);
 
         pendingAccounts.remove(number);
 
@@ -286,6 +316,7 @@ public class AccountsManager {
           () -> accounts.getByAccountIdentifier(uuid).orElseThrow(),
           AccountChangeValidator.NUMBER_CHANGE_VALIDATOR);
 
+      invalidateNearCache(numberChangedAccount);
       updatedAccount.set(numberChangedAccount);
 
       keys.delete(phoneNumberIdentifier);
@@ -395,6 +426,9 @@ public class AccountsManager {
         reserver,
         () -> accounts.getByAccountIdentifier(account.getUuid()).orElseThrow(),
         AccountChangeValidator.USERNAME_CHANGE_VALIDATOR);
+
+    invalidateNearCache(updatedAccount);
+
     return new UsernameReservation(updatedAccount, reserver.reservedUsernameHash);
   }
 
@@ -424,7 +458,7 @@ public class AccountsManager {
 
     redisDelete(account);
 
-    return failableUpdateWithRetries(
+    final Account updatedAccount = failableUpdateWithRetries(
         account,
         a -> true,
         a -> {
@@ -436,17 +470,25 @@ public class AccountsManager {
         },
         () -> accounts.getByAccountIdentifier(account.getUuid()).orElseThrow(),
         AccountChangeValidator.USERNAME_CHANGE_VALIDATOR);
+
+    invalidateNearCache(updatedAccount);
+
+    return updatedAccount;
   }
 
   public Account clearUsernameHash(final Account account) {
     redisDelete(account);
 
-    return updateWithRetries(
+    final Account updatedAccount = updateWithRetries(
         account,
         a -> true,
         accounts::clearUsernameHash,
         () -> accounts.getByAccountIdentifier(account.getUuid()).orElseThrow(),
         AccountChangeValidator.USERNAME_CHANGE_VALIDATOR);
+
+    invalidateNearCache(updatedAccount);
+
+    return updatedAccount;
   }
 
   public Account update(Account account, Consumer<Account> updater) {
@@ -457,6 +499,37 @@ public class AccountsManager {
     });
   }
 
+  /**
+   * Asynchronously applies an update to an account. If the update conflicts with a concurrent change to the account,
+   * the update is applied again to a freshly-fetched copy of the account and retried.
+   *
+   * @param account the account to update
+   * @param updater an updater that modifies the account; assumed to always modify the account
+   *
+   * @return a future that yields the updated account
+   */
+  public CompletableFuture<Account> updateAsync(final Account account, final Consumer<Account> updater) {
+    final Timer.Context timerContext = updateTimer.time();
+    final UUID uuid = account.getUuid();
+
+    return redisDeleteAsync(account)
+        .thenCompose(ignored -> updateWithRetriesAsync(account,
+            a -> {
+              updater.accept(a);
+              // assume that all updaters passed to the public method actually modify the account
+              return true;
+            },
+            a -> accounts.updateAsync(a).toCompletableFuture(),
+            () -> accounts.getByAccountIdentifierAsync(uuid).thenApply(Optional::orElseThrow).toCompletableFuture(),
+            AccountChangeValidator.GENERAL_CHANGE_VALIDATOR,
+            MAX_UPDATE_TRIES))
+        .thenCompose(updatedAccount -> redisSetAsync(updatedAccount).thenApply(ignored -> {
+          invalidateNearCache(updatedAccount);
+          return updatedAccount;
+        }))
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
   /**
    * Specialized version of {@link #updateDevice(Account, long, Consumer)} that minimizes potentially contentious and
    * redundant updates of {@code device.lastSeen}
@@ -505,6 +578,7 @@ public class AccountsManager {
           AccountChangeValidator.GENERAL_CHANGE_VALIDATOR);
 
       redisSet(updatedAccount);
+      invalidateNearCache(updatedAccount);
     }
 
     return updatedAccount;
@@ -535,10 +609,9 @@ public class AccountsManager {
       return account;
     }
 
-    final int maxTries = 10;
     int tries = 0;
 
-    while (tries < maxTries) {
+    while (tries < MAX_UPDATE_TRIES) {
 
       try {
         persister.persistAccount(account);
@@ -564,6 +637,43 @@ public class AccountsManager {
     throw new OptimisticLockRetryLimitExceededException();
   }
 
+  private CompletableFuture<Account> updateWithRetriesAsync(final Account account,
+      final Function<Account, Boolean> updater,
+      final Function<Account, CompletableFuture<Void>> persister,
+      final Supplier<CompletableFuture<Account>> retriever,
+      final AccountChangeValidator changeValidator,
+      final int remainingTries) {
+
+    final Account originalAccount = cloneAccount(account);
+
+    if (!updater.apply(account)) {
+      return CompletableFuture.completedFuture(account);
+    }
+
+    if (remainingTries <= 0) {
+      return CompletableFuture.failedFuture(new OptimisticLockRetryLimitExceededException());
+    }
+
+    return persister.apply(account)
+        .thenApply(ignored -> {
+          final Account updatedAccount = cloneAccount(account);
+          account.markStale();
+
+          changeValidator.validateChange(originalAccount, updatedAccount);
+
+          return updatedAccount;
+        })
+        .exceptionallyCompose(throwable -> {
+          if (ExceptionUtils.unwrap(throwable) instanceof ContestedOptimisticLockException) {
+            return retriever.get().thenCompose(refreshedAccount ->
+                updateWithRetriesAsync(refreshedAccount, updater, persister, retriever, changeValidator,
+                    remainingTries - 1));
+          }
+
+          return CompletableFuture.failedFuture(throwable);
+        });
+  }
+
   private static Account cloneAccount(final Account account) {
     try {
       final Account clone = mapper.readValue(mapper.writeValueAsBytes(account), Account.class);
@@ -624,17 +734,142 @@ public class AccountsManager {
 
   public Optional<Account> getByAccountIdentifier(UUID uuid) {
     try (Timer.Context ignored = getByUuidTimer.time()) {
-      Optional<Account> account = redisGetByAccountIdentifier(uuid);
+      Optional<Account> account = accountNearCache.get(uuid);
+
+      if (account.isPresent()) {
+        return account;
+      }
+
+      account = redisGetByAccountIdentifier(uuid);
 
       if (account.isEmpty()) {
         account = accounts.getByAccountIdentifier(uuid);
         account.ifPresent(this::redisSet);
       }
 
+      account.ifPresent(accountNearCache::put);
+
       return account;
     }
   }
 
+  public CompletableFuture<Optional<Account>> getByPhoneNumberIdentifierAsync(final UUID pni) {
+    final Timer.Context timerContext = getByNumberTimer.time();
+
+    return redisGetBySecondaryKeyAsync(getAccountMapKey(pni.toString()), redisPniGetTimer)
+        .thenCompose(maybeAccountFromCache -> {
+          if (maybeAccountFromCache.isPresent()) {
+            return CompletableFuture.completedFuture(maybeAccountFromCache);
+          }
+
+          return accounts.getByPhoneNumberIdentifierAsync(pni)
+              .thenCompose(maybeAccount -> maybeAccount
+                  .map(account -> redisSetAsync(account).thenApply(ignored -> maybeAccount))
+                  .orElseGet(() -> CompletableFuture.completedFuture(maybeAccount)));
+        })
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
+  public CompletableFuture<Optional<Account>> getByAccountIdentifierAsync(final UUID uuid) {
+    final Timer.Context timerContext = getByUuidTimer.time();
+    final Optional<Account> maybeAccountFromNearCache = accountNearCache.get(uuid);
+
+    if (maybeAccountFromNearCache.isPresent()) {
+      timerContext.stop();
+      return CompletableFuture.completedFuture(maybeAccountFromNearCache);
+    }
+
+    return redisGetByAccountIdentifierAsync(uuid)
+        .thenCompose(maybeAccountFromCache -> {
+          if (maybeAccountFromCache.isPresent()) {
+            return CompletableFuture.completedFuture(maybeAccountFromCache);
+          }
+
+          return accounts.getByAccountIdentifierAsync(uuid)
+              .thenCompose(maybeAccount -> maybeAccount
+                  .map(account -> redisSetAsync(account).thenApply(ignored -> maybeAccount))
+                  .orElseGet(() -> CompletableFuture.completedFuture(maybeAccount)));
+        })
+        .whenComplete((maybeAccount, throwable) -> {
+          timerContext.stop();
+
+          if (maybeAccount != null) {
+            maybeAccount.ifPresent(accountNearCache::put);
+          }
+        });
+  }
+
+  /**
+   * Fetches many accounts at once. Accounts present in the near cache are returned directly, the remaining cached
+   * accounts are fetched with a single (slot-partitioned) multi-key read, and any accounts missing from the cache are
+   * fetched from DynamoDB in batches and written back to the cache. Accounts not found in the near cache are added to
+   * it.
+   *
+   * @param uuids the identifiers of the accounts to fetch
+   *
+   * @return a future that yields a map of account identifiers to accounts; accounts that could not be found are absent
+   * from the map
+   */
+  public CompletableFuture<Map<UUID, Account>> getByAccountIdentifiersAsync(final Collection<UUID> uuids) {
+    final List<UUID> distinctUuids = List.copyOf(new LinkedHashSet<>(uuids));
+
+    if (distinctUuids.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyMap());
+    }
+
+    final Timer.Context timerContext = getByUuidBatchTimer.time();
+    getByUuidBatchSizeDistribution.record(distinctUuids.size());
+
+    final Map<UUID, Account> nearCachedAccounts = new HashMap<>();
+    final List<UUID> nearCacheMissUuids = new ArrayList<>();
+
+    for (final UUID uuid : distinctUuids) {
+      accountNearCache.get(uuid).ifPresentOrElse(account -> nearCachedAccounts.put(uuid, account),
+          () -> nearCacheMissUuids.add(uuid));
+    }
+
+    if (nearCacheMissUuids.isEmpty()) {
+      getByUuidBatchCacheHitRatioDistribution.record(1.0);
+      timerContext.stop();
+
+      return CompletableFuture.completedFuture(nearCachedAccounts);
+    }
+
+    return redisGetByAccountIdentifiersAsync(nearCacheMissUuids)
+        .thenCompose(cachedAccounts -> {
+          getByUuidBatchCacheHitRatioDistribution.record(
+              (double) (nearCachedAccounts.size() + cachedAccounts.size()) / distinctUuids.size());
+
+          final List<UUID> missingUuids = nearCacheMissUuids.stream()
+              .filter(uuid -> !cachedAccounts.containsKey(uuid))
+              .toList();
+
+          if (missingUuids.isEmpty()) {
+            return CompletableFuture.completedFuture(cachedAccounts);
+          }
+
+          return accounts.getByAccountIdentifiersAsync(missingUuids)
+              .thenCompose(fetchedAccounts -> CompletableFuture.allOf(fetchedAccounts.stream()
+                      .map(this::redisSetAsync)
+                      .toArray(CompletableFuture[]::new))
+                  .thenApply(ignored -> {
+                    final Map<UUID, Account> accountsByUuid = new HashMap<>(cachedAccounts);
+                    fetchedAccounts.forEach(account -> accountsByUuid.put(account.getUuid(), account));
+
+                    return accountsByUuid;
+                  }));
+        })
+        .thenApply(fetchedAccountsByUuid -> {
+          fetchedAccountsByUuid.values().forEach(accountNearCache::put);
+
+          final Map<UUID, Account> accountsByUuid = new HashMap<>(nearCachedAccounts);
+          accountsByUuid.putAll(fetchedAccountsByUuid);
+
+          return accountsByUuid;
+        })
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
   public UUID getPhoneNumberIdentifier(String e164) {
     return phoneNumberIdentifiers.getPhoneNumberIdentifier(e164);
   }
@@ -647,6 +882,10 @@ public class AccountsManager {
     return accounts.getAllFrom(uuid, length);
   }
 
+  public AccountCrawlChunk getAllFromDynamoSegment(int segment, int totalSegments, Optional<UUID> uuid, int length) {
+    return accounts.getAllFromSegment(segment, totalSegments, uuid.orElse(null), length);
+  }
+
   public void delete(final Account account, final DeletionReason deletionReason) throws InterruptedException {
     try (final Timer.Context ignored = deleteTimer.time()) {
       deletedAccountsManager.lockAndPut(account.getNumber(), () -> {
@@ -686,6 +925,9 @@ public class AccountsManager {
     accounts.delete(account.getUuid());
     redisDelete(account);
 
+    // Any copy of the account read before the deletion is older than the (nonexistent) next version
+    accountNearCache.invalidate(account.getUuid(), account.getVersion() + 1);
+
     RedisOperation.unchecked(() ->
         account.getDevices().forEach(device ->
             clientPresenceManager.disconnectPresence(account.getUuid(), device.getId())));
@@ -703,25 +945,117 @@ public class AccountsManager {
     return "Account3::" + uuid.toString();
   }
 
+  private byte[] getAccountEntityKeyBytes(final UUID uuid) {
+    return getAccountEntityKey(uuid).getBytes(StandardCharsets.UTF_8);
+  }
+
   private void redisSet(Account account) {
     try (Timer.Context ignored = redisSetTimer.time()) {
-      final String accountJson = mapper.writeValueAsString(account);
+      final AccountCacheCodec.Format format = getCacheFormat(account);
+      final byte[] encodedAccount = AccountCacheCodec.encode(account, format);
+      final boolean inlineSecondaryKeys = shouldInlineSecondaryKeys(account);
+      final byte[] inlineEntry = inlineSecondaryKeys ? AccountCacheCodec.encodeInline(account, format) : null;
 
       cacheCluster.useCluster(connection -> {
         final RedisAdvancedClusterCommands<String, String> commands = connection.sync();
 
-        commands.setex(getAccountMapKey(account.getPhoneNumberIdentifier().toString()), CACHE_TTL_SECONDS, account.getUuid().toString());
-        commands.setex(getAccountMapKey(account.getNumber()), CACHE_TTL_SECONDS, account.getUuid().toString());
-        commands.setex(getAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS, accountJson);
+        if (!inlineSecondaryKeys) {
+          getSecondaryKeys(account).forEach(secondaryKey ->
+              commands.setex(secondaryKey, CACHE_TTL_SECONDS, account.getUuid().toString()));
+        }
 
-        account.getUsernameHash().ifPresent(usernameHash ->
-            commands.setex(getUsernameHashAccountMapKey(usernameHash), CACHE_TTL_SECONDS, account.getUuid().toString()));
+        if (format == AccountCacheCodec.Format.JSON) {
+          commands.setex(getAccountEntityKey(account.getUuid()), CACHE_TTL_SECONDS,
+              new String(encodedAccount, StandardCharsets.UTF_8));
+        }
       });
+
+      if (inlineSecondaryKeys || format != AccountCacheCodec.Format.JSON) {
+        cacheCluster.useBinaryCluster(connection -> {
+          final RedisAdvancedClusterCommands<byte[], byte[]> commands = connection.sync();
+
+          if (inlineSecondaryKeys) {
+            getSecondaryKeys(account).forEach(secondaryKey ->
+                commands.setex(secondaryKey.getBytes(StandardCharsets.UTF_8), CACHE_TTL_SECONDS, inlineEntry));
+          }
+
+          if (format != AccountCacheCodec.Format.JSON) {
+            commands.setex(getAccountEntityKeyBytes(account.getUuid()), CACHE_TTL_SECONDS, encodedAccount);
+          }
+        });
+      }
     } catch (JsonProcessingException e) {
       throw new IllegalStateException(e);
     }
   }
 
+  private CompletableFuture<Void> redisSetAsync(final Account account) {
+    final AccountCacheCodec.Format format = getCacheFormat(account);
+    final boolean inlineSecondaryKeys = shouldInlineSecondaryKeys(account);
+    final byte[] encodedAccount;
+    final byte[] inlineEntry;
+
+    try {
+      encodedAccount = AccountCacheCodec.encode(account, format);
+      inlineEntry = inlineSecondaryKeys ? AccountCacheCodec.encodeInline(account, format) : null;
+    } catch (final JsonProcessingException e) {
+      return CompletableFuture.failedFuture(new IllegalStateException(e));
+    }
+
+    final Timer.Context timerContext = redisSetTimer.time();
+    final List<CompletableFuture<String>> futures = new ArrayList<>();
+
+    cacheCluster.useCluster(connection -> {
+      if (!inlineSecondaryKeys) {
+        getSecondaryKeys(account).forEach(secondaryKey -> futures.add(
+            connection.async().setex(secondaryKey, CACHE_TTL_SECONDS, account.getUuid().toString())
+                .toCompletableFuture()));
+      }
+
+      if (format == AccountCacheCodec.Format.JSON) {
+        futures.add(connection.async().setex(getAccountEntityKey(account.getUuid()),
+            CACHE_TTL_SECONDS, new String(encodedAccount, StandardCharsets.UTF_8)).toCompletableFuture());
+      }
+    });
+
+    if (inlineSecondaryKeys || format != AccountCacheCodec.Format.JSON) {
+      cacheCluster.useBinaryCluster(connection -> {
+        if (inlineSecondaryKeys) {
+          getSecondaryKeys(account).forEach(secondaryKey -> futures.add(
+              connection.async().setex(secondaryKey.getBytes(StandardCharsets.UTF_8), CACHE_TTL_SECONDS, inlineEntry)
+                  .toCompletableFuture()));
+        }
+
+        if (format != AccountCacheCodec.Format.JSON) {
+          futures.add(connection.async().setex(getAccountEntityKeyBytes(account.getUuid()), CACHE_TTL_SECONDS,
+              encodedAccount).toCompletableFuture());
+        }
+      });
+    }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
+  private List<String> getSecondaryKeys(final Account account) {
+    final List<String> secondaryKeys = new ArrayList<>(3);
+    secondaryKeys.add(getAccountMapKey(account.getPhoneNumberIdentifier().toString()));
+    secondaryKeys.add(getAccountMapKey(account.getNumber()));
+    account.getUsernameHash().ifPresent(usernameHash -> secondaryKeys.add(getUsernameHashAccountMapKey(usernameHash)));
+
+    return secondaryKeys;
+  }
+
+  private boolean shouldInlineSecondaryKeys(final Account account) {
+    return experimentEnrollmentManager.isEnrolled(account.getUuid(), INLINE_ACCOUNT_CACHE_SECONDARY_KEYS_EXPERIMENT_NAME);
+  }
+
+  private AccountCacheCodec.Format getCacheFormat(final Account account) {
+    return experimentEnrollmentManager.isEnrolled(account.getUuid(), COMPACT_ACCOUNT_CACHE_EXPERIMENT_NAME)
+        ? AccountCacheCodec.Format.COMPACT_V1
+        : AccountCacheCodec.Format.JSON;
+  }
+
   private Optional<Account> redisGetByPhoneNumberIdentifier(UUID uuid) {
     return redisGetBySecondaryKey(getAccountMapKey(uuid.toString()), redisPniGetTimer);
   }
@@ -736,11 +1070,21 @@ public class AccountsManager {
 
   private Optional<Account> redisGetBySecondaryKey(String secondaryKey, Timer timer) {
     try (Timer.Context ignored = timer.time()) {
-      final String uuid = cacheCluster.withCluster(connection -> connection.sync().get(secondaryKey));
+      final byte[] value = cacheCluster.withBinaryCluster(connection ->
+          connection.sync().get(secondaryKey.getBytes(StandardCharsets.UTF_8)));
+
+      if (value == null) {
+        return Optional.empty();
+      }
 
-      if (uuid != null) return redisGetByAccountIdentifier(UUID.fromString(uuid));
-      else              return Optional.empty();
-    } catch (IllegalArgumentException e) {
+      // Entries written with the account inlined resolve in a single round trip; legacy entries hold only the account
+      // identifier and need a second read to fetch the account itself
+      if (AccountCacheCodec.isInline(value)) {
+        return Optional.of(parseInlineCachedAccount(value));
+      }
+
+      return redisGetByAccountIdentifier(UUID.fromString(new String(value, StandardCharsets.UTF_8)));
+    } catch (IllegalArgumentException | IOException e) {
       logger.warn("Deserialization error", e);
       return Optional.empty();
     } catch (RedisException e) {
@@ -749,19 +1093,45 @@ public class AccountsManager {
     }
   }
 
-  private Optional<Account> redisGetByAccountIdentifier(UUID uuid) {
-    try (Timer.Context ignored = redisUuidGetTimer.time()) {
-      final String json = cacheCluster.withCluster(connection -> connection.sync().get(getAccountEntityKey(uuid)));
+  private CompletableFuture<Optional<Account>> redisGetBySecondaryKeyAsync(final String secondaryKey,
+      final Timer timer) {
 
-      if (json != null) {
-        Account account = mapper.readValue(json, Account.class);
-        account.setUuid(uuid);
+    final Timer.Context timerContext = timer.time();
 
-        if (account.getPhoneNumberIdentifier() == null) {
-          logger.warn("Account {} loaded from Redis is missing a PNI", uuid);
-        }
+    return cacheCluster.withBinaryCluster(connection ->
+            connection.async().get(secondaryKey.getBytes(StandardCharsets.UTF_8)))
+        .toCompletableFuture()
+        .thenCompose(value -> {
+          if (value == null) {
+            return CompletableFuture.completedFuture(Optional.<Account>empty());
+          }
+
+          // As with synchronous reads, inline entries resolve in a single round trip
+          if (AccountCacheCodec.isInline(value)) {
+            try {
+              return CompletableFuture.completedFuture(Optional.of(parseInlineCachedAccount(value)));
+            } catch (final IOException e) {
+              logger.warn("Deserialization error", e);
+              return CompletableFuture.completedFuture(Optional.<Account>empty());
+            }
+          }
+
+          return redisGetByAccountIdentifierAsync(UUID.fromString(new String(value, StandardCharsets.UTF_8)));
+        })
+        .exceptionally(throwable -> {
+          logger.warn("Failed to read account from Redis", throwable);
+          return Optional.empty();
+        })
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
 
-        return Optional.of(account);
+  private Optional<Account> redisGetByAccountIdentifier(UUID uuid) {
+    try (Timer.Context ignored = redisUuidGetTimer.time()) {
+      final byte[] encodedAccount = cacheCluster.withBinaryCluster(connection ->
+          connection.sync().get(getAccountEntityKeyBytes(uuid)));
+
+      if (encodedAccount != null) {
+        return Optional.of(parseCachedAccount(uuid, encodedAccount));
       }
 
       return Optional.empty();
@@ -774,6 +1144,113 @@ public class AccountsManager {
     }
   }
 
+  private CompletableFuture<Optional<Account>> redisGetByAccountIdentifierAsync(final UUID uuid) {
+    final Timer.Context timerContext = redisUuidGetTimer.time();
+
+    return cacheCluster.withBinaryCluster(connection -> connection.async().get(getAccountEntityKeyBytes(uuid)))
+        .toCompletableFuture()
+        .thenApply(encodedAccount -> {
+          if (encodedAccount != null) {
+            try {
+              return Optional.of(parseCachedAccount(uuid, encodedAccount));
+            } catch (final IOException e) {
+              logger.warn("Deserialization error", e);
+            }
+          }
+
+          return Optional.<Account>empty();
+        })
+        .exceptionally(throwable -> {
+          logger.warn("Redis failure", throwable);
+          return Optional.empty();
+        })
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
+  private CompletableFuture<Map<UUID, Account>> redisGetByAccountIdentifiersAsync(final List<UUID> uuids) {
+    final Timer.Context timerContext = redisUuidBatchGetTimer.time();
+
+    // The cluster client splits multi-key commands by slot and issues the per-slot commands concurrently
+    return cacheCluster.withBinaryCluster(connection -> connection.async().mget(uuids.stream()
+            .map(this::getAccountEntityKeyBytes)
+            .toArray(byte[][]::new)))
+        .toCompletableFuture()
+        .thenApply(keyValues -> {
+          final Map<UUID, Account> accountsByUuid = new HashMap<>();
+
+          for (int i = 0; i < uuids.size(); i++) {
+            final KeyValue<byte[], byte[]> keyValue = keyValues.get(i);
+
+            if (keyValue.hasValue()) {
+              try {
+                accountsByUuid.put(uuids.get(i), parseCachedAccount(uuids.get(i), keyValue.getValue()));
+              } catch (final IOException e) {
+                logger.warn("Deserialization error", e);
+              }
+            }
+          }
+
+          return accountsByUuid;
+        })
+        .exceptionally(throwable -> {
+          logger.warn("Redis failure", throwable);
+          return Collections.emptyMap();
+        })
+        .whenComplete((ignored, throwable) -> timerContext.stop());
+  }
+
+  private Account parseCachedAccount(final UUID uuid, final byte[] encodedAccount) throws IOException {
+    final AccountCacheCodec.Format format = AccountCacheCodec.getFormat(encodedAccount);
+    Metrics.counter(CACHED_ACCOUNT_FORMAT_COUNTER_NAME, "format", format.name(), "inline", "false").increment();
+
+    final Account account = AccountCacheCodec.decode(encodedAccount);
+    account.setUuid(uuid);
+
+    if (account.getPhoneNumberIdentifier() == null) {
+      logger.warn("Account {} loaded from Redis is missing a PNI", uuid);
+    }
+
+    return account;
+  }
+
+  private Account parseInlineCachedAccount(final byte[] inlineEntry) throws IOException {
+    final AccountCacheCodec.Format format = AccountCacheCodec.getInlineFormat(inlineEntry);
+    Metrics.counter(CACHED_ACCOUNT_FORMAT_COUNTER_NAME, "format", format.name(), "inline", "true").increment();
+
+    final Account account = AccountCacheCodec.decodeInline(inlineEntry);
+
+    if (account.getPhoneNumberIdentifier() == null) {
+      logger.warn("Account {} loaded from Redis is missing a PNI", account.getUuid());
+    }
+
+    return account;
+  }
+
+  private CompletableFuture<Void> redisDeleteAsync(final Account account) {
+    final List<String> keysToDelete = new ArrayList<>(List.of(
+        getAccountMapKey(account.getNumber()),
+        getAccountMapKey(account.getPhoneNumberIdentifier().toString()),
+        getAccountEntityKey(account.getUuid())));
+
+    account.getUsernameHash().ifPresent(usernameHash -> keysToDelete.add(getUsernameHashAccountMapKey(usernameHash)));
+
+    final Timer.Context timerContext = redisDeleteTimer.time();
+
+    return cacheCluster.withCluster(connection -> connection.async().del(keysToDelete.toArray(new String[0])))
+        .toCompletableFuture()
+        .whenComplete((ignored, throwable) -> timerContext.stop())
+        .thenRun(() -> {});
+  }
+
+  /**
+   * Announces a persisted change to the given account to all near caches. Must be called after the change has been
+   * persisted; a copy of the previous version read (and cached) by another request while the change was in flight will
+   * be discarded and not cached again.
+   */
+  private void invalidateNearCache(final Account persistedAccount) {
+    accountNearCache.invalidate(persistedAccount.getUuid(), persistedAccount.getVersion());
+  }
+
   private void redisDelete(final Account account) {
     try (final Timer.Context ignored = redisDeleteTimer.time()) {
       cacheCluster.useCluster(connection -> {
@@ -11,9 +11,14 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.google.common.annotations.VisibleForTesting;
 import io.micrometer.core.instrument.Metrics;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import javax.validation.Validator;
@@ -36,16 +41,19 @@ public class DynamicConfigurationManager<T> {
   private final AppConfigDataClient appConfigClient;
   private final Class<T> configurationClass;
 
-  // Set on initial config fetch
+  // Set on initial config fetch; null until then
   private final AtomicReference<T> configuration = new AtomicReference<>();
   private String configurationToken = null;
-  private boolean initialized = false;
+
+  // Views are only added while holding this object's monitor, but may be read without it
+  private final List<ConfigurationView<T, ?>> views = new CopyOnWriteArrayList<>();
 
   private static final Validator VALIDATOR = Validation.buildDefaultValidatorFactory().getValidator();
 
   private static final String ERROR_COUNTER_NAME = name(DynamicConfigurationManager.class, "error");
   private static final String ERROR_TYPE_TAG_NAME = "type";
   private static final String CONFIG_CLASS_TAG_NAME = "configClass";
+  private static final String VIEW_ERROR_COUNTER_NAME = name(DynamicConfigurationManager.class, "viewError");
 
   private static final Logger logger = LoggerFactory.getLogger(DynamicConfigurationManager.class);
 
@@ -71,25 +79,66 @@ public class DynamicConfigurationManager<T> {
   }
 
   public T getConfiguration() {
+    final T currentConfiguration = configuration.get();
+
+    if (currentConfiguration != null) {
+      return currentConfiguration;
+    }
+
+    // We only get here before the initial configuration has arrived
     synchronized (this) {
-      while (!initialized) {
+      while (configuration.get() == null) {
         Util.wait(this);
       }
     }
+
     return configuration.get();
   }
 
-  public void start() {
-    configuration.set(retrieveInitialDynamicConfiguration());
+  /**
+   * Creates a view of some part of the dynamic configuration. A view's value is computed once each time a new
+   * configuration arrives rather than each time the view is read, and so views are well-suited to values that are read
+   * often and are expensive to derive from the configuration (e.g. parsed or indexed forms of configuration sections).
+   * If a view's function fails for a later configuration, the view keeps its previous value. A view must always have a
+   * value, though, so a view's function must not fail for the first configuration it sees: if it fails for the current
+   * configuration, this method throws the function's exception, and if it fails for the initial configuration,
+   * {@link #start()} fails.
+   *
+   * @param viewFunction a function that derives a view's value from a configuration; must not return {@code null}
+   *
+   * @return a supplier of the view's value for the current configuration; blocks until the initial configuration has
+   * arrived if called before then
+   *
+   * @param <V> the type of the view's value
+   */
+  public <V> Supplier<V> createView(final Function<T, V> viewFunction) {
+    final ConfigurationView<T, V> view = new ConfigurationView<>(this, viewFunction);
+
     synchronized (this) {
-      this.initialized = true;
-      this.notifyAll();
+      final T currentConfiguration = configuration.get();
+
+      if (currentConfiguration != null) {
+        view.prepareUpdate(currentConfiguration).run();
+      }
+
+      views.add(view);
     }
 
+    return view;
+  }
+
+  /**
+   * Retrieves the initial configuration and starts polling for updates.
+   *
+   * @throws IllegalStateException if any view's function fails for the initial configuration
+   */
+  public void start() {
+    setConfiguration(retrieveInitialDynamicConfiguration());
+
     final Thread workerThread = new Thread(() -> {
       while (true) {
         try {
-          retrieveDynamicConfiguration().ifPresent(configuration::set);
+          retrieveDynamicConfiguration().ifPresent(this::setConfiguration);
         } catch (Exception e) {
           logger.warn("Error retrieving dynamic configuration", e);
         }
@@ -102,6 +151,34 @@ public class DynamicConfigurationManager<T> {
     workerThread.start();
   }
 
+  @VisibleForTesting
+  synchronized void setConfiguration(final T updatedConfiguration) {
+    // Compute every view's new value before publishing any of them, so a failing view can't keep the others (or the
+    // configuration itself) from being updated
+    final List<Runnable> viewUpdates = new ArrayList<>(views.size());
+
+    for (final ConfigurationView<T, ?> view : views) {
+      try {
+        viewUpdates.add(view.prepareUpdate(updatedConfiguration));
+      } catch (final Exception e) {
+        Metrics.counter(VIEW_ERROR_COUNTER_NAME, CONFIG_CLASS_TAG_NAME, configurationClass.getName()).increment();
+
+        if (!view.hasValue()) {
+          // There's no previous value to fall back to, and readers would otherwise get null from the view
+          throw new IllegalStateException("Dynamic configuration view failed for initial configuration", e);
+        }
+
+        logger.warn("Dynamic configuration view failed", e);
+      }
+    }
+
+    // Update views before publishing the new configuration so readers never see a view older than the configuration
+    viewUpdates.forEach(Runnable::run);
+    configuration.set(updatedConfiguration);
+
+    this.notifyAll();
+  }
+
   private Optional<T> retrieveDynamicConfiguration() throws JsonProcessingException {
     if (configurationToken == null) {
         logger.error("Invalid configuration token, will not be able to fetch configuration updates");
@@ -174,4 +251,47 @@ public class DynamicConfigurationManager<T> {
       }
     }
   }
+
+  private static class ConfigurationView<T, V> implements Supplier<V> {
+
+    private final DynamicConfigurationManager<T> dynamicConfigurationManager;
+    private final Function<T, V> viewFunction;
+
+    // Null until the initial configuration arrives
+    private volatile V value;
+
+    private ConfigurationView(final DynamicConfigurationManager<T> dynamicConfigurationManager,
+        final Function<T, V> viewFunction) {
+
+      this.dynamicConfigurationManager = dynamicConfigurationManager;
+      this.viewFunction = viewFunction;
+    }
+
+    /**
+     * Computes this view's value for the given configuration.
+     *
+     * @return an action that publishes the computed value
+     */
+    private Runnable prepareUpdate(final T configuration) {
+      final V updatedValue = viewFunction.apply(configuration);
+      return () -> value = updatedValue;
+    }
+
+    private boolean hasValue() {
+      return value != null;
+    }
+
+    @Override
+    public V get() {
+      final V currentValue = value;
+
+      if (currentValue != null) {
+        return currentValue;
+      }
+
+      // Wait for the initial configuration, which will also populate this view
+      dynamicConfigurationManager.getConfiguration();
+      return value;
+    }
+  }
 }
@@ -6,22 +6,30 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.Counter;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
 import org.whispersystems.textsecuregcm.entities.PreKey;
 import org.whispersystems.textsecuregcm.util.AttributeValues;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.DeleteItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
 import software.amazon.awssdk.services.dynamodb.model.PutRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
@@ -34,6 +42,7 @@ import static org.whispersystems.textsecuregcm.metrics.MetricsUtil.name;
 
 public class Keys extends AbstractDynamoDbStore {
 
+  private final DynamoDbAsyncClient asyncClient;
   private final String tableName;
 
   static final String KEY_ACCOUNT_UUID = "U";
@@ -48,9 +57,12 @@ public class Keys extends AbstractDynamoDbStore {
   private static final DistributionSummary CONTESTED_KEY_DISTRIBUTION = Metrics.summary(name(Keys.class, "contestedKeys"));
   private static final DistributionSummary KEY_COUNT_DISTRIBUTION = Metrics.summary(name(Keys.class, "keyCount"));
   private static final Counter KEYS_EMPTY_TAKE_COUNTER = Metrics.counter(name(Keys.class, "takeKeyEmpty"));
+  private static final DistributionSummary TAKE_KEYS_FOR_DEVICES_DISTRIBUTION =
+      Metrics.summary(name(Keys.class, "takeKeysForDevicesCount"));
 
-  public Keys(final DynamoDbClient dynamoDB, final String tableName) {
+  public Keys(final DynamoDbClient dynamoDB, final DynamoDbAsyncClient asyncClient, final String tableName) {
     super(dynamoDB);
+    this.asyncClient = asyncClient;
     this.tableName = tableName;
   }
 
@@ -73,45 +85,111 @@ public class Keys extends AbstractDynamoDbStore {
   }
 
   public Optional<PreKey> take(final UUID identifier, final long deviceId) {
-    return TAKE_KEY_FOR_DEVICE_TIMER.record(() -> {
-      final AttributeValue partitionKey = getPartitionKey(identifier);
-      QueryRequest queryRequest = QueryRequest.builder()
-          .tableName(tableName)
-          .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
-          .expressionAttributeNames(Map.of("#uuid", KEY_ACCOUNT_UUID, "#sort", KEY_DEVICE_ID_KEY_ID))
-          .expressionAttributeValues(Map.of(
-              ":uuid", partitionKey,
-              ":sortprefix", getSortKeyPrefix(deviceId)))
-          .projectionExpression(KEY_DEVICE_ID_KEY_ID)
-          .consistentRead(false)
-          .build();
+    try {
+      return takeAsync(identifier, deviceId).join();
+    } catch (final CompletionException e) {
+      throw unwrapCompletionException(e);
+    }
+  }
 
-      int contestedKeys = 0;
-
-      try {
-        QueryResponse response = db().query(queryRequest);
-        for (Map<String, AttributeValue> candidate : response.items()) {
-          DeleteItemRequest deleteItemRequest = DeleteItemRequest.builder()
-              .tableName(tableName)
-              .key(Map.of(
-                  KEY_ACCOUNT_UUID, partitionKey,
-                  KEY_DEVICE_ID_KEY_ID, candidate.get(KEY_DEVICE_ID_KEY_ID)))
-              .returnValues(ReturnValue.ALL_OLD)
-              .build();
-          DeleteItemResponse deleteItemResponse = db().deleteItem(deleteItemRequest);
-          if (deleteItemResponse.hasAttributes()) {
-            return Optional.of(getPreKeyFromItem(deleteItemResponse.attributes()));
+  public CompletableFuture<Optional<PreKey>> takeAsync(final UUID identifier, final long deviceId) {
+    final Timer.Sample sample = Timer.start();
+    final AttributeValue partitionKey = getPartitionKey(identifier);
+
+    final QueryRequest queryRequest = QueryRequest.builder()
+        .tableName(tableName)
+        .keyConditionExpression("#uuid = :uuid AND begins_with (#sort, :sortprefix)")
+        .expressionAttributeNames(Map.of("#uuid", KEY_ACCOUNT_UUID, "#sort", KEY_DEVICE_ID_KEY_ID))
+        .expressionAttributeValues(Map.of(
+            ":uuid", partitionKey,
+            ":sortprefix", getSortKeyPrefix(deviceId)))
+        .projectionExpression(KEY_DEVICE_ID_KEY_ID)
+        .consistentRead(false)
+        .build();
+
+    return asyncClient.query(queryRequest)
+        .thenCompose(response -> claimCandidate(partitionKey, new ArrayList<>(response.items()), 0))
+        .whenComplete((maybePreKey, throwable) -> {
+          sample.stop(TAKE_KEY_FOR_DEVICE_TIMER);
+
+          if (maybePreKey != null && maybePreKey.isEmpty()) {
+            KEYS_EMPTY_TAKE_COUNTER.increment();
           }
+        });
+  }
 
-          contestedKeys++;
-        }
+  /**
+   * Takes one pre-key for each of the given devices. Keys for all devices are claimed concurrently.
+   *
+   * @param identifier the account or phone number identifier for which to take keys
+   * @param deviceIds the devices for which to take keys
+   *
+   * @return a map of device IDs to pre-keys; devices with no available pre-keys are absent from the map
+   */
+  public Map<Long, PreKey> takeForDevices(final UUID identifier, final Collection<Long> deviceIds) {
+    TAKE_KEYS_FOR_DEVICES_DISTRIBUTION.record(deviceIds.size());
 
-        KEYS_EMPTY_TAKE_COUNTER.increment();
-        return Optional.empty();
-      } finally {
-        CONTESTED_KEY_DISTRIBUTION.record(contestedKeys);
-      }
-    });
+    final Map<Long, CompletableFuture<Optional<PreKey>>> futuresByDeviceId = new HashMap<>();
+    deviceIds.forEach(deviceId -> futuresByDeviceId.computeIfAbsent(deviceId, id -> takeAsync(identifier, id)));
+
+    try {
+      CompletableFuture.allOf(futuresByDeviceId.values().toArray(new CompletableFuture[0])).join();
+    } catch (final CompletionException e) {
+      throw unwrapCompletionException(e);
+    }
+
+    final Map<Long, PreKey> preKeysByDeviceId = new HashMap<>();
+    futuresByDeviceId.forEach((deviceId, future) ->
+        future.join().ifPresent(preKey -> preKeysByDeviceId.put(deviceId, preKey)));
+
+    return preKeysByDeviceId;
+  }
+
+  /**
+   * Unwraps the given exception so synchronous callers see the same exceptions they would have seen before key
+   * operations became asynchronous. Checked exceptions remain wrapped.
+   */
+  private static RuntimeException unwrapCompletionException(final CompletionException e) {
+    Throwables.throwIfUnchecked(ExceptionUtils.unwrap(e));
+    return e;
+  }
+
+  /**
+   * Tries to claim one of the given candidate keys by deleting it. The first attempt always targets the first candidate
+   * so that uncontended takes consume keys in order. After losing a race for a key, the next attempt targets a
+   * randomly-chosen remaining candidate rather than the next one in line; otherwise every taker that lost the race for
+   * the first key would go on to race for the second, and so on, and the number of contested deletes would grow with
+   * the square of the number of concurrent takers.
+   */
+  private CompletableFuture<Optional<PreKey>> claimCandidate(final AttributeValue partitionKey,
+      final List<Map<String, AttributeValue>> candidates, final int contestedKeys) {
+
+    if (candidates.isEmpty()) {
+      CONTESTED_KEY_DISTRIBUTION.record(contestedKeys);
+      return CompletableFuture.completedFuture(Optional.empty());
+    }
+
+    final int index = contestedKeys == 0 ? 0 : ThreadLocalRandom.current().nextInt(candidates.size());
+    Collections.swap(candidates, index, candidates.size() - 1);
+    final Map<String, AttributeValue> candidate = candidates.remove(candidates.size() - 1);
+
+    final DeleteItemRequest deleteItemRequest = DeleteItemRequest.builder()
+        .tableName(tableName)
+        .key(Map.of(
+            KEY_ACCOUNT_UUID, partitionKey,
+            KEY_DEVICE_ID_KEY_ID, candidate.get(KEY_DEVICE_ID_KEY_ID)))
+        .returnValues(ReturnValue.ALL_OLD)
+        .build();
+
+    return asyncClient.deleteItem(deleteItemRequest)
+        .thenCompose(deleteItemResponse -> {
+          if (deleteItemResponse.hasAttributes()) {
+            CONTESTED_KEY_DISTRIBUTION.record(contestedKeys);
+            return CompletableFuture.completedFuture(Optional.of(getPreKeyFromItem(deleteItemResponse.attributes())));
+          }
+
+          return claimCandidate(partitionKey, candidates, contestedKeys + 1);
+        });
   }
 
   public int getCount(final UUID identifier, final long deviceId) {
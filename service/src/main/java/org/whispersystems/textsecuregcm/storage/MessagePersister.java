@@ -14,17 +14,25 @@ import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import io.dropwizard.lifecycle.Managed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessagePersisterConfiguration;
 import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.util.Constants;
 import org.whispersystems.textsecuregcm.util.Util;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
 public class MessagePersister implements Managed {
 
@@ -45,6 +53,15 @@ public class MessagePersister implements Managed {
   private final Histogram queueCountHistogram = metricRegistry.histogram(name(MessagePersister.class, "queueCount"));
   private final Histogram queueSizeHistogram = metricRegistry.histogram(name(MessagePersister.class, "queueSize"));
 
+  private final Counter pipelinedQueuesPersistedCounter =
+      Metrics.counter(name(MessagePersister.class, "pipelinedQueuesPersisted"));
+  private final Counter pipelinedMessagesPersistedCounter =
+      Metrics.counter(name(MessagePersister.class, "pipelinedMessagesPersisted"));
+  private final AtomicInteger pipelinedQueuesPending =
+      Metrics.gauge(name(MessagePersister.class, "pipelinedQueuesPending"), new AtomicInteger(0));
+  private final AtomicInteger pipelinedQueuesInFlight =
+      Metrics.gauge(name(MessagePersister.class, "pipelinedQueuesInFlight"), new AtomicInteger(0));
+
   static final int QUEUE_BATCH_LIMIT = 100;
   static final int MESSAGE_BATCH_LIMIT = 100;
 
@@ -54,6 +71,12 @@ public class MessagePersister implements Managed {
 
   private static final int CONSECUTIVE_EMPTY_CACHE_REMOVAL_LIMIT = 3;
 
+  @VisibleForTesting
+  static final int PIPELINED_QUEUE_RETRY_ATTEMPTS = 3;
+
+  @VisibleForTesting
+  static final Duration PIPELINED_QUEUE_RETRY_BACKOFF = Duration.ofMillis(250);
+
   private static final Logger logger = LoggerFactory.getLogger(MessagePersister.class);
 
   public MessagePersister(final MessagesCache messagesCache, final MessagesManager messagesManager,
@@ -68,10 +91,14 @@ public class MessagePersister implements Managed {
     for (int i = 0; i < workerThreads.length; i++) {
       workerThreads[i] = new Thread(() -> {
         while (running) {
-          if (dynamicConfigurationManager.getConfiguration().getMessagePersisterConfiguration()
-              .isPersistenceEnabled()) {
+          final DynamicMessagePersisterConfiguration persisterConfiguration =
+              dynamicConfigurationManager.getConfiguration().getMessagePersisterConfiguration();
+
+          if (persisterConfiguration.isPersistenceEnabled()) {
             try {
-              final int queuesPersisted = persistNextQueues(Instant.now());
+              final int queuesPersisted = persisterConfiguration.isPipelinedPersistenceEnabled()
+                  ? persistNextQueuesPipelined(Instant.now(), persisterConfiguration.getPipelinedQueueConcurrency())
+                  : persistNextQueues(Instant.now());
               queueCountHistogram.update(queuesPersisted);
 
               if (queuesPersisted == 0) {
@@ -192,4 +219,114 @@ public class MessagePersister implements Managed {
       }
     }
   }
+
+  /**
+   * Persists the queues in the next slot with up to {@code concurrency} queues in flight at once. Each queue is retried
+   * on its own backoff schedule; queues that still can't be persisted are returned to the persistence index without
+   * pausing the worker.
+   *
+   * @return the number of queues processed
+   */
+  @VisibleForTesting
+  int persistNextQueuesPipelined(final Instant currentTime, final int concurrency) {
+    final int slot = messagesCache.getNextSlotToPersist();
+
+    List<String> queuesToPersist;
+    int queuesPersisted = 0;
+
+    do {
+      try (final Timer.Context ignored = getQueuesTimer.time()) {
+        queuesToPersist = messagesCache.getQueuesToPersist(slot, currentTime.minus(persistDelay), QUEUE_BATCH_LIMIT);
+      }
+
+      pipelinedQueuesPending.addAndGet(queuesToPersist.size());
+
+      Flux.fromIterable(queuesToPersist)
+          .flatMap(this::persistQueueWithRetries, concurrency)
+          .then()
+          .block();
+
+      queuesPersisted += queuesToPersist.size();
+    } while (queuesToPersist.size() >= QUEUE_BATCH_LIMIT);
+
+    return queuesPersisted;
+  }
+
+  private Mono<Void> persistQueueWithRetries(final String queue) {
+    final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queue);
+    final long deviceId = MessagesCache.getDeviceIdFromQueueName(queue);
+
+    // account lookups are still synchronous, so keep them off of the Redis client's I/O threads
+    return Mono.fromCallable(() -> accountsManager.getByAccountIdentifier(accountUuid))
+        .subscribeOn(Schedulers.boundedElastic())
+        .doOnSubscribe(ignored -> {
+          pipelinedQueuesPending.decrementAndGet();
+          pipelinedQueuesInFlight.incrementAndGet();
+        })
+        .flatMap(maybeAccount -> {
+          if (maybeAccount.isEmpty()) {
+            logger.error("No account record found for account {}", accountUuid);
+            return Mono.empty();
+          }
+
+          return persistQueueAsync(accountUuid, deviceId)
+              .doOnError(ignored -> persistQueueExceptionMeter.mark())
+              .retryWhen(Retry.backoff(PIPELINED_QUEUE_RETRY_ATTEMPTS, PIPELINED_QUEUE_RETRY_BACKOFF))
+              .doOnSuccess(ignored -> pipelinedQueuesPersistedCounter.increment());
+        })
+        .then()
+        .onErrorResume(throwable -> {
+          logger.warn("Failed to persist queue {}::{}; will schedule for retry", accountUuid, deviceId, throwable);
+
+          return Mono.fromFuture(() -> messagesCache.addQueueToPersistAsync(accountUuid, deviceId))
+              .onErrorResume(e -> {
+                logger.warn("Failed to reschedule queue {}::{} for persistence", accountUuid, deviceId, e);
+                return Mono.empty();
+              });
+        })
+        .doFinally(ignored -> pipelinedQueuesInFlight.decrementAndGet());
+  }
+
+  @VisibleForTesting
+  Mono<Void> persistQueueAsync(final UUID accountUuid, final long deviceId) {
+    return Mono.defer(() -> {
+      final Timer.Context timerContext = persistQueueTimer.time();
+
+      return Mono.usingWhen(
+              Mono.fromFuture(() -> messagesCache.lockQueueForPersistenceAsync(accountUuid, deviceId))
+                  .thenReturn(MessagesCache.getQueueName(accountUuid, deviceId)),
+              ignored -> persistQueueBatches(accountUuid, deviceId, 0, 0),
+              ignored -> Mono.fromFuture(() -> messagesCache.unlockQueueForPersistenceAsync(accountUuid, deviceId)))
+          .doOnNext(messageCount -> {
+            queueSizeHistogram.update(messageCount);
+            pipelinedMessagesPersistedCounter.increment(messageCount);
+          })
+          .doFinally(ignored -> timerContext.stop())
+          .then();
+    });
+  }
+
+  private Mono<Integer> persistQueueBatches(final UUID accountUuid, final long deviceId, final int messageCount,
+      final int consecutiveEmptyCacheRemovals) {
+
+    return Mono.fromFuture(() -> messagesCache.getMessagesToPersistAsync(accountUuid, deviceId, MESSAGE_BATCH_LIMIT))
+        .flatMap(messages -> {
+          if (messages.isEmpty()) {
+            return Mono.just(messageCount);
+          }
+
+          return Mono.fromFuture(() -> messagesManager.persistMessagesAsync(accountUuid, deviceId, messages))
+              .flatMap(messagesRemovedFromCache -> {
+                final int updatedConsecutiveEmptyCacheRemovals =
+                    messagesRemovedFromCache == 0 ? consecutiveEmptyCacheRemovals + 1 : 0;
+
+                if (updatedConsecutiveEmptyCacheRemovals > CONSECUTIVE_EMPTY_CACHE_REMOVAL_LIMIT) {
+                  return Mono.error(new MessagePersistenceException("persistence failure loop detected"));
+                }
+
+                return persistQueueBatches(accountUuid, deviceId, messageCount + messages.size(),
+                    updatedConsecutiveEmptyCacheRemovals);
+              });
+        });
+  }
 }
@@ -8,6 +8,10 @@ package org.whispersystems.textsecuregcm.storage;
 import static com.codahale.metrics.MetricRegistry.name;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.dropwizard.lifecycle.Managed;
 import io.lettuce.core.ScoredValue;
@@ -17,25 +21,26 @@ import io.lettuce.core.cluster.SlotHash;
 import io.lettuce.core.cluster.models.partitions.RedisClusterNode;
 import io.lettuce.core.cluster.pubsub.RedisClusterPubSubAdapter;
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -55,6 +60,27 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
 
+/**
+ * The messages cache holds messages for devices until they're delivered or persisted to longer-term storage.
+ * <p/>
+ * Message availability notifications can reach listeners by two paths:
+ * <ol>
+ *   <li>Keyspace notifications for each queue with a listener, subscribed on the node that owns the queue. Keyspace
+ *   notifications never leave that node, and every version of the server produces them, so this path is always
+ *   active.</li>
+ *   <li>A pub/sub channel of this instance's own. When enabled, registering a listener records this instance's channel
+ *   alongside the queue, and the scripts that insert messages into and finish persisting messages from that queue
+ *   publish a notification directly to that channel. Recorded channels expire unless renewed, so a crashed instance's
+ *   channel stops receiving notifications shortly after it stops renewing them.</li>
+ * </ol>
+ * The per-instance channel path is meant to eventually replace per-queue keyspace subscriptions, but plain
+ * {@code PUBLISH} is broadcast to every node in a cluster, so publishing remains off by default until notifications
+ * can use sharded pub/sub. Instances always listen on their own channel so that publishing can be enabled without
+ * losing notifications during a mixed-version deployment, and always keep their keyspace subscriptions so that
+ * messages inserted by instances that don't publish still produce notifications. Instances that don't publish never
+ * record, look up, or remove per-instance channels. While both paths are active, a
+ * listener may be notified twice for the same event.
+ */
 public class MessagesCache extends RedisClusterPubSubAdapter<String, String> implements Managed {
 
   private final FaultTolerantRedisCluster readDeleteCluster;
@@ -72,28 +98,51 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   private final ClusterLuaScript getItemsScript;
   private final ClusterLuaScript removeQueueScript;
   private final ClusterLuaScript getQueuesToPersistScript;
+  private final ClusterLuaScript unlockQueueScript;
+  private final ClusterLuaScript removeQueueListenerScript;
+  private final ClusterLuaScript renewQueueListenerScript;
+
+  private final String notificationChannel = getNotificationChannel(UUID.randomUUID());
+  private final boolean publishToNotificationChannel;
 
-  private final Map<String, MessageAvailabilityListener> messageListenersByQueueName = new HashMap<>();
-  private final Map<MessageAvailabilityListener, String> queueNamesByMessageListener = new IdentityHashMap<>();
+  // Both maps are only modified while computing the queue's entry in messageListenersByQueueName, so they always agree
+  // with one another for any given queue. Listeners are compared by identity in both.
+  private final Map<String, MessageAvailabilityListener> messageListenersByQueueName = new ConcurrentHashMap<>();
+  private final Map<ListenerIdentity, String> queueNamesByMessageListener = new ConcurrentHashMap<>();
 
   private final Timer insertTimer = Metrics.timer(name(MessagesCache.class, "insert"));
+  private final Timer insertBatchTimer = Metrics.timer(name(MessagesCache.class, "insertBatch"));
+  private final DistributionSummary insertBatchSizeDistribution =
+      Metrics.summary(name(MessagesCache.class, "insertBatchSize"));
   private final Timer getMessagesTimer = Metrics.timer(name(MessagesCache.class, "get"));
   private final Timer getQueuesToPersistTimer = Metrics.timer(name(MessagesCache.class, "getQueuesToPersist"));
   private final Timer clearQueueTimer = Metrics.timer(name(MessagesCache.class, "clear"));
   private final Counter pubSubMessageCounter = Metrics.counter(name(MessagesCache.class, "pubSubMessage"));
-  private final Counter newMessageNotificationCounter = Metrics.counter(
-      name(MessagesCache.class, "newMessageNotification"));
-  private final Counter queuePersistedNotificationCounter = Metrics.counter(
-      name(MessagesCache.class, "queuePersisted"));
   private final Counter staleEphemeralMessagesCounter = Metrics.counter(
       name(MessagesCache.class, "staleEphemeralMessages"));
 
+  private static final String NEW_MESSAGE_NOTIFICATION_COUNTER_NAME =
+      name(MessagesCache.class, "newMessageNotification");
+  private static final String QUEUE_PERSISTED_NOTIFICATION_COUNTER_NAME = name(MessagesCache.class, "queuePersisted");
+  private static final String NOTIFICATION_SOURCE_TAG_NAME = "source";
+
   static final String NEXT_SLOT_TO_PERSIST_KEY = "user_queue_persist_slot";
   private static final byte[] LOCK_VALUE = "1".getBytes(StandardCharsets.UTF_8);
 
   private static final String QUEUE_KEYSPACE_PREFIX = "__keyspace@0__:user_queue::";
   private static final String PERSISTING_KEYSPACE_PREFIX = "__keyspace@0__:user_queue_persisting::";
 
+  private static final String NEW_MESSAGES_NOTIFICATION_PREFIX = "newMessages:";
+  private static final String MESSAGES_PERSISTED_NOTIFICATION_PREFIX = "messagesPersisted:";
+
+  // Weak, so names of queues that no longer have listeners can be collected
+  private static final Interner<String> QUEUE_NAME_INTERNER = Interners.newWeakInterner();
+
+  // Listeners are removed explicitly when clients disconnect and renewed periodically while clients stay connected,
+  // just like presence keys; this expiration keeps scripts from publishing to the channels of instances that exited
+  // without cleaning up after themselves for very long
+  private static final Duration QUEUE_LISTENER_EXPIRATION = Duration.ofMinutes(11);
+
   @VisibleForTesting
   static final Duration MAX_EPHEMERAL_MESSAGE_DELAY = Duration.ofSeconds(10);
 
@@ -106,9 +155,23 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
       final ExecutorService notificationExecutorService, final Scheduler messageDeliveryScheduler,
       final ExecutorService messageDeletionExecutorService, final Clock clock) throws IOException {
 
+    this(insertCluster, readDeleteCluster, notificationExecutorService, messageDeliveryScheduler,
+        messageDeletionExecutorService, clock, false);
+  }
+
+  /**
+   * @param publishToNotificationChannel if {@code true}, ask the scripts that modify queues with listeners on this
+   * instance to also publish notifications to this instance's own channel; see the class documentation for details
+   */
+  public MessagesCache(final FaultTolerantRedisCluster insertCluster, final FaultTolerantRedisCluster readDeleteCluster,
+      final ExecutorService notificationExecutorService, final Scheduler messageDeliveryScheduler,
+      final ExecutorService messageDeletionExecutorService, final Clock clock,
+      final boolean publishToNotificationChannel) throws IOException {
+
     this.readDeleteCluster = readDeleteCluster;
     this.pubSubConnection = readDeleteCluster.createPubSubConnection();
     this.clock = clock;
+    this.publishToNotificationChannel = publishToNotificationChannel;
 
     this.notificationExecutorService = notificationExecutorService;
     this.messageDeliveryScheduler = messageDeliveryScheduler;
@@ -123,12 +186,20 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
         ScriptOutputType.STATUS);
     this.getQueuesToPersistScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/get_queues_to_persist.lua",
         ScriptOutputType.MULTI);
+    this.unlockQueueScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/unlock_queue.lua",
+        ScriptOutputType.INTEGER);
+    this.removeQueueListenerScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/remove_queue_listener.lua",
+        ScriptOutputType.INTEGER);
+    this.renewQueueListenerScript = ClusterLuaScript.fromResource(readDeleteCluster, "lua/renew_queue_listener.lua",
+        ScriptOutputType.INTEGER);
   }
 
   @Override
   public void start() {
     pubSubConnection.usePubSubConnection(connection -> connection.addListener(this));
     pubSubConnection.subscribeToClusterTopologyChangedEvents(this::resubscribeAll);
+
+    subscribeToNotificationChannel();
   }
 
   @Override
@@ -137,28 +208,140 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   }
 
   private void resubscribeAll() {
+    subscribeToNotificationChannel();
 
-    final Set<String> queueNames;
-
-    synchronized (messageListenersByQueueName) {
-      queueNames = new HashSet<>(messageListenersByQueueName.keySet());
-    }
-
-    for (final String queueName : queueNames) {
+    for (final String queueName : Set.copyOf(messageListenersByQueueName.keySet())) {
       subscribeForKeyspaceNotifications(queueName);
     }
   }
 
+  private void subscribeToNotificationChannel() {
+    final int slot = SlotHash.getSlot(notificationChannel);
+
+    pubSubConnection.usePubSubConnection(
+        connection -> connection.sync().nodes(node -> node.is(RedisClusterNode.NodeFlag.UPSTREAM) && node.hasSlot(slot))
+            .commands()
+            .subscribe(notificationChannel));
+  }
+
   public long insert(final UUID guid, final UUID destinationUuid, final long destinationDevice,
       final MessageProtos.Envelope message) {
-    final MessageProtos.Envelope messageWithGuid = message.toBuilder().setServerGuid(guid.toString()).build();
-    return (long) insertTimer.record(() ->
-        insertScript.executeBinary(List.of(getMessageQueueKey(destinationUuid, destinationDevice),
-                getMessageQueueMetadataKey(destinationUuid, destinationDevice),
-                getQueueIndexKey(destinationUuid, destinationDevice)),
-            List.of(messageWithGuid.toByteArray(),
-                String.valueOf(message.getServerTimestamp()).getBytes(StandardCharsets.UTF_8),
-                guid.toString().getBytes(StandardCharsets.UTF_8))));
+    final Pair<List<byte[]>, List<byte[]>> keysAndArgs = getInsertKeysAndArgs(guid, destinationUuid, destinationDevice,
+        message);
+
+    return (long) insertTimer.record(() -> insertScript.executeBinary(keysAndArgs.first(), keysAndArgs.second()));
+  }
+
+  public CompletableFuture<Long> insertAsync(final UUID guid, final UUID destinationUuid, final long destinationDevice,
+      final MessageProtos.Envelope message) {
+    final Pair<List<byte[]>, List<byte[]>> keysAndArgs = getInsertKeysAndArgs(guid, destinationUuid, destinationDevice,
+        message);
+
+    final Timer.Sample sample = Timer.start();
+
+    return insertScript.executeBinaryAsync(keysAndArgs.first(), keysAndArgs.second())
+        .thenApply(result -> (long) result)
+        .whenComplete((ignored, throwable) -> sample.stop(insertTimer));
+  }
+
+  /**
+   * A single message to be inserted into a queue as part of a batch.
+   *
+   * @param guid the server-assigned GUID for the message
+   * @param destinationUuid the identifier of the destination account
+   * @param destinationDevice the identifier of the destination device
+   * @param message the message to insert
+   */
+  public record InsertEntry(UUID guid, UUID destinationUuid, long destinationDevice, MessageProtos.Envelope message) {
+  }
+
+  /**
+   * Inserts a batch of messages, which may be bound for many different queues, without waiting for each insertion to
+   * complete before issuing the next.
+   *
+   * @param entries the messages to insert
+   *
+   * @return a future that yields the message ID assigned to each entry, in the same order as {@code entries}
+   */
+  public CompletableFuture<List<Long>> insertBatch(final List<InsertEntry> entries) {
+    if (entries.isEmpty()) {
+      return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    final Timer.Sample sample = Timer.start();
+
+    final List<CompletableFuture<Object>> insertFutures = insertScript.executeBinaryBatchAsync(entries.stream()
+        .map(entry -> getInsertKeysAndArgs(entry.guid(), entry.destinationUuid(), entry.destinationDevice(),
+            entry.message()))
+        .toList());
+
+    return CompletableFuture.allOf(insertFutures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> insertFutures.stream()
+            .map(insertFuture -> (Long) insertFuture.join())
+            .toList())
+        .whenComplete((ignored, throwable) -> {
+          sample.stop(insertBatchTimer);
+          insertBatchSizeDistribution.record(entries.size());
+        });
+  }
+
+  private Pair<List<byte[]>, List<byte[]>> getInsertKeysAndArgs(final UUID guid, final UUID destinationUuid,
+      final long destinationDevice, final MessageProtos.Envelope message) {
+
+    return new Pair<>(List.of(getMessageQueueKey(destinationUuid, destinationDevice),
+        getMessageQueueMetadataKey(destinationUuid, destinationDevice),
+        getQueueIndexKey(destinationUuid, destinationDevice),
+        getQueueListenerKey(destinationUuid, destinationDevice)),
+        List.of(serializeWithServerGuid(message, guid),
+            String.valueOf(message.getServerTimestamp()).getBytes(StandardCharsets.UTF_8),
+            guid.toString().getBytes(StandardCharsets.UTF_8),
+            (NEW_MESSAGES_NOTIFICATION_PREFIX + getQueueName(destinationUuid, destinationDevice))
+                .getBytes(StandardCharsets.UTF_8),
+            String.valueOf(publishToNotificationChannel).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  /**
+   * Serializes the given message with the given server GUID. Rather than copying the whole message (which may be large
+   * and shared among many recipients) into a new builder just to set its GUID, this appends the GUID to the existing
+   * serialized form as a trailing field; when parsing a serialized message, the last value of a singular field wins,
+   * so the result is equivalent to serializing {@code message.toBuilder().setServerGuid(guid.toString()).build()}.
+   */
+  @VisibleForTesting
+  static byte[] serializeWithServerGuid(final MessageProtos.Envelope message, final UUID guid) {
+    if (message.hasServerGuid()) {
+      // Avoid carrying a redundant, stale GUID around in the serialized message
+      return message.toBuilder().setServerGuid(guid.toString()).build().toByteArray();
+    }
+
+    final String guidString = guid.toString();
+    final byte[] serialized = new byte[message.getSerializedSize() +
+        CodedOutputStream.computeStringSize(MessageProtos.Envelope.SERVER_GUID_FIELD_NUMBER, guidString)];
+
+    final CodedOutputStream outputStream = CodedOutputStream.newInstance(serialized);
+
+    try {
+      message.writeTo(outputStream);
+      outputStream.writeString(MessageProtos.Envelope.SERVER_GUID_FIELD_NUMBER, guidString);
+      outputStream.checkNoSpaceLeft();
+    } catch (final IOException e) {
+      // This should never happen when writing to a byte array of exactly the right size
+      throw new UncheckedIOException(e);
+    }
+
+    return serialized;
+  }
+
+  /**
+   * Parses a serialized message read from the cache. The parsed message's {@code bytes} fields (most notably its
+   * content, which is usually most of the message) are views into the given array rather than copies of it, so callers
+   * must not modify the array after parsing.
+   */
+  @VisibleForTesting
+  static MessageProtos.Envelope parseEnvelope(final byte[] serialized) throws InvalidProtocolBufferException {
+    final CodedInputStream inputStream = CodedInputStream.newInstance(serialized);
+    inputStream.enableAliasing(true);
+
+    return MessageProtos.Envelope.parser().parseFrom(inputStream);
   }
 
   public CompletableFuture<Optional<MessageProtos.Envelope>> remove(final UUID destinationUuid,
@@ -186,7 +369,7 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
 
           for (final byte[] bytes : serialized) {
             try {
-              removedMessages.add(MessageProtos.Envelope.parseFrom(bytes));
+              removedMessages.add(parseEnvelope(bytes));
             } catch (final InvalidProtocolBufferException e) {
               logger.warn("Failed to parse envelope", e);
             }
@@ -266,7 +449,7 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
 
           for (int i = 0; i < queueItems.size() - 1; i += 2) {
             try {
-              final MessageProtos.Envelope message = MessageProtos.Envelope.parseFrom(queueItems.get(i));
+              final MessageProtos.Envelope message = parseEnvelope(queueItems.get(i));
 
               envelopes.add(message);
             } catch (InvalidProtocolBufferException e) {
@@ -315,20 +498,37 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
       final List<ScoredValue<byte[]>> scoredMessages = readDeleteCluster.withBinaryCluster(
           connection -> connection.sync()
               .zrangeWithScores(getMessageQueueKey(accountUuid, destinationDevice), 0, limit));
-      final List<MessageProtos.Envelope> envelopes = new ArrayList<>(scoredMessages.size());
-
-      for (final ScoredValue<byte[]> scoredMessage : scoredMessages) {
-        try {
-          envelopes.add(MessageProtos.Envelope.parseFrom(scoredMessage.getValue()));
-        } catch (InvalidProtocolBufferException e) {
-          logger.warn("Failed to parse envelope", e);
-        }
-      }
 
-      return envelopes;
+      return parseScoredMessages(scoredMessages);
     });
   }
 
+  CompletableFuture<List<MessageProtos.Envelope>> getMessagesToPersistAsync(final UUID accountUuid,
+      final long destinationDevice, final int limit) {
+
+    final Timer.Sample sample = Timer.start();
+
+    return readDeleteCluster.withBinaryCluster(connection -> connection.async()
+            .zrangeWithScores(getMessageQueueKey(accountUuid, destinationDevice), 0, limit))
+        .toCompletableFuture()
+        .thenApplyAsync(MessagesCache::parseScoredMessages, messageDeletionExecutorService)
+        .whenComplete((ignored, throwable) -> sample.stop(getMessagesTimer));
+  }
+
+  private static List<MessageProtos.Envelope> parseScoredMessages(final List<ScoredValue<byte[]>> scoredMessages) {
+    final List<MessageProtos.Envelope> envelopes = new ArrayList<>(scoredMessages.size());
+
+    for (final ScoredValue<byte[]> scoredMessage : scoredMessages) {
+      try {
+        envelopes.add(parseEnvelope(scoredMessage.getValue()));
+      } catch (InvalidProtocolBufferException e) {
+        logger.warn("Failed to parse envelope", e);
+      }
+    }
+
+    return envelopes;
+  }
+
   public void clear(final UUID destinationUuid) {
     // TODO Remove null check in a fully UUID-based world
     if (destinationUuid != null) {
@@ -365,41 +565,118 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
             getMessageQueueKey(accountUuid, deviceId)));
   }
 
+  CompletableFuture<Void> addQueueToPersistAsync(final UUID accountUuid, final long deviceId) {
+    return readDeleteCluster.withBinaryCluster(connection -> connection.async()
+            .zadd(getQueueIndexKey(accountUuid, deviceId), ZAddArgs.Builder.nx(), System.currentTimeMillis(),
+                getMessageQueueKey(accountUuid, deviceId)))
+        .toCompletableFuture()
+        .thenAccept(ignored -> {});
+  }
+
   void lockQueueForPersistence(final UUID accountUuid, final long deviceId) {
     readDeleteCluster.useBinaryCluster(
         connection -> connection.sync().setex(getPersistInProgressKey(accountUuid, deviceId), 30, LOCK_VALUE));
   }
 
+  CompletableFuture<Void> lockQueueForPersistenceAsync(final UUID accountUuid, final long deviceId) {
+    return readDeleteCluster.withBinaryCluster(
+            connection -> connection.async().setex(getPersistInProgressKey(accountUuid, deviceId), 30, LOCK_VALUE))
+        .toCompletableFuture()
+        .thenAccept(ignored -> {});
+  }
+
   void unlockQueueForPersistence(final UUID accountUuid, final long deviceId) {
-    readDeleteCluster.useBinaryCluster(
-        connection -> connection.sync().del(getPersistInProgressKey(accountUuid, deviceId)));
+    unlockQueueScript.executeBinary(getUnlockQueueKeys(accountUuid, deviceId),
+        getUnlockQueueArgs(accountUuid, deviceId));
+  }
+
+  CompletableFuture<Void> unlockQueueForPersistenceAsync(final UUID accountUuid, final long deviceId) {
+    return unlockQueueScript.executeBinaryAsync(getUnlockQueueKeys(accountUuid, deviceId),
+            getUnlockQueueArgs(accountUuid, deviceId))
+        .thenAccept(ignored -> {});
+  }
+
+  private static List<byte[]> getUnlockQueueKeys(final UUID accountUuid, final long deviceId) {
+    return List.of(getPersistInProgressKey(accountUuid, deviceId), getQueueListenerKey(accountUuid, deviceId));
+  }
+
+  private List<byte[]> getUnlockQueueArgs(final UUID accountUuid, final long deviceId) {
+    return List.of((MESSAGES_PERSISTED_NOTIFICATION_PREFIX + getQueueName(accountUuid, deviceId))
+            .getBytes(StandardCharsets.UTF_8),
+        String.valueOf(publishToNotificationChannel).getBytes(StandardCharsets.UTF_8));
   }
 
   public void addMessageAvailabilityListener(final UUID destinationUuid, final long deviceId,
       final MessageAvailabilityListener listener) {
-    final String queueName = getQueueName(destinationUuid, deviceId);
+    final String queueName = QUEUE_NAME_INTERNER.intern(getQueueName(destinationUuid, deviceId));
 
-    synchronized (messageListenersByQueueName) {
-      messageListenersByQueueName.put(queueName, listener);
-      queueNamesByMessageListener.put(listener, queueName);
-    }
+    messageListenersByQueueName.compute(queueName, (ignored, displacedListener) -> {
+      if (displacedListener != null && displacedListener != listener) {
+        queueNamesByMessageListener.remove(new ListenerIdentity(displacedListener));
+      }
+
+      queueNamesByMessageListener.put(new ListenerIdentity(listener), queueName);
+
+      return listener;
+    });
 
     subscribeForKeyspaceNotifications(queueName);
+
+    if (publishToNotificationChannel) {
+      readDeleteCluster.useBinaryCluster(connection -> connection.sync()
+          .setex(getQueueListenerKey(destinationUuid, deviceId), QUEUE_LISTENER_EXPIRATION.toSeconds(),
+              notificationChannel.getBytes(StandardCharsets.UTF_8)));
+    }
   }
 
   public void removeMessageAvailabilityListener(final MessageAvailabilityListener listener) {
-    @Nullable final String queueName = queueNamesByMessageListener.get(listener);
+    final ListenerIdentity listenerIdentity = new ListenerIdentity(listener);
+
+    @Nullable final String queueName = queueNamesByMessageListener.get(listenerIdentity);
+
+    if (queueName == null) {
+      return;
+    }
+
+    final AtomicBoolean removed = new AtomicBoolean(false);
 
-    if (queueName != null) {
+    messageListenersByQueueName.computeIfPresent(queueName, (ignored, currentListener) -> {
+      // A new listener for the same queue may have replaced this one, in which case we should leave it in place
+      if (currentListener != listener) {
+        return currentListener;
+      }
+
+      queueNamesByMessageListener.remove(listenerIdentity);
+      removed.set(true);
+
+      return null;
+    });
+
+    if (removed.get()) {
       unsubscribeFromKeyspaceNotifications(queueName);
 
-      synchronized (messageListenersByQueueName) {
-        queueNamesByMessageListener.remove(listener);
-        messageListenersByQueueName.remove(queueName);
+      // Our channel is unique to this instance, so if we never recorded it, there's nothing to remove; the script
+      // leaves keys that belong to other instances alone
+      if (publishToNotificationChannel) {
+        removeQueueListenerScript.executeBinary(List.of(getQueueListenerKey(queueName)),
+            List.of(notificationChannel.getBytes(StandardCharsets.UTF_8)));
       }
     }
   }
 
+  /**
+   * Extends the lifetime of the record of this instance's channel for the given queue, if this instance publishes to
+   * its own channel and still holds the queue's listener. Callers should renew listeners at the same interval as client
+   * presence.
+   */
+  public void renewMessageAvailabilityListener(final UUID destinationUuid, final long deviceId) {
+    if (publishToNotificationChannel) {
+      renewQueueListenerScript.executeBinary(List.of(getQueueListenerKey(destinationUuid, deviceId)),
+          List.of(notificationChannel.getBytes(StandardCharsets.UTF_8),
+              String.valueOf(QUEUE_LISTENER_EXPIRATION.toSeconds()).getBytes(StandardCharsets.UTF_8)));
+    }
+  }
+
   private void subscribeForKeyspaceNotifications(final String queueName) {
     final int slot = SlotHash.getSlot(queueName);
 
@@ -429,40 +706,71 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
   public void message(final RedisClusterNode node, final String channel, final String message) {
     pubSubMessageCounter.increment();
 
-    if (channel.startsWith(QUEUE_KEYSPACE_PREFIX) && "zadd".equals(message)) {
-      newMessageNotificationCounter.increment();
-      notificationExecutorService.execute(() -> {
-        try {
-          findListener(channel).ifPresent(listener -> {
-            if (!listener.handleNewMessagesAvailable()) {
-              removeMessageAvailabilityListener(listener);
-            }
-          });
-        } catch (final Exception e) {
-          logger.warn("Unexpected error handling new message", e);
-        }
-      });
+    if (notificationChannel.equals(channel)) {
+      if (message.startsWith(NEW_MESSAGES_NOTIFICATION_PREFIX)) {
+        handleNewMessagesAvailable(
+            QUEUE_NAME_INTERNER.intern(message.substring(NEW_MESSAGES_NOTIFICATION_PREFIX.length())), "channel");
+      } else if (message.startsWith(MESSAGES_PERSISTED_NOTIFICATION_PREFIX)) {
+        handleMessagesPersisted(
+            QUEUE_NAME_INTERNER.intern(message.substring(MESSAGES_PERSISTED_NOTIFICATION_PREFIX.length())), "channel");
+      }
+    } else if (channel.startsWith(QUEUE_KEYSPACE_PREFIX) && "zadd".equals(message)) {
+      handleNewMessagesAvailable(getQueueNameFromKeyspaceChannel(channel), "keyspace");
     } else if (channel.startsWith(PERSISTING_KEYSPACE_PREFIX) && "del".equals(message)) {
-      queuePersistedNotificationCounter.increment();
-      notificationExecutorService.execute(() -> {
-        try {
-          findListener(channel).ifPresent(listener -> {
-            if (!listener.handleMessagesPersisted()) {
-              removeMessageAvailabilityListener(listener);
-            }
-          });
-        } catch (final Exception e) {
-          logger.warn("Unexpected error handling messages persisted", e);
-        }
-      });
+      handleMessagesPersisted(getQueueNameFromKeyspaceChannel(channel), "keyspace");
     }
   }
 
-  private Optional<MessageAvailabilityListener> findListener(final String keyspaceChannel) {
-    final String queueName = getQueueNameFromKeyspaceChannel(keyspaceChannel);
+  private void handleNewMessagesAvailable(final String queueName, final String source) {
+    Metrics.counter(NEW_MESSAGE_NOTIFICATION_COUNTER_NAME, NOTIFICATION_SOURCE_TAG_NAME, source).increment();
 
-    synchronized (messageListenersByQueueName) {
-      return Optional.ofNullable(messageListenersByQueueName.get(queueName));
+    notificationExecutorService.execute(() -> {
+      try {
+        findListener(queueName).ifPresent(listener -> {
+          if (!listener.handleNewMessagesAvailable()) {
+            removeMessageAvailabilityListener(listener);
+          }
+        });
+      } catch (final Exception e) {
+        logger.warn("Unexpected error handling new message", e);
+      }
+    });
+  }
+
+  private void handleMessagesPersisted(final String queueName, final String source) {
+    Metrics.counter(QUEUE_PERSISTED_NOTIFICATION_COUNTER_NAME, NOTIFICATION_SOURCE_TAG_NAME, source).increment();
+
+    notificationExecutorService.execute(() -> {
+      try {
+        findListener(queueName).ifPresent(listener -> {
+          if (!listener.handleMessagesPersisted()) {
+            removeMessageAvailabilityListener(listener);
+          }
+        });
+      } catch (final Exception e) {
+        logger.warn("Unexpected error handling messages persisted", e);
+      }
+    });
+  }
+
+  private Optional<MessageAvailabilityListener> findListener(final String queueName) {
+    return Optional.ofNullable(messageListenersByQueueName.get(queueName));
+  }
+
+  /**
+   * Wraps a listener so that it's compared by identity, regardless of whether the listener overrides
+   * {@link Object#equals(Object)} and {@link Object#hashCode()}.
+   */
+  private record ListenerIdentity(MessageAvailabilityListener listener) {
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof ListenerIdentity other && other.listener == listener;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(listener);
     }
   }
 
@@ -471,12 +779,22 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     return accountUuid + "::" + deviceId;
   }
 
+  /**
+   * Extracts the name of a queue from the name of a keyspace notification channel. Queue names are interned so that
+   * every notification for a queue resolves to the same instance as the key under which its listener is registered;
+   * lookups then match by reference rather than comparing strings, and the short-lived name extracted from each
+   * notification can be discarded immediately rather than being retained by queued notification tasks.
+   */
   @VisibleForTesting
   static String getQueueNameFromKeyspaceChannel(final String channel) {
     final int startOfHashTag = channel.indexOf('{');
     final int endOfHashTag = channel.lastIndexOf('}');
 
-    return channel.substring(startOfHashTag + 1, endOfHashTag);
+    return QUEUE_NAME_INTERNER.intern(channel.substring(startOfHashTag + 1, endOfHashTag));
+  }
+
+  private static String getNotificationChannel(final UUID instanceId) {
+    return "user_queue_notifications::" + instanceId;
   }
 
   @VisibleForTesting
@@ -496,6 +814,15 @@ public class MessagesCache extends RedisClusterPubSubAdapter<String, String> imp
     return ("user_queue_index::{" + RedisClusterUtil.getMinimalHashTag(slot) + "}").getBytes(StandardCharsets.UTF_8);
   }
 
+  @VisibleForTesting
+  static byte[] getQueueListenerKey(final UUID accountUuid, final long deviceId) {
+    return getQueueListenerKey(getQueueName(accountUuid, deviceId));
+  }
+
+  private static byte[] getQueueListenerKey(final String queueName) {
+    return ("user_queue_listener::{" + queueName + "}").getBytes(StandardCharsets.UTF_8);
+  }
+
   private static byte[] getPersistInProgressKey(final UUID accountUuid, final long deviceId) {
     return ("user_queue_persisting::{" + accountUuid + "::" + deviceId + "}").getBytes(StandardCharsets.UTF_8);
   }
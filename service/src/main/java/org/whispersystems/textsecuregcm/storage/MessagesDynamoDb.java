@@ -63,6 +63,7 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
   private final Timer storeTimer = timer(name(getClass(), "store"));
   private final Timer deleteByAccount = timer(name(getClass(), "delete", "account"));
   private final Timer deleteByDevice = timer(name(getClass(), "delete", "device"));
+  private final Timer deleteBatch = timer(name(getClass(), "delete", "batch"));
 
   private final DynamoDbAsyncClient dbAsyncClient;
   private final String tableName;
@@ -88,7 +89,24 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
     storeTimer.record(() -> writeInBatches(messages, (messageBatch) -> storeBatch(messageBatch, destinationAccountUuid, destinationDeviceId)));
   }
 
+  public CompletableFuture<Void> storeAsync(final List<MessageProtos.Envelope> messages,
+      final UUID destinationAccountUuid, final long destinationDeviceId) {
+
+    final Timer.Sample sample = Timer.start();
+    final List<CompletableFuture<Void>> batchFutures = new ArrayList<>();
+
+    writeInBatches(messages, messageBatch -> batchFutures.add(executeTableWriteItemsUntilCompleteAsync(dbAsyncClient,
+        Map.of(tableName, buildPutRequests(messageBatch, destinationAccountUuid, destinationDeviceId)))));
+
+    return CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture[0]))
+        .whenComplete((ignored, throwable) -> sample.stop(storeTimer));
+  }
+
   private void storeBatch(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid, final long destinationDeviceId) {
+    executeTableWriteItemsUntilComplete(Map.of(tableName, buildPutRequests(messages, destinationAccountUuid, destinationDeviceId)));
+  }
+
+  private List<WriteRequest> buildPutRequests(final List<MessageProtos.Envelope> messages, final UUID destinationAccountUuid, final long destinationDeviceId) {
     if (messages.size() > DYNAMO_DB_MAX_BATCH_SIZE) {
       throw new IllegalArgumentException("Maximum batch size of " + DYNAMO_DB_MAX_BATCH_SIZE + " exceeded with " + messages.size() + " messages");
     }
@@ -110,7 +128,7 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
           .build()).build());
     }
 
-    executeTableWriteItemsUntilComplete(Map.of(tableName, writeItems));
+    return writeItems;
   }
 
   public Publisher<MessageProtos.Envelope> load(final UUID destinationAccountUuid, final long destinationDeviceId,
@@ -215,6 +233,36 @@ public class MessagesDynamoDb extends AbstractDynamoDbStore {
         }, messageDeletionExecutor);
   }
 
+  /**
+   * Deletes the given messages with batched writes. Unlike {@link #deleteMessage(UUID, long, UUID, long)}, deleted
+   * messages are not returned, and messages that do not exist are silently ignored.
+   *
+   * @param serverTimestampsByGuid the server timestamp of each message to delete, keyed by message GUID
+   */
+  public CompletableFuture<Void> deleteMessagesAsync(final UUID destinationAccountUuid, final long destinationDeviceId,
+      final Map<UUID, Long> serverTimestampsByGuid) {
+
+    final Timer.Sample sample = Timer.start();
+    final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid);
+    final List<CompletableFuture<Void>> batchFutures = new ArrayList<>();
+
+    writeInBatches(serverTimestampsByGuid.entrySet(), batch -> {
+      final List<WriteRequest> deleteRequests = batch.stream()
+          .map(guidAndTimestamp -> WriteRequest.builder()
+              .deleteRequest(DeleteRequest.builder()
+                  .key(Map.of(KEY_PARTITION, partitionKey, KEY_SORT,
+                      convertSortKey(destinationDeviceId, guidAndTimestamp.getValue(), guidAndTimestamp.getKey())))
+                  .build())
+              .build())
+          .toList();
+
+      batchFutures.add(executeTableWriteItemsUntilCompleteAsync(dbAsyncClient, Map.of(tableName, deleteRequests)));
+    });
+
+    return CompletableFuture.allOf(batchFutures.toArray(new CompletableFuture[0]))
+        .whenComplete((ignored, throwable) -> sample.stop(deleteBatch));
+  }
+
   public void deleteAllMessagesForAccount(final UUID destinationAccountUuid) {
     deleteByAccount.record(() -> {
       final AttributeValue partitionKey = convertPartitionKey(destinationAccountUuid);
@@ -10,7 +10,10 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import io.micrometer.core.instrument.Metrics;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -27,6 +30,7 @@ import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.util.Constants;
 import org.whispersystems.textsecuregcm.util.Pair;
+import org.whispersystems.textsecuregcm.util.Util;
 import reactor.core.observability.micrometer.Micrometer;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -70,6 +74,59 @@ public class MessagesManager {
     }
   }
 
+  /**
+   * Asynchronously inserts a message into the destination device's queue.
+   *
+   * @return a future that completes when the message has been inserted
+   */
+  public CompletableFuture<Void> insertAsync(final UUID destinationUuid, final long destinationDevice,
+      final Envelope message) {
+
+    final UUID messageGuid = UUID.randomUUID();
+
+    return messagesCache.insertAsync(messageGuid, destinationUuid, destinationDevice, message)
+        .thenCompose(ignored -> storeReportRecord(destinationUuid, message, messageGuid));
+  }
+
+  /**
+   * A single message to be inserted as part of a batch.
+   *
+   * @param destinationUuid the identifier of the destination account
+   * @param destinationDevice the identifier of the destination device
+   * @param message the message to insert
+   */
+  public record BatchInsertEntry(UUID destinationUuid, long destinationDevice, Envelope message) {
+  }
+
+  /**
+   * Inserts a batch of messages, which may be bound for many different destinations, in a single pipelined batch of
+   * cache operations.
+   *
+   * @return a future that yields the GUID assigned to each message, in the same order as {@code entries}
+   */
+  public CompletableFuture<List<UUID>> insertBatch(final List<BatchInsertEntry> entries) {
+    final List<MessagesCache.InsertEntry> cacheEntries = entries.stream()
+        .map(entry -> new MessagesCache.InsertEntry(UUID.randomUUID(),
+            entry.destinationUuid(), entry.destinationDevice(), entry.message()))
+        .toList();
+
+    return messagesCache.insertBatch(cacheEntries)
+        .thenCompose(ignored -> CompletableFuture.allOf(cacheEntries.stream()
+            .map(entry -> storeReportRecord(entry.destinationUuid(), entry.message(), entry.guid()))
+            .toArray(CompletableFuture[]::new)))
+        .thenApply(ignored -> cacheEntries.stream().map(MessagesCache.InsertEntry::guid).toList());
+  }
+
+  private CompletableFuture<Void> storeReportRecord(final UUID destinationUuid, final Envelope message,
+      final UUID messageGuid) {
+
+    if (message.hasSourceUuid() && !destinationUuid.toString().equals(message.getSourceUuid())) {
+      return reportMessageManager.storeAsync(message.getSourceUuid(), messageGuid);
+    }
+
+    return CompletableFuture.completedFuture(null);
+  }
+
   public boolean hasCachedMessages(final UUID destinationUuid, final long destinationDevice) {
     return messagesCache.hasMessages(destinationUuid, destinationDevice);
   }
@@ -133,6 +190,35 @@ public class MessagesManager {
         }, messageDeletionExecutor);
   }
 
+  /**
+   * Deletes a batch of messages from a single device's queue. Messages are removed from the cache in a single
+   * operation, and any messages that were not found in the cache are then removed from DynamoDB with batched writes.
+   *
+   * @param serverTimestampsByGuid the server timestamp of each message to delete, keyed by message GUID
+   *
+   * @return a future that completes when all of the given messages have been deleted
+   */
+  public CompletableFuture<Void> deleteBatch(final UUID destinationUuid, final long destinationDeviceId,
+      final Map<UUID, Long> serverTimestampsByGuid) {
+
+    if (serverTimestampsByGuid.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return messagesCache.remove(destinationUuid, destinationDeviceId, new ArrayList<>(serverTimestampsByGuid.keySet()))
+        .thenComposeAsync(removed -> {
+          final Map<UUID, Long> notCached = new HashMap<>(serverTimestampsByGuid);
+          removed.forEach(envelope -> notCached.remove(UUID.fromString(envelope.getServerGuid())));
+
+          cacheHitByGuidMeter.mark(serverTimestampsByGuid.size() - notCached.size());
+          cacheMissByGuidMeter.mark(notCached.size());
+
+          return notCached.isEmpty()
+              ? CompletableFuture.completedFuture(null)
+              : messagesDynamoDb.deleteMessagesAsync(destinationUuid, destinationDeviceId, notCached);
+        }, messageDeletionExecutor);
+  }
+
   /**
    * @return the number of messages successfully removed from the cache.
    */
@@ -161,6 +247,33 @@ public class MessagesManager {
     return messagesRemovedFromCache;
   }
 
+  /**
+   * Asynchronously stores the given messages in DynamoDB and then removes them from the cache. Unlike
+   * {@link #persistMessages(UUID, long, List)}, failures to remove messages from the cache complete the returned future
+   * exceptionally.
+   *
+   * @return a future that yields the number of messages successfully removed from the cache
+   */
+  public CompletableFuture<Integer> persistMessagesAsync(
+      final UUID destinationUuid,
+      final long destinationDeviceId,
+      final List<Envelope> messages) {
+
+    final List<Envelope> nonEphemeralMessages = messages.stream()
+        .filter(envelope -> !envelope.getEphemeral())
+        .collect(Collectors.toList());
+
+    final List<UUID> messageGuids = messages.stream().map(message -> UUID.fromString(message.getServerGuid()))
+        .collect(Collectors.toList());
+
+    return messagesDynamoDb.storeAsync(nonEphemeralMessages, destinationUuid, destinationDeviceId)
+        .thenCompose(ignored -> messagesCache.remove(destinationUuid, destinationDeviceId, messageGuids))
+        .thenApply(removedMessages -> {
+          persistMessageMeter.mark(nonEphemeralMessages.size());
+          return removedMessages.size();
+        });
+  }
+
   public void addMessageAvailabilityListener(
       final UUID destinationUuid,
       final long destinationDeviceId,
@@ -172,4 +285,8 @@ public class MessagesManager {
     messagesCache.removeMessageAvailabilityListener(listener);
   }
 
+  public void renewMessageAvailabilityListener(final UUID destinationUuid, final long destinationDeviceId) {
+    messagesCache.renewMessageAvailabilityListener(destinationUuid, destinationDeviceId);
+  }
+
 }
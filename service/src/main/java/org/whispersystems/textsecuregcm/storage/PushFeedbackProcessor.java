@@ -10,18 +10,42 @@ import static com.codahale.metrics.MetricRegistry.name;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.util.Constants;
+import org.whispersystems.textsecuregcm.util.ExceptionUtils;
 import org.whispersystems.textsecuregcm.util.Util;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public class PushFeedbackProcessor extends AccountDatabaseCrawlerListener {
 
   private final MetricRegistry metricRegistry = SharedMetricRegistries.getOrCreate(Constants.METRICS_NAME);
   private final Meter          expired        = metricRegistry.meter(name(getClass(), "unregistered", "expired"));
   private final Meter          recovered      = metricRegistry.meter(name(getClass(), "unregistered", "recovered"));
+  private final Meter          updateFailed   = metricRegistry.meter(name(getClass(), "updateFailed"));
+
+  private static final Timer APPLY_UPDATES_TIMER = Metrics.timer(name(PushFeedbackProcessor.class, "applyUpdates"));
+
+  private static final DistributionSummary UPDATE_THROUGHPUT = DistributionSummary
+      .builder(name(PushFeedbackProcessor.class, "updatesPerSecond"))
+      .publishPercentiles(0.5, 0.75, 0.95, 0.99)
+      .distributionStatisticExpiry(Duration.ofHours(2))
+      .register(Metrics.globalRegistry);
+
+  private static final int MAX_CONCURRENT_UPDATES = 16;
+
+  private static final Logger logger = LoggerFactory.getLogger(PushFeedbackProcessor.class);
 
   private final AccountsManager accountsManager;
 
@@ -37,50 +61,99 @@ public class PushFeedbackProcessor extends AccountDatabaseCrawlerListener {
 
   @Override
   protected void onCrawlChunk(Optional<UUID> fromUuid, List<Account> chunkAccounts) {
-    for (Account account : chunkAccounts) {
-      boolean update = false;
-
-      for (Device device : account.getDevices()) {
-        if (deviceNeedsUpdate(device)) {
-          if (deviceExpired(device)) {
-            if (device.isEnabled()) {
-              expired.mark();
-              update = true;
-            }
-          } else {
-            recovered.mark();
+    final List<UUID> accountsToUpdate = chunkAccounts.stream()
+        .filter(this::accountNeedsUpdate)
+        .map(Account::getUuid)
+        .toList();
+
+    if (accountsToUpdate.isEmpty()) {
+      return;
+    }
+
+    final long start = System.nanoTime();
+
+    // Apply updates concurrently, but with a bounded number in flight; the crawler won't hand us the next chunk until
+    // we've finished with this one, which keeps us from getting too far ahead of DynamoDB.
+    final long updatedAccounts;
+
+    try {
+      updatedAccounts = Flux.fromIterable(accountsToUpdate)
+          .flatMap(uuid -> Mono.fromFuture(() -> updateAccount(uuid))
+              .onErrorResume(OptimisticLockRetryLimitExceededException.class, e -> {
+                // The account is being updated by someone else; the next crawl will take another look at it
+                logger.warn("Failed to update devices for account {} after repeated conflicts", uuid);
+                updateFailed.mark();
+
+                return Mono.just(false);
+              }), MAX_CONCURRENT_UPDATES)
+          .filter(updated -> updated)
+          .count()
+          .toFuture()
+          .join();
+    } catch (final CompletionException e) {
+      // Fail the chunk so the crawler doesn't advance past it and tries it again later
+      updateFailed.mark();
+      throw ExceptionUtils.unwrap(e) instanceof RuntimeException runtimeException ? runtimeException : e;
+    }
+
+    final Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    APPLY_UPDATES_TIMER.record(elapsed);
+
+    if (updatedAccounts > 0) {
+      UPDATE_THROUGHPUT.record(updatedAccounts / Math.max(elapsed.toNanos() / 1e9, 1e-3));
+    }
+  }
+
+  private boolean accountNeedsUpdate(final Account account) {
+    boolean update = false;
+
+    for (Device device : account.getDevices()) {
+      if (deviceNeedsUpdate(device)) {
+        if (deviceExpired(device)) {
+          if (device.isEnabled()) {
+            expired.mark();
             update = true;
           }
+        } else {
+          recovered.mark();
+          update = true;
         }
       }
+    }
 
-      if (update) {
-        // fetch a new version, since the chunk is shared and implicitly read-only
-        accountsManager.getByAccountIdentifier(account.getUuid()).ifPresent(accountToUpdate -> {
-          accountsManager.update(accountToUpdate, a -> {
-            for (Device device : a.getDevices()) {
-              if (deviceNeedsUpdate(device)) {
-                if (deviceExpired(device)) {
-                  if (!Util.isEmpty(device.getApnId())) {
-                    if (device.getId() == 1) {
-                      device.setUserAgent("OWI");
-                    } else {
-                      device.setUserAgent("OWP");
-                    }
-                  } else if (!Util.isEmpty(device.getGcmId())) {
-                    device.setUserAgent("OWA");
-                  }
-                  device.setGcmId(null);
-                  device.setApnId(null);
-                  device.setVoipApnId(null);
-                  device.setFetchesMessages(false);
-                } else {
-                  device.setUninstalledFeedbackTimestamp(0);
-                }
-              }
+    return update;
+  }
+
+  private CompletableFuture<Boolean> updateAccount(final UUID uuid) {
+    // fetch a new version, since the chunk is shared and implicitly read-only
+    return accountsManager.getByAccountIdentifierAsync(uuid)
+        .thenCompose(maybeAccount -> maybeAccount
+            .map(accountToUpdate -> accountsManager.updateAsync(accountToUpdate, this::updateDevices)
+                .thenApply(ignored -> true))
+            .orElseGet(() -> CompletableFuture.completedFuture(false)));
+  }
+
+  private void updateDevices(final Account account) {
+    for (Device device : account.getDevices()) {
+      if (deviceNeedsUpdate(device)) {
+        if (deviceExpired(device)) {
+          if (!Util.isEmpty(device.getApnId())) {
+            if (device.getId() == 1) {
+              device.setUserAgent("OWI");
+            } else {
+              device.setUserAgent("OWP");
             }
-          });
-        });
+          } else if (!Util.isEmpty(device.getGcmId())) {
+            device.setUserAgent("OWA");
+          }
+          device.setGcmId(null);
+          device.setApnId(null);
+          device.setVoipApnId(null);
+          device.setFetchesMessages(false);
+        } else {
+          device.setUninstalledFeedbackTimestamp(0);
+        }
       }
     }
   }
@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tags;
 import org.slf4j.Logger;
@@ -64,6 +65,30 @@ public class ReportMessageManager {
     }
   }
 
+  /**
+   * Asynchronously stores a record of a message so it may be reported later. As with {@link #store(String, UUID)},
+   * failures are logged rather than propagated.
+   *
+   * @return a future that completes when the record has been stored or the attempt to store it has failed
+   */
+  public CompletableFuture<Void> storeAsync(final String sourceAci, final UUID messageGuid) {
+    final CompletableFuture<Void> storeFuture;
+
+    try {
+      Objects.requireNonNull(sourceAci);
+
+      storeFuture = reportMessageDynamoDb.storeAsync(hash(messageGuid, sourceAci));
+    } catch (final Exception e) {
+      logger.warn("Failed to store hash", e);
+      return CompletableFuture.completedFuture(null);
+    }
+
+    return storeFuture.exceptionally(throwable -> {
+      logger.warn("Failed to store hash", throwable);
+      return null;
+    });
+  }
+
   public void report(final Optional<String> sourceNumber,
       final Optional<UUID> sourceAci,
       final Optional<UUID> sourcePni,
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.whispersystems.textsecuregcm.util.Util;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * A segmented account database crawler divides the accounts table into a fixed number of segments and crawls them with
+ * a DynamoDB parallel scan. Each segment has its own cursor in Redis, and any worker on any instance may claim any
+ * unfinished segment; a crawl finishes when every segment has been exhausted.
+ * <p>
+ * Each listener runs on its own (blocking-capable) thread with a small, bounded queue of pending chunks, and all
+ * callbacks to a listener, including {@code onCrawlStart} and {@code onCrawlEnd}, happen on that thread. Chunks pass
+ * through listeners in order, so the listener ordering guarantees of {@link AccountDatabaseCrawler} still hold for any
+ * single chunk, but a fast listener may move on to the next chunk while a slower one is still working. A segment's
+ * cursor advances only once every listener has processed a chunk.
+ * <p>
+ * No worker crawls any segment of a new crawl until listeners have handled the start of that crawl.
+ */
+@SuppressWarnings("OptionalUsedAsFieldOrParameterType")
+public class SegmentedAccountDatabaseCrawler implements Managed {
+
+  private static final Logger logger = LoggerFactory.getLogger(SegmentedAccountDatabaseCrawler.class);
+
+  private static final String READ_CHUNK_TIMER_NAME = name(SegmentedAccountDatabaseCrawler.class, "readChunk");
+  private static final String PROCESS_SEGMENT_TIMER_NAME =
+      name(SegmentedAccountDatabaseCrawler.class, "processSegment");
+  private static final String ACCOUNTS_CRAWLED_COUNTER_NAME =
+      name(SegmentedAccountDatabaseCrawler.class, "accountsCrawled");
+  private static final String TOTAL_SEGMENTS_GAUGE_NAME = name(SegmentedAccountDatabaseCrawler.class, "totalSegments");
+  private static final String FINISHED_SEGMENTS_GAUGE_NAME =
+      name(SegmentedAccountDatabaseCrawler.class, "finishedSegments");
+  private static final String ACTIVE_SEGMENTS_GAUGE_NAME =
+      name(SegmentedAccountDatabaseCrawler.class, "activeSegments");
+
+  // Workers renew their claims on segments after each chunk
+  private static final long WORKER_TTL_MS = 120_000L;
+  private static final long SEGMENT_INTERVAL_MILLIS = Duration.ofSeconds(2).toMillis();
+
+  // The number of chunks that may wait for each listener before we stop reading new chunks from a segment
+  private static final int LISTENER_QUEUE_SIZE = 2;
+
+  private final String name;
+  private final AccountsManager accounts;
+  private final AccountDatabaseCrawlerCache cache;
+  private final List<AccountDatabaseCrawlerListener> listeners;
+  private final List<ExecutorService> listenerExecutors;
+  private final List<Scheduler> listenerSchedulers;
+  private final int chunkSize;
+  private final int totalSegments;
+  private final int workerCount;
+  private final int chunksPerClaim;
+
+  private final Timer readChunkTimer;
+  private final Timer processSegmentTimer;
+  private final Counter accountsCrawledCounter;
+  private final AtomicInteger activeSegments = new AtomicInteger(0);
+  private final AtomicInteger finishedSegments = new AtomicInteger(0);
+
+  private final AtomicBoolean running = new AtomicBoolean(false);
+  private CountDownLatch workersFinished;
+
+  private record SegmentChunk(Optional<UUID> fromUuid, AccountCrawlChunk chunk) {
+  }
+
+  public SegmentedAccountDatabaseCrawler(final String name,
+      final AccountsManager accounts,
+      final AccountDatabaseCrawlerCache cache,
+      final List<AccountDatabaseCrawlerListener> listeners,
+      final int chunkSize,
+      final int totalSegments,
+      final int workerCount,
+      final int chunksPerClaim) {
+
+    this.name = name;
+    this.accounts = accounts;
+    this.cache = cache;
+    this.listeners = listeners;
+    this.chunkSize = chunkSize;
+    this.totalSegments = totalSegments;
+    this.workerCount = workerCount;
+    this.chunksPerClaim = chunksPerClaim;
+
+    // Each listener gets its own thread so that listeners, which were written for a single-threaded crawler, never
+    // process more than one chunk at a time. Listeners may block, so these must not be Reactor's non-blocking threads.
+    this.listenerExecutors = listeners.stream()
+        .map(listener -> Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat(name + "-" + listener.getClass().getSimpleName() + "-%d")
+            .setDaemon(true)
+            .build()))
+        .toList();
+
+    this.listenerSchedulers = listenerExecutors.stream()
+        .map(executor -> Schedulers.fromExecutorService(executor, name))
+        .toList();
+
+    final Tags tags = Tags.of("crawler", name);
+
+    this.readChunkTimer = Metrics.timer(READ_CHUNK_TIMER_NAME, tags);
+    this.processSegmentTimer = Metrics.timer(PROCESS_SEGMENT_TIMER_NAME, tags);
+    this.accountsCrawledCounter = Metrics.counter(ACCOUNTS_CRAWLED_COUNTER_NAME, tags);
+
+    Metrics.gauge(TOTAL_SEGMENTS_GAUGE_NAME, tags, this, crawler -> crawler.totalSegments);
+    Metrics.gauge(FINISHED_SEGMENTS_GAUGE_NAME, tags, finishedSegments);
+    Metrics.gauge(ACTIVE_SEGMENTS_GAUGE_NAME, tags, activeSegments);
+  }
+
+  @Override
+  public synchronized void start() {
+    running.set(true);
+    workersFinished = new CountDownLatch(workerCount);
+
+    for (int i = 0; i < workerCount; i++) {
+      // Each worker needs its own ID so that one worker can never release or renew another's claim
+      final String workerId = UUID.randomUUID().toString();
+      new Thread(() -> runWorker(workerId), name + "-worker-" + i).start();
+    }
+  }
+
+  @Override
+  public void stop() throws InterruptedException {
+    synchronized (this) {
+      running.set(false);
+      notifyAll();
+    }
+
+    if (workersFinished != null) {
+      workersFinished.await();
+    }
+
+    listenerSchedulers.forEach(Scheduler::dispose);
+    listenerExecutors.forEach(ExecutorService::shutdown);
+  }
+
+  private void runWorker(final String workerId) {
+    while (running.get()) {
+      try {
+        doPeriodicWork(workerId);
+        sleepWhileRunning(SEGMENT_INTERVAL_MILLIS);
+      } catch (Throwable t) {
+        logger.warn("{}: error in database crawl: {}: {}", name, t.getClass().getSimpleName(), t.getMessage(), t);
+        Util.sleep(10000);
+      }
+    }
+
+    workersFinished.countDown();
+  }
+
+  /**
+   * Claims an unfinished segment, if one is available, and crawls the next few chunks in that segment.
+   *
+   * @param workerId an identifier for the calling worker, unique among all workers on all instances
+   *
+   * @return {@code true} if this worker claimed a segment or {@code false} if no segment was available
+   */
+  @VisibleForTesting
+  boolean doPeriodicWork(final String workerId) {
+    final Set<Integer> finished = cache.getFinishedSegments(totalSegments);
+    finishedSegments.set(finished.size());
+
+    // Start from a random segment so workers don't all contend for the same few segments
+    final int offset = ThreadLocalRandom.current().nextInt(totalSegments);
+
+    for (int i = 0; i < totalSegments; i++) {
+      final int segment = (offset + i) % totalSegments;
+
+      if (!finished.contains(segment) && cache.claimSegment(segment, totalSegments, workerId, WORKER_TTL_MS)) {
+        activeSegments.incrementAndGet();
+
+        try {
+          processSegmentTimer.record(() -> processSegment(segment, workerId));
+        } finally {
+          cache.releaseSegment(segment, totalSegments, workerId);
+          activeSegments.decrementAndGet();
+        }
+
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private void processSegment(final int segment, final String workerId) {
+    final Optional<UUID> initialUuid = cache.getLastUuid(segment, totalSegments);
+
+    // A segment without a cursor may belong to a crawl that hasn't started yet; segments with cursors always belong to
+    // a crawl that has already started
+    if (initialUuid.isEmpty() && !ensureCrawlStarted(workerId)) {
+      return;
+    }
+
+    final AtomicBoolean exhausted = new AtomicBoolean(false);
+    final AtomicBoolean claimLost = new AtomicBoolean(false);
+
+    Flux<SegmentChunk> chunks = Flux.<SegmentChunk, Optional<UUID>>generate(() -> initialUuid, (fromUuid, sink) -> {
+          final AccountCrawlChunk chunk = readChunkTimer.record(() ->
+              accounts.getAllFromDynamoSegment(segment, totalSegments, fromUuid, chunkSize));
+
+          if (chunk.getAccounts().isEmpty()) {
+            exhausted.set(true);
+            sink.complete();
+          } else {
+            sink.next(new SegmentChunk(fromUuid, chunk));
+          }
+
+          return chunk.getLastUuid();
+        })
+        .take(chunksPerClaim)
+        // Read from DynamoDB on a thread of our own rather than on a listener's thread
+        .subscribeOn(Schedulers.boundedElastic());
+
+    for (int i = 0; i < listeners.size(); i++) {
+      final AccountDatabaseCrawlerListener listener = listeners.get(i);
+
+      chunks = chunks
+          .publishOn(listenerSchedulers.get(i), LISTENER_QUEUE_SIZE)
+          .doOnNext(segmentChunk -> {
+            try {
+              listener.timeAndProcessCrawlChunk(segmentChunk.fromUuid(), segmentChunk.chunk().getAccounts());
+            } catch (final AccountDatabaseCrawlerRestartException e) {
+              throw Exceptions.propagate(e);
+            }
+          });
+    }
+
+    final Optional<SegmentChunk> lastChunk;
+
+    try {
+      lastChunk = chunks
+          .takeWhile(ignored -> {
+            // If our claim has lapsed, another worker may be crawling this segment and we must not move its cursor
+            if (cache.renewSegmentClaim(segment, totalSegments, workerId, WORKER_TTL_MS)) {
+              return true;
+            }
+
+            logger.warn("{}: Lost claim on segment {}", name, segment);
+            claimLost.set(true);
+
+            return false;
+          })
+          .doOnNext(segmentChunk -> {
+            cache.setLastUuid(segment, totalSegments, segmentChunk.chunk().getLastUuid());
+            accountsCrawledCounter.increment(segmentChunk.chunk().getAccounts().size());
+          })
+          .takeWhile(ignored -> running.get())
+          .blockLastOptional();
+    } catch (final RuntimeException e) {
+      if (Exceptions.unwrap(e) instanceof AccountDatabaseCrawlerRestartException) {
+        logger.info("{}: Restarting segment {}", name, segment);
+        cache.setLastUuid(segment, totalSegments, Optional.empty());
+        return;
+      }
+
+      throw e;
+    }
+
+    if (exhausted.get() && running.get() && !claimLost.get()) {
+      final boolean crawlFinished = cache.finishSegment(segment, totalSegments);
+
+      // Clear the cursor only after marking the segment finished; if we fail in between, the next crawl will find this
+      // segment already exhausted rather than crawling it again in the current crawl
+      cache.setLastUuid(segment, totalSegments, Optional.empty());
+
+      if (crawlFinished) {
+        logger.info("{}: Finished crawl", name);
+
+        final Optional<UUID> lastUuid = lastChunk.isPresent()
+            ? lastChunk.get().chunk().getLastUuid()
+            : initialUuid;
+
+        runOnListenerThreads(listener -> listener.onCrawlEnd(lastUuid));
+      }
+    }
+  }
+
+  /**
+   * Makes sure that listeners have handled the start of the current crawl, starting a new crawl if necessary.
+   *
+   * @return {@code true} if the current crawl has started or {@code false} if another worker is still starting it
+   */
+  private boolean ensureCrawlStarted(final String workerId) {
+    if (cache.beginSegmentedCrawlStart(totalSegments, workerId, WORKER_TTL_MS)) {
+      logger.info("{}: Started crawl", name);
+      runOnListenerThreads(AccountDatabaseCrawlerListener::onCrawlStart);
+
+      if (!cache.finishSegmentedCrawlStart(totalSegments, workerId)) {
+        logger.warn("{}: Took too long to start crawl; another worker will start it again", name);
+        return false;
+      }
+
+      return true;
+    }
+
+    return cache.isSegmentedCrawlStarted(totalSegments);
+  }
+
+  /**
+   * Runs the given action for each listener, in order, on that listener's own thread, and waits for all of them to
+   * finish.
+   */
+  private void runOnListenerThreads(final Consumer<AccountDatabaseCrawlerListener> action) {
+    Flux.range(0, listeners.size())
+        .concatMap(i -> Mono.fromRunnable(() -> action.accept(listeners.get(i))).subscribeOn(listenerSchedulers.get(i)))
+        .then()
+        .block();
+  }
+
+  private synchronized void sleepWhileRunning(long delayMs) {
+    if (running.get()) {
+      Util.wait(this, delayMs);
+    }
+  }
+}
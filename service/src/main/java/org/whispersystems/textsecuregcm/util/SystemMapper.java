@@ -9,6 +9,10 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
@@ -20,6 +24,12 @@ public class SystemMapper {
 
   private static final ObjectMapper YAML_MAPPER = configureMapper(new YAMLMapper());
 
+  // Smile documents are stored alongside our own version markers, so we omit Smile's own (redundant) header
+  private static final ObjectMapper SMILE_MAPPER = configureMapper(new SmileMapper(SmileFactory.builder()
+      .disable(SmileGenerator.Feature.WRITE_HEADER)
+      .disable(SmileParser.Feature.REQUIRE_HEADER)
+      .build()));
+
 
   @Nonnull
   public static ObjectMapper jsonMapper() {
@@ -31,6 +41,15 @@ public class SystemMapper {
     return YAML_MAPPER;
   }
 
+  /**
+   * Returns a mapper for Smile, a compact binary encoding of the JSON data model. The returned mapper does not write or
+   * require Smile headers.
+   */
+  @Nonnull
+  public static ObjectMapper smileMapper() {
+    return SMILE_MAPPER;
+  }
+
   public static ObjectMapper configureMapper(final ObjectMapper mapper) {
     return mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
         .setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessageDeliveryConfiguration;
+import reactor.core.publisher.Mono;
+
+/**
+ * An adaptive send window limits the number of messages a single connection has in flight to a client, growing and
+ * shrinking the limit based on how the client responds in the same spirit as TCP congestion control.
+ * <p>
+ * The window starts in "slow start," growing by one message for every prompt acknowledgement (and so roughly doubling
+ * every round trip). Once the window has shrunk for the first time, it grows by only one message per window's worth of
+ * prompt acknowledgements. Slow acknowledgements and failed sends halve the window, though no more than once per round
+ * trip so that a single burst of slow responses doesn't collapse the window entirely.
+ * <p>
+ * Sends that can't start immediately wait in the order they were requested, so a window never reorders messages.
+ */
+class AdaptiveSendWindow {
+
+  private final int minWindow;
+  private final int maxWindow;
+  private final long latencyThresholdNanos;
+  private final LongSupplier nanoClock;
+
+  // All guarded by this
+  private double window;
+  private double slowStartThreshold = Double.MAX_VALUE;
+  private int inFlight = 0;
+  private long lastDecreaseNanos;
+  private final Queue<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+  AdaptiveSendWindow(final DynamicMessageDeliveryConfiguration configuration) {
+    this(configuration.getInitialSendWindow(),
+        configuration.getMinSendWindow(),
+        configuration.getMaxSendWindow(),
+        configuration.getSendWindowLatencyThreshold(),
+        System::nanoTime);
+  }
+
+  @VisibleForTesting
+  AdaptiveSendWindow(final int initialWindow,
+      final int minWindow,
+      final int maxWindow,
+      final Duration latencyThreshold,
+      final LongSupplier nanoClock) {
+
+    this.minWindow = Math.max(1, minWindow);
+    this.maxWindow = Math.max(this.minWindow, maxWindow);
+    this.latencyThresholdNanos = latencyThreshold.toNanos();
+    this.nanoClock = nanoClock;
+
+    this.window = Math.min(this.maxWindow, Math.max(this.minWindow, initialWindow));
+    this.lastDecreaseNanos = nanoClock.getAsLong();
+  }
+
+  /**
+   * @return the largest number of messages this window will ever allow in flight at once
+   */
+  int getMaxWindow() {
+    return maxWindow;
+  }
+
+  @VisibleForTesting
+  synchronized int getWindow() {
+    return (int) window;
+  }
+
+  /**
+   * Waits for space in the window, then sends a message and adjusts the window according to how long the send took
+   * and whether it succeeded.
+   *
+   * @param send a supplier that starts sending a message when called
+   *
+   * @return a {@code Mono} that completes when the message has been sent
+   */
+  <T> Mono<T> send(final Supplier<CompletableFuture<T>> send) {
+    return Mono.fromFuture(acquire())
+        .then(Mono.defer(() -> {
+          final long start = nanoClock.getAsLong();
+
+          return Mono.fromFuture(send)
+              .doOnSuccess(ignored -> release(true, nanoClock.getAsLong() - start))
+              .doOnError(ignored -> release(false, nanoClock.getAsLong() - start))
+              .doOnCancel(() -> release(null, 0));
+        }));
+  }
+
+  private CompletableFuture<Void> acquire() {
+    synchronized (this) {
+      if (waiters.isEmpty() && inFlight < (int) window) {
+        inFlight++;
+        return CompletableFuture.completedFuture(null);
+      }
+
+      final CompletableFuture<Void> waiter = new CompletableFuture<>();
+      waiters.add(waiter);
+
+      return waiter;
+    }
+  }
+
+  /**
+   * Releases a slot in the window and admits as many waiting sends as the (possibly resized) window allows.
+   *
+   * @param success {@code true} if the send succeeded, {@code false} if it failed, or {@code null} if it was cancelled
+   *                and should not affect the size of the window
+   * @param elapsedNanos the time the send took
+   */
+  private void release(final Boolean success, final long elapsedNanos) {
+    final List<CompletableFuture<Void>> admitted = new ArrayList<>();
+
+    synchronized (this) {
+      inFlight--;
+
+      if (success != null) {
+        if (success && elapsedNanos <= latencyThresholdNanos) {
+          window = Math.min(maxWindow, window < slowStartThreshold ? window + 1 : window + (1 / window));
+        } else {
+          decrease(elapsedNanos);
+        }
+      }
+
+      while (!waiters.isEmpty() && inFlight < (int) window) {
+        admitted.add(waiters.poll());
+        inFlight++;
+      }
+    }
+
+    // Complete waiters outside the lock, since completing one may start (and even finish) a send on this thread
+    for (final CompletableFuture<Void> waiter : admitted) {
+      if (!waiter.complete(null)) {
+        // The waiter was cancelled before it could be admitted
+        release(null, 0);
+      }
+    }
+  }
+
+  private void decrease(final long elapsedNanos) {
+    final long now = nanoClock.getAsLong();
+
+    // Only shrink the window once per round trip; sends that were already in flight when we last shrank the window
+    // shouldn't shrink it again
+    if (now - elapsedNanos - lastDecreaseNanos >= 0) {
+      slowStartThreshold = Math.max(minWindow, window / 2);
+      window = slowStartThreshold;
+      lastDecreaseNanos = now;
+    }
+  }
+}
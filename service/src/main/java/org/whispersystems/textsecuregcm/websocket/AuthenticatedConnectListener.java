@@ -23,6 +23,8 @@ import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.auth.AuthenticatedAccount;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
 import org.whispersystems.textsecuregcm.metrics.MetricsUtil;
 import org.whispersystems.textsecuregcm.metrics.UserAgentTagUtil;
 import org.whispersystems.textsecuregcm.push.ClientPresenceManager;
@@ -31,6 +33,7 @@ import org.whispersystems.textsecuregcm.push.PushNotificationManager;
 import org.whispersystems.textsecuregcm.push.ReceiptSender;
 import org.whispersystems.textsecuregcm.redis.RedisOperation;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
 import org.whispersystems.textsecuregcm.util.Constants;
 import org.whispersystems.textsecuregcm.util.ua.ClientPlatform;
@@ -55,6 +58,8 @@ public class AuthenticatedConnectListener implements WebSocketConnectListener {
 
   private static final long RENEW_PRESENCE_INTERVAL_MINUTES = 5;
 
+  private static final String BATCHED_ACKNOWLEDGEMENTS_EXPERIMENT_NAME = "batchedMessageAcknowledgements";
+
   private static final Logger log = LoggerFactory.getLogger(AuthenticatedConnectListener.class);
 
   private final ReceiptSender receiptSender;
@@ -63,6 +68,8 @@ public class AuthenticatedConnectListener implements WebSocketConnectListener {
   private final ClientPresenceManager clientPresenceManager;
   private final ScheduledExecutorService scheduledExecutorService;
   private final Scheduler messageDeliveryScheduler;
+  private final ExperimentEnrollmentManager experimentEnrollmentManager;
+  private final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager;
 
   private final Map<ClientPlatform, AtomicInteger> openWebsocketsByClientPlatform;
   private final AtomicInteger openWebsocketsFromUnknownPlatforms;
@@ -72,13 +79,17 @@ public class AuthenticatedConnectListener implements WebSocketConnectListener {
       PushNotificationManager pushNotificationManager,
       ClientPresenceManager clientPresenceManager,
       ScheduledExecutorService scheduledExecutorService,
-      Scheduler messageDeliveryScheduler) {
+      Scheduler messageDeliveryScheduler,
+      ExperimentEnrollmentManager experimentEnrollmentManager,
+      DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager) {
     this.receiptSender = receiptSender;
     this.messagesManager = messagesManager;
     this.pushNotificationManager = pushNotificationManager;
     this.clientPresenceManager = clientPresenceManager;
     this.scheduledExecutorService = scheduledExecutorService;
     this.messageDeliveryScheduler = messageDeliveryScheduler;
+    this.experimentEnrollmentManager = experimentEnrollmentManager;
+    this.dynamicConfigurationManager = dynamicConfigurationManager;
 
     openWebsocketsByClientPlatform = new EnumMap<>(ClientPlatform.class);
 
@@ -101,11 +112,15 @@ public class AuthenticatedConnectListener implements WebSocketConnectListener {
       final AuthenticatedAccount auth = context.getAuthenticated(AuthenticatedAccount.class);
       final Device device = auth.getAuthenticatedDevice();
       final Timer.Context timer = durationTimer.time();
+      final boolean batchAcknowledgements =
+          experimentEnrollmentManager.isEnrolled(auth.getAccount().getUuid(), BATCHED_ACKNOWLEDGEMENTS_EXPERIMENT_NAME);
       final WebSocketConnection connection = new WebSocketConnection(receiptSender,
           messagesManager, auth, device,
           context.getClient(),
           scheduledExecutorService,
-          messageDeliveryScheduler);
+          messageDeliveryScheduler,
+          batchAcknowledgements,
+          dynamicConfigurationManager.getConfiguration().getMessageDeliveryConfiguration());
 
       final AtomicInteger openWebsocketAtomicInteger = getOpenWebsocketCounter(context.getClient().getUserAgent());
 
@@ -149,8 +164,12 @@ public class AuthenticatedConnectListener implements WebSocketConnectListener {
         clientPresenceManager.setPresent(auth.getAccount().getUuid(), device.getId(), connection);
         messagesManager.addMessageAvailabilityListener(auth.getAccount().getUuid(), device.getId(), connection);
 
-        renewPresenceFutureReference.set(scheduledExecutorService.scheduleAtFixedRate(() -> RedisOperation.unchecked(() ->
-                clientPresenceManager.renewPresence(auth.getAccount().getUuid(), device.getId())),
+        renewPresenceFutureReference.set(scheduledExecutorService.scheduleAtFixedRate(() -> {
+              RedisOperation.unchecked(() ->
+                  clientPresenceManager.renewPresence(auth.getAccount().getUuid(), device.getId()));
+              RedisOperation.unchecked(() ->
+                  messagesManager.renewMessageAvailabilityListener(auth.getAccount().getUuid(), device.getId()));
+            },
             RENEW_PRESENCE_INTERVAL_MINUTES,
             RENEW_PRESENCE_INTERVAL_MINUTES,
             TimeUnit.MINUTES));
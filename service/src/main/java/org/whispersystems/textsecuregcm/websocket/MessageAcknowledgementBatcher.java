@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+import io.micrometer.core.instrument.Metrics;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.whispersystems.textsecuregcm.storage.MessagesManager;
+
+/**
+ * Collects messages that a single device has acknowledged and deletes them in batches rather than one at a time. A
+ * batch is deleted once it reaches a maximum size or a maximum age, whichever comes first.
+ * <p>
+ * Batching only delays deletion; a message is never deleted before it has been acknowledged. The future returned for
+ * each acknowledgement completes only once the batch containing it has actually been deleted, so callers that wait for
+ * those futures before re-reading a queue will not see acknowledged messages again.
+ */
+class MessageAcknowledgementBatcher {
+
+  private final MessagesManager messagesManager;
+  private final UUID accountUuid;
+  private final long deviceId;
+  private final int maxBatchSize;
+  private final Duration maxBatchDelay;
+  private final ScheduledExecutorService scheduledExecutorService;
+
+  // All guarded by this
+  private Map<UUID, Long> pendingServerTimestampsByGuid = new HashMap<>();
+  private CompletableFuture<Void> pendingBatchFuture = new CompletableFuture<>();
+  @Nullable
+  private ScheduledFuture<?> scheduledFlush;
+
+  private static final String BATCH_SIZE_DISTRIBUTION_NAME = name(MessageAcknowledgementBatcher.class, "batchSize");
+  private static final String FLUSH_REASON_TAG_NAME = "reason";
+
+  static final String WINDOW_ACKNOWLEDGED_FLUSH_REASON = "windowAcknowledged";
+
+  MessageAcknowledgementBatcher(final MessagesManager messagesManager,
+      final UUID accountUuid,
+      final long deviceId,
+      final int maxBatchSize,
+      final Duration maxBatchDelay,
+      final ScheduledExecutorService scheduledExecutorService) {
+
+    this.messagesManager = messagesManager;
+    this.accountUuid = accountUuid;
+    this.deviceId = deviceId;
+    this.maxBatchSize = maxBatchSize;
+    this.maxBatchDelay = maxBatchDelay;
+    this.scheduledExecutorService = scheduledExecutorService;
+  }
+
+  /**
+   * Adds an acknowledged message to the current batch.
+   *
+   * @return a future that completes when the batch containing the given message has been deleted
+   */
+  CompletableFuture<Void> acknowledge(final UUID guid, final long serverTimestamp) {
+    final CompletableFuture<Void> batchFuture;
+    final boolean batchFull;
+
+    synchronized (this) {
+      pendingServerTimestampsByGuid.put(guid, serverTimestamp);
+      batchFuture = pendingBatchFuture;
+      batchFull = pendingServerTimestampsByGuid.size() >= maxBatchSize;
+
+      if (!batchFull && scheduledFlush == null) {
+        scheduledFlush = scheduledExecutorService.schedule(() -> flush("delay"),
+            maxBatchDelay.toMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+
+    if (batchFull) {
+      flush("size");
+    }
+
+    return batchFuture;
+  }
+
+  /**
+   * Immediately deletes any pending acknowledged messages.
+   */
+  void flush() {
+    flush("flush");
+  }
+
+  /**
+   * Immediately deletes any pending acknowledged messages, recording the given reason for the flush.
+   */
+  void flush(final String reason) {
+    final Map<UUID, Long> serverTimestampsByGuid;
+    final CompletableFuture<Void> batchFuture;
+
+    synchronized (this) {
+      if (scheduledFlush != null) {
+        scheduledFlush.cancel(false);
+        scheduledFlush = null;
+      }
+
+      if (pendingServerTimestampsByGuid.isEmpty()) {
+        return;
+      }
+
+      serverTimestampsByGuid = pendingServerTimestampsByGuid;
+      batchFuture = pendingBatchFuture;
+
+      pendingServerTimestampsByGuid = new HashMap<>();
+      pendingBatchFuture = new CompletableFuture<>();
+    }
+
+    Metrics.summary(BATCH_SIZE_DISTRIBUTION_NAME, FLUSH_REASON_TAG_NAME, reason).record(serverTimestampsByGuid.size());
+
+    messagesManager.deleteBatch(accountUuid, deviceId, serverTimestampsByGuid)
+        .whenComplete((ignored, throwable) -> {
+          if (throwable != null) {
+            batchFuture.completeExceptionally(throwable);
+          } else {
+            batchFuture.complete(null);
+          }
+        });
+  }
+}
@@ -15,6 +15,7 @@ import com.google.common.annotations.VisibleForTesting;
 import io.micrometer.core.instrument.Metrics;
 import io.micrometer.core.instrument.Tag;
 import io.micrometer.core.instrument.Tags;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -32,11 +33,13 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
 import org.apache.commons.lang3.StringUtils;
 import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.whispersystems.textsecuregcm.auth.AuthenticatedAccount;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessageDeliveryConfiguration;
 import org.whispersystems.textsecuregcm.controllers.MessageController;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
 import org.whispersystems.textsecuregcm.metrics.MessageMetrics;
@@ -75,6 +78,8 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
   private static final String INITIAL_QUEUE_LENGTH_DISTRIBUTION_NAME = name(WebSocketConnection.class,
       "initialQueueLength");
   private static final String INITIAL_QUEUE_DRAIN_TIMER_NAME = name(WebSocketConnection.class, "drainInitialQueue");
+  private static final String INITIAL_QUEUE_DRAIN_THROUGHPUT_DISTRIBUTION_NAME = name(WebSocketConnection.class,
+      "initialQueueDrainThroughput");
   private static final String SLOW_QUEUE_DRAIN_COUNTER_NAME = name(WebSocketConnection.class, "slowQueueDrain");
   private static final String QUEUE_DRAIN_RETRY_COUNTER_NAME = name(WebSocketConnection.class, "queueDrainRetry");
   private static final String DISPLACEMENT_COUNTER_NAME = name(WebSocketConnection.class, "displacement");
@@ -89,8 +94,11 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
   private static final String STATUS_CODE_TAG = "status";
   private static final String STATUS_MESSAGE_TAG = "message";
   private static final String ERROR_TYPE_TAG = "errorType";
+  private static final String BATCHED_ACKNOWLEDGEMENTS_TAG = "batchedAcknowledgements";
+  private static final String ADAPTIVE_SEND_WINDOW_TAG = "adaptiveSendWindow";
 
   private static final long SLOW_DRAIN_THRESHOLD = 10_000;
+  private static final long MIN_QUEUE_LENGTH_FOR_THROUGHPUT = 20;
 
   @VisibleForTesting
   static final int MESSAGE_PUBLISHER_LIMIT_RATE = 100;
@@ -102,6 +110,10 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
 
   private static final int DEFAULT_SEND_FUTURES_TIMEOUT_MILLIS = 5 * 60 * 1000;
 
+  @VisibleForTesting
+  static final int MAX_ACKNOWLEDGEMENT_BATCH_SIZE = 50;
+  private static final Duration MAX_ACKNOWLEDGEMENT_BATCH_DELAY = Duration.ofMillis(50);
+
   private static final Logger logger = LoggerFactory.getLogger(WebSocketConnection.class);
 
   private final ReceiptSender receiptSender;
@@ -115,6 +127,12 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
 
   private final ScheduledExecutorService scheduledExecutorService;
 
+  @Nullable
+  private final MessageAcknowledgementBatcher acknowledgementBatcher;
+
+  @Nullable
+  private final AdaptiveSendWindow sendWindow;
+
   private final Semaphore processStoredMessagesSemaphore = new Semaphore(1);
   private final AtomicReference<StoredMessageState> storedMessageState = new AtomicReference<>(
       StoredMessageState.PERSISTED_NEW_MESSAGES_AVAILABLE);
@@ -122,6 +140,7 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
   private final LongAdder sentMessageCounter = new LongAdder();
   private final AtomicLong queueDrainStartTime = new AtomicLong();
   private final AtomicInteger consecutiveRetries = new AtomicInteger();
+  private final AtomicInteger unacknowledgedMessages = new AtomicInteger();
   private final AtomicReference<ScheduledFuture<?>> retryFuture = new AtomicReference<>();
   private final AtomicReference<Disposable> messageSubscription = new AtomicReference<>();
 
@@ -142,12 +161,40 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
       ScheduledExecutorService scheduledExecutorService,
       Scheduler messageDeliveryScheduler) {
 
+    this(receiptSender,
+        messagesManager,
+        auth,
+        device,
+        client,
+        scheduledExecutorService,
+        messageDeliveryScheduler,
+        false,
+        new DynamicMessageDeliveryConfiguration());
+  }
+
+  /**
+   * @param batchAcknowledgements if {@code true}, messages acknowledged by the client are deleted in batches rather
+   *                              than one at a time
+   * @param messageDeliveryConfiguration the flow control settings for this connection
+   */
+  public WebSocketConnection(ReceiptSender receiptSender,
+      MessagesManager messagesManager,
+      AuthenticatedAccount auth,
+      Device device,
+      WebSocketClient client,
+      ScheduledExecutorService scheduledExecutorService,
+      Scheduler messageDeliveryScheduler,
+      boolean batchAcknowledgements,
+      DynamicMessageDeliveryConfiguration messageDeliveryConfiguration) {
+
     this(receiptSender,
         messagesManager,
         auth,
         device,
         client,
         DEFAULT_SEND_FUTURES_TIMEOUT_MILLIS,
+        batchAcknowledgements,
+        messageDeliveryConfiguration,
         scheduledExecutorService,
         messageDeliveryScheduler);
   }
@@ -162,6 +209,30 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
       ScheduledExecutorService scheduledExecutorService,
       Scheduler messageDeliveryScheduler) {
 
+    this(receiptSender,
+        messagesManager,
+        auth,
+        device,
+        client,
+        sendFuturesTimeoutMillis,
+        false,
+        new DynamicMessageDeliveryConfiguration(),
+        scheduledExecutorService,
+        messageDeliveryScheduler);
+  }
+
+  @VisibleForTesting
+  WebSocketConnection(ReceiptSender receiptSender,
+      MessagesManager messagesManager,
+      AuthenticatedAccount auth,
+      Device device,
+      WebSocketClient client,
+      int sendFuturesTimeoutMillis,
+      boolean batchAcknowledgements,
+      DynamicMessageDeliveryConfiguration messageDeliveryConfiguration,
+      ScheduledExecutorService scheduledExecutorService,
+      Scheduler messageDeliveryScheduler) {
+
     this.receiptSender = receiptSender;
     this.messagesManager = messagesManager;
     this.auth = auth;
@@ -170,6 +241,15 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
     this.sendFuturesTimeoutMillis = sendFuturesTimeoutMillis;
     this.scheduledExecutorService = scheduledExecutorService;
     this.messageDeliveryScheduler = messageDeliveryScheduler;
+
+    this.acknowledgementBatcher = batchAcknowledgements
+        ? new MessageAcknowledgementBatcher(messagesManager, auth.getAccount().getUuid(), device.getId(),
+            MAX_ACKNOWLEDGEMENT_BATCH_SIZE, MAX_ACKNOWLEDGEMENT_BATCH_DELAY, scheduledExecutorService)
+        : null;
+
+    this.sendWindow = messageDeliveryConfiguration.isAdaptiveSendWindowEnabled()
+        ? new AdaptiveSendWindow(messageDeliveryConfiguration)
+        : null;
   }
 
   public void start() {
@@ -189,22 +269,30 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
       subscription.dispose();
     }
 
+    // Don't leave messages the client has already acknowledged waiting for a batch that will never fill
+    if (acknowledgementBatcher != null) {
+      acknowledgementBatcher.flush();
+    }
+
     client.close(1000, "OK");
   }
 
   private CompletableFuture<Void> sendMessage(final Envelope message, StoredMessageInfo storedMessageInfo) {
-    // clear ephemeral field from the envelope
-    final Optional<byte[]> body = Optional.ofNullable(message.toBuilder().clearEphemeral().build().toByteArray());
+    final Optional<byte[]> body = Optional.of(serializeForDelivery(message));
 
     sendMessageMeter.mark();
     sentMessageCounter.increment();
     bytesSentMeter.mark(body.map(bytes -> bytes.length).orElse(0));
     MessageMetrics.measureAccountEnvelopeUuidMismatches(auth.getAccount(), message);
 
+    unacknowledgedMessages.incrementAndGet();
+
     // X-Signal-Key: false must be sent until Android stops assuming it missing means true
     return client.sendRequest("PUT", "/api/v1/message",
             List.of(HeaderUtils.X_SIGNAL_KEY + ": false", HeaderUtils.getTimestampHeader()), body)
         .whenComplete((ignored, throwable) -> {
+          unacknowledgedMessages.decrementAndGet();
+
           if (throwable != null) {
             sendFailuresMeter.mark();
           }
@@ -212,9 +300,7 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
           final CompletableFuture<Void> result;
           if (isSuccessResponse(response)) {
 
-            result = messagesManager.delete(auth.getAccount().getUuid(), device.getId(),
-                    storedMessageInfo.guid(), storedMessageInfo.serverTimestamp())
-                .thenApply(ignored -> null);
+            result = deleteAcknowledgedMessage(storedMessageInfo);
 
             if (message.getType() != Envelope.Type.SERVER_DELIVERY_RECEIPT) {
               recordMessageDeliveryDuration(message.getTimestamp(), device);
@@ -237,10 +323,45 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
               result = CompletableFuture.completedFuture(null);
             }
 
+          flushAcknowledgementsIfWindowAcknowledged();
+
           return result;
         });
   }
 
+  /**
+   * Serializes a message for delivery to a client, omitting its ephemeral flag (which only matters to the server). Most
+   * messages don't have the flag set at all, and for those we can serialize the message directly instead of copying it
+   * into a new builder first.
+   */
+  @VisibleForTesting
+  static byte[] serializeForDelivery(final Envelope message) {
+    return message.hasEphemeral()
+        ? message.toBuilder().clearEphemeral().build().toByteArray()
+        : message.toByteArray();
+  }
+
+  private CompletableFuture<Void> deleteAcknowledgedMessage(final StoredMessageInfo storedMessageInfo) {
+    if (acknowledgementBatcher != null) {
+      return acknowledgementBatcher.acknowledge(storedMessageInfo.guid(), storedMessageInfo.serverTimestamp());
+    }
+
+    return messagesManager.delete(auth.getAccount().getUuid(), device.getId(),
+            storedMessageInfo.guid(), storedMessageInfo.serverTimestamp())
+        .thenApply(ignored -> null);
+  }
+
+  /**
+   * With an adaptive send window, each send holds its place in the window until its acknowledgement has been deleted.
+   * Once the client has responded to every message in flight, no other message can join the pending batch until it's
+   * deleted, so waiting for the batch to fill up or time out would only stall the window.
+   */
+  private void flushAcknowledgementsIfWindowAcknowledged() {
+    if (acknowledgementBatcher != null && sendWindow != null && unacknowledgedMessages.get() == 0) {
+      acknowledgementBatcher.flush(MessageAcknowledgementBatcher.WINDOW_ACKNOWLEDGED_FLUSH_REASON);
+    }
+  }
+
   public static void recordMessageDeliveryDuration(long timestamp, Device messageDestinationDevice) {
     final long messageDeliveryDuration = System.currentTimeMillis() - timestamp;
     messageTime.update(messageDeliveryDuration);
@@ -289,13 +410,23 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
 
         if (sentInitialQueueEmptyMessage.compareAndSet(false, true)) {
           final List<Tag> tags = List.of(
-              UserAgentTagUtil.getPlatformTag(client.getUserAgent())
+              UserAgentTagUtil.getPlatformTag(client.getUserAgent()),
+              Tag.of(BATCHED_ACKNOWLEDGEMENTS_TAG, String.valueOf(acknowledgementBatcher != null)),
+              Tag.of(ADAPTIVE_SEND_WINDOW_TAG, String.valueOf(sendWindow != null))
           );
           final long drainDuration = System.currentTimeMillis() - queueDrainStartTime.get();
+          final long initialQueueLength = sentMessageCounter.sum();
 
-          Metrics.summary(INITIAL_QUEUE_LENGTH_DISTRIBUTION_NAME, tags).record(sentMessageCounter.sum());
+          Metrics.summary(INITIAL_QUEUE_LENGTH_DISTRIBUTION_NAME, tags).record(initialQueueLength);
           Metrics.timer(INITIAL_QUEUE_DRAIN_TIMER_NAME, tags).record(drainDuration, TimeUnit.MILLISECONDS);
 
+          // Throughput is only meaningful for queues large enough that the drain time isn't dominated by a single round
+          // trip
+          if (initialQueueLength >= MIN_QUEUE_LENGTH_FOR_THROUGHPUT) {
+            Metrics.summary(INITIAL_QUEUE_DRAIN_THROUGHPUT_DISTRIBUTION_NAME, tags)
+                .record(initialQueueLength * 1000.0 / Math.max(drainDuration, 1));
+          }
+
           if (drainDuration > SLOW_DRAIN_THRESHOLD) {
             Metrics.counter(SLOW_QUEUE_DRAIN_COUNTER_NAME, tags).increment();
           }
@@ -345,9 +476,11 @@ public class WebSocketConnection implements MessageAvailabilityListener, Displac
         .name(SEND_MESSAGES_FLUX_NAME)
         .tap(Micrometer.metrics(Metrics.globalRegistry))
         .limitRate(MESSAGE_PUBLISHER_LIMIT_RATE)
-        .flatMapSequential(envelope ->
-            Mono.fromFuture(sendMessage(envelope)
-                .orTimeout(sendFuturesTimeoutMillis, TimeUnit.MILLISECONDS)))
+        .transform(envelopes -> sendWindow != null
+            ? envelopes.flatMapSequential(envelope -> sendWindow.send(() -> sendMessage(envelope)
+                .orTimeout(sendFuturesTimeoutMillis, TimeUnit.MILLISECONDS)), sendWindow.getMaxWindow())
+            : envelopes.flatMapSequential(envelope -> Mono.fromFuture(sendMessage(envelope)
+                .orTimeout(sendFuturesTimeoutMillis, TimeUnit.MILLISECONDS))))
         .subscribeOn(messageDeliveryScheduler)
         .subscribe(
             // no additional consumer of values - it is Flux<Void> by now
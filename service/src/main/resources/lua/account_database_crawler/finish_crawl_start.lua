@@ -0,0 +1,9 @@
+-- keys: crawl_started_key
+-- argv: starting_value, started_value
+
+if redis.call("GET", KEYS[1]) == ARGV[1] then
+    redis.call("SET", KEYS[1], ARGV[2])
+    return 1
+else
+    return 0
+end
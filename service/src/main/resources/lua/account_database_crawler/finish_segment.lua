@@ -0,0 +1,11 @@
+-- keys: finished_segments_key, crawl_started_key
+-- argv: segment, total_segments
+
+redis.call("SADD", KEYS[1], ARGV[1])
+
+if redis.call("SCARD", KEYS[1]) >= tonumber(ARGV[2]) then
+    redis.call("DEL", KEYS[1], KEYS[2])
+    return 1
+else
+    return 0
+end
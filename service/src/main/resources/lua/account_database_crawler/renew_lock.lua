@@ -0,0 +1,8 @@
+-- keys: lock_key
+-- argv: lock_value, ttl_ms
+
+if redis.call("GET", KEYS[1]) == ARGV[1] then
+    return redis.call("PEXPIRE", KEYS[1], ARGV[2])
+else
+    return 0
+end
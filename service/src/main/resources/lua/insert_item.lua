@@ -1,9 +1,12 @@
 local queueKey           = KEYS[1]
 local queueMetadataKey   = KEYS[2]
 local queueTotalIndexKey = KEYS[3]
+local queueListenerKey   = KEYS[4]
 local message            = ARGV[1]
 local currentTime        = ARGV[2]
 local guid               = ARGV[3]
+local notification       = ARGV[4]
+local notifyListener     = ARGV[5] == "true"
 
 if redis.call("HEXISTS", queueMetadataKey, guid) == 1 then
     return tonumber(redis.call("HGET", queueMetadataKey, guid))
@@ -19,4 +22,16 @@ redis.call("EXPIRE", queueKey, 7776000)         -- 90 days
 redis.call("EXPIRE", queueMetadataKey, 7776000) -- 90 days
 
 redis.call("ZADD", queueTotalIndexKey, "NX", currentTime, queueKey)
+
+-- notify the server instance (if any) that holds a connection for this queue and has asked for notifications on its own
+-- channel; keyspace notifications for this queue are sent regardless, so callers that don't publish to per-instance
+-- channels skip the lookup entirely
+if notifyListener then
+    local listenerChannel = redis.call("GET", queueListenerKey)
+
+    if listenerChannel then
+        redis.call("PUBLISH", listenerChannel, notification)
+    end
+end
+
 return messageId
@@ -0,0 +1,9 @@
+local queueListenerKey = KEYS[1]
+local listenerChannel  = ARGV[1]
+
+-- only remove the listener if it hasn't already been replaced by a connection on another server instance
+if redis.call("GET", queueListenerKey) == listenerChannel then
+    return redis.call("DEL", queueListenerKey)
+end
+
+return 0
@@ -0,0 +1,10 @@
+local queueListenerKey = KEYS[1]
+local listenerChannel  = ARGV[1]
+local expireSeconds    = ARGV[2]
+
+-- only renew the listener if it hasn't been replaced by a connection on another server instance
+if redis.call("GET", queueListenerKey) == listenerChannel then
+    return redis.call("EXPIRE", queueListenerKey, expireSeconds)
+end
+
+return 0
@@ -0,0 +1,19 @@
+local persistInProgressKey = KEYS[1]
+local queueListenerKey     = KEYS[2]
+local notification         = ARGV[1]
+local notifyListener       = ARGV[2] == "true"
+
+local deleted = redis.call("DEL", persistInProgressKey)
+
+-- notify the server instance (if any) that holds a connection for this queue and has asked for notifications on its own
+-- channel; keyspace notifications for this queue are sent regardless, so callers that don't publish to per-instance
+-- channels skip the lookup entirely
+if notifyListener then
+    local listenerChannel = redis.call("GET", queueListenerKey)
+
+    if listenerChannel then
+        redis.call("PUBLISH", listenerChannel, notification)
+    end
+end
+
+return deleted
@@ -5,6 +5,8 @@
 -- and the deficit amount otherwise.
 -- However, 'check-only' operation doesn't modify the bucket, while 'use-if-available' (if successful)
 -- reduces the amount of available tokens by the requested amount.
+-- A negative requested amount with 'use-if-available' returns tokens to the bucket; a bucket never holds more than
+-- its size, so returned tokens beyond that are dropped.
 
 local bucketId = KEYS[1]
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.auth;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.whispersystems.textsecuregcm.configuration.CredentialVerificationCacheConfiguration;
+
+class CredentialVerificationCacheTest {
+
+  private CredentialVerificationCache credentialVerificationCache;
+
+  private static final UUID ACCOUNT_IDENTIFIER = UUID.randomUUID();
+  private static final long DEVICE_ID = 1;
+  private static final String TOKEN = "password";
+
+  @BeforeEach
+  void setUp() {
+    credentialVerificationCache = new CredentialVerificationCache(
+        new CredentialVerificationCacheConfiguration(true, 1_000, Duration.ofMinutes(5)));
+  }
+
+  @Test
+  void testVerify() {
+    final SaltedTokenHash saltedTokenHash = spy(SaltedTokenHash.generateFor(TOKEN));
+
+    assertTrue(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, TOKEN));
+    assertTrue(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, TOKEN));
+
+    // The second verification should have come from the cache
+    verify(saltedTokenHash, times(1)).verify(TOKEN);
+  }
+
+  @Test
+  void testVerifyIncorrectToken() {
+    final SaltedTokenHash saltedTokenHash = spy(SaltedTokenHash.generateFor(TOKEN));
+
+    assertFalse(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, "incorrect"));
+    assertFalse(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, "incorrect"));
+
+    // A cached verification of the correct token shouldn't apply to an incorrect token
+    assertTrue(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, TOKEN));
+    assertFalse(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, "incorrect"));
+
+    verify(saltedTokenHash, times(3)).verify("incorrect");
+  }
+
+  @Test
+  void testVerifyChangedCredentials() {
+    assertTrue(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID,
+        SaltedTokenHash.generateFor(TOKEN), TOKEN));
+
+    // The device's credentials changed; the old token should no longer be accepted
+    final SaltedTokenHash changedSaltedTokenHash = spy(SaltedTokenHash.generateFor("new-password"));
+
+    assertFalse(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, changedSaltedTokenHash, TOKEN));
+    assertTrue(credentialVerificationCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, changedSaltedTokenHash,
+        "new-password"));
+
+    verify(changedSaltedTokenHash).verify(TOKEN);
+    verify(changedSaltedTokenHash).verify("new-password");
+  }
+
+  @Test
+  void testVerifyDisabled() {
+    final CredentialVerificationCache disabledCache = new CredentialVerificationCache();
+    final SaltedTokenHash saltedTokenHash = spy(SaltedTokenHash.generateFor(TOKEN));
+
+    assertTrue(disabledCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, TOKEN));
+    assertTrue(disabledCache.verify(ACCOUNT_IDENTIFIER, DEVICE_ID, saltedTokenHash, TOKEN));
+
+    verify(saltedTokenHash, times(2)).verify(TOKEN);
+  }
+}
@@ -13,6 +13,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.vdurmont.semver4j.Semver;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -387,6 +388,55 @@ class DynamicConfigurationTest {
               .orElseThrow();
 
       assertFalse(config.getMessagePersisterConfiguration().isPersistenceEnabled());
+      assertFalse(config.getMessagePersisterConfiguration().isPipelinedPersistenceEnabled());
+    }
+
+    {
+      final String messagePersisterPipelinedYaml = REQUIRED_CONFIG.concat("""
+          messagePersister:
+            pipelinedPersistenceEnabled: true
+            pipelinedQueueConcurrency: 16
+          """);
+
+      final DynamicConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(messagePersisterPipelinedYaml, DynamicConfiguration.class)
+              .orElseThrow();
+
+      assertTrue(config.getMessagePersisterConfiguration().isPersistenceEnabled());
+      assertTrue(config.getMessagePersisterConfiguration().isPipelinedPersistenceEnabled());
+      assertEquals(16, config.getMessagePersisterConfiguration().getPipelinedQueueConcurrency());
+    }
+  }
+
+  @Test
+  void testMessageDelivery() throws JsonProcessingException {
+    {
+      final String emptyConfigYaml = REQUIRED_CONFIG.concat("test: true");
+      final DynamicConfiguration emptyConfig =
+          DynamicConfigurationManager.parseConfiguration(emptyConfigYaml, DynamicConfiguration.class).orElseThrow();
+
+      assertFalse(emptyConfig.getMessageDeliveryConfiguration().isAdaptiveSendWindowEnabled());
+    }
+
+    {
+      final String messageDeliveryYaml = REQUIRED_CONFIG.concat("""
+          messageDelivery:
+            adaptiveSendWindowEnabled: true
+            initialSendWindow: 8
+            minSendWindow: 2
+            maxSendWindow: 64
+            sendWindowLatencyThreshold: PT1S
+          """);
+
+      final DynamicConfiguration config =
+          DynamicConfigurationManager.parseConfiguration(messageDeliveryYaml, DynamicConfiguration.class)
+              .orElseThrow();
+
+      assertTrue(config.getMessageDeliveryConfiguration().isAdaptiveSendWindowEnabled());
+      assertEquals(8, config.getMessageDeliveryConfiguration().getInitialSendWindow());
+      assertEquals(2, config.getMessageDeliveryConfiguration().getMinSendWindow());
+      assertEquals(64, config.getMessageDeliveryConfiguration().getMaxSendWindow());
+      assertEquals(Duration.ofSeconds(1), config.getMessageDeliveryConfiguration().getSendWindowLatencyThreshold());
     }
   }
 
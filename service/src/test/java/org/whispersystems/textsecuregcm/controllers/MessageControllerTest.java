@@ -41,16 +41,19 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
-import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.client.Invocation;
@@ -87,6 +90,7 @@ import org.whispersystems.textsecuregcm.entities.SpamReport;
 import org.whispersystems.textsecuregcm.entities.StaleDevices;
 import org.whispersystems.textsecuregcm.limits.RateLimiter;
 import org.whispersystems.textsecuregcm.limits.RateLimiters;
+import org.whispersystems.textsecuregcm.mappers.CompletionExceptionMapper;
 import org.whispersystems.textsecuregcm.mappers.RateLimitExceededExceptionMapper;
 import org.whispersystems.textsecuregcm.providers.MultiRecipientMessageProvider;
 import org.whispersystems.textsecuregcm.push.MessageSender;
@@ -144,7 +148,6 @@ class MessageControllerTest {
   private static final RateLimiter rateLimiter = mock(RateLimiter.class);
   private static final PushNotificationManager pushNotificationManager = mock(PushNotificationManager.class);
   private static final ReportMessageManager reportMessageManager = mock(ReportMessageManager.class);
-  private static final ExecutorService multiRecipientMessageExecutor = mock(ExecutorService.class);
   private static final Scheduler messageDeliveryScheduler = Schedulers.newBoundedElastic(10, 10_000, "messageDelivery");
 
   private static final ResourceExtension resources = ResourceExtension.builder()
@@ -153,12 +156,13 @@ class MessageControllerTest {
       .addProvider(new PolymorphicAuthValueFactoryProvider.Binder<>(
           ImmutableSet.of(AuthenticatedAccount.class, DisabledPermittedAuthenticatedAccount.class)))
       .addProvider(RateLimitExceededExceptionMapper.class)
+      .addProvider(CompletionExceptionMapper.class)
       .addProvider(MultiRecipientMessageProvider.class)
       .setTestContainerFactory(new GrizzlyWebTestContainerFactory())
       .addResource(
           new MessageController(rateLimiters, messageSender, receiptSender, accountsManager, deletedAccountsManager,
-              messagesManager, pushNotificationManager, reportMessageManager, multiRecipientMessageExecutor,
-              messageDeliveryScheduler, ReportSpamTokenProvider.noop()))
+              messagesManager, pushNotificationManager, reportMessageManager, messageDeliveryScheduler,
+              ReportSpamTokenProvider.noop()))
       .build();
 
   @BeforeEach
@@ -178,13 +182,44 @@ class MessageControllerTest {
     Account internationalAccount = AccountsHelper.generateTestAccount(INTERNATIONAL_RECIPIENT, INTERNATIONAL_UUID,
         UUID.randomUUID(), singleDeviceList, UNIDENTIFIED_ACCESS_BYTES);
 
-    when(accountsManager.getByAccountIdentifier(eq(SINGLE_DEVICE_UUID))).thenReturn(Optional.of(singleDeviceAccount));
-    when(accountsManager.getByPhoneNumberIdentifier(SINGLE_DEVICE_PNI)).thenReturn(Optional.of(singleDeviceAccount));
-    when(accountsManager.getByAccountIdentifier(eq(MULTI_DEVICE_UUID))).thenReturn(Optional.of(multiDeviceAccount));
-    when(accountsManager.getByPhoneNumberIdentifier(MULTI_DEVICE_PNI)).thenReturn(Optional.of(multiDeviceAccount));
-    when(accountsManager.getByAccountIdentifier(INTERNATIONAL_UUID)).thenReturn(Optional.of(internationalAccount));
+    when(accountsManager.getByAccountIdentifierAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+    when(accountsManager.getByPhoneNumberIdentifierAsync(any()))
+        .thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+    when(accountsManager.getByAccountIdentifierAsync(SINGLE_DEVICE_UUID))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(singleDeviceAccount)));
+    when(accountsManager.getByPhoneNumberIdentifierAsync(SINGLE_DEVICE_PNI))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(singleDeviceAccount)));
+    when(accountsManager.getByAccountIdentifierAsync(MULTI_DEVICE_UUID))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(multiDeviceAccount)));
+    when(accountsManager.getByPhoneNumberIdentifierAsync(MULTI_DEVICE_PNI))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(multiDeviceAccount)));
+    when(accountsManager.getByAccountIdentifierAsync(INTERNATIONAL_UUID))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(internationalAccount)));
+
+    final Map<UUID, Account> accountsByUuid = Map.of(
+        SINGLE_DEVICE_UUID, singleDeviceAccount,
+        MULTI_DEVICE_UUID, multiDeviceAccount,
+        INTERNATIONAL_UUID, internationalAccount);
+
+    when(accountsManager.getByAccountIdentifiersAsync(any())).thenAnswer(invocation -> {
+      final Collection<UUID> uuids = invocation.getArgument(0);
+
+      return CompletableFuture.completedFuture(uuids.stream()
+          .filter(accountsByUuid::containsKey)
+          .collect(Collectors.toMap(Function.identity(), accountsByUuid::get)));
+    });
 
     when(rateLimiters.getMessagesLimiter()).thenReturn(rateLimiter);
+    when(rateLimiter.validateAsync(any(UUID.class))).thenReturn(CompletableFuture.completedFuture(null));
+    when(rateLimiter.validateAsync(any(UUID.class), any(UUID.class)))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    when(messageSender.sendMessagesAsync(any(), anyBoolean())).thenReturn(
+        CompletableFuture.completedFuture(Collections.emptyList()));
+    when(messageSender.sendMessageAsync(any(), any(), any(), anyBoolean()))
+        .thenReturn(CompletableFuture.completedFuture(null));
   }
 
   private static Device generateTestDevice(final long id, final int registrationId, final int pniRegistrationId, final SignedPreKey signedPreKey, final long createdAt, final long lastSeen) {
@@ -212,8 +247,7 @@ class MessageControllerTest {
         rateLimiters,
         rateLimiter,
         pushNotificationManager,
-        reportMessageManager,
-        multiRecipientMessageExecutor
+        reportMessageManager
     );
   }
 
@@ -250,7 +284,7 @@ class MessageControllerTest {
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
     ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    verify(messageSender, times(1)).sendMessageAsync(any(Account.class), any(Device.class), captor.capture(), eq(false));
 
     assertTrue(captor.getValue().hasSourceUuid());
     assertTrue(captor.getValue().hasSourceDevice());
@@ -271,7 +305,7 @@ class MessageControllerTest {
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
     ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    verify(messageSender, times(1)).sendMessageAsync(any(Account.class), any(Device.class), captor.capture(), eq(false));
 
     assertTrue(captor.getValue().hasSourceUuid());
     assertTrue(captor.getValue().hasSourceDevice());
@@ -292,7 +326,7 @@ class MessageControllerTest {
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
     ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    verify(messageSender, times(1)).sendMessageAsync(any(Account.class), any(Device.class), captor.capture(), eq(false));
 
     assertTrue(captor.getValue().hasSourceUuid());
     assertTrue(captor.getValue().hasSourceDevice());
@@ -325,7 +359,7 @@ class MessageControllerTest {
     assertThat("Good Response", response.getStatus(), is(equalTo(200)));
 
     ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-    verify(messageSender, times(1)).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+    verify(messageSender, times(1)).sendMessageAsync(any(Account.class), any(Device.class), captor.capture(), eq(false));
 
     assertFalse(captor.getValue().hasSourceUuid());
     assertFalse(captor.getValue().hasSourceDevice());
@@ -399,7 +433,7 @@ class MessageControllerTest {
 
     final ArgumentCaptor<Envelope> envelopeCaptor = ArgumentCaptor.forClass(Envelope.class);
 
-    verify(messageSender, times(2)).sendMessage(any(Account.class), any(Device.class), envelopeCaptor.capture(), eq(false));
+    verify(messageSender, times(2)).sendMessageAsync(any(Account.class), any(Device.class), envelopeCaptor.capture(), eq(false));
 
     envelopeCaptor.getAllValues().forEach(envelope -> assertTrue(envelope.getUrgent()));
   }
@@ -419,7 +453,7 @@ class MessageControllerTest {
 
     final ArgumentCaptor<Envelope> envelopeCaptor = ArgumentCaptor.forClass(Envelope.class);
 
-    verify(messageSender, times(2)).sendMessage(any(Account.class), any(Device.class), envelopeCaptor.capture(), eq(false));
+    verify(messageSender, times(2)).sendMessageAsync(any(Account.class), any(Device.class), envelopeCaptor.capture(), eq(false));
 
     envelopeCaptor.getAllValues().forEach(envelope -> assertFalse(envelope.getUrgent()));
   }
@@ -437,7 +471,7 @@ class MessageControllerTest {
 
     assertThat("Good Response Code", response.getStatus(), is(equalTo(200)));
 
-    verify(messageSender, times(2)).sendMessage(any(Account.class), any(Device.class), any(Envelope.class), eq(false));
+    verify(messageSender, times(2)).sendMessageAsync(any(Account.class), any(Device.class), any(Envelope.class), eq(false));
   }
 
   @Test
@@ -832,7 +866,7 @@ class MessageControllerTest {
 
     assertThat("Bad response", response.getStatus(), is(equalTo(413)));
 
-    verify(messageSender, never()).sendMessage(any(Account.class), any(Device.class), any(Envelope.class),
+    verify(messageSender, never()).sendMessageAsync(any(Account.class), any(Device.class), any(Envelope.class),
         anyBoolean());
   }
 
@@ -852,10 +886,10 @@ class MessageControllerTest {
       assertEquals(200, response.getStatus());
 
       final ArgumentCaptor<Envelope> captor = ArgumentCaptor.forClass(Envelope.class);
-      verify(messageSender).sendMessage(any(Account.class), any(Device.class), captor.capture(), eq(false));
+      verify(messageSender).sendMessageAsync(any(Account.class), any(Device.class), captor.capture(), eq(false));
     } else {
       assertEquals(400, response.getStatus());
-      verify(messageSender, never()).sendMessage(any(), any(), any(), anyBoolean());
+      verify(messageSender, never()).sendMessageAsync(any(), any(), any(), anyBoolean());
     }
   }
 
@@ -930,19 +964,6 @@ class MessageControllerTest {
     // set up the entity to use in our PUT request
     Entity<InputStream> entity = Entity.entity(stream, MultiRecipientMessageProvider.MEDIA_TYPE);
 
-    when(multiRecipientMessageExecutor.invokeAll(any()))
-        .thenAnswer(answer -> {
-          final List<Callable> tasks = answer.getArgument(0, List.class);
-          tasks.forEach(c -> {
-            try {
-              c.call();
-            } catch (Exception e) {
-              throw new RuntimeException(e);
-            }
-          });
-          return null;
-        });
-
     // start building the request
     Invocation.Builder bldr = resources
         .getJerseyTest()
@@ -964,9 +985,10 @@ class MessageControllerTest {
     Response response = bldr.put(entity);
 
     if (authorize) {
-      ArgumentCaptor<Envelope> envelopeArgumentCaptor = ArgumentCaptor.forClass(Envelope.class);
-      verify(messageSender, atLeastOnce()).sendMessage(any(), any(), envelopeArgumentCaptor.capture(), anyBoolean());
-      assertEquals(urgent, envelopeArgumentCaptor.getValue().getUrgent());
+      ArgumentCaptor<List<MessageSender.OutgoingMessage>> outgoingMessagesCaptor = ArgumentCaptor.forClass(List.class);
+      verify(messageSender, atLeastOnce()).sendMessagesAsync(outgoingMessagesCaptor.capture(), anyBoolean());
+      assertTrue(outgoingMessagesCaptor.getValue().stream()
+          .allMatch(outgoingMessage -> outgoingMessage.message().getUrgent() == urgent));
     }
 
     // We have a 2x2x2 grid of possible situations based on:
@@ -1110,14 +1132,14 @@ class MessageControllerTest {
 
   private void checkBadMultiRecipientResponse(Response response, int expectedCode) throws Exception {
     assertThat("Unexpected response", response.getStatus(), is(equalTo(expectedCode)));
-    verify(messageSender, never()).sendMessage(any(), any(), any(), anyBoolean());
-    verify(multiRecipientMessageExecutor, never()).invokeAll(any());
+    verify(messageSender, never()).sendMessageAsync(any(), any(), any(), anyBoolean());
+    verify(messageSender, never()).sendMessagesAsync(any(), anyBoolean());
   }
 
   private void checkGoodMultiRecipientResponse(Response response, int expectedCount) throws Exception {
     assertThat("Unexpected response", response.getStatus(), is(equalTo(200)));
-    ArgumentCaptor<List<Callable<Void>>> captor = ArgumentCaptor.forClass(List.class);
-    verify(multiRecipientMessageExecutor, times(1)).invokeAll(captor.capture());
+    ArgumentCaptor<List<MessageSender.OutgoingMessage>> captor = ArgumentCaptor.forClass(List.class);
+    verify(messageSender, times(1)).sendMessagesAsync(captor.capture(), anyBoolean());
     assert (captor.getValue().size() == expectedCount);
     SendMultiRecipientMessageResponse smrmr = response.readEntity(SendMultiRecipientMessageResponse.class);
     assert (smrmr.getUUIDs404().isEmpty());
@@ -1211,5 +1233,42 @@ class MessageControllerTest {
     assertEquals(expected, got);
   }
 
-
+  @Test
+  void testBuildRecipientEnvelope() {
+    final Random rng = new Random();
+
+    final byte[] commonPayload = new byte[4096];
+    rng.nextBytes(commonPayload);
+
+    final byte[] perRecipientKeyMaterial = new byte[48];
+    rng.nextBytes(perRecipientKeyMaterial);
+
+    final Recipient recipient = new Recipient(MULTI_DEVICE_UUID, MULTI_DEVICE_ID1, MULTI_DEVICE_REG_ID1,
+        perRecipientKeyMaterial);
+
+    final Account destinationAccount = mock(Account.class);
+    when(destinationAccount.getUuid()).thenReturn(MULTI_DEVICE_UUID);
+
+    final Envelope commonEnvelope = Envelope.newBuilder()
+        .setType(Envelope.Type.UNIDENTIFIED_SENDER)
+        .setTimestamp(1234)
+        .setServerTimestamp(5678)
+        .setStory(true)
+        .setUrgent(false)
+        .build();
+
+    final Envelope envelope = MessageController.buildRecipientEnvelope(commonEnvelope,
+        ByteString.copyFrom(commonPayload), destinationAccount, recipient);
+
+    final byte[] expectedContent = new byte[1 + perRecipientKeyMaterial.length + commonPayload.length];
+    expectedContent[0] = MultiRecipientMessageProvider.VERSION;
+    System.arraycopy(perRecipientKeyMaterial, 0, expectedContent, 1, perRecipientKeyMaterial.length);
+    System.arraycopy(commonPayload, 0, expectedContent, 1 + perRecipientKeyMaterial.length, commonPayload.length);
+
+    assertEquals(commonEnvelope.toBuilder()
+            .setContent(ByteString.copyFrom(expectedContent))
+            .setDestinationUuid(MULTI_DEVICE_UUID.toString())
+            .build(),
+        envelope);
+  }
 }
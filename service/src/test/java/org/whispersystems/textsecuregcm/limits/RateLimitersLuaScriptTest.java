@@ -19,6 +19,8 @@ import java.time.Clock;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
@@ -164,7 +166,7 @@ public class RateLimitersLuaScriptTest {
 
   @Test
   public void testFailOpen() throws Exception {
-    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(true));
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(true, false));
     final RateLimiters.For descriptor = RateLimiters.For.REGISTRATION;
     final FaultTolerantRedisCluster redisCluster = mock(FaultTolerantRedisCluster.class);
     final RateLimiters limiters = new RateLimiters(
@@ -178,6 +180,120 @@ public class RateLimitersLuaScriptTest {
     rateLimiter.validate("test", 200);
   }
 
+  @Test
+  public void testLocalPermitLeases() throws Exception {
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(false, true));
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final StaticRateLimiter rateLimiter = new StaticRateLimiter("leased", new RateLimiterConfig(60, 1), 25,
+        RateLimiters.defaultScript(redisCluster), redisCluster, Clock.systemUTC(), dynamicConfig);
+
+    // The first check for a key takes only the permits it needs from the shared bucket
+    rateLimiter.validate("test", 1);
+    assertEquals("59", getTokensRemaining(redisCluster, "leased", "test"));
+
+    // ...and later checks take leases that double in size up to the maximum, which are then served locally
+    for (int i = 1; i < 31; i++) {
+      rateLimiter.validate("test", 1);
+    }
+    assertEquals("29", getTokensRemaining(redisCluster, "leased", "test"));
+
+    rateLimiter.validate("test", 1);
+    assertEquals("4", getTokensRemaining(redisCluster, "leased", "test"));
+
+    for (int i = 0; i < 24; i++) {
+      rateLimiter.validate("test", 1);
+    }
+    assertEquals("4", getTokensRemaining(redisCluster, "leased", "test"));
+
+    // Once there's not enough space for a bigger lease, we fall back to smaller leases and exact checks and never admit
+    // more permits than the shared bucket holds
+    int admitted = 56;
+    while (true) {
+      try {
+        rateLimiter.validate("test", 1);
+        admitted++;
+      } catch (final RateLimitExceededException e) {
+        break;
+      }
+    }
+
+    assertEquals(60, admitted);
+  }
+
+  @Test
+  public void testLocalPermitLeasesAcrossInstances() throws Exception {
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(false, true));
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+
+    final List<StaticRateLimiter> rateLimiters = IntStream.range(0, 20)
+        .mapToObj(ignored -> new StaticRateLimiter("leased", new RateLimiterConfig(60, 1), 25,
+            RateLimiters.defaultScript(redisCluster), redisCluster, Clock.systemUTC(), dynamicConfig))
+        .toList();
+
+    // A client whose requests are spread across many instances should be admitted as many times as the shared bucket
+    // allows, and not be limited early by permits leased to (but unused by) other instances
+    for (int i = 0; i < 3; i++) {
+      for (final StaticRateLimiter rateLimiter : rateLimiters) {
+        rateLimiter.validate("test", 1);
+      }
+    }
+
+    assertThrows(RateLimitExceededException.class, () -> rateLimiters.get(0).validate("test", 1));
+  }
+
+  @Test
+  public void testLocalPermitLeasesReturnUnusedPermits() throws Exception {
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(false, true));
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final StaticRateLimiter rateLimiter = new StaticRateLimiter("leased", new RateLimiterConfig(60, 1), 25,
+        RateLimiters.defaultScript(redisCluster), redisCluster, Clock.systemUTC(), dynamicConfig);
+
+    // Exact check, then leases of 2, 4 and 8 permits
+    for (int i = 0; i < 8; i++) {
+      rateLimiter.validate("test", 1);
+    }
+    assertEquals("45", getTokensRemaining(redisCluster, "leased", "test"));
+
+    rateLimiter.returnUnusedLeasedPermits();
+    assertEquals("52", getTokensRemaining(redisCluster, "leased", "test"));
+  }
+
+  @Test
+  public void testLocalPermitLeasesDisabled() throws Exception {
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(false, false));
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final StaticRateLimiter rateLimiter = new StaticRateLimiter("leased", new RateLimiterConfig(60, 1), 25,
+        RateLimiters.defaultScript(redisCluster), redisCluster, Clock.systemUTC(), dynamicConfig);
+
+    rateLimiter.validate("test", 1);
+    assertEquals("59", redisCluster.withCluster(c ->
+        c.sync().hget(StaticRateLimiter.bucketName("leased", "test"), "s")).split("\\.")[0]);
+  }
+
+  @Test
+  public void testLocalPermitLeasesAsync() throws Exception {
+    when(configuration.getRateLimitPolicy()).thenReturn(new DynamicRateLimitPolicy(false, true));
+    final FaultTolerantRedisCluster redisCluster = REDIS_CLUSTER_EXTENSION.getRedisCluster();
+    final StaticRateLimiter rateLimiter = new StaticRateLimiter("leased", new RateLimiterConfig(30, 1), 20,
+        RateLimiters.defaultScript(redisCluster), redisCluster, Clock.systemUTC(), dynamicConfig);
+
+    for (int i = 0; i < 30; i++) {
+      rateLimiter.validateAsync("test", 1).toCompletableFuture().join();
+    }
+
+    final CompletionException completionException = assertThrows(CompletionException.class,
+        () -> rateLimiter.validateAsync("test", 1).toCompletableFuture().join());
+
+    assertTrue(completionException.getCause() instanceof RateLimitExceededException);
+  }
+
+  private static String getTokensRemaining(final FaultTolerantRedisCluster redisCluster,
+      final String name,
+      final String key) {
+
+    return redisCluster.withCluster(c -> c.sync().hget(StaticRateLimiter.bucketName(name, key), "s")).split("\\.")[0];
+  }
+
   private String serializeToOldBucketValueFormat(
       final long bucketSize,
       final long leakRatePerMillis,
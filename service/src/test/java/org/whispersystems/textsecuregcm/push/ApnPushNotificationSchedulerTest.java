@@ -19,8 +19,10 @@ import java.time.Clock;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
@@ -70,8 +72,12 @@ class ApnPushNotificationSchedulerTest {
     final AccountsManager accountsManager = mock(AccountsManager.class);
     when(accountsManager.getByE164(ACCOUNT_NUMBER)).thenReturn(Optional.of(account));
     when(accountsManager.getByAccountIdentifier(ACCOUNT_UUID)).thenReturn(Optional.of(account));
+    when(accountsManager.getByAccountIdentifiersAsync(List.of(ACCOUNT_UUID)))
+        .thenReturn(CompletableFuture.completedFuture(Map.of(ACCOUNT_UUID, account)));
 
     apnSender = mock(APNSender.class);
+    when(apnSender.sendNotification(any()))
+        .thenReturn(CompletableFuture.completedFuture(new SendPushNotificationResult(true, null, false)));
     clock = TestClock.now();
 
     apnPushNotificationScheduler = new ApnPushNotificationScheduler(REDIS_CLUSTER_EXTENSION.getRedisCluster(), apnSender, accountsManager, clock);
@@ -115,7 +121,7 @@ class ApnPushNotificationSchedulerTest {
 
     final int slot = SlotHash.getSlot(ApnPushNotificationScheduler.getEndpointKey(account, device));
 
-    assertEquals(1, worker.processRecurringVoipNotifications(slot));
+    assertEquals(1, (long) worker.processRecurringVoipNotifications(slot).join());
 
     final ArgumentCaptor<PushNotification> notificationCaptor = ArgumentCaptor.forClass(PushNotification.class);
     verify(apnSender).sendNotification(notificationCaptor.capture());
@@ -126,7 +132,7 @@ class ApnPushNotificationSchedulerTest {
     assertEquals(account, pushNotification.destination());
     assertEquals(device, pushNotification.destinationDevice());
 
-    assertEquals(0, worker.processRecurringVoipNotifications(slot));
+    assertEquals(0, (long) worker.processRecurringVoipNotifications(slot).join());
   }
 
   @Test
@@ -154,7 +160,7 @@ class ApnPushNotificationSchedulerTest {
 
     // Insert a timestamp for a recently-sent background push notification
     clock.pin(Instant.ofEpochMilli(recentNotificationTimestamp.toEpochMilli()));
-    apnPushNotificationScheduler.sendBackgroundNotification(account, device);
+    apnPushNotificationScheduler.sendBackgroundNotification(account, device).join();
 
     clock.pin(now);
     apnPushNotificationScheduler.scheduleBackgroundNotification(account, device).toCompletableFuture().get();
@@ -179,10 +185,10 @@ class ApnPushNotificationSchedulerTest {
         SlotHash.getSlot(ApnPushNotificationScheduler.getPendingBackgroundNotificationQueueKey(account, device));
 
     clock.pin(Instant.ofEpochMilli(now.minusMillis(1).toEpochMilli()));
-    assertEquals(0, worker.processScheduledBackgroundNotifications(slot));
+    assertEquals(0, (long) worker.processScheduledBackgroundNotifications(slot).join());
 
     clock.pin(now);
-    assertEquals(1, worker.processScheduledBackgroundNotifications(slot));
+    assertEquals(1, (long) worker.processScheduledBackgroundNotifications(slot).join());
 
     final ArgumentCaptor<PushNotification> notificationCaptor = ArgumentCaptor.forClass(PushNotification.class);
     verify(apnSender).sendNotification(notificationCaptor.capture());
@@ -196,7 +202,30 @@ class ApnPushNotificationSchedulerTest {
     assertEquals(PushNotification.NotificationType.NOTIFICATION, pushNotification.notificationType());
     assertFalse(pushNotification.urgent());
 
-    assertEquals(0, worker.processRecurringVoipNotifications(slot));
+    assertEquals(0, (long) worker.processRecurringVoipNotifications(slot).join());
+  }
+
+  @Test
+  void testProcessScheduledBackgroundNotificationsSendFailure() throws ExecutionException, InterruptedException {
+    final ApnPushNotificationScheduler.NotificationWorker worker = apnPushNotificationScheduler.new NotificationWorker();
+
+    when(apnSender.sendNotification(any()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("OH NO")));
+
+    final Instant now = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    clock.pin(now);
+    apnPushNotificationScheduler.scheduleBackgroundNotification(account, device).toCompletableFuture().get();
+
+    final int slot =
+        SlotHash.getSlot(ApnPushNotificationScheduler.getPendingBackgroundNotificationQueueKey(account, device));
+
+    // A failed send shouldn't fail the whole pass or keep the processed entries from being cleared from the queue
+    assertEquals(1, (long) worker.processScheduledBackgroundNotifications(slot).join());
+    verify(apnSender).sendNotification(any());
+
+    assertEquals(Optional.empty(),
+        apnPushNotificationScheduler.getNextScheduledBackgroundNotificationTimestamp(account, device));
   }
 
   @Test
@@ -212,7 +241,7 @@ class ApnPushNotificationSchedulerTest {
     final int slot =
         SlotHash.getSlot(ApnPushNotificationScheduler.getPendingBackgroundNotificationQueueKey(account, device));
 
-    assertEquals(0, worker.processScheduledBackgroundNotifications(slot));
+    assertEquals(0, (long) worker.processScheduledBackgroundNotifications(slot).join());
 
     verify(apnSender, never()).sendNotification(any());
   }
@@ -15,6 +15,7 @@ import static org.mockito.Mockito.mock;
 import io.lettuce.core.cluster.api.StatefulRedisClusterConnection;
 import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -24,6 +25,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -153,6 +155,34 @@ class ClientPresenceManagerTest {
     assertTimeoutPreemptively(Duration.ofSeconds(10), displaced::join);
   }
 
+  @Test
+  void testRemoteDisplacementAfterTopologyChangeManyClients() {
+    final List<UUID> accountUuids = Stream.generate(UUID::randomUUID).limit(100).toList();
+    final long deviceId = 1;
+
+    final List<CompletableFuture<?>> displacedFutures = new ArrayList<>();
+
+    clientPresenceManager.start();
+
+    for (final UUID accountUuid : accountUuids) {
+      final CompletableFuture<?> displaced = new CompletableFuture<>();
+      displacedFutures.add(displaced);
+
+      clientPresenceManager.setPresent(accountUuid, deviceId, connectedElsewhere -> displaced.complete(null));
+    }
+
+    clientPresenceManager.getPubSubConnection()
+        .usePubSubConnection(connection -> connection.getResources().eventBus()
+            .publish(new ClusterTopologyChangedEvent(List.of(), List.of())));
+
+    REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> accountUuids.forEach(accountUuid ->
+        connection.sync().set(ClientPresenceManager.getPresenceKey(accountUuid, deviceId),
+            UUID.randomUUID().toString())));
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10),
+        () -> CompletableFuture.allOf(displacedFutures.toArray(new CompletableFuture[0])).join());
+  }
+
   @Test
   void testClearPresence() {
     final UUID accountUuid = UUID.randomUUID();
@@ -181,9 +211,11 @@ class ClientPresenceManagerTest {
       connection.sync().sadd(ClientPresenceManager.MANAGER_SET_KEY, missingPeerId);
     });
 
+    final List<String> missingPeerPresenceKeys = new ArrayList<>();
+
     for (int i = 0; i < 10; i++) {
       addClientPresence(presentPeerId);
-      addClientPresence(missingPeerId);
+      missingPeerPresenceKeys.add(addClientPresence(missingPeerId));
     }
 
     clientPresenceManager.getPubSubConnection().usePubSubConnection(
@@ -202,6 +234,11 @@ class ClientPresenceManagerTest {
     assertFalse(REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(
         (Function<StatefulRedisClusterConnection<String, String>, Boolean>) connection -> connection.sync()
             .sismember(ClientPresenceManager.MANAGER_SET_KEY, missingPeerId)));
+
+    for (final String presenceKey : missingPeerPresenceKeys) {
+      assertEquals(0, (long) REDIS_CLUSTER_EXTENSION.getRedisCluster().withCluster(
+          connection -> connection.sync().exists(presenceKey)));
+    }
   }
 
   @Test
@@ -262,13 +299,15 @@ class ClientPresenceManagerTest {
     assertFalse(clientPresenceManager.isPresent(accountUuid, deviceId));
   }
 
-  private void addClientPresence(final String managerId) {
+  private String addClientPresence(final String managerId) {
     final String clientPresenceKey = ClientPresenceManager.getPresenceKey(UUID.randomUUID(), 7);
 
     REDIS_CLUSTER_EXTENSION.getRedisCluster().useCluster(connection -> {
       connection.sync().set(clientPresenceKey, managerId);
       connection.sync().sadd(ClientPresenceManager.getConnectedClientSetKey(managerId), clientPresenceKey);
     });
+
+    return clientPresenceKey;
   }
 
   @Test
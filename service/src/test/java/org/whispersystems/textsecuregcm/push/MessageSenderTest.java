@@ -8,19 +8,25 @@ package org.whispersystems.textsecuregcm.push;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.protobuf.ByteString;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -142,6 +148,176 @@ class MessageSenderTest {
     verify(messagesManager).insert(ACCOUNT_UUID, DEVICE_ID, message);
   }
 
+  @Test
+  void testSendMessageAsyncOnlineClientPresent() {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(true));
+    when(messagesManager.insertAsync(any(), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    messageSender.sendMessageAsync(account, device, message, true).join();
+
+    final ArgumentCaptor<MessageProtos.Envelope> envelopeArgumentCaptor = ArgumentCaptor.forClass(
+        MessageProtos.Envelope.class);
+
+    verify(messagesManager).insertAsync(any(), anyLong(), envelopeArgumentCaptor.capture());
+
+    assertTrue(envelopeArgumentCaptor.getValue().getEphemeral());
+    verifyNoInteractions(pushNotificationManager);
+  }
+
+  @Test
+  void testSendMessageAsyncOnlineClientNotPresent() {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(false));
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    messageSender.sendMessageAsync(account, device, message, true).join();
+
+    verify(messagesManager, never()).insertAsync(any(), anyLong(), any());
+    verifyNoInteractions(pushNotificationManager);
+  }
+
+  @Test
+  void testSendMessageAsyncClientPresent() {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(true));
+    when(messagesManager.insertAsync(any(), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    messageSender.sendMessageAsync(account, device, message, false).join();
+
+    verify(messagesManager).insertAsync(ACCOUNT_UUID, DEVICE_ID, message);
+
+    // Presence is confirmed once the message has been inserted
+    verify(clientPresenceManager, times(2)).isPresentAsync(ACCOUNT_UUID, DEVICE_ID);
+    verifyNoInteractions(pushNotificationManager);
+  }
+
+  @Test
+  void testSendMessageAsyncClientDisconnectedDuringInsert() throws Exception {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(true))
+        .thenReturn(CompletableFuture.completedFuture(false));
+
+    final CompletableFuture<Void> insertFuture = new CompletableFuture<>();
+    when(messagesManager.insertAsync(any(), anyLong(), any())).thenReturn(insertFuture);
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    final CompletableFuture<Void> sendFuture = messageSender.sendMessageAsync(account, device, message, false);
+
+    // Nothing should happen until the message has actually been inserted
+    assertFalse(sendFuture.isDone());
+    verify(clientPresenceManager, times(1)).isPresentAsync(ACCOUNT_UUID, DEVICE_ID);
+    verifyNoInteractions(pushNotificationManager);
+
+    insertFuture.complete(null);
+    sendFuture.join();
+
+    verify(pushNotificationManager).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
+  }
+
+  @Test
+  void testSendMessageAsyncClientNotPresent() throws Exception {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(false));
+    when(messagesManager.insertAsync(any(), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(device.getApnId()).thenReturn("apn-id");
+
+    messageSender.sendMessageAsync(account, device, message, false).join();
+
+    verify(messagesManager).insertAsync(ACCOUNT_UUID, DEVICE_ID, message);
+    verify(clientPresenceManager, times(1)).isPresentAsync(ACCOUNT_UUID, DEVICE_ID);
+    verify(pushNotificationManager).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
+  }
+
+  @Test
+  void testSendMessageAsyncNotPushRegistered() throws Exception {
+    when(clientPresenceManager.isPresentAsync(ACCOUNT_UUID, DEVICE_ID))
+        .thenReturn(CompletableFuture.completedFuture(false));
+    when(messagesManager.insertAsync(any(), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    doThrow(NotPushRegisteredException.class)
+        .when(pushNotificationManager).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
+
+    final CompletionException completionException = assertThrows(CompletionException.class,
+        () -> messageSender.sendMessageAsync(account, device, message, false).join());
+
+    assertTrue(completionException.getCause() instanceof NotPushRegisteredException);
+  }
+
+  @Test
+  void testSendMessagesOnline() {
+    final Device absentDevice = mock(Device.class);
+    when(absentDevice.getId()).thenReturn(DEVICE_ID + 1);
+    when(absentDevice.getGcmId()).thenReturn("gcm-id");
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    when(clientPresenceManager.isPresentAsync(anyList()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(true, false)));
+    when(messagesManager.insertBatch(any())).thenReturn(CompletableFuture.completedFuture(List.of(UUID.randomUUID())));
+
+    final List<MessageSender.OutgoingMessage> notRegistered = messageSender.sendMessages(List.of(
+        new MessageSender.OutgoingMessage(account, device, message),
+        new MessageSender.OutgoingMessage(account, absentDevice, message)), true);
+
+    @SuppressWarnings("unchecked") final ArgumentCaptor<List<MessagesManager.BatchInsertEntry>> entriesCaptor =
+        ArgumentCaptor.forClass(List.class);
+
+    verify(messagesManager).insertBatch(entriesCaptor.capture());
+
+    assertEquals(1, entriesCaptor.getValue().size());
+    assertEquals(DEVICE_ID, entriesCaptor.getValue().get(0).destinationDevice());
+    assertTrue(entriesCaptor.getValue().get(0).message().getEphemeral());
+    assertTrue(notRegistered.isEmpty());
+    verifyNoInteractions(pushNotificationManager);
+  }
+
+  @Test
+  void testSendMessagesOffline() throws Exception {
+    final long absentDeviceId = DEVICE_ID + 1;
+    final long unregisteredDeviceId = DEVICE_ID + 2;
+
+    final Device absentDevice = mock(Device.class);
+    when(absentDevice.getId()).thenReturn(absentDeviceId);
+    when(absentDevice.getApnId()).thenReturn("apn-id");
+
+    final Device unregisteredDevice = mock(Device.class);
+    when(unregisteredDevice.getId()).thenReturn(unregisteredDeviceId);
+    when(unregisteredDevice.getGcmId()).thenReturn("gcm-id");
+
+    when(device.getGcmId()).thenReturn("gcm-id");
+
+    when(clientPresenceManager.isPresentAsync(anyList()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(true, false, false)));
+    when(messagesManager.insertBatch(any())).thenReturn(
+        CompletableFuture.completedFuture(List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID())));
+
+    doThrow(NotPushRegisteredException.class)
+        .when(pushNotificationManager).sendNewMessageNotification(account, unregisteredDeviceId, message.getUrgent());
+
+    final MessageSender.OutgoingMessage unregisteredMessage =
+        new MessageSender.OutgoingMessage(account, unregisteredDevice, message);
+
+    final List<MessageSender.OutgoingMessage> notRegistered = messageSender.sendMessages(List.of(
+        new MessageSender.OutgoingMessage(account, device, message),
+        new MessageSender.OutgoingMessage(account, absentDevice, message),
+        unregisteredMessage), false);
+
+    @SuppressWarnings("unchecked") final ArgumentCaptor<List<MessagesManager.BatchInsertEntry>> entriesCaptor =
+        ArgumentCaptor.forClass(List.class);
+
+    verify(messagesManager).insertBatch(entriesCaptor.capture());
+
+    assertEquals(3, entriesCaptor.getValue().size());
+    assertTrue(entriesCaptor.getValue().stream().noneMatch(entry -> entry.message().getEphemeral()));
+
+    verify(pushNotificationManager, never()).sendNewMessageNotification(account, DEVICE_ID, message.getUrgent());
+    verify(pushNotificationManager).sendNewMessageNotification(account, absentDeviceId, message.getUrgent());
+    assertEquals(List.of(unregisteredMessage), notRegistered);
+  }
+
   private MessageProtos.Envelope generateRandomMessage() {
     return MessageProtos.Envelope.newBuilder()
         .setTimestamp(System.currentTimeMillis())
@@ -8,6 +8,7 @@ package org.whispersystems.textsecuregcm.push;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -17,9 +18,13 @@ import java.time.ZoneId;
 import java.util.Collections;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicPushLatencyConfiguration;
@@ -46,6 +51,10 @@ class PushLatencyManagerTest {
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
     when(dynamicConfiguration.getPushLatencyConfiguration()).thenReturn(dynamicPushLatencyConfiguration);
     when(dynamicPushLatencyConfiguration.getInstrumentedVersions()).thenReturn(Collections.emptyMap());
+    when(dynamicConfigurationManager.createView(any())).thenAnswer(invocation -> {
+      final Function<DynamicConfiguration, ?> viewFunction = invocation.getArgument(0);
+      return (Supplier<?>) () -> viewFunction.apply(dynamicConfiguration);
+    });
   }
 
   @ParameterizedTest
@@ -54,7 +63,8 @@ class PushLatencyManagerTest {
     final UUID accountUuid = UUID.randomUUID();
     final long deviceId = 1;
 
-    final Instant pushTimestamp = Instant.now();
+    // Push records are stored with millisecond precision
+    final Instant pushTimestamp = Instant.ofEpochMilli(System.currentTimeMillis());
 
     final PushLatencyManager pushLatencyManager = new PushLatencyManager(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
         dynamicConfigurationManager, Clock.fixed(pushTimestamp, ZoneId.systemDefault()));
@@ -66,9 +76,43 @@ class PushLatencyManagerTest {
     final PushRecord pushRecord = pushLatencyManager.takePushRecord(accountUuid, deviceId).get();
 
     assertNotNull(pushRecord);
-    assertEquals(pushTimestamp, pushRecord.getTimestamp());
-    assertEquals(isVoip ? PushType.VOIP : PushType.STANDARD, pushRecord.getPushType());
+    assertEquals(pushTimestamp, pushRecord.timestamp());
+    assertEquals(isVoip ? PushType.VOIP : PushType.STANDARD, pushRecord.pushType());
 
     assertNull(pushLatencyManager.takePushRecord(accountUuid, deviceId).get());
   }
+
+  @ParameterizedTest
+  @EnumSource(PushType.class)
+  void testSerializePushRecord(final PushType pushType) {
+    final PushRecord pushRecord = new PushRecord(Instant.ofEpochMilli(1_677_000_000_123L), pushType);
+    final byte[] serialized = PushLatencyManager.serializePushRecord(pushRecord);
+
+    assertEquals(PushLatencyManager.PUSH_RECORD_LENGTH, serialized.length);
+    assertEquals(pushRecord, PushLatencyManager.parsePushRecord(serialized));
+  }
+
+  @Test
+  void testPushTypeCodes() {
+    // Push records already stored in Redis depend on these codes
+    assertEquals(PushType.STANDARD, PushType.fromCode((byte) 0));
+    assertEquals(PushType.VOIP, PushType.fromCode((byte) 1));
+
+    final byte[] serialized =
+        PushLatencyManager.serializePushRecord(new PushRecord(Instant.ofEpochMilli(1_677_000_000_123L), PushType.VOIP));
+
+    assertEquals(1, serialized[PushLatencyManager.PUSH_RECORD_LENGTH - 1]);
+  }
+
+  @Test
+  void testParseMalformedPushRecord() {
+    assertNull(PushLatencyManager.parsePushRecord(null));
+    assertNull(PushLatencyManager.parsePushRecord(new byte[0]));
+    assertNull(PushLatencyManager.parsePushRecord(new byte[PushLatencyManager.PUSH_RECORD_LENGTH + 1]));
+
+    final byte[] unknownPushType = new byte[PushLatencyManager.PUSH_RECORD_LENGTH];
+    unknownPushType[PushLatencyManager.PUSH_RECORD_LENGTH - 1] = (byte) 0x7f;
+
+    assertNull(PushLatencyManager.parsePushRecord(unknownPushType));
+  }
 }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
+import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
+import org.whispersystems.textsecuregcm.util.SystemMapper;
+
+class AccountCacheCodecTest {
+
+  @ParameterizedTest
+  @EnumSource(AccountCacheCodec.Format.class)
+  void encodeDecode(final AccountCacheCodec.Format format) throws IOException {
+    final Account account = generateAccount();
+    final byte[] encoded = AccountCacheCodec.encode(account, format);
+
+    assertEquals(format, AccountCacheCodec.getFormat(encoded));
+
+    final Account decoded = AccountCacheCodec.decode(encoded);
+    decoded.setUuid(account.getUuid());
+
+    assertArrayEquals(SystemMapper.jsonMapper().writeValueAsBytes(account),
+        SystemMapper.jsonMapper().writeValueAsBytes(decoded));
+  }
+
+  @ParameterizedTest
+  @EnumSource(AccountCacheCodec.Format.class)
+  void encodeDecodeInline(final AccountCacheCodec.Format format) throws IOException {
+    final Account account = generateAccount();
+    final byte[] encoded = AccountCacheCodec.encodeInline(account, format);
+
+    assertTrue(AccountCacheCodec.isInline(encoded));
+    assertEquals(format, AccountCacheCodec.getInlineFormat(encoded));
+
+    final Account decoded = AccountCacheCodec.decodeInline(encoded);
+
+    assertEquals(account.getUuid(), decoded.getUuid());
+    assertArrayEquals(SystemMapper.jsonMapper().writeValueAsBytes(account),
+        SystemMapper.jsonMapper().writeValueAsBytes(decoded));
+  }
+
+  @Test
+  void isInlineLegacyIdentifier() {
+    assertFalse(AccountCacheCodec.isInline(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  void decodeLegacyJson() throws IOException {
+    final Account account = generateAccount();
+    final byte[] legacyJson = SystemMapper.jsonMapper().writeValueAsString(account).getBytes(StandardCharsets.UTF_8);
+
+    assertEquals(AccountCacheCodec.Format.JSON, AccountCacheCodec.getFormat(legacyJson));
+    assertEquals(account.getNumber(), AccountCacheCodec.decode(legacyJson).getNumber());
+  }
+
+  @Test
+  void compactSmallerThanJson() throws IOException {
+    final Account account = generateAccount();
+
+    assertTrue(AccountCacheCodec.encode(account, AccountCacheCodec.Format.COMPACT_V1).length <
+        AccountCacheCodec.encode(account, AccountCacheCodec.Format.JSON).length);
+  }
+
+  @Test
+  void decodeUnrecognized() {
+    assertThrows(IOException.class, () -> AccountCacheCodec.decode(new byte[0]));
+    assertThrows(IOException.class, () -> AccountCacheCodec.decode(new byte[]{0x7f, 0x00}));
+  }
+
+  private static Account generateAccount() {
+    return AccountsHelper.generateTestAccount("+18005551234", UUID.randomUUID(), UUID.randomUUID(),
+        List.of(DevicesHelper.createDevice(Device.MASTER_ID), DevicesHelper.createDevice(2)), new byte[16]);
+  }
+}
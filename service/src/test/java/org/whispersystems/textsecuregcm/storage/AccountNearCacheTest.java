@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.whispersystems.textsecuregcm.configuration.AccountNearCacheConfiguration;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
+
+class AccountNearCacheTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private AccountNearCache accountNearCache;
+  private AccountNearCache peerAccountNearCache;
+
+  @BeforeEach
+  void setUp() {
+    final AccountNearCacheConfiguration configuration =
+        new AccountNearCacheConfiguration(true, 1_000, Duration.ofMinutes(1));
+
+    accountNearCache = new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), configuration);
+    peerAccountNearCache = new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), configuration);
+
+    accountNearCache.start();
+    peerAccountNearCache.start();
+  }
+
+  @AfterEach
+  void tearDown() {
+    accountNearCache.stop();
+    peerAccountNearCache.stop();
+  }
+
+  @Test
+  void getPut() {
+    final Account account = generateAccount();
+
+    assertTrue(accountNearCache.get(account.getUuid()).isEmpty());
+
+    accountNearCache.put(account);
+
+    final Account cachedAccount = accountNearCache.get(account.getUuid()).orElseThrow();
+
+    assertNotSame(account, cachedAccount);
+    assertNotSame(cachedAccount, accountNearCache.get(account.getUuid()).orElseThrow());
+    assertEquals(account.getUuid(), cachedAccount.getUuid());
+    assertEquals(account.getNumber(), cachedAccount.getNumber());
+    assertEquals(account.getPhoneNumberIdentifier(), cachedAccount.getPhoneNumberIdentifier());
+  }
+
+  @Test
+  void invalidate() {
+    final Account account = generateAccount();
+
+    accountNearCache.put(account);
+    peerAccountNearCache.put(account);
+
+    accountNearCache.invalidate(account.getUuid(), account.getVersion() + 1);
+
+    assertTrue(accountNearCache.get(account.getUuid()).isEmpty());
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      while (peerAccountNearCache.get(account.getUuid()).isPresent()) {
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  @Test
+  void invalidateRejectsStaleAccounts() {
+    final Account staleAccount = generateAccount();
+
+    final Account updatedAccount = generateAccount();
+    updatedAccount.setUuid(staleAccount.getUuid());
+    updatedAccount.setVersion(staleAccount.getVersion() + 1);
+
+    // A request reads the old version of the account while an update is in flight, but only gets around to caching it
+    // after the update has been persisted and announced
+    accountNearCache.invalidate(updatedAccount.getUuid(), updatedAccount.getVersion());
+    accountNearCache.put(staleAccount);
+
+    assertTrue(accountNearCache.get(staleAccount.getUuid()).isEmpty());
+
+    accountNearCache.put(updatedAccount);
+
+    assertEquals(updatedAccount.getVersion(),
+        accountNearCache.get(updatedAccount.getUuid()).orElseThrow().getVersion());
+
+    // Other instances reject the stale account once they've received the announcement
+    assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+      while (true) {
+        peerAccountNearCache.put(staleAccount);
+
+        if (peerAccountNearCache.get(staleAccount.getUuid()).isEmpty()) {
+          break;
+        }
+
+        Thread.sleep(10);
+      }
+    });
+  }
+
+  @Test
+  void disabled() {
+    final AccountNearCache disabledAccountNearCache = new AccountNearCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+        new AccountNearCacheConfiguration());
+
+    final Account account = generateAccount();
+
+    disabledAccountNearCache.put(account);
+    assertTrue(disabledAccountNearCache.get(account.getUuid()).isEmpty());
+  }
+
+  private static Account generateAccount() {
+    return AccountsHelper.generateTestAccount("+18005551234", UUID.randomUUID(), UUID.randomUUID(), new ArrayList<>(),
+        new byte[16]);
+  }
+}
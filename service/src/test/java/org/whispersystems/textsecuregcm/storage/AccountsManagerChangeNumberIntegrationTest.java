@@ -104,6 +104,7 @@ class AccountsManagerChangeNumberIntegrationTest {
           accounts,
           phoneNumberIdentifiers,
           CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+          mock(AccountNearCache.class),
           deletedAccountsManager,
           mock(Keys.class),
           mock(MessagesManager.class),
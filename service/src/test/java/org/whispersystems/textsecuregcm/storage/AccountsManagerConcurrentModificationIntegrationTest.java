@@ -109,6 +109,7 @@ class AccountsManagerConcurrentModificationIntegrationTest {
           accounts,
           phoneNumberIdentifiers,
           RedisClusterHelper.builder().stringCommands(commands).build(),
+          mock(AccountNearCache.class),
           deletedAccountsManager,
           mock(Keys.class),
           mock(MessagesManager.class),
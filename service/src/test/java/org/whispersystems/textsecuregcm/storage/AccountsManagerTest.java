@@ -12,11 +12,13 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.aryEq;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -25,8 +27,12 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.lettuce.core.KeyValue;
 import io.lettuce.core.RedisException;
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands;
 import io.lettuce.core.cluster.api.sync.RedisAdvancedClusterCommands;
+import java.nio.charset.StandardCharsets;
 import java.time.Clock;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -35,6 +41,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BiFunction;
@@ -47,6 +54,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InOrder;
 import org.mockito.stubbing.Answer;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
 import org.whispersystems.textsecuregcm.controllers.MismatchedDevicesException;
@@ -60,6 +68,7 @@ import org.whispersystems.textsecuregcm.securevaluerecovery.SecureValueRecovery2
 import org.whispersystems.textsecuregcm.storage.Device.DeviceCapabilities;
 import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
 import org.whispersystems.textsecuregcm.tests.util.DevicesHelper;
+import org.whispersystems.textsecuregcm.tests.util.MockRedisFuture;
 import org.whispersystems.textsecuregcm.tests.util.RedisClusterHelper;
 
 class AccountsManagerTest {
@@ -75,10 +84,14 @@ class AccountsManagerTest {
   private ProfilesManager profilesManager;
   private ClientPresenceManager clientPresenceManager;
   private ExperimentEnrollmentManager enrollmentManager;
+  private AccountNearCache accountNearCache;
 
   private Map<String, UUID> phoneNumberIdentifiersByE164;
 
   private RedisAdvancedClusterCommands<String, String> commands;
+  private RedisAdvancedClusterAsyncCommands<String, String> asyncCommands;
+  private RedisAdvancedClusterCommands<byte[], byte[]> binaryCommands;
+  private RedisAdvancedClusterAsyncCommands<byte[], byte[]> binaryAsyncCommands;
   private AccountsManager accountsManager;
 
   private static final Answer<?> ACCOUNT_UPDATE_ANSWER = (answer) -> {
@@ -101,6 +114,15 @@ class AccountsManagerTest {
     //noinspection unchecked
     commands = mock(RedisAdvancedClusterCommands.class);
 
+    //noinspection unchecked
+    asyncCommands = mock(RedisAdvancedClusterAsyncCommands.class);
+
+    //noinspection unchecked
+    binaryCommands = mock(RedisAdvancedClusterCommands.class);
+
+    //noinspection unchecked
+    binaryAsyncCommands = mock(RedisAdvancedClusterAsyncCommands.class);
+
     doAnswer((Answer<Void>) invocation -> {
       final Account account = invocation.getArgument(0, Account.class);
       final String number = invocation.getArgument(1, String.class);
@@ -142,13 +164,20 @@ class AccountsManagerTest {
     when(dynamicConfigurationManager.getConfiguration()).thenReturn(dynamicConfiguration);
 
     enrollmentManager = mock(ExperimentEnrollmentManager.class);
+    accountNearCache = mock(AccountNearCache.class);
     when(enrollmentManager.isEnrolled(any(UUID.class), eq(AccountsManager.USERNAME_EXPERIMENT_NAME))).thenReturn(true);
     when(accounts.usernameHashAvailable(any())).thenReturn(true);
 
     accountsManager = new AccountsManager(
         accounts,
         phoneNumberIdentifiers,
-        RedisClusterHelper.builder().stringCommands(commands).build(),
+        RedisClusterHelper.builder()
+            .stringCommands(commands)
+            .stringAsyncCommands(asyncCommands)
+            .binaryCommands(binaryCommands)
+            .binaryAsyncCommands(binaryAsyncCommands)
+            .build(),
+        accountNearCache,
         deletedAccountsManager,
         keys,
         messagesManager,
@@ -167,9 +196,10 @@ class AccountsManagerTest {
   void testGetAccountByNumberInCache() {
     UUID uuid = UUID.randomUUID();
 
-    when(commands.get(eq("AccountMap::+14152222222"))).thenReturn(uuid.toString());
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+    when(binaryCommands.get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8))))
+        .thenReturn(uuid.toString().getBytes(StandardCharsets.UTF_8));
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByE164("+14152222222");
 
@@ -177,19 +207,65 @@ class AccountsManagerTest {
     assertEquals(account.get().getNumber(), "+14152222222");
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
-    verify(commands, times(1)).get(eq("AccountMap::+14152222222"));
-    verify(commands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryCommands, times(1)).get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8)));
+    verify(binaryCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(commands);
 
     verifyNoInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountByNumberInCacheInline() throws JsonProcessingException {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final Account cachedAccount =
+        AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
+
+    when(binaryCommands.get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8))))
+        .thenReturn(AccountCacheCodec.encodeInline(cachedAccount, AccountCacheCodec.Format.COMPACT_V1));
+
+    final Optional<Account> account = accountsManager.getByE164("+14152222222");
+
+    assertTrue(account.isPresent());
+    assertEquals("+14152222222", account.get().getNumber());
+    assertEquals(uuid, account.get().getUuid());
+    assertEquals(pni, account.get().getPhoneNumberIdentifier());
+
+    verify(binaryCommands).get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8)));
+    verifyNoMoreInteractions(binaryCommands);
+    verifyNoInteractions(commands);
+
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByNumberNotInCacheInline() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
+
+    when(enrollmentManager.isEnrolled(uuid, AccountsManager.INLINE_ACCOUNT_CACHE_SECONDARY_KEYS_EXPERIMENT_NAME))
+        .thenReturn(true);
+    when(binaryCommands.get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8)))).thenReturn(null);
+    when(accounts.getByE164("+14152222222")).thenReturn(Optional.of(account));
+
+    assertEquals(Optional.of(account), accountsManager.getByE164("+14152222222"));
+
+    verify(binaryCommands).setex(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8)), anyLong(),
+        argThat(AccountCacheCodec::isInline));
+    verify(binaryCommands).setex(aryEq(("AccountMap::" + pni).getBytes(StandardCharsets.UTF_8)), anyLong(),
+        argThat(AccountCacheCodec::isInline));
+
+    verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verifyNoMoreInteractions(commands);
+  }
+
   @Test
   void testGetAccountByUuidInCache() {
     UUID uuid = UUID.randomUUID();
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByAccountIdentifier(uuid);
 
@@ -198,20 +274,73 @@ class AccountsManagerTest {
     assertEquals(account.get().getUuid(), uuid);
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
-    verify(commands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(commands);
 
     verifyNoInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountByUuidInNearCache() {
+    final UUID uuid = UUID.randomUUID();
+    final Account account =
+        AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[16]);
+
+    when(accountNearCache.get(uuid)).thenReturn(Optional.of(account));
+
+    assertEquals(Optional.of(account), accountsManager.getByAccountIdentifier(uuid));
+    assertEquals(Optional.of(account), accountsManager.getByAccountIdentifierAsync(uuid).join());
+
+    verifyNoInteractions(binaryCommands);
+    verifyNoInteractions(binaryAsyncCommands);
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByUuidPopulatesNearCache() {
+    final UUID uuid = UUID.randomUUID();
+    final Account account =
+        AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[16]);
+
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
+    when(accounts.getByAccountIdentifier(uuid)).thenReturn(Optional.of(account));
+
+    accountsManager.getByAccountIdentifier(uuid);
+
+    verify(accountNearCache).put(account);
+  }
+
+  @Test
+  void testGetAccountByUuidInCacheAsync() {
+    UUID uuid = UUID.randomUUID();
+
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"
+            .getBytes(StandardCharsets.UTF_8)));
+
+    Optional<Account> account = accountsManager.getByAccountIdentifierAsync(uuid).join();
+
+    assertTrue(account.isPresent());
+    assertEquals(account.get().getNumber(), "+14152222222");
+    assertEquals(account.get().getUuid(), uuid);
+    assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
+
+    verify(binaryAsyncCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
+    verifyNoMoreInteractions(binaryAsyncCommands);
+    verifyNoInteractions(asyncCommands);
+
+    verifyNoInteractions(accounts);
+  }
+
   @Test
   void testGetByPniInCache() {
     UUID uuid = UUID.randomUUID();
     UUID pni = UUID.randomUUID();
 
-    when(commands.get(eq("AccountMap::" + pni))).thenReturn(uuid.toString());
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(
-        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}");
+    when(binaryCommands.get(aryEq(("AccountMap::" + pni).getBytes(StandardCharsets.UTF_8))))
+        .thenReturn(uuid.toString().getBytes(StandardCharsets.UTF_8));
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
+        "{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}".getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByPhoneNumberIdentifier(pni);
 
@@ -219,8 +348,8 @@ class AccountsManagerTest {
     assertEquals(account.get().getNumber(), "+14152222222");
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
 
-    verify(commands).get(eq("AccountMap::" + pni));
-    verify(commands).get(eq("Account3::" + uuid));
+    verify(binaryCommands).get(aryEq(("AccountMap::" + pni).getBytes(StandardCharsets.UTF_8)));
+    verify(binaryCommands).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(commands);
 
     verifyNoInteractions(accounts);
@@ -229,10 +358,11 @@ class AccountsManagerTest {
   @Test
   void testGetByUsernameHashInCache() {
     UUID uuid = UUID.randomUUID();
-    when(commands.get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1))).thenReturn(uuid.toString());
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(
+    when(binaryCommands.get(aryEq(("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1).getBytes(StandardCharsets.UTF_8))))
+        .thenReturn(uuid.toString().getBytes(StandardCharsets.UTF_8));
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(
         String.format("{\"number\": \"+14152222222\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\", \"usernameHash\": \"%s\"}",
-            BASE_64_URL_USERNAME_HASH_1));
+            BASE_64_URL_USERNAME_HASH_1).getBytes(StandardCharsets.UTF_8));
 
     Optional<Account> account = accountsManager.getByUsernameHash(USERNAME_HASH_1);
 
@@ -241,8 +371,8 @@ class AccountsManagerTest {
     assertEquals(UUID.fromString("de24dc73-fbd8-41be-a7d5-764c70d9da7e"), account.get().getPhoneNumberIdentifier());
     assertArrayEquals(USERNAME_HASH_1, account.get().getUsernameHash().get());
 
-    verify(commands).get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
-    verify(commands).get(eq("Account3::" + uuid));
+    verify(binaryCommands).get(aryEq(("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1).getBytes(StandardCharsets.UTF_8)));
+    verify(binaryCommands).get(aryEq(getAccountEntityKey(uuid)));
     verifyNoMoreInteractions(commands);
 
     verifyNoInteractions(accounts);
@@ -254,7 +384,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("AccountMap::+14152222222"))).thenReturn(null);
+    when(binaryCommands.get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8)))).thenReturn(null);
     when(accounts.getByE164(eq("+14152222222"))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByE164("+14152222222");
@@ -262,7 +392,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands, times(1)).get(eq("AccountMap::+14152222222"));
+    verify(binaryCommands, times(1)).get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8)));
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
@@ -278,7 +408,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
     when(accounts.getByAccountIdentifier(eq(uuid))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByAccountIdentifier(uuid);
@@ -286,7 +416,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
@@ -296,6 +426,166 @@ class AccountsManagerTest {
     verifyNoMoreInteractions(accounts);
   }
 
+  @Test
+  void testGetAccountByUuidNotInCacheAsync() {
+    UUID uuid = UUID.randomUUID();
+    UUID pni = UUID.randomUUID();
+    Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
+
+    when(binaryAsyncCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(MockRedisFuture.completedFuture(null));
+    when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
+    when(accounts.getByAccountIdentifierAsync(eq(uuid)))
+        .thenReturn(CompletableFuture.completedFuture(Optional.of(account)));
+
+    Optional<Account> retrieved = accountsManager.getByAccountIdentifierAsync(uuid).join();
+
+    assertTrue(retrieved.isPresent());
+    assertSame(retrieved.get(), account);
+
+    verify(binaryAsyncCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
+    verify(asyncCommands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
+    verify(asyncCommands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
+    verify(asyncCommands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
+    verifyNoMoreInteractions(asyncCommands);
+
+    verify(accounts, times(1)).getByAccountIdentifierAsync(eq(uuid));
+    verifyNoMoreInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByUuidInCacheCompact() throws JsonProcessingException {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final Account cachedAccount =
+        AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
+
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid))))
+        .thenReturn(AccountCacheCodec.encode(cachedAccount, AccountCacheCodec.Format.COMPACT_V1));
+
+    final Optional<Account> account = accountsManager.getByAccountIdentifier(uuid);
+
+    assertTrue(account.isPresent());
+    assertEquals("+14152222222", account.get().getNumber());
+    assertEquals(uuid, account.get().getUuid());
+    assertEquals(pni, account.get().getPhoneNumberIdentifier());
+
+    verifyNoInteractions(accounts);
+  }
+
+  @Test
+  void testGetAccountByUuidNotInCacheCompact() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
+
+    when(enrollmentManager.isEnrolled(uuid, AccountsManager.COMPACT_ACCOUNT_CACHE_EXPERIMENT_NAME)).thenReturn(true);
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
+    when(accounts.getByAccountIdentifier(eq(uuid))).thenReturn(Optional.of(account));
+
+    final Optional<Account> retrieved = accountsManager.getByAccountIdentifier(uuid);
+
+    assertTrue(retrieved.isPresent());
+    assertSame(retrieved.get(), account);
+
+    verify(commands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
+    verify(commands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
+    verifyNoMoreInteractions(commands);
+
+    verify(binaryCommands).setex(aryEq(getAccountEntityKey(uuid)), anyLong(),
+        argThat(value -> value.length > 0 && value[0] != '{'));
+  }
+
+  @Test
+  void testGetAccountsByUuidsAsync() {
+    final UUID cachedUuid = UUID.randomUUID();
+    final UUID uncachedUuid = UUID.randomUUID();
+    final UUID uncachedPni = UUID.randomUUID();
+    final UUID missingUuid = UUID.randomUUID();
+
+    final Account uncachedAccount =
+        AccountsHelper.generateTestAccount("+14152222222", uncachedUuid, uncachedPni, new ArrayList<>(), new byte[16]);
+
+    when(binaryAsyncCommands.mget(aryEq(getAccountEntityKey(cachedUuid)), aryEq(getAccountEntityKey(uncachedUuid)),
+        aryEq(getAccountEntityKey(missingUuid))))
+        .thenReturn(MockRedisFuture.completedFuture(List.of(
+            KeyValue.just(getAccountEntityKey(cachedUuid),
+                "{\"number\": \"+14153333333\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"
+                    .getBytes(StandardCharsets.UTF_8)),
+            KeyValue.empty(getAccountEntityKey(uncachedUuid)),
+            KeyValue.empty(getAccountEntityKey(missingUuid)))));
+
+    when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
+    when(accounts.getByAccountIdentifiersAsync(List.of(uncachedUuid, missingUuid)))
+        .thenReturn(CompletableFuture.completedFuture(List.of(uncachedAccount)));
+
+    final Map<UUID, Account> retrieved =
+        accountsManager.getByAccountIdentifiersAsync(List.of(cachedUuid, uncachedUuid, missingUuid, cachedUuid))
+            .join();
+
+    assertEquals(Set.of(cachedUuid, uncachedUuid), retrieved.keySet());
+    assertEquals("+14153333333", retrieved.get(cachedUuid).getNumber());
+    assertEquals(cachedUuid, retrieved.get(cachedUuid).getUuid());
+    assertSame(uncachedAccount, retrieved.get(uncachedUuid));
+
+    verify(binaryAsyncCommands).mget(aryEq(getAccountEntityKey(cachedUuid)), aryEq(getAccountEntityKey(uncachedUuid)),
+        aryEq(getAccountEntityKey(missingUuid)));
+    verify(asyncCommands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uncachedUuid.toString()));
+    verify(asyncCommands).setex(eq("AccountMap::" + uncachedPni), anyLong(), eq(uncachedUuid.toString()));
+    verify(asyncCommands).setex(eq("Account3::" + uncachedUuid), anyLong(), anyString());
+    verifyNoMoreInteractions(asyncCommands);
+
+    verify(accounts).getByAccountIdentifiersAsync(List.of(uncachedUuid, missingUuid));
+    verifyNoMoreInteractions(accounts);
+
+    verify(accountNearCache).put(retrieved.get(cachedUuid));
+    verify(accountNearCache).put(uncachedAccount);
+  }
+
+  @Test
+  void testGetAccountsByUuidsAsyncInNearCache() {
+    final UUID nearCachedUuid = UUID.randomUUID();
+    final UUID cachedUuid = UUID.randomUUID();
+
+    final Account nearCachedAccount =
+        AccountsHelper.generateTestAccount("+14152222222", nearCachedUuid, UUID.randomUUID(), new ArrayList<>(),
+            new byte[16]);
+
+    when(accountNearCache.get(nearCachedUuid)).thenReturn(Optional.of(nearCachedAccount));
+    when(binaryAsyncCommands.mget(aryEq(getAccountEntityKey(cachedUuid))))
+        .thenReturn(MockRedisFuture.completedFuture(List.of(
+            KeyValue.just(getAccountEntityKey(cachedUuid),
+                "{\"number\": \"+14153333333\", \"pni\": \"de24dc73-fbd8-41be-a7d5-764c70d9da7e\"}"
+                    .getBytes(StandardCharsets.UTF_8)))));
+
+    final Map<UUID, Account> retrieved =
+        accountsManager.getByAccountIdentifiersAsync(List.of(nearCachedUuid, cachedUuid)).join();
+
+    assertEquals(Set.of(nearCachedUuid, cachedUuid), retrieved.keySet());
+    assertSame(nearCachedAccount, retrieved.get(nearCachedUuid));
+    assertEquals("+14153333333", retrieved.get(cachedUuid).getNumber());
+
+    verify(binaryAsyncCommands).mget(aryEq(getAccountEntityKey(cachedUuid)));
+    verifyNoMoreInteractions(binaryAsyncCommands);
+    verifyNoInteractions(accounts);
+
+    verify(accountNearCache).put(retrieved.get(cachedUuid));
+    verify(accountNearCache, never()).put(nearCachedAccount);
+  }
+
+  @Test
+  void testGetAccountsByUuidsAsyncAllInNearCache() {
+    final UUID uuid = UUID.randomUUID();
+    final Account account =
+        AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[16]);
+
+    when(accountNearCache.get(uuid)).thenReturn(Optional.of(account));
+
+    assertEquals(Map.of(uuid, account), accountsManager.getByAccountIdentifiersAsync(List.of(uuid)).join());
+
+    verifyNoInteractions(binaryAsyncCommands);
+    verifyNoInteractions(accounts);
+  }
+
   @Test
   void testGetAccountByPniNotInCache() {
     UUID uuid = UUID.randomUUID();
@@ -303,7 +593,7 @@ class AccountsManagerTest {
 
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("AccountMap::" + pni))).thenReturn(null);
+    when(binaryCommands.get(aryEq(("AccountMap::" + pni).getBytes(StandardCharsets.UTF_8)))).thenReturn(null);
     when(accounts.getByPhoneNumberIdentifier(pni)).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByPhoneNumberIdentifier(pni);
@@ -311,7 +601,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands).get(eq("AccountMap::" + pni));
+    verify(binaryCommands).get(aryEq(("AccountMap::" + pni).getBytes(StandardCharsets.UTF_8)));
     verify(commands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
@@ -328,7 +618,8 @@ class AccountsManagerTest {
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[16]);
     account.setUsernameHash(USERNAME_HASH_1);
 
-    when(commands.get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1))).thenReturn(null);
+    when(binaryCommands.get(aryEq(("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1).getBytes(StandardCharsets.UTF_8))))
+        .thenReturn(null);
     when(accounts.getByUsernameHash(USERNAME_HASH_1)).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByUsernameHash(USERNAME_HASH_1);
@@ -336,7 +627,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands).get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
+    verify(binaryCommands).get(aryEq(("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1).getBytes(StandardCharsets.UTF_8)));
     verify(commands).setex(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::" + account.getPhoneNumberIdentifier()), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
@@ -353,7 +644,8 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("AccountMap::+14152222222"))).thenThrow(new RedisException("Connection lost!"));
+    when(binaryCommands.get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8))))
+        .thenThrow(new RedisException("Connection lost!"));
     when(accounts.getByE164(eq("+14152222222"))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByE164("+14152222222");
@@ -361,7 +653,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands, times(1)).get(eq("AccountMap::+14152222222"));
+    verify(binaryCommands, times(1)).get(aryEq("AccountMap::+14152222222".getBytes(StandardCharsets.UTF_8)));
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
@@ -377,7 +669,7 @@ class AccountsManagerTest {
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenThrow(new RedisException("Connection lost!"));
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenThrow(new RedisException("Connection lost!"));
     when(accounts.getByAccountIdentifier(eq(uuid))).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByAccountIdentifier(uuid);
@@ -385,7 +677,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands, times(1)).get(eq("Account3::" + uuid));
+    verify(binaryCommands, times(1)).get(aryEq(getAccountEntityKey(uuid)));
     verify(commands, times(1)).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands, times(1)).setex(eq("Account3::" + uuid), anyLong(), anyString());
@@ -402,7 +694,8 @@ class AccountsManagerTest {
 
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("AccountMap::" + pni))).thenThrow(new RedisException("OH NO"));
+    when(binaryCommands.get(aryEq(("AccountMap::" + pni).getBytes(StandardCharsets.UTF_8))))
+        .thenThrow(new RedisException("OH NO"));
     when(accounts.getByPhoneNumberIdentifier(pni)).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByPhoneNumberIdentifier(pni);
@@ -410,7 +703,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands).get(eq("AccountMap::" + pni));
+    verify(binaryCommands).get(aryEq(("AccountMap::" + pni).getBytes(StandardCharsets.UTF_8)));
     verify(commands).setex(eq("AccountMap::" + pni), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("Account3::" + uuid), anyLong(), anyString());
@@ -427,7 +720,8 @@ class AccountsManagerTest {
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[16]);
     account.setUsernameHash(USERNAME_HASH_1);
 
-    when(commands.get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1))).thenThrow(new RedisException("OH NO"));
+    when(binaryCommands.get(aryEq(("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1).getBytes(StandardCharsets.UTF_8))))
+        .thenThrow(new RedisException("OH NO"));
     when(accounts.getByUsernameHash(USERNAME_HASH_1)).thenReturn(Optional.of(account));
 
     Optional<Account> retrieved = accountsManager.getByUsernameHash(USERNAME_HASH_1);
@@ -435,7 +729,7 @@ class AccountsManagerTest {
     assertTrue(retrieved.isPresent());
     assertSame(retrieved.get(), account);
 
-    verify(commands).get(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1));
+    verify(binaryCommands).get(aryEq(("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1).getBytes(StandardCharsets.UTF_8)));
     verify(commands).setex(eq("UAccountMap::" + BASE_64_URL_USERNAME_HASH_1), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::" + account.getPhoneNumberIdentifier()), anyLong(), eq(uuid.toString()));
     verify(commands).setex(eq("AccountMap::+14152222222"), anyLong(), eq(uuid.toString()));
@@ -446,13 +740,31 @@ class AccountsManagerTest {
     verifyNoMoreInteractions(accounts);
   }
 
+  @Test
+  void testUpdateInvalidatesNearCache() {
+    final UUID uuid = UUID.randomUUID();
+    final Account account =
+        AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[16]);
+
+    doAnswer(ACCOUNT_UPDATE_ANSWER).when(accounts).update(any());
+
+    accountsManager.update(account, a -> a.setIdentityKey("identity-key"));
+
+    // Another request could read the previous version of the account after the cached copy has been deleted but before
+    // the change has been persisted; announcing the change only after it's persisted keeps that stale copy out of near
+    // caches
+    final InOrder inOrder = inOrder(accounts, accountNearCache);
+    inOrder.verify(accounts).update(any());
+    inOrder.verify(accountNearCache).invalidate(uuid, 1);
+  }
+
   @Test
   void testUpdate_optimisticLockingFailure() {
     UUID uuid = UUID.randomUUID();
     UUID pni = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
 
     when(accounts.getByAccountIdentifier(uuid)).thenReturn(
         Optional.of(AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16])));
@@ -476,12 +788,43 @@ class AccountsManagerTest {
     verifyNoMoreInteractions(accounts);
   }
 
+  @Test
+  void testUpdateAsync_optimisticLockingFailure() {
+    final UUID uuid = UUID.randomUUID();
+    final UUID pni = UUID.randomUUID();
+    final Account account =
+        AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]);
+
+    when(asyncCommands.del(any(String[].class))).thenReturn(MockRedisFuture.completedFuture(1L));
+    when(asyncCommands.setex(any(), anyLong(), any())).thenReturn(MockRedisFuture.completedFuture("OK"));
+
+    when(accounts.getByAccountIdentifierAsync(uuid)).thenReturn(CompletableFuture.completedFuture(
+        Optional.of(AccountsHelper.generateTestAccount("+14152222222", uuid, pni, new ArrayList<>(), new byte[16]))));
+
+    when(accounts.updateAsync(any()))
+        .thenReturn(CompletableFuture.failedFuture(new ContestedOptimisticLockException()))
+        .thenAnswer(answer -> {
+          ACCOUNT_UPDATE_ANSWER.answer(answer);
+          return CompletableFuture.completedFuture(null);
+        });
+
+    final Account updatedAccount = accountsManager.updateAsync(account, a -> a.setIdentityKey("identity-key")).join();
+
+    assertEquals(1, updatedAccount.getVersion());
+    assertEquals("identity-key", updatedAccount.getIdentityKey());
+
+    verify(accountNearCache).invalidate(uuid, 1);
+    verify(accounts).getByAccountIdentifierAsync(uuid);
+    verify(accounts, times(2)).updateAsync(any());
+    verifyNoMoreInteractions(accounts);
+  }
+
   @Test
   void testUpdate_dynamoOptimisticLockingFailureDuringCreate() {
     UUID uuid = UUID.randomUUID();
     Account account = AccountsHelper.generateTestAccount("+14152222222", uuid, UUID.randomUUID(), new ArrayList<>(), new byte[16]);
 
-    when(commands.get(eq("Account3::" + uuid))).thenReturn(null);
+    when(binaryCommands.get(aryEq(getAccountEntityKey(uuid)))).thenReturn(null);
     when(accounts.getByAccountIdentifier(uuid)).thenReturn(Optional.empty())
         .thenReturn(Optional.of(account));
     when(accounts.create(any())).thenThrow(ContestedOptimisticLockException.class);
@@ -846,6 +1189,10 @@ class AccountsManagerTest {
     account.setReservedUsernameHash(reservedUsernameHash);
   }
 
+  private static byte[] getAccountEntityKey(final UUID uuid) {
+    return ("Account3::" + uuid).getBytes(StandardCharsets.UTF_8);
+  }
+
   private static Device generateTestDevice(final long lastSeen) {
     final Device device = new Device();
     device.setId(Device.MASTER_ID);
@@ -112,6 +112,7 @@ class AccountsManagerUsernameIntegrationTest {
         accounts,
         phoneNumberIdentifiers,
         CACHE_CLUSTER_EXTENSION.getRedisCluster(),
+        mock(AccountNearCache.class),
         deletedAccountsManager,
         mock(Keys.class),
         mock(MessagesManager.class),
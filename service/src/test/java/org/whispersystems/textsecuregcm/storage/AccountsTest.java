@@ -25,13 +25,17 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
@@ -169,6 +173,15 @@ class AccountsTest {
     verifyStoredState("+14151112222", uuidFirst, pniFirst, null, retrievedFirst.get(), accountFirst);
     verifyStoredState("+14152221111", uuidSecond, pniSecond, null, retrievedSecond.get(), accountSecond);
 
+    retrievedFirst = accounts.getByAccountIdentifierAsync(uuidFirst).toCompletableFuture().join();
+    retrievedSecond = accounts.getByAccountIdentifierAsync(uuidSecond).toCompletableFuture().join();
+
+    assertThat(retrievedFirst.isPresent()).isTrue();
+    assertThat(retrievedSecond.isPresent()).isTrue();
+
+    verifyStoredState("+14151112222", uuidFirst, pniFirst, null, retrievedFirst.get(), accountFirst);
+    verifyStoredState("+14152221111", uuidSecond, pniSecond, null, retrievedSecond.get(), accountSecond);
+
     retrievedFirst = accounts.getByPhoneNumberIdentifier(pniFirst);
     retrievedSecond = accounts.getByPhoneNumberIdentifier(pniSecond);
 
@@ -179,6 +192,34 @@ class AccountsTest {
     verifyStoredState("+14152221111", uuidSecond, pniSecond, null, retrievedSecond.get(), accountSecond);
   }
 
+  @Test
+  void testRetrieveBatch() {
+    final List<Account> storedAccounts = new ArrayList<>();
+
+    // make sure we span more than one batch request
+    for (int i = 0; i < AbstractDynamoDbStore.DYNAMO_DB_MAX_BATCH_GET_SIZE + 1; i++) {
+      final Account account = generateAccount(String.format("+1415555%04d", i), UUID.randomUUID(), UUID.randomUUID(),
+          List.of(generateDevice(1)));
+
+      accounts.create(account);
+      storedAccounts.add(account);
+    }
+
+    final List<UUID> uuids = new ArrayList<>(storedAccounts.stream().map(Account::getUuid).toList());
+    uuids.add(UUID.randomUUID());
+    uuids.add(storedAccounts.get(0).getUuid());
+
+    final Map<UUID, Account> retrievedAccounts = accounts.getByAccountIdentifiersAsync(uuids).join().stream()
+        .collect(Collectors.toMap(Account::getUuid, Function.identity()));
+
+    assertThat(retrievedAccounts).hasSize(storedAccounts.size());
+
+    for (final Account account : storedAccounts) {
+      verifyStoredState(account.getNumber(), account.getUuid(), account.getPhoneNumberIdentifier(), null,
+          retrievedAccounts.get(account.getUuid()), account);
+    }
+  }
+
   @Test
   void testRetrieveNoPni() throws JsonProcessingException {
     final List<Device> devices = List.of(generateDevice(1), generateDevice(2));
@@ -396,6 +437,32 @@ class AccountsTest {
     assertThat(users).isEmpty();
   }
 
+  @Test
+  void testRetrieveFromSegments() {
+    final Set<UUID> expectedAccountIdentifiers = new HashSet<>();
+
+    for (int i = 1; i <= 100; i++) {
+      final Account account = generateAccount("+1" + String.format("%03d", i), UUID.randomUUID(), UUID.randomUUID());
+      expectedAccountIdentifiers.add(account.getUuid());
+      accounts.create(account);
+    }
+
+    final int totalSegments = 4;
+    final List<UUID> retrievedAccountIdentifiers = new ArrayList<>();
+
+    for (int segment = 0; segment < totalSegments; segment++) {
+      AccountCrawlChunk retrieved = accounts.getAllFromSegment(segment, totalSegments, null, 10);
+
+      while (!retrieved.getAccounts().isEmpty()) {
+        retrieved.getAccounts().forEach(account -> retrievedAccountIdentifiers.add(account.getUuid()));
+        retrieved = accounts.getAllFromSegment(segment, totalSegments, retrieved.getLastUuid().orElseThrow(), 10);
+      }
+    }
+
+    assertThat(retrievedAccountIdentifiers).hasSameSizeAs(expectedAccountIdentifiers);
+    assertThat(retrievedAccountIdentifiers).containsExactlyInAnyOrderElementsOf(expectedAccountIdentifiers);
+  }
+
   @Test
   void testDelete() {
     final Device deletedDevice = generateDevice(1);
@@ -454,6 +521,9 @@ class AccountsTest {
 
     retrieved = accounts.getByAccountIdentifier(UUID.randomUUID());
     assertThat(retrieved.isPresent()).isFalse();
+
+    retrieved = accounts.getByAccountIdentifierAsync(UUID.randomUUID()).toCompletableFuture().join();
+    assertThat(retrieved.isPresent()).isFalse();
   }
 
   @Test
@@ -1,11 +1,15 @@
 package org.whispersystems.textsecuregcm.storage;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.function.Supplier;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
@@ -149,4 +153,106 @@ class DynamicConfigurationManagerTest {
     });
 
   }
+
+  @Test
+  void testViews() throws JsonProcessingException {
+    final DynamicConfiguration initialConfiguration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.5
+        """, DynamicConfiguration.class).orElseThrow();
+
+    final DynamicConfiguration updatedConfiguration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.7
+        """, DynamicConfiguration.class).orElseThrow();
+
+    final Supplier<BigDecimal> viewCreatedBeforeInitialization =
+        dynamicConfigurationManager.createView(configuration ->
+            configuration.getCaptchaConfiguration().getScoreFloor());
+
+    dynamicConfigurationManager.setConfiguration(initialConfiguration);
+
+    final Supplier<BigDecimal> viewCreatedAfterInitialization =
+        dynamicConfigurationManager.createView(configuration ->
+            configuration.getCaptchaConfiguration().getScoreFloor());
+
+    assertThat(viewCreatedBeforeInitialization.get()).isEqualByComparingTo("0.5");
+    assertThat(viewCreatedAfterInitialization.get()).isEqualByComparingTo("0.5");
+
+    dynamicConfigurationManager.setConfiguration(updatedConfiguration);
+
+    assertThat(dynamicConfigurationManager.getConfiguration()).isSameAs(updatedConfiguration);
+    assertThat(viewCreatedBeforeInitialization.get()).isEqualByComparingTo("0.7");
+    assertThat(viewCreatedAfterInitialization.get()).isEqualByComparingTo("0.7");
+  }
+
+  @Test
+  void testFailingView() throws JsonProcessingException {
+    final DynamicConfiguration initialConfiguration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.5
+        """, DynamicConfiguration.class).orElseThrow();
+
+    final DynamicConfiguration updatedConfiguration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.7
+        """, DynamicConfiguration.class).orElseThrow();
+
+    final Supplier<BigDecimal> failingView = dynamicConfigurationManager.createView(configuration -> {
+      if (configuration == updatedConfiguration) {
+        throw new RuntimeException("OH NO");
+      }
+
+      return configuration.getCaptchaConfiguration().getScoreFloor();
+    });
+
+    final Supplier<BigDecimal> view = dynamicConfigurationManager.createView(configuration ->
+        configuration.getCaptchaConfiguration().getScoreFloor());
+
+    dynamicConfigurationManager.setConfiguration(initialConfiguration);
+    dynamicConfigurationManager.setConfiguration(updatedConfiguration);
+
+    assertThat(dynamicConfigurationManager.getConfiguration()).isSameAs(updatedConfiguration);
+    assertThat(failingView.get()).isEqualByComparingTo("0.5");
+    assertThat(view.get()).isEqualByComparingTo("0.7");
+  }
+
+  @Test
+  void testViewFailingForInitialConfiguration() throws JsonProcessingException {
+    final DynamicConfiguration initialConfiguration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.5
+        """, DynamicConfiguration.class).orElseThrow();
+
+    dynamicConfigurationManager.createView(configuration -> {
+      throw new RuntimeException("OH NO");
+    });
+
+    assertThatThrownBy(() -> dynamicConfigurationManager.setConfiguration(initialConfiguration))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void testViewFailingForCurrentConfiguration() throws JsonProcessingException {
+    final DynamicConfiguration initialConfiguration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.5
+        """, DynamicConfiguration.class).orElseThrow();
+
+    final DynamicConfiguration updatedConfiguration = DynamicConfigurationManager.parseConfiguration("""
+        captcha:
+          scoreFloor: 0.7
+        """, DynamicConfiguration.class).orElseThrow();
+
+    dynamicConfigurationManager.setConfiguration(initialConfiguration);
+
+    assertThatThrownBy(() -> dynamicConfigurationManager.createView(configuration -> {
+      throw new RuntimeException("OH NO");
+    })).isInstanceOf(RuntimeException.class);
+
+    // A view that failed when it was created should not be kept around to fail on later updates
+    dynamicConfigurationManager.setConfiguration(updatedConfiguration);
+
+    assertThat(dynamicConfigurationManager.getConfiguration()).isSameAs(updatedConfiguration);
+  }
 }
@@ -7,16 +7,29 @@ package org.whispersystems.textsecuregcm.storage;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 import org.whispersystems.textsecuregcm.entities.PreKey;
 import org.whispersystems.textsecuregcm.storage.DynamoDbExtensionSchema.Tables;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
 
 class KeysTest {
 
@@ -30,7 +43,8 @@ class KeysTest {
 
   @BeforeEach
   void setup() {
-    keys = new Keys(DYNAMO_DB_EXTENSION.getDynamoDbClient(), Tables.KEYS.tableName());
+    keys = new Keys(DYNAMO_DB_EXTENSION.getDynamoDbClient(), DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
+        Tables.KEYS.tableName());
   }
 
   @Test
@@ -65,6 +79,57 @@ class KeysTest {
     assertEquals(1, keys.getCount(ACCOUNT_UUID, DEVICE_ID));
   }
 
+  @Test
+  void testTakeForDevices() {
+    final PreKey firstDeviceKey = new PreKey(1, "public-key");
+    final PreKey secondDeviceKey = new PreKey(2, "different-public-key");
+
+    keys.store(ACCOUNT_UUID, DEVICE_ID, List.of(firstDeviceKey));
+    keys.store(ACCOUNT_UUID, DEVICE_ID + 1, List.of(secondDeviceKey));
+
+    assertEquals(Map.of(DEVICE_ID, firstDeviceKey, DEVICE_ID + 1, secondDeviceKey),
+        keys.takeForDevices(ACCOUNT_UUID, List.of(DEVICE_ID, DEVICE_ID + 1, DEVICE_ID + 2)));
+
+    assertEquals(0, keys.getCount(ACCOUNT_UUID, DEVICE_ID));
+    assertEquals(0, keys.getCount(ACCOUNT_UUID, DEVICE_ID + 1));
+    assertEquals(Collections.emptyMap(), keys.takeForDevices(ACCOUNT_UUID, List.of(DEVICE_ID, DEVICE_ID + 1)));
+  }
+
+  @Test
+  void testTakeFailure() {
+    final DynamoDbAsyncClient failingAsyncClient = mock(DynamoDbAsyncClient.class);
+    when(failingAsyncClient.query(any(QueryRequest.class)))
+        .thenReturn(CompletableFuture.failedFuture(ResourceNotFoundException.builder().build()));
+
+    final Keys failingKeys =
+        new Keys(DYNAMO_DB_EXTENSION.getDynamoDbClient(), failingAsyncClient, Tables.KEYS.tableName());
+
+    assertThrows(ResourceNotFoundException.class, () -> failingKeys.take(ACCOUNT_UUID, DEVICE_ID));
+    assertThrows(ResourceNotFoundException.class,
+        () -> failingKeys.takeForDevices(ACCOUNT_UUID, List.of(DEVICE_ID, DEVICE_ID + 1)));
+  }
+
+  @Test
+  void testTakeContended() {
+    final int keyCount = 16;
+    final List<PreKey> preKeys = IntStream.range(0, keyCount)
+        .mapToObj(keyId -> new PreKey(keyId, "public-key-" + keyId))
+        .toList();
+
+    keys.store(ACCOUNT_UUID, DEVICE_ID, preKeys);
+
+    final List<Optional<PreKey>> takenKeys = IntStream.range(0, keyCount + 4)
+        .mapToObj(ignored -> keys.takeAsync(ACCOUNT_UUID, DEVICE_ID))
+        .toList()
+        .stream()
+        .map(CompletableFuture::join)
+        .toList();
+
+    assertEquals(Set.copyOf(preKeys), takenKeys.stream().flatMap(Optional::stream).collect(Collectors.toSet()));
+    assertEquals(keyCount, takenKeys.stream().filter(Optional::isPresent).count());
+    assertEquals(0, keys.getCount(ACCOUNT_UUID, DEVICE_ID));
+  }
+
   @Test
   void testGetCount() {
     assertEquals(0, keys.getCount(ACCOUNT_UUID, DEVICE_ID));
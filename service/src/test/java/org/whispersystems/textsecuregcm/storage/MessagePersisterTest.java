@@ -16,6 +16,7 @@ import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -28,6 +29,7 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -44,6 +46,7 @@ import org.whispersystems.textsecuregcm.entities.MessageProtos;
 import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
 
 class MessagePersisterTest {
 
@@ -102,6 +105,18 @@ class MessagePersisterTest {
 
       return null;
     }).when(messagesManager).persistMessages(any(UUID.class), anyLong(), any());
+
+    when(messagesManager.persistMessagesAsync(any(UUID.class), anyLong(), any())).thenAnswer(invocation -> {
+      final UUID destinationUuid = invocation.getArgument(0);
+      final long destinationDeviceId = invocation.getArgument(1);
+      final List<MessageProtos.Envelope> messages = invocation.getArgument(2);
+
+      messagesDynamoDb.store(messages, destinationUuid, destinationDeviceId);
+
+      return messagesCache.remove(destinationUuid, destinationDeviceId,
+              messages.stream().map(message -> UUID.fromString(message.getServerGuid())).toList())
+          .thenApply(List::size);
+    });
   }
 
   @AfterEach
@@ -225,6 +240,73 @@ class MessagePersisterTest {
             () -> messagePersister.persistQueue(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID)));
   }
 
+  @Test
+  void testPersistNextQueuesPipelinedMultiplePages() {
+    final int slot = 7;
+    final int queueCount = (MessagePersister.QUEUE_BATCH_LIMIT * 3) + 7;
+    final int messagesPerQueue = 10;
+    final Instant now = Instant.now();
+
+    for (int i = 0; i < queueCount; i++) {
+      final String queueName = generateRandomQueueNameForSlot(slot);
+      final UUID accountUuid = MessagesCache.getAccountUuidFromQueueName(queueName);
+      final long deviceId = MessagesCache.getDeviceIdFromQueueName(queueName);
+
+      when(accountsManager.getByAccountIdentifier(accountUuid)).thenReturn(Optional.of(mock(Account.class)));
+
+      insertMessages(accountUuid, deviceId, messagesPerQueue, now);
+    }
+
+    setNextSlotToPersist(slot);
+
+    assertEquals(queueCount,
+        messagePersister.persistNextQueuesPipelined(now.plus(messagePersister.getPersistDelay()), 8));
+
+    final ArgumentCaptor<List<MessageProtos.Envelope>> messagesCaptor = ArgumentCaptor.forClass(List.class);
+
+    verify(messagesDynamoDb, atLeastOnce()).store(messagesCaptor.capture(), any(UUID.class), anyLong());
+    assertEquals(queueCount * messagesPerQueue, messagesCaptor.getAllValues().stream().mapToInt(List::size).sum());
+  }
+
+  @Test
+  void testPersistNextQueuesPipelinedRetry() {
+    final String queueName = new String(
+        MessagesCache.getMessageQueueKey(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID), StandardCharsets.UTF_8);
+    final int messageCount = (MessagePersister.MESSAGE_BATCH_LIMIT * 3) + 7;
+    final Instant now = Instant.now();
+
+    insertMessages(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID, messageCount, now);
+    setNextSlotToPersist(SlotHash.getSlot(queueName));
+
+    doAnswer((Answer<Void>) invocation -> {
+      throw new RuntimeException("OH NO.");
+    }).when(messagesDynamoDb).store(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE_ID));
+
+    messagePersister.persistNextQueuesPipelined(now.plus(messagePersister.getPersistDelay()), 8);
+
+    verify(messagesDynamoDb, times(MessagePersister.PIPELINED_QUEUE_RETRY_ATTEMPTS + 1))
+        .store(any(), eq(DESTINATION_ACCOUNT_UUID), eq(DESTINATION_DEVICE_ID));
+
+    assertEquals(List.of(queueName),
+        messagesCache.getQueuesToPersist(SlotHash.getSlot(queueName),
+            Instant.now().plus(messagePersister.getPersistDelay()), 1));
+  }
+
+  @Test
+  void testPersistQueueAsyncRetryLoop() {
+    final int messageCount = (MessagePersister.MESSAGE_BATCH_LIMIT * 3) + 7;
+
+    insertMessages(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID, messageCount, Instant.now());
+
+    // returning `0` indicates something not working correctly
+    when(messagesManager.persistMessagesAsync(any(UUID.class), anyLong(), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(0));
+
+    StepVerifier.create(messagePersister.persistQueueAsync(DESTINATION_ACCOUNT_UUID, DESTINATION_DEVICE_ID))
+        .expectError(MessagePersistenceException.class)
+        .verify(Duration.ofSeconds(1));
+  }
+
   @SuppressWarnings("SameParameterValue")
   private static String generateRandomQueueNameForSlot(final int slot) {
     final UUID uuid = UUID.randomUUID();
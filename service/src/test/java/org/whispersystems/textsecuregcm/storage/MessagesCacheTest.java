@@ -9,6 +9,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -49,6 +50,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -139,6 +141,32 @@ class MessagesCacheTest {
       assertEquals(firstId, secondId);
     }
 
+    @Test
+    void testInsertBatch() {
+      final UUID otherDestinationUuid = UUID.randomUUID();
+      final List<MessagesCache.InsertEntry> entries = new ArrayList<>();
+
+      for (int i = 0; i < 10; i++) {
+        final UUID messageGuid = UUID.randomUUID();
+        final UUID destinationUuid = i % 2 == 0 ? DESTINATION_UUID : otherDestinationUuid;
+
+        entries.add(new MessagesCache.InsertEntry(messageGuid, destinationUuid, DESTINATION_DEVICE_ID,
+            generateRandomMessage(messageGuid, false)));
+      }
+
+      final List<Long> messageIds = messagesCache.insertBatch(entries).join();
+
+      assertEquals(entries.size(), messageIds.size());
+      assertTrue(messageIds.stream().allMatch(id -> id > 0));
+      assertTrue(messagesCache.hasMessages(DESTINATION_UUID, DESTINATION_DEVICE_ID));
+      assertTrue(messagesCache.hasMessages(otherDestinationUuid, DESTINATION_DEVICE_ID));
+    }
+
+    @Test
+    void testInsertBatchEmpty() {
+      assertEquals(Collections.emptyList(), messagesCache.insertBatch(Collections.emptyList()).join());
+    }
+
     @ParameterizedTest
     @ValueSource(booleans = {true, false})
     void testRemoveByUUID(final boolean sealedSender) throws Exception {
@@ -375,6 +403,13 @@ class MessagesCacheTest {
       assertEquals("1b363a31-a429-4fb6-8959-984a025e72ff::7",
           MessagesCache.getQueueNameFromKeyspaceChannel(
               "__keyspace@0__:user_queue::{1b363a31-a429-4fb6-8959-984a025e72ff::7}"));
+
+      // Queue names from different channels for the same queue should be the same instance
+      assertSame(
+          MessagesCache.getQueueNameFromKeyspaceChannel(
+              "__keyspace@0__:user_queue::{1b363a31-a429-4fb6-8959-984a025e72ff::7}"),
+          MessagesCache.getQueueNameFromKeyspaceChannel(
+              "__keyspace@0__:user_queue_persisting::{1b363a31-a429-4fb6-8959-984a025e72ff::7}"));
     }
 
     @ParameterizedTest
@@ -470,6 +505,208 @@ class MessagesCacheTest {
     }
 
 
+    @Test
+    void testNotifyReplacementListener() {
+      final AtomicBoolean replacedListenerNotified = new AtomicBoolean(false);
+      final CompletableFuture<Void> replacementListenerNotified = new CompletableFuture<>();
+      final UUID messageGuid = UUID.randomUUID();
+
+      final MessageAvailabilityListener replacedListener = new MessageAvailabilityListener() {
+        @Override
+        public boolean handleNewMessagesAvailable() {
+          replacedListenerNotified.set(true);
+          return true;
+        }
+
+        @Override
+        public boolean handleMessagesPersisted() {
+          return true;
+        }
+      };
+
+      final MessageAvailabilityListener replacementListener = new MessageAvailabilityListener() {
+        @Override
+        public boolean handleNewMessagesAvailable() {
+          replacementListenerNotified.complete(null);
+          return true;
+        }
+
+        @Override
+        public boolean handleMessagesPersisted() {
+          return true;
+        }
+      };
+
+      assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+        messagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, replacedListener);
+        messagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, replacementListener);
+
+        // Removing the replaced listener must not stop notifications for its replacement
+        messagesCache.removeMessageAvailabilityListener(replacedListener);
+
+        messagesCache.insert(messageGuid, DESTINATION_UUID, DESTINATION_DEVICE_ID,
+            generateRandomMessage(messageGuid, true));
+
+        replacementListenerNotified.get();
+        assertFalse(replacedListenerNotified.get());
+      });
+    }
+
+    /**
+     * A listener that claims to be equal to every other instance of its class.
+     */
+    private static class IndistinguishableListener implements MessageAvailabilityListener {
+
+      private final CompletableFuture<Void> notified = new CompletableFuture<>();
+
+      @Override
+      public boolean handleNewMessagesAvailable() {
+        notified.complete(null);
+        return true;
+      }
+
+      @Override
+      public boolean handleMessagesPersisted() {
+        return true;
+      }
+
+      @Override
+      public boolean equals(final Object o) {
+        return o instanceof IndistinguishableListener;
+      }
+
+      @Override
+      public int hashCode() {
+        return 0;
+      }
+    }
+
+    @Test
+    void testConcurrentListenerRegistration() {
+      final int listenerCount = 32;
+
+      final List<IndistinguishableListener> listeners = IntStream.range(0, listenerCount)
+          .mapToObj(ignored -> new IndistinguishableListener())
+          .toList();
+
+      final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+      try {
+        CompletableFuture.allOf(IntStream.range(0, listenerCount)
+            .mapToObj(i -> CompletableFuture.runAsync(() ->
+                messagesCache.addMessageAvailabilityListener(DESTINATION_UUID, i + 1, listeners.get(i)), executor))
+            .toArray(CompletableFuture[]::new)).join();
+
+        // Remove every other listener; listeners that are equal to one another must still be removed individually
+        CompletableFuture.allOf(IntStream.range(0, listenerCount)
+            .filter(i -> i % 2 == 0)
+            .mapToObj(i -> CompletableFuture.runAsync(() ->
+                messagesCache.removeMessageAvailabilityListener(listeners.get(i)), executor))
+            .toArray(CompletableFuture[]::new)).join();
+      } finally {
+        executor.shutdown();
+      }
+
+      for (int i = 0; i < listenerCount; i++) {
+        final UUID messageGuid = UUID.randomUUID();
+        messagesCache.insert(messageGuid, DESTINATION_UUID, i + 1, generateRandomMessage(messageGuid, true));
+      }
+
+      assertTimeoutPreemptively(Duration.ofSeconds(5), () -> CompletableFuture.allOf(
+          IntStream.range(0, listenerCount)
+              .filter(i -> i % 2 == 1)
+              .mapToObj(i -> listeners.get(i).notified)
+              .toArray(CompletableFuture[]::new)).join());
+
+      IntStream.range(0, listenerCount)
+          .filter(i -> i % 2 == 0)
+          .forEach(i -> assertFalse(listeners.get(i).notified.isDone()));
+    }
+
+    @Test
+    void testNotifyListenerWithoutChannelNotification() throws Exception {
+      final MessagesCache publishingMessagesCache = new MessagesCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+          REDIS_CLUSTER_EXTENSION.getRedisCluster(), sharedExecutorService, messageDeliveryScheduler,
+          sharedExecutorService, Clock.systemUTC(), true);
+
+      publishingMessagesCache.start();
+
+      try {
+        final CompletableFuture<Void> notified = new CompletableFuture<>();
+
+        final MessageAvailabilityListener listener = new MessageAvailabilityListener() {
+          @Override
+          public boolean handleNewMessagesAvailable() {
+            notified.complete(null);
+            return true;
+          }
+
+          @Override
+          public boolean handleMessagesPersisted() {
+            return true;
+          }
+        };
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+          publishingMessagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, listener);
+
+          // Simulate an insert by an instance running a version of the insert script that never publishes to
+          // per-instance channels; the listener should still hear about it through keyspace notifications
+          REDIS_CLUSTER_EXTENSION.getRedisCluster().useBinaryCluster(connection -> connection.sync()
+              .zadd(MessagesCache.getMessageQueueKey(DESTINATION_UUID, DESTINATION_DEVICE_ID), 1,
+                  "message".getBytes(StandardCharsets.UTF_8)));
+
+          notified.get();
+        });
+      } finally {
+        publishingMessagesCache.stop();
+      }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void testQueueListenerKey(final boolean publishToNotificationChannel) throws Exception {
+      final MessagesCache listenerMessagesCache = new MessagesCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(),
+          REDIS_CLUSTER_EXTENSION.getRedisCluster(), sharedExecutorService, messageDeliveryScheduler,
+          sharedExecutorService, Clock.systemUTC(), publishToNotificationChannel);
+
+      listenerMessagesCache.start();
+
+      try {
+        final MessageAvailabilityListener listener = mock(MessageAvailabilityListener.class);
+        final byte[] queueListenerKey = MessagesCache.getQueueListenerKey(DESTINATION_UUID, DESTINATION_DEVICE_ID);
+
+        listenerMessagesCache.addMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID, listener);
+
+        // Only instances that publish to their own channels should record that channel alongside the queue
+        assertEquals(publishToNotificationChannel ? 1L : 0L, REDIS_CLUSTER_EXTENSION.getRedisCluster()
+            .withBinaryCluster(connection -> connection.sync().exists(queueListenerKey)));
+
+        if (publishToNotificationChannel) {
+          // Recorded channels expire soon unless renewed, so a crashed instance doesn't keep receiving notifications
+          final long ttl = REDIS_CLUSTER_EXTENSION.getRedisCluster()
+              .withBinaryCluster(connection -> connection.sync().ttl(queueListenerKey));
+
+          assertTrue(ttl > 0 && ttl <= Duration.ofMinutes(11).toSeconds());
+
+          REDIS_CLUSTER_EXTENSION.getRedisCluster()
+              .useBinaryCluster(connection -> connection.sync().expire(queueListenerKey, 1));
+
+          listenerMessagesCache.renewMessageAvailabilityListener(DESTINATION_UUID, DESTINATION_DEVICE_ID);
+
+          assertTrue(REDIS_CLUSTER_EXTENSION.getRedisCluster()
+              .withBinaryCluster(connection -> connection.sync().ttl(queueListenerKey)) > 1);
+        }
+
+        listenerMessagesCache.removeMessageAvailabilityListener(listener);
+
+        assertEquals(0L, REDIS_CLUSTER_EXTENSION.getRedisCluster()
+            .withBinaryCluster(connection -> connection.sync().exists(queueListenerKey)));
+      } finally {
+        listenerMessagesCache.stop();
+      }
+    }
+
     /**
      * Helper class that implements {@link MessageAvailabilityListener#handleNewMessagesAvailable()} by always returning
      * {@code false}. Its {@code counter} field tracks how many times {@code handleNewMessagesAvailable} has been
@@ -745,6 +982,38 @@ class MessagesCacheTest {
     }
   }
 
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void testSerializeWithServerGuid(final boolean sealedSender) throws Exception {
+    final UUID messageGuid = UUID.randomUUID();
+    final MessageProtos.Envelope message = generateRandomMessage(messageGuid, sealedSender).toBuilder()
+        .clearServerGuid()
+        .build();
+
+    final byte[] serialized = MessagesCache.serializeWithServerGuid(message, messageGuid);
+
+    assertEquals(message.toBuilder().setServerGuid(messageGuid.toString()).build(),
+        MessageProtos.Envelope.parseFrom(serialized));
+
+    final UUID replacementGuid = UUID.randomUUID();
+    final MessageProtos.Envelope messageWithGuid = message.toBuilder().setServerGuid(messageGuid.toString()).build();
+
+    assertEquals(message.toBuilder().setServerGuid(replacementGuid.toString()).build(),
+        MessageProtos.Envelope.parseFrom(MessagesCache.serializeWithServerGuid(messageWithGuid, replacementGuid)));
+  }
+
+  @ParameterizedTest
+  @ValueSource(booleans = {true, false})
+  void testParseEnvelope(final boolean sealedSender) throws Exception {
+    final MessageProtos.Envelope message = generateRandomMessage(UUID.randomUUID(), sealedSender);
+    final byte[] serialized = message.toByteArray();
+
+    final MessageProtos.Envelope parsed = MessagesCache.parseEnvelope(serialized);
+
+    assertEquals(message, parsed);
+    assertEquals(message.getContent(), parsed.getContent());
+  }
+
   private MessageProtos.Envelope generateRandomMessage(final UUID messageGuid, final boolean sealedSender) {
     return generateRandomMessage(messageGuid, sealedSender, serialTimestamp++);
   }
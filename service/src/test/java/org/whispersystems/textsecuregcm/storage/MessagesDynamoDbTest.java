@@ -10,7 +10,9 @@ import static org.assertj.core.api.Assertions.assertThat;
 import com.google.protobuf.ByteString;
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.UUID;
@@ -144,6 +146,24 @@ class MessagesDynamoDbTest {
         .verify();
   }
 
+  @ParameterizedTest
+  @ValueSource(ints = {1, 25, 26, 60})
+  void testStoreAsync(final int messageCount) {
+    final UUID destinationUuid = UUID.randomUUID();
+    final int destinationDeviceId = random.nextInt(255) + 1;
+
+    final List<MessageProtos.Envelope> messages = new ArrayList<>(messageCount);
+    for (int i = 0; i < messageCount; i++) {
+      messages.add(MessageHelper.createMessage(UUID.randomUUID(), 1, destinationUuid, (i + 1L) * 1000, "message " + i));
+    }
+
+    // Message counts over 25 need more than one batch write
+    messagesDynamoDb.storeAsync(messages, destinationUuid, destinationDeviceId).join();
+
+    assertThat(load(destinationUuid, destinationDeviceId, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE))
+        .containsExactlyInAnyOrderElementsOf(messages);
+  }
+
   @Test
   void testLimitedLoad() {
     final int messageCount = 200;
@@ -288,6 +308,35 @@ class MessagesDynamoDbTest {
         .isEmpty();
   }
 
+  @Test
+  void testDeleteMessagesAsync() throws Exception {
+    final UUID destinationUuid = UUID.randomUUID();
+    final List<MessageProtos.Envelope> messages = new ArrayList<>();
+
+    // Span more than one batch write
+    for (int i = 0; i < MessagesDynamoDb.DYNAMO_DB_MAX_BATCH_SIZE + 5; i++) {
+      messages.add(MessageHelper.createMessage(UUID.randomUUID(), 1, destinationUuid, System.currentTimeMillis() + i,
+          "message " + i));
+    }
+
+    messagesDynamoDb.store(messages, destinationUuid, 1);
+    messagesDynamoDb.store(List.of(MESSAGE3), destinationUuid, 2);
+
+    final Map<UUID, Long> serverTimestampsByGuid = new HashMap<>();
+    messages.subList(1, messages.size()).forEach(message ->
+        serverTimestampsByGuid.put(UUID.fromString(message.getServerGuid()), message.getServerTimestamp()));
+
+    // Messages that don't exist should be ignored
+    serverTimestampsByGuid.put(UUID.randomUUID(), System.currentTimeMillis());
+
+    messagesDynamoDb.deleteMessagesAsync(destinationUuid, 1, serverTimestampsByGuid).get(5, TimeUnit.SECONDS);
+
+    assertThat(load(destinationUuid, 1, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isNotNull().hasSize(1)
+        .element(0).isEqualTo(messages.get(0));
+    assertThat(load(destinationUuid, 2, MessagesDynamoDb.RESULT_SET_CHUNK_SIZE)).isNotNull().hasSize(1)
+        .element(0).isEqualTo(MESSAGE3);
+  }
+
   private List<MessageProtos.Envelope> load(final UUID destinationUuid, final long destinationDeviceId,
       final int count) {
     return Flux.from(messagesDynamoDb.load(destinationUuid, destinationDeviceId, count))
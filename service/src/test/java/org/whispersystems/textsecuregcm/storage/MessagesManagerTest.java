@@ -5,13 +5,25 @@
 
 package org.whispersystems.textsecuregcm.storage;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
 
+import io.lettuce.core.RedisException;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.Executors;
 import org.junit.jupiter.api.Test;
 import org.whispersystems.textsecuregcm.entities.MessageProtos.Envelope;
@@ -46,4 +58,106 @@ class MessagesManagerTest {
 
     verifyNoMoreInteractions(reportMessageManager);
   }
+
+  @Test
+  void insertBatch() {
+    final UUID sourceAci = UUID.randomUUID();
+    final UUID destinationUuid = UUID.randomUUID();
+
+    final Envelope message = Envelope.newBuilder()
+        .setSourceUuid(sourceAci.toString())
+        .build();
+
+    final Envelope syncMessage = Envelope.newBuilder(message)
+        .setSourceUuid(destinationUuid.toString())
+        .build();
+
+    when(messagesCache.insertBatch(anyList())).thenReturn(CompletableFuture.completedFuture(List.of(1L, 2L)));
+    when(reportMessageManager.storeAsync(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    final List<UUID> messageGuids = messagesManager.insertBatch(List.of(
+        new MessagesManager.BatchInsertEntry(destinationUuid, 1L, message),
+        new MessagesManager.BatchInsertEntry(destinationUuid, 2L, syncMessage))).join();
+
+    assertEquals(2, messageGuids.size());
+
+    // Only the message from another account should have a report record
+    verify(reportMessageManager).storeAsync(sourceAci.toString(), messageGuids.get(0));
+    verifyNoMoreInteractions(reportMessageManager);
+  }
+
+  @Test
+  void insertBatchFailure() {
+    final Envelope message = Envelope.newBuilder()
+        .setSourceUuid(UUID.randomUUID().toString())
+        .build();
+
+    when(messagesCache.insertBatch(anyList()))
+        .thenReturn(CompletableFuture.failedFuture(new RedisException("OH NO")));
+
+    final CompletableFuture<List<UUID>> insertFuture = messagesManager.insertBatch(
+        List.of(new MessagesManager.BatchInsertEntry(UUID.randomUUID(), 1L, message)));
+
+    assertThrows(CompletionException.class, insertFuture::join);
+
+    // Messages that were never inserted can't be reported, so there's no need to store report records for them
+    verifyNoInteractions(reportMessageManager);
+  }
+
+  @Test
+  void persistMessagesAsync() {
+    final UUID destinationUuid = UUID.randomUUID();
+
+    final Envelope message = Envelope.newBuilder().setServerGuid(UUID.randomUUID().toString()).build();
+    final Envelope ephemeralMessage = Envelope.newBuilder()
+        .setServerGuid(UUID.randomUUID().toString())
+        .setEphemeral(true)
+        .build();
+
+    when(messagesDynamoDb.storeAsync(any(), any(), anyLong())).thenReturn(CompletableFuture.completedFuture(null));
+    when(messagesCache.remove(eq(destinationUuid), eq(1L), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(List.of(message, ephemeralMessage)));
+
+    assertEquals(2, messagesManager.persistMessagesAsync(destinationUuid, 1L, List.of(message, ephemeralMessage))
+        .join());
+
+    // Ephemeral messages are removed from the cache, but never persisted
+    verify(messagesDynamoDb).storeAsync(List.of(message), destinationUuid, 1L);
+    verify(messagesCache).remove(destinationUuid, 1L,
+        List.of(UUID.fromString(message.getServerGuid()), UUID.fromString(ephemeralMessage.getServerGuid())));
+  }
+
+  @Test
+  void persistMessagesAsyncStoreFailure() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final Envelope message = Envelope.newBuilder().setServerGuid(UUID.randomUUID().toString()).build();
+
+    when(messagesDynamoDb.storeAsync(any(), any(), anyLong()))
+        .thenReturn(CompletableFuture.failedFuture(new RuntimeException("OH NO")));
+
+    assertThrows(CompletionException.class,
+        () -> messagesManager.persistMessagesAsync(destinationUuid, 1L, List.of(message)).join());
+
+    // Messages that weren't persisted must stay in the cache
+    verify(messagesCache, never()).remove(any(), anyLong(), anyList());
+  }
+
+  @Test
+  void deleteBatch() {
+    final UUID destinationUuid = UUID.randomUUID();
+    final UUID cachedGuid = UUID.randomUUID();
+    final UUID persistedGuid = UUID.randomUUID();
+
+    when(messagesCache.remove(eq(destinationUuid), eq(1L), anyList()))
+        .thenReturn(CompletableFuture.completedFuture(
+            List.of(Envelope.newBuilder().setServerGuid(cachedGuid.toString()).build())));
+
+    when(messagesDynamoDb.deleteMessagesAsync(any(), anyLong(), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    messagesManager.deleteBatch(destinationUuid, 1L, Map.of(cachedGuid, 1L, persistedGuid, 2L)).join();
+
+    // Only messages that weren't in the cache should be deleted from DynamoDB
+    verify(messagesDynamoDb).deleteMessagesAsync(destinationUuid, 1L, Map.of(persistedGuid, 2L));
+  }
 }
@@ -29,6 +29,7 @@ class ReportMessageDynamoDbTest {
   void setUp() {
     this.reportMessageDynamoDb = new ReportMessageDynamoDb(
         DYNAMO_DB_EXTENSION.getDynamoDbClient(),
+        DYNAMO_DB_EXTENSION.getDynamoDbAsyncClient(),
         Tables.REPORT_MESSAGES.tableName(),
         Duration.ofDays(1));
   }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.whispersystems.textsecuregcm.tests.util.AccountsHelper.eqUuid;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.whispersystems.textsecuregcm.redis.RedisClusterExtension;
+import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
+import org.whispersystems.textsecuregcm.util.Util;
+
+class SegmentedAccountDatabaseCrawlerIntegrationTest {
+
+  @RegisterExtension
+  static final RedisClusterExtension REDIS_CLUSTER_EXTENSION = RedisClusterExtension.builder().build();
+
+  private static final UUID FIRST_UUID = UUID.fromString("82339e80-81cd-48e2-9ed2-ccd5dd262ad9");
+  private static final UUID SECOND_UUID = UUID.fromString("cc705c84-33cf-456b-8239-a6a34e2f561a");
+
+  private Account firstAccount;
+  private Account secondAccount;
+
+  private AccountsManager accountsManager;
+  private AccountDatabaseCrawlerListener listener;
+  private AccountDatabaseCrawlerCache crawlerCache;
+
+  private SegmentedAccountDatabaseCrawler accountDatabaseCrawler;
+
+  private static final int CHUNK_SIZE = 1;
+  private static final int TOTAL_SEGMENTS = 2;
+  private static final int CHUNKS_PER_CLAIM = 10;
+  private static final String WORKER_ID = "worker";
+
+  @BeforeEach
+  void setUp() throws Exception {
+    firstAccount = mock(Account.class);
+    secondAccount = mock(Account.class);
+
+    accountsManager = mock(AccountsManager.class);
+    listener = mock(AccountDatabaseCrawlerListener.class);
+
+    when(firstAccount.getUuid()).thenReturn(FIRST_UUID);
+    when(secondAccount.getUuid()).thenReturn(SECOND_UUID);
+
+    // Each segment holds a single account
+    when(accountsManager.getAllFromDynamoSegment(0, TOTAL_SEGMENTS, Optional.empty(), CHUNK_SIZE))
+        .thenReturn(new AccountCrawlChunk(List.of(firstAccount), FIRST_UUID));
+    when(accountsManager.getAllFromDynamoSegment(0, TOTAL_SEGMENTS, Optional.of(FIRST_UUID), CHUNK_SIZE))
+        .thenReturn(new AccountCrawlChunk(Collections.emptyList(), null));
+    when(accountsManager.getAllFromDynamoSegment(1, TOTAL_SEGMENTS, Optional.empty(), CHUNK_SIZE))
+        .thenReturn(new AccountCrawlChunk(List.of(secondAccount), SECOND_UUID));
+    when(accountsManager.getAllFromDynamoSegment(1, TOTAL_SEGMENTS, Optional.of(SECOND_UUID), CHUNK_SIZE))
+        .thenReturn(new AccountCrawlChunk(Collections.emptyList(), null));
+
+    crawlerCache = new AccountDatabaseCrawlerCache(REDIS_CLUSTER_EXTENSION.getRedisCluster(), "test");
+
+    accountDatabaseCrawler = new SegmentedAccountDatabaseCrawler("test", accountsManager, crawlerCache,
+        List.of(listener), CHUNK_SIZE, TOTAL_SEGMENTS, 1, CHUNKS_PER_CLAIM);
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    accountDatabaseCrawler.stop();
+  }
+
+  @Test
+  void testCrawlUninterrupted() throws AccountDatabaseCrawlerRestartException {
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(listener).onCrawlStart();
+    verify(listener, never()).onCrawlEnd(any());
+
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(listener).onCrawlStart();
+    verify(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(firstAccount));
+    verify(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(secondAccount));
+    verify(listener).onCrawlEnd(any());
+  }
+
+  @Test
+  void testCrawlWithReset() throws AccountDatabaseCrawlerRestartException {
+    doThrow(new AccountDatabaseCrawlerRestartException("OH NO")).doNothing()
+        .when(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(firstAccount));
+
+    // One segment finishes and the other restarts, in either order
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(listener, never()).onCrawlEnd(any());
+
+    // The restarted segment gets crawled again, finishing the crawl
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(listener).onCrawlStart();
+    verify(listener, times(2)).timeAndProcessCrawlChunk(Optional.empty(), List.of(firstAccount));
+    verify(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(secondAccount));
+    verify(listener).onCrawlEnd(any());
+  }
+
+  @Test
+  void testCrawlWithPushFeedbackProcessor() throws Exception {
+    final Device uninstalledDevice = mock(Device.class);
+    when(uninstalledDevice.getUninstalledFeedbackTimestamp())
+        .thenReturn(Util.todayInMillis() - TimeUnit.DAYS.toMillis(2));
+    when(uninstalledDevice.getLastSeen()).thenReturn(Util.todayInMillis() - TimeUnit.DAYS.toMillis(2));
+    when(uninstalledDevice.isEnabled()).thenReturn(true);
+
+    when(firstAccount.getDevices()).thenReturn(List.of(uninstalledDevice));
+    when(secondAccount.getDevices()).thenReturn(Collections.emptyList());
+
+    AccountsHelper.setupMockUpdate(accountsManager);
+    AccountsHelper.setupMockGet(accountsManager, Set.of(firstAccount, secondAccount));
+
+    // The push feedback processor waits for asynchronous updates, and must be able to do so on the crawler's listener
+    // threads
+    accountDatabaseCrawler.stop();
+    accountDatabaseCrawler = new SegmentedAccountDatabaseCrawler("test", accountsManager, crawlerCache,
+        List.of(new PushFeedbackProcessor(accountsManager)), CHUNK_SIZE, TOTAL_SEGMENTS, 1, CHUNKS_PER_CLAIM);
+
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(accountsManager).updateAsync(eqUuid(firstAccount), any());
+    verify(accountsManager, never()).updateAsync(eqUuid(secondAccount), any());
+    verify(uninstalledDevice).setFetchesMessages(false);
+  }
+
+  @Test
+  void testListenerThreads() throws AccountDatabaseCrawlerRestartException {
+    final List<Thread> listenerThreads = new CopyOnWriteArrayList<>();
+
+    doAnswer(invocation -> listenerThreads.add(Thread.currentThread())).when(listener).onCrawlStart();
+    doAnswer(invocation -> listenerThreads.add(Thread.currentThread()))
+        .when(listener).timeAndProcessCrawlChunk(any(), any());
+    doAnswer(invocation -> listenerThreads.add(Thread.currentThread())).when(listener).onCrawlEnd(any());
+
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    // Every callback, including the start and end of the crawl, should happen on the listener's own thread
+    assertEquals(4, listenerThreads.size());
+    assertEquals(1, listenerThreads.stream().distinct().count());
+    assertNotEquals(Thread.currentThread(), listenerThreads.get(0));
+  }
+
+  @Test
+  void testCrawlStartInProgress() throws AccountDatabaseCrawlerRestartException {
+    assertTrue(crawlerCache.beginSegmentedCrawlStart(TOTAL_SEGMENTS, "other-worker", 60_000));
+
+    // Another worker hasn't finished starting the crawl, so we shouldn't crawl anything yet
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(listener, never()).onCrawlStart();
+    verify(listener, never()).timeAndProcessCrawlChunk(any(), any());
+
+    assertTrue(crawlerCache.finishSegmentedCrawlStart(TOTAL_SEGMENTS, "other-worker"));
+
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(listener, never()).onCrawlStart();
+    verify(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(firstAccount));
+    verify(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(secondAccount));
+    verify(listener).onCrawlEnd(any());
+  }
+
+  @Test
+  void testLostClaim() throws AccountDatabaseCrawlerRestartException {
+    doAnswer(invocation -> {
+      // Simulate our claim lapsing and another worker claiming the segment while we process a chunk
+      crawlerCache.releaseSegment(0, TOTAL_SEGMENTS, WORKER_ID);
+      assertTrue(crawlerCache.claimSegment(0, TOTAL_SEGMENTS, "other-worker", 60_000));
+
+      return null;
+    }).when(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(firstAccount));
+
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+    assertTrue(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+
+    verify(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(firstAccount));
+    verify(listener).timeAndProcessCrawlChunk(Optional.empty(), List.of(secondAccount));
+    verify(listener, never()).onCrawlEnd(any());
+
+    // We should neither have moved the other worker's cursor nor finished its segment
+    assertEquals(Optional.empty(), crawlerCache.getLastUuid(0, TOTAL_SEGMENTS));
+    assertEquals(Set.of(1), crawlerCache.getFinishedSegments(TOTAL_SEGMENTS));
+  }
+
+  @Test
+  void testNoSegmentsAvailable() throws Exception {
+    assertTrue(crawlerCache.claimSegment(0, TOTAL_SEGMENTS, "other-worker", 60_000));
+    assertTrue(crawlerCache.claimSegment(1, TOTAL_SEGMENTS, "other-worker", 60_000));
+
+    assertFalse(accountDatabaseCrawler.doPeriodicWork(WORKER_ID));
+    verify(listener, never()).onCrawlStart();
+  }
+}
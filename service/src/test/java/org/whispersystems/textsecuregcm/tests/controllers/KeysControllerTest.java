@@ -9,6 +9,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.clearInvocations;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
@@ -28,8 +29,10 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.Set;
 import java.util.UUID;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.MediaType;
@@ -422,10 +425,8 @@ class KeysControllerTest {
 
   @Test
   void validMultiRequestTestV2() {
-    when(KEYS.take(EXISTS_UUID, 1)).thenReturn(Optional.of(SAMPLE_KEY));
-    when(KEYS.take(EXISTS_UUID, 2)).thenReturn(Optional.of(SAMPLE_KEY2));
-    when(KEYS.take(EXISTS_UUID, 3)).thenReturn(Optional.of(SAMPLE_KEY3));
-    when(KEYS.take(EXISTS_UUID, 4)).thenReturn(Optional.of(SAMPLE_KEY4));
+    when(KEYS.takeForDevices(eq(EXISTS_UUID), any()))
+        .thenReturn(Map.of(1L, SAMPLE_KEY, 2L, SAMPLE_KEY2, 3L, SAMPLE_KEY3, 4L, SAMPLE_KEY4));
 
     PreKeyResponse results = resources.getJerseyTest()
                                       .target(String.format("/v2/keys/%s/*", EXISTS_UUID))
@@ -471,10 +472,7 @@ class KeysControllerTest {
     assertThat(signedPreKey).isNull();
     assertThat(deviceId).isEqualTo(4);
 
-    verify(KEYS).take(EXISTS_UUID, 1);
-    verify(KEYS).take(EXISTS_UUID, 2);
-    verify(KEYS).take(EXISTS_UUID, 3);
-    verify(KEYS).take(EXISTS_UUID, 4);
+    verify(KEYS).takeForDevices(eq(EXISTS_UUID), argThat(deviceIds -> Set.copyOf(deviceIds).equals(Set.of(1L, 2L, 3L, 4L))));
     verifyNoMoreInteractions(KEYS);
   }
 
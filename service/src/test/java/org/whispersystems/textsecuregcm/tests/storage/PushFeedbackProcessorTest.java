@@ -5,9 +5,13 @@
 
 package org.whispersystems.textsecuregcm.tests.storage;
 
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.isNull;
 import static org.mockito.Mockito.mock;
@@ -22,6 +26,7 @@ import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,6 +34,7 @@ import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountDatabaseCrawlerRestartException;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.OptimisticLockRetryLimitExceededException;
 import org.whispersystems.textsecuregcm.storage.PushFeedbackProcessor;
 import org.whispersystems.textsecuregcm.tests.util.AccountsHelper;
 import org.whispersystems.textsecuregcm.util.Util;
@@ -118,7 +124,7 @@ class PushFeedbackProcessorTest {
     verify(uninstalledDevice).setFetchesMessages(eq(false));
     when(uninstalledDevice.isEnabled()).thenReturn(false);
 
-    verify(accountsManager).update(eqUuid(uninstalledAccount), any());
+    verify(accountsManager).updateAsync(eqUuid(uninstalledAccount), any());
 
     verify(uninstalledDeviceTwo).setApnId(isNull());
     verify(uninstalledDeviceTwo).setGcmId(isNull());
@@ -129,19 +135,19 @@ class PushFeedbackProcessorTest {
     verify(installedDevice, never()).setGcmId(any());
     verify(installedDevice, never()).setFetchesMessages(anyBoolean());
 
-    verify(accountsManager).update(eqUuid(mixedAccount), any());
+    verify(accountsManager).updateAsync(eqUuid(mixedAccount), any());
 
     verify(recentUninstalledDevice, never()).setApnId(any());
     verify(recentUninstalledDevice, never()).setGcmId(any());
     verify(recentUninstalledDevice, never()).setFetchesMessages(anyBoolean());
 
-    verify(accountsManager, never()).update(eqUuid(freshAccount), any());
+    verify(accountsManager, never()).updateAsync(eqUuid(freshAccount), any());
 
     verify(installedDeviceTwo, never()).setApnId(any());
     verify(installedDeviceTwo, never()).setGcmId(any());
     verify(installedDeviceTwo, never()).setFetchesMessages(anyBoolean());
 
-    verify(accountsManager, never()).update(eqUuid(cleanAccount), any());
+    verify(accountsManager, never()).updateAsync(eqUuid(cleanAccount), any());
 
     verify(stillActiveDevice).setUninstalledFeedbackTimestamp(eq(0L));
     verify(stillActiveDevice, never()).setApnId(any());
@@ -149,7 +155,7 @@ class PushFeedbackProcessorTest {
     verify(stillActiveDevice, never()).setFetchesMessages(anyBoolean());
     when(stillActiveDevice.getUninstalledFeedbackTimestamp()).thenReturn(0L);
 
-    verify(accountsManager).update(eqUuid(stillActiveAccount), any());
+    verify(accountsManager).updateAsync(eqUuid(stillActiveAccount), any());
 
     // there are un-verified calls to updateDevice
     clearInvocations(accountsManager);
@@ -158,7 +164,36 @@ class PushFeedbackProcessorTest {
     processor.timeAndProcessCrawlChunk(Optional.of(UUID.randomUUID()),
         List.of(uninstalledAccount, mixedAccount, stillActiveAccount, freshAccount, cleanAccount));
 
-    verify(accountsManager, never()).update(any(Account.class), any());
+    verify(accountsManager, never()).updateAsync(any(Account.class), any());
+  }
+
+  @Test
+  void testUpdateConflict() throws AccountDatabaseCrawlerRestartException {
+    doReturn(CompletableFuture.failedFuture(new OptimisticLockRetryLimitExceededException()))
+        .when(accountsManager).updateAsync(eqUuid(uninstalledAccount), any());
+
+    final PushFeedbackProcessor processor = new PushFeedbackProcessor(accountsManager);
+
+    // Accounts that can't be updated because of contention are left for the next crawl
+    assertDoesNotThrow(() -> processor.timeAndProcessCrawlChunk(Optional.of(UUID.randomUUID()),
+        List.of(uninstalledAccount, mixedAccount)));
+
+    verify(accountsManager).updateAsync(eqUuid(mixedAccount), any());
+  }
+
+  @Test
+  void testUpdateFailure() {
+    final RuntimeException failure = new RuntimeException("OH NO");
+
+    doReturn(CompletableFuture.failedFuture(failure))
+        .when(accountsManager).updateAsync(eqUuid(uninstalledAccount), any());
+
+    final PushFeedbackProcessor processor = new PushFeedbackProcessor(accountsManager);
+
+    // Other failures should fail the chunk so the crawler retries it
+    assertSame(failure, assertThrows(RuntimeException.class,
+        () -> processor.timeAndProcessCrawlChunk(Optional.of(UUID.randomUUID()),
+            List.of(uninstalledAccount, mixedAccount))));
   }
 
 }
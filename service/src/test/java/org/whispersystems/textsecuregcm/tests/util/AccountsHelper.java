@@ -15,9 +15,12 @@ import static org.mockito.Mockito.when;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import org.mockito.MockingDetails;
 import org.mockito.stubbing.Stubbing;
 import org.whispersystems.textsecuregcm.auth.SaltedTokenHash;
@@ -61,6 +64,13 @@ public class AccountsHelper {
       return markStale ? copyAndMarkStale(account) : account;
     });
 
+    when(mockAccountsManager.updateAsync(any(), any())).thenAnswer(answer -> {
+      final Account account = answer.getArgument(0, Account.class);
+      answer.getArgument(1, Consumer.class).accept(account);
+
+      return CompletableFuture.completedFuture(markStale ? copyAndMarkStale(account) : account);
+    });
+
     when(mockAccountsManager.updateDevice(any(), anyLong(), any())).thenAnswer(answer -> {
       final Account account = answer.getArgument(0, Account.class);
       final Long deviceId = answer.getArgument(1, Long.class);
@@ -81,21 +91,22 @@ public class AccountsHelper {
   }
 
   public static void setupMockGet(final AccountsManager mockAccountsManager, final Set<Account> mockAccounts) {
-    when(mockAccountsManager.getByAccountIdentifier(any(UUID.class))).thenAnswer(answer -> {
-
-      final UUID uuid = answer.getArgument(0, UUID.class);
-
-      return mockAccounts.stream()
-          .filter(account -> uuid.equals(account.getUuid()))
-          .findFirst()
-          .map(account -> {
-            try {
-              return copyAndMarkStale(account);
-            } catch (final Exception e) {
-              throw new RuntimeException(e);
-            }
-          });
-    });
+    final Function<UUID, Optional<Account>> getByAccountIdentifier = uuid -> mockAccounts.stream()
+        .filter(account -> uuid.equals(account.getUuid()))
+        .findFirst()
+        .map(account -> {
+          try {
+            return copyAndMarkStale(account);
+          } catch (final Exception e) {
+            throw new RuntimeException(e);
+          }
+        });
+
+    when(mockAccountsManager.getByAccountIdentifier(any(UUID.class))).thenAnswer(answer ->
+        getByAccountIdentifier.apply(answer.getArgument(0, UUID.class)));
+
+    when(mockAccountsManager.getByAccountIdentifierAsync(any(UUID.class))).thenAnswer(answer ->
+        CompletableFuture.completedFuture(getByAccountIdentifier.apply(answer.getArgument(0, UUID.class))));
   }
 
   private static Account copyAndMarkStale(Account account) throws IOException {
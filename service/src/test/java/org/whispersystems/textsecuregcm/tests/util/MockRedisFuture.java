@@ -0,0 +1,53 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.tests.util;
+
+import io.lettuce.core.RedisFuture;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link RedisFuture} backed by a {@link CompletableFuture} for use as a stubbed return value from mock asynchronous
+ * Redis commands.
+ */
+public class MockRedisFuture<T> extends CompletableFuture<T> implements RedisFuture<T> {
+
+  public static <T> MockRedisFuture<T> completedFuture(final T value) {
+    final MockRedisFuture<T> future = new MockRedisFuture<>();
+    future.complete(value);
+    return future;
+  }
+
+  public static <U> MockRedisFuture<U> failedFuture(final Throwable cause) {
+    final MockRedisFuture<U> future = new MockRedisFuture<>();
+    future.completeExceptionally(cause);
+    return future;
+  }
+
+  @Override
+  public String getError() {
+    if (isCompletedExceptionally()) {
+      try {
+        get();
+      } catch (final InterruptedException | ExecutionException e) {
+        return e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+      }
+    }
+
+    return null;
+  }
+
+  @Override
+  public boolean await(final long timeout, final TimeUnit unit) {
+    return isDone();
+  }
+
+  @Override
+  public CompletableFuture<T> toCompletableFuture() {
+    return this;
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class AdaptiveSendWindowTest {
+
+  private AtomicLong nanos;
+
+  private static final Duration LATENCY_THRESHOLD = Duration.ofSeconds(2);
+
+  @BeforeEach
+  void setUp() {
+    nanos = new AtomicLong(0);
+  }
+
+  @Test
+  void slowStart() {
+    final AdaptiveSendWindow sendWindow = new AdaptiveSendWindow(4, 1, 100, LATENCY_THRESHOLD, nanos::get);
+
+    for (int i = 0; i < 4; i++) {
+      sendWindow.send(() -> CompletableFuture.completedFuture(null)).block();
+    }
+
+    assertEquals(8, sendWindow.getWindow());
+  }
+
+  @Test
+  void maxWindow() {
+    final AdaptiveSendWindow sendWindow = new AdaptiveSendWindow(4, 1, 6, LATENCY_THRESHOLD, nanos::get);
+
+    for (int i = 0; i < 10; i++) {
+      sendWindow.send(() -> CompletableFuture.completedFuture(null)).block();
+    }
+
+    assertEquals(6, sendWindow.getWindow());
+  }
+
+  @Test
+  void slowAcknowledgement() {
+    final AdaptiveSendWindow sendWindow = new AdaptiveSendWindow(8, 1, 100, LATENCY_THRESHOLD, nanos::get);
+
+    final CompletableFuture<Void> firstSendFuture = new CompletableFuture<>();
+    final CompletableFuture<Void> secondSendFuture = new CompletableFuture<>();
+
+    final CompletableFuture<Void> firstResult = sendWindow.send(() -> firstSendFuture).toFuture();
+    final CompletableFuture<Void> secondResult = sendWindow.send(() -> secondSendFuture).toFuture();
+
+    nanos.addAndGet(LATENCY_THRESHOLD.multipliedBy(2).toNanos());
+
+    firstSendFuture.complete(null);
+    firstResult.join();
+
+    assertEquals(4, sendWindow.getWindow());
+
+    // The second send was already in flight when the window shrank, and shouldn't shrink it again
+    secondSendFuture.complete(null);
+    secondResult.join();
+
+    assertEquals(4, sendWindow.getWindow());
+
+    // We've left slow start, and so the window should grow by roughly one per window's worth of acknowledgements
+    for (int i = 0; i < 5; i++) {
+      sendWindow.send(() -> CompletableFuture.completedFuture(null)).block();
+    }
+
+    assertEquals(5, sendWindow.getWindow());
+  }
+
+  @Test
+  void failedSend() {
+    final AdaptiveSendWindow sendWindow = new AdaptiveSendWindow(8, 3, 100, LATENCY_THRESHOLD, nanos::get);
+
+    sendWindow.send(() -> CompletableFuture.failedFuture(new RuntimeException()))
+        .onErrorResume(ignored -> Mono.empty())
+        .block();
+
+    assertEquals(4, sendWindow.getWindow());
+
+    nanos.incrementAndGet();
+
+    sendWindow.send(() -> CompletableFuture.failedFuture(new RuntimeException()))
+        .onErrorResume(ignored -> Mono.empty())
+        .block();
+
+    // The window should never shrink below the minimum
+    assertEquals(3, sendWindow.getWindow());
+  }
+
+  @Test
+  void waitForSpace() {
+    final AdaptiveSendWindow sendWindow = new AdaptiveSendWindow(1, 1, 1, LATENCY_THRESHOLD, nanos::get);
+
+    final CompletableFuture<Void> firstSendFuture = new CompletableFuture<>();
+    final AtomicBoolean secondSendStarted = new AtomicBoolean(false);
+
+    final CompletableFuture<Void> firstResult = sendWindow.send(() -> firstSendFuture).toFuture();
+    final CompletableFuture<Void> secondResult = sendWindow.send(() -> {
+      secondSendStarted.set(true);
+      return CompletableFuture.<Void>completedFuture(null);
+    }).toFuture();
+
+    assertFalse(secondSendStarted.get());
+
+    firstSendFuture.complete(null);
+
+    firstResult.join();
+    secondResult.join();
+
+    assertTrue(secondSendStarted.get());
+  }
+
+  @Test
+  void preservesOrder() {
+    final AdaptiveSendWindow sendWindow = new AdaptiveSendWindow(2, 1, 4, LATENCY_THRESHOLD, nanos::get);
+    final List<Integer> sent = new ArrayList<>();
+
+    Flux.range(0, 100)
+        .flatMapSequential(i -> sendWindow.send(() -> {
+          synchronized (sent) {
+            sent.add(i);
+          }
+
+          return CompletableFuture.completedFuture(i);
+        }), sendWindow.getMaxWindow())
+        .blockLast();
+
+    assertEquals(100, sent.size());
+
+    for (int i = 0; i < sent.size(); i++) {
+      assertEquals(i, sent.get(i));
+    }
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 Signal Messenger, LLC
+ * SPDX-License-Identifier: AGPL-3.0-only
+ */
+
+package org.whispersystems.textsecuregcm.websocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.whispersystems.textsecuregcm.storage.MessagesManager;
+
+class MessageAcknowledgementBatcherTest {
+
+  private MessagesManager messagesManager;
+  private ScheduledExecutorService scheduledExecutorService;
+
+  private static final UUID ACCOUNT_UUID = UUID.randomUUID();
+  private static final long DEVICE_ID = 1;
+
+  @BeforeEach
+  void setUp() {
+    messagesManager = mock(MessagesManager.class);
+    scheduledExecutorService = Executors.newSingleThreadScheduledExecutor();
+  }
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    scheduledExecutorService.shutdown();
+    scheduledExecutorService.awaitTermination(1, TimeUnit.SECONDS);
+  }
+
+  @Test
+  void acknowledgeBatchFull() {
+    final CompletableFuture<Void> deleteFuture = new CompletableFuture<>();
+    when(messagesManager.deleteBatch(any(), anyLong(), any())).thenReturn(deleteFuture);
+
+    final MessageAcknowledgementBatcher batcher = new MessageAcknowledgementBatcher(messagesManager, ACCOUNT_UUID,
+        DEVICE_ID, 2, Duration.ofMinutes(1), scheduledExecutorService);
+
+    final UUID firstGuid = UUID.randomUUID();
+    final UUID secondGuid = UUID.randomUUID();
+
+    final CompletableFuture<Void> firstAcknowledgementFuture = batcher.acknowledge(firstGuid, 1);
+    verify(messagesManager, never()).deleteBatch(any(), anyLong(), any());
+
+    final CompletableFuture<Void> secondAcknowledgementFuture = batcher.acknowledge(secondGuid, 2);
+    verify(messagesManager).deleteBatch(ACCOUNT_UUID, DEVICE_ID, Map.of(firstGuid, 1L, secondGuid, 2L));
+
+    // Acknowledgements shouldn't complete until the batch has actually been deleted
+    assertFalse(firstAcknowledgementFuture.isDone());
+    assertFalse(secondAcknowledgementFuture.isDone());
+
+    deleteFuture.complete(null);
+
+    assertTrue(firstAcknowledgementFuture.isDone());
+    assertTrue(secondAcknowledgementFuture.isDone());
+  }
+
+  @Test
+  void acknowledgeBatchDelay() {
+    when(messagesManager.deleteBatch(any(), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    final MessageAcknowledgementBatcher batcher = new MessageAcknowledgementBatcher(messagesManager, ACCOUNT_UUID,
+        DEVICE_ID, 100, Duration.ofMillis(10), scheduledExecutorService);
+
+    final UUID guid = UUID.randomUUID();
+
+    batcher.acknowledge(guid, 1).orTimeout(5, TimeUnit.SECONDS).join();
+    verify(messagesManager, timeout(1_000)).deleteBatch(ACCOUNT_UUID, DEVICE_ID, Map.of(guid, 1L));
+  }
+
+  @Test
+  void flush() {
+    when(messagesManager.deleteBatch(any(), anyLong(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    final MessageAcknowledgementBatcher batcher = new MessageAcknowledgementBatcher(messagesManager, ACCOUNT_UUID,
+        DEVICE_ID, 100, Duration.ofMinutes(1), scheduledExecutorService);
+
+    final UUID guid = UUID.randomUUID();
+    final CompletableFuture<Void> acknowledgementFuture = batcher.acknowledge(guid, 1);
+
+    batcher.flush();
+
+    assertTrue(acknowledgementFuture.isDone());
+    verify(messagesManager).deleteBatch(eq(ACCOUNT_UUID), eq(DEVICE_ID), eq(Map.of(guid, 1L)));
+
+    // Flushing an empty batch should do nothing
+    batcher.flush();
+    verify(messagesManager).deleteBatch(any(), anyLong(), any());
+  }
+
+  @Test
+  void acknowledgeDeleteFailed() {
+    final RuntimeException deleteException = new RuntimeException();
+    when(messagesManager.deleteBatch(any(), anyLong(), any())).thenReturn(CompletableFuture.failedFuture(deleteException));
+
+    final MessageAcknowledgementBatcher batcher = new MessageAcknowledgementBatcher(messagesManager, ACCOUNT_UUID,
+        DEVICE_ID, 1, Duration.ofMinutes(1), scheduledExecutorService);
+
+    final CompletionException completionException =
+        assertThrows(CompletionException.class, () -> batcher.acknowledge(UUID.randomUUID(), 1).join());
+
+    assertEquals(deleteException, completionException.getCause());
+  }
+}
@@ -32,12 +32,15 @@ import io.lettuce.core.RedisException;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -54,12 +57,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.stubbing.Answer;
 import org.whispersystems.textsecuregcm.auth.AccountAuthenticator;
 import org.whispersystems.textsecuregcm.auth.AuthenticatedAccount;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicConfiguration;
+import org.whispersystems.textsecuregcm.configuration.dynamic.DynamicMessageDeliveryConfiguration;
+import org.whispersystems.textsecuregcm.experiment.ExperimentEnrollmentManager;
 import org.whispersystems.textsecuregcm.push.ClientPresenceManager;
 import org.whispersystems.textsecuregcm.push.PushNotificationManager;
 import org.whispersystems.textsecuregcm.push.ReceiptSender;
 import org.whispersystems.textsecuregcm.storage.Account;
 import org.whispersystems.textsecuregcm.storage.AccountsManager;
 import org.whispersystems.textsecuregcm.storage.Device;
+import org.whispersystems.textsecuregcm.storage.DynamicConfigurationManager;
 import org.whispersystems.textsecuregcm.storage.MessagesManager;
 import org.whispersystems.textsecuregcm.util.Pair;
 import org.whispersystems.websocket.WebSocketClient;
@@ -116,9 +123,14 @@ class WebSocketConnectionTest {
   @Test
   void testCredentials() throws Exception {
     WebSocketAccountAuthenticator webSocketAuthenticator = new WebSocketAccountAuthenticator(accountAuthenticator);
+    @SuppressWarnings("unchecked") final DynamicConfigurationManager<DynamicConfiguration> dynamicConfigurationManager =
+        mock(DynamicConfigurationManager.class);
+    when(dynamicConfigurationManager.getConfiguration()).thenReturn(new DynamicConfiguration());
+
     AuthenticatedConnectListener connectListener = new AuthenticatedConnectListener(receiptSender, messagesManager,
         mock(PushNotificationManager.class), mock(ClientPresenceManager.class),
-        retrySchedulingExecutor, messageDeliveryScheduler);
+        retrySchedulingExecutor, messageDeliveryScheduler, mock(ExperimentEnrollmentManager.class),
+        dynamicConfigurationManager);
     WebSocketSessionContext sessionContext = mock(WebSocketSessionContext.class);
 
     when(accountAuthenticator.authenticate(eq(new BasicCredentials(VALID_USER, VALID_PASSWORD))))
@@ -855,6 +867,82 @@ class WebSocketConnectionTest {
         .verify();
   }
 
+  @Test
+  void testBatchedAcknowledgementsWithAdaptiveSendWindow() {
+    final UUID accountUuid = UUID.randomUUID();
+    final long deviceId = 2L;
+    final int window = 4;
+    final int windowCount = 3;
+
+    when(account.getUuid()).thenReturn(accountUuid);
+    when(device.getId()).thenReturn(deviceId);
+
+    final List<Envelope> messages = Stream.generate(() -> createMessage(UUID.randomUUID(), accountUuid, 1111, "test"))
+        .limit(window * windowCount)
+        .toList();
+
+    when(messagesManager.getMessagesForDeviceReactive(eq(accountUuid), eq(deviceId), anyBoolean()))
+        .thenReturn(Flux.fromIterable(messages));
+    when(messagesManager.deleteBatch(eq(accountUuid), eq(deviceId), any()))
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    final WebSocketClient client = mock(WebSocketClient.class);
+    when(client.isOpen()).thenReturn(true);
+
+    final WebSocketResponseMessage successResponse = mock(WebSocketResponseMessage.class);
+    when(successResponse.getStatus()).thenReturn(200);
+
+    final Queue<CompletableFuture<WebSocketResponseMessage>> pendingResponses = new ConcurrentLinkedQueue<>();
+
+    when(client.sendRequest(eq("PUT"), eq("/api/v1/message"), any(List.class), any(Optional.class)))
+        .thenAnswer(invocation -> {
+          final CompletableFuture<WebSocketResponseMessage> responseFuture = new CompletableFuture<>();
+          pendingResponses.add(responseFuture);
+
+          return responseFuture;
+        });
+
+    // The retry executor is a mock, so the batcher's delayed flush never fires; the window would stall forever if the
+    // batcher waited for a full batch (which is larger than the window) or for its delay to elapse
+    final WebSocketConnection connection = new WebSocketConnection(receiptSender, messagesManager, auth, device,
+        client, 60_000, true,
+        new DynamicMessageDeliveryConfiguration(true, window, window, window, Duration.ofMinutes(1)),
+        retrySchedulingExecutor, Schedulers.immediate());
+
+    connection.start();
+
+    for (int i = 0; i < windowCount; i++) {
+      assertEquals(window, pendingResponses.size());
+
+      final List<CompletableFuture<WebSocketResponseMessage>> inFlight = new ArrayList<>(pendingResponses);
+      pendingResponses.clear();
+
+      inFlight.forEach(responseFuture -> responseFuture.complete(successResponse));
+    }
+
+    assertTrue(pendingResponses.isEmpty());
+
+    verify(messagesManager, times(windowCount))
+        .deleteBatch(eq(accountUuid), eq(deviceId), argThat(serverTimestampsByGuid ->
+            serverTimestampsByGuid.size() == window));
+    verify(client).sendRequest(eq("PUT"), eq("/api/v1/queue/empty"), any(List.class), eq(Optional.empty()));
+  }
+
+  @Test
+  void testSerializeForDelivery() throws InvalidProtocolBufferException {
+    final Envelope message = createMessage(UUID.randomUUID(), UUID.randomUUID(), 1111, "first");
+
+    assertEquals(message, Envelope.parseFrom(WebSocketConnection.serializeForDelivery(message)));
+
+    for (final boolean ephemeral : new boolean[] { true, false }) {
+      final Envelope deserialized = Envelope.parseFrom(
+          WebSocketConnection.serializeForDelivery(message.toBuilder().setEphemeral(ephemeral).build()));
+
+      assertFalse(deserialized.hasEphemeral());
+      assertEquals(message, deserialized);
+    }
+  }
+
   private Envelope createMessage(UUID senderUuid, UUID destinationUuid, long timestamp, String content) {
     return Envelope.newBuilder()
         .setServerGuid(UUID.randomUUID().toString())
@@ -4,7 +4,7 @@
  */
 package org.whispersystems.websocket.messages.protobuf;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import org.whispersystems.websocket.messages.InvalidMessageException;
 import org.whispersystems.websocket.messages.WebSocketMessage;
 import org.whispersystems.websocket.messages.WebSocketMessageFactory;
@@ -37,7 +37,8 @@ public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory
     }
 
     if (body.isPresent()) {
-      requestMessage.setBody(ByteString.copyFrom(body.get()));
+      // The body is only read when the message is serialized, so there's no need to make a defensive copy of it
+      requestMessage.setBody(UnsafeByteOperations.unsafeWrap(body.get()));
     }
 
     if (headers != null) {
@@ -62,7 +63,7 @@ public class ProtobufWebSocketMessageFactory implements WebSocketMessageFactory
                                             .setMessage(messageString);
 
     if (body.isPresent()) {
-      responseMessage.setBody(ByteString.copyFrom(body.get()));
+      responseMessage.setBody(UnsafeByteOperations.unsafeWrap(body.get()));
     }
 
     if (headers != null) {